@@ -29,39 +29,63 @@
  */
 package com.github.dandelion.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.management.JMException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.dandelion.core.asset.AssetType;
 import com.github.dandelion.core.asset.cache.AssetCacheManager;
+import com.github.dandelion.core.asset.cache.DiskAssetStore;
+import com.github.dandelion.core.asset.cache.PrecompiledAssets;
 import com.github.dandelion.core.asset.cache.impl.MemoryAssetCache;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
 import com.github.dandelion.core.asset.locator.Servlet2Compatible;
 import com.github.dandelion.core.asset.locator.Servlet3Compatible;
 import com.github.dandelion.core.asset.locator.spi.AssetLocator;
 import com.github.dandelion.core.asset.processor.AssetProcessorManager;
+import com.github.dandelion.core.asset.processor.CompatibleAssetType;
 import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
 import com.github.dandelion.core.bundle.loader.impl.DandelionBundleLoader;
 import com.github.dandelion.core.bundle.loader.impl.VendorBundleLoader;
 import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
 import com.github.dandelion.core.config.Configuration;
 import com.github.dandelion.core.config.ConfigurationLoader;
+import com.github.dandelion.core.config.DandelionConfig;
 import com.github.dandelion.core.config.StandardConfigurationLoader;
 import com.github.dandelion.core.jmx.DandelionRuntime;
+import com.github.dandelion.core.storage.BundleIndex;
+import com.github.dandelion.core.storage.BundleLoadingReport;
+import com.github.dandelion.core.storage.BundleSnapshot;
 import com.github.dandelion.core.storage.BundleStorage;
+import com.github.dandelion.core.storage.BundleStorageUnit;
+import com.github.dandelion.core.storage.BundleWatcher;
 import com.github.dandelion.core.utils.ClassUtils;
+import com.github.dandelion.core.utils.DaemonThreadFactory;
+import com.github.dandelion.core.utils.ResourceScanner;
+import com.github.dandelion.core.utils.Sha1Utils;
 import com.github.dandelion.core.utils.StringUtils;
 
 /**
@@ -81,14 +105,20 @@ public class Context {
 	private static Logger LOG = LoggerFactory.getLogger(Context.class);
 
 	private AssetCache assetCache;
+	private DiskAssetStore diskAssetStore;
+	private PrecompiledAssets precompiledAssets;
 	private Map<String, AssetProcessor> processorsMap;
 	private List<AssetProcessor> activeProcessors;
+	private List<AssetProcessor>[] activeProcessorsByType;
 	private List<BundleLoader> bundleLoaders;
+	private volatile ExecutorService bundleLoadingExecutor;
+	private ResourceScanner resourceScanner;
 	private AssetProcessorManager assetProcessorManager;
 	private AssetCacheManager assetCacheManager;
 
 	private Map<String, AssetLocator> assetLocatorsMap;
-	private BundleStorage bundleStorage;
+	private volatile BundleStorage bundleStorage;
+	private BundleWatcher bundleWatcher;
 	private Configuration configuration;
 
 	/**
@@ -111,15 +141,19 @@ public class Context {
 	public void init(FilterConfig filterConfig) {
 
 		initConfiguration(filterConfig);
+		initPrecompiledAssets(filterConfig);
+		resourceScanner = new ResourceScanner(Thread.currentThread().getContextClassLoader());
 		initBundleLoaders();
 		initAssetLocators();
-		initAssetCache();
 		initAssetProcessors();
+		checkPrecompiledAssets();
+		initAssetCache();
 
 		assetProcessorManager = new AssetProcessorManager(this);
 		assetCacheManager = new AssetCacheManager(this);
 
 		initBundleStorage();
+		initBundleWatcher();
 		initMBean(filterConfig);
 	}
 
@@ -164,6 +198,42 @@ public class Context {
 		configuration = new Configuration(filterConfig, userProperties);
 	}
 
+	/**
+	 * <p>
+	 * Detects the assets precompiled by the {@code dandelion-maven-plugin}. In
+	 * production mode, if a manifest is present in the classpath, the bundles
+	 * are read from it instead of being scanned and the precompiled contents
+	 * are served as they are.
+	 * 
+	 * <p>
+	 * The manifest is ignored if it has been built for another context path.
+	 * It is checked against the active processors once they are initialized.
+	 * 
+	 * @param filterConfig
+	 *            The servlet filter configuration.
+	 */
+	public void initPrecompiledAssets(FilterConfig filterConfig) {
+		precompiledAssets = null;
+		if (isDevModeEnabled()) {
+			return;
+		}
+
+		PrecompiledAssets manifest = PrecompiledAssets.load(Thread.currentThread().getContextClassLoader());
+		if (manifest == null) {
+			return;
+		}
+
+		if (filterConfig != null && filterConfig.getServletContext() != null
+				&& !manifest.getContextPath().equals(filterConfig.getServletContext().getContextPath())) {
+			LOG.warn("The precompiled assets have been built for the context path '{}' and are ignored",
+					manifest.getContextPath());
+			return;
+		}
+
+		precompiledAssets = manifest;
+		LOG.info("{} precompiled assets found", manifest.size());
+	}
+
 	/**
 	 * <p>
 	 * Initializes the {@link BundleLoader}s in a particular order:
@@ -233,6 +303,88 @@ public class Context {
 
 		LOG.info("Selected asset cache system: {} (based on {})", assetCache.getCacheName(), assetCache.getClass()
 				.getSimpleName());
+
+		initDiskAssetStore();
+	}
+
+	/**
+	 * <p>
+	 * Opens the disk tier of the asset cache, if a {@code cache.disk.location}
+	 * is configured, and warm-loads the processed contents persisted by a
+	 * previous run. The disk tier is never used in development mode, where
+	 * assets are processed again on each request.
+	 * 
+	 * <p>
+	 * The persisted contents are discarded as soon as the chain of active
+	 * processors or the {@code cache.disk.fingerprint} option changes. When
+	 * this option is not set, the deployment itself is fingerprinted instead,
+	 * see {@link #getDeploymentFingerprint()}.
+	 */
+	private void initDiskAssetStore() {
+		if (diskAssetStore != null) {
+			diskAssetStore.close();
+			diskAssetStore = null;
+		}
+
+		String location = configuration.getCacheDiskLocation();
+		if (StringUtils.isBlank(location) || isDevModeEnabled()) {
+			return;
+		}
+
+		String fingerprint = configuration.getCacheDiskFingerprint();
+		if (StringUtils.isBlank(fingerprint)) {
+			fingerprint = getDeploymentFingerprint();
+		}
+		fingerprint += "|" + getProcessorChain();
+		try {
+			diskAssetStore = DiskAssetStore.open(new File(location.trim()), Sha1Utils.generateSha1(fingerprint, true),
+					configuration.getCacheDiskMaxBytes());
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to open the disk asset cache located in {}. Processed assets won't be persisted.",
+					location, e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Fingerprints the current deployment, so that the contents persisted by
+	 * the disk tier are not served once the application has been redeployed
+	 * with other assets.
+	 * 
+	 * <p>
+	 * The fingerprint is made of the stamps of the JSON files describing the
+	 * bundles, and of the archives containing them, together with the stamps
+	 * of the webapp directories, which are recreated each time the WAR is
+	 * exploded.
+	 * 
+	 * @return the fingerprint of the deployment, or one that is specific to the
+	 *         current run if the bundle loaders don't expose the files they
+	 *         read.
+	 */
+	private String getDeploymentFingerprint() {
+		String bundlesFingerprint = BundleSnapshot.fingerprint(getBundleLoaders(), Thread.currentThread()
+				.getContextClassLoader());
+		if (bundlesFingerprint == null) {
+			LOG.warn("Unable to fingerprint the deployment. Set the '{}' option to reuse the disk asset cache across restarts.",
+					DandelionConfig.CACHE_DISK_FINGERPRINT.getName());
+			return "run:" + System.currentTimeMillis();
+		}
+
+		StringBuilder fingerprint = new StringBuilder(bundlesFingerprint);
+		FilterConfig filterConfig = configuration.getFilterConfig();
+		if (filterConfig != null && filterConfig.getServletContext() != null) {
+			ServletContext servletContext = filterConfig.getServletContext();
+			fingerprint.append('|').append(servletContext.getContextPath());
+			for (String path : new String[] { "/", "/WEB-INF/classes", "/WEB-INF/lib" }) {
+				String realPath = servletContext.getRealPath(path);
+				if (realPath != null) {
+					File directory = new File(realPath);
+					fingerprint.append('|').append(path).append(':').append(directory.lastModified());
+				}
+			}
+		}
+		return fingerprint.toString();
 	}
 
 	/**
@@ -300,6 +452,72 @@ public class Context {
 		else {
 			LOG.info("Asset processors disabled. All assets will be left untouched.");
 		}
+
+		activeProcessorsByType = getActiveProcessorsByType(activeProcessors);
+	}
+
+	/**
+	 * <p>
+	 * Selects, once for all, the active processors compatible with each
+	 * {@link AssetType}, so that the chain applied on an asset is found
+	 * without looking at the processors on each request.
+	 * 
+	 * @param processors
+	 *            The active processors.
+	 * @return the chains of processors, indexed by the ordinal of the asset
+	 *         types.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List<AssetProcessor>[] getActiveProcessorsByType(List<AssetProcessor> processors) {
+		List<AssetProcessor>[] processorsByType = new List[AssetType.values().length];
+		for (AssetType assetType : AssetType.values()) {
+			List<AssetProcessor> chain = new ArrayList<AssetProcessor>();
+			for (AssetProcessor assetProcessor : processors) {
+				CompatibleAssetType compatibleAssetType = assetProcessor.getClass().getAnnotation(
+						CompatibleAssetType.class);
+				if (compatibleAssetType != null && Arrays.asList(compatibleAssetType.types()).contains(assetType)) {
+					chain.add(assetProcessor);
+				}
+			}
+			processorsByType[assetType.ordinal()] = Collections.unmodifiableList(Arrays
+					.asList(chain.toArray(new AssetProcessor[chain.size()])));
+		}
+		for (AssetProcessor assetProcessor : processors) {
+			if (assetProcessor.getClass().getAnnotation(CompatibleAssetType.class) == null) {
+				LOG.warn("The processor {} is not annotated with @CompatibleAssetType and will never be applied",
+						assetProcessor.getProcessorKey());
+			}
+		}
+		return processorsByType;
+	}
+
+	/**
+	 * <p>
+	 * Discards the precompiled assets if they have been processed by another
+	 * chain of processors than the active one.
+	 */
+	private void checkPrecompiledAssets() {
+		if (precompiledAssets != null && !precompiledAssets.getProcessorChain().equals(getProcessorChain())) {
+			LOG.warn(
+					"The precompiled assets have been processed by '{}' while the active processors are '{}'. They are ignored.",
+					precompiledAssets.getProcessorChain(), getProcessorChain());
+			precompiledAssets = null;
+		}
+	}
+
+	/**
+	 * @return the keys of the active processors, in the order in which they
+	 *         are applied, separated by commas.
+	 */
+	public String getProcessorChain() {
+		StringBuilder processorChain = new StringBuilder();
+		for (AssetProcessor assetProcessor : activeProcessors) {
+			if (processorChain.length() > 0) {
+				processorChain.append(',');
+			}
+			processorChain.append(assetProcessor.getProcessorKey());
+		}
+		return processorChain.toString();
 	}
 
 	/**
@@ -308,14 +526,215 @@ public class Context {
 	 * {@link BundleLoader}s.
 	 * 
 	 * <p>
-	 * Once loader, some checks are performed on the {@link BundleStorage}.
+	 * If {@code bundle.snapshot.location} is set, the bundles are restored
+	 * from the {@link BundleSnapshot} found there as long as the JSON files
+	 * haven't changed. Otherwise they are loaded and a new snapshot is written.
+	 * 
+	 * <p>
+	 * If {@code bundle.loading.lazy} is enabled, only the names of the
+	 * bundles are read at startup and each bundle is loaded the first time
+	 * it is requested, see {@link BundleIndex}.
+	 * 
+	 * <p>
+	 * Once loaded, some checks are performed on the {@link BundleStorage} and
+	 * the bundle graph is compiled, so that no request has to pay for it.
+	 * 
+	 * <p>
+	 * The new storage is fully built aside before replacing the current one,
+	 * so that the bundles can be reloaded while requests are served: the
+	 * requests in progress keep using the previous storage. A reload failing,
+	 * e.g. because of a cycle, leaves the current storage unchanged.
+	 */
+	public synchronized void initBundleStorage() {
+		BundleStorage newBundleStorage = null;
+		if (precompiledAssets != null) {
+			LOG.info("Bundles read from the precompiled asset manifest");
+			newBundleStorage = new BundleStorage();
+			long start = System.nanoTime();
+			newBundleStorage.storeBundles(precompiledAssets.getBundles());
+			newBundleStorage.getLoadingReport().addLoaderTiming("precompiled", precompiledAssets.getBundles().size(),
+					0, System.nanoTime() - start);
+		}
+		else {
+			if (configuration.isBundleLoadingLazy()) {
+				long start = System.nanoTime();
+				BundleIndex bundleIndex = BundleIndex.build(getBundleLoaders(), Thread.currentThread()
+						.getContextClassLoader());
+				if (bundleIndex != null) {
+					LOG.info("{} bundles indexed, they will be loaded on demand", bundleIndex.getBundleNames().size());
+					newBundleStorage = new BundleStorage();
+					newBundleStorage.setBundleIndex(bundleIndex);
+					newBundleStorage.getLoadingReport().addLoaderTiming("index", 0, System.nanoTime() - start, 0);
+				}
+			}
+			if (newBundleStorage == null) {
+				newBundleStorage = loadOrRestoreBundles();
+			}
+		}
+		BundleLoadingReport loadingReport = newBundleStorage.getLoadingReport();
+		newBundleStorage.checkBundleDag();
+		newBundleStorage.getBundlePlan();
+		setBundleStorage(newBundleStorage);
+
+		LOG.info("{} bundles loaded in {} ms, {} asset(s) overridden", newBundleStorage.getBundleDag()
+				.getVerticies().size(), loadingReport.getTotalMillis(), loadingReport.getOverrides().size());
+		LOG.debug("{}", loadingReport);
+	}
+
+	/**
+	 * <p>
+	 * Restores a {@link BundleStorage} from the {@link BundleSnapshot} if
+	 * there is an up-to-date one, otherwise loads all bundles and writes a new
+	 * snapshot if {@code bundle.snapshot.location} is set.
+	 * 
+	 * @return the new bundle storage.
+	 */
+	private BundleStorage loadOrRestoreBundles() {
+		File snapshotFile = StringUtils.isBlank(configuration.getBundleSnapshotLocation()) ? null : new File(
+				configuration.getBundleSnapshotLocation(), BundleSnapshot.FILE_NAME);
+		long start = System.nanoTime();
+		String fingerprint = snapshotFile == null ? null : BundleSnapshot.fingerprint(getBundleLoaders(), Thread
+				.currentThread().getContextClassLoader());
+		BundleStorage snapshot = fingerprint == null ? null : BundleSnapshot.read(snapshotFile, fingerprint);
+
+		if (snapshot != null) {
+			LOG.info("Bundles read from the snapshot {}", snapshotFile.getAbsolutePath());
+			snapshot.getLoadingReport().addLoaderTiming("snapshot", snapshot.getBundleDag().getVerticies().size(),
+					System.nanoTime() - start, 0);
+			return snapshot;
+		}
+
+		BundleStorage newBundleStorage = new BundleStorage();
+		loadBundles(newBundleStorage);
+		if (fingerprint != null) {
+			try {
+				BundleSnapshot.write(snapshotFile, fingerprint, newBundleStorage);
+			}
+			catch (IOException e) {
+				LOG.warn("Unable to write the bundle snapshot {}: {}", snapshotFile.getAbsolutePath(), e.getMessage());
+			}
+		}
+		return newBundleStorage;
+	}
+
+	/**
+	 * <p>
+	 * Runs all {@link BundleLoader}s concurrently, while their JSON files are
+	 * parsed on a bounded pool, and stores the bundles in the order of the
+	 * loaders so that overrides are deterministic: vendor bundles first, then
+	 * the bundles of the components and finally the user bundles.
+	 * 
+	 * @param newBundleStorage
+	 *            The storage to fill, whose report receives the time spent by
+	 *            each loader.
 	 */
-	public void initBundleStorage() {
-		bundleStorage = new BundleStorage();
-		for (BundleLoader bundleLoader : getBundleLoaders()) {
-			bundleStorage.storeBundles(bundleLoader.loadBundles());
+	private void loadBundles(BundleStorage newBundleStorage) {
+		BundleLoadingReport loadingReport = newBundleStorage.getLoadingReport();
+		int threads = configuration.getBundleLoadingThreads();
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+
+		List<BundleLoader> loaders = getBundleLoaders();
+		ExecutorService loaderExecutor = Executors.newFixedThreadPool(loaders.size(), new DaemonThreadFactory(
+				"dandelion-bundle-loader"));
+		bundleLoadingExecutor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory(
+				"dandelion-bundle-parser"));
+		resourceScanner.setExecutor(bundleLoadingExecutor);
+		try {
+			List<Future<List<BundleStorageUnit>>> results = new ArrayList<Future<List<BundleStorageUnit>>>();
+			final long[] loadingNanos = new long[loaders.size()];
+			for (int i = 0; i < loaders.size(); i++) {
+				final BundleLoader bundleLoader = loaders.get(i);
+				final int index = i;
+				results.add(loaderExecutor.submit(new Callable<List<BundleStorageUnit>>() {
+
+					@Override
+					public List<BundleStorageUnit> call() {
+						long start = System.nanoTime();
+						List<BundleStorageUnit> bundles = bundleLoader.loadBundles();
+						loadingNanos[index] = System.nanoTime() - start;
+						return bundles;
+					}
+				}));
+			}
+
+			for (int i = 0; i < loaders.size(); i++) {
+				List<BundleStorageUnit> bundles = getLoadedBundles(loaders.get(i), results.get(i));
+				long start = System.nanoTime();
+				newBundleStorage.storeBundles(bundles);
+				loadingReport.addLoaderTiming(loaders.get(i).getName(), bundles.size(), loadingNanos[i],
+						System.nanoTime() - start);
+			}
+		}
+		finally {
+			resourceScanner.setExecutor(null);
+			loaderExecutor.shutdownNow();
+			bundleLoadingExecutor.shutdownNow();
+			bundleLoadingExecutor = null;
+		}
+	}
+
+	private List<BundleStorageUnit> getLoadedBundles(BundleLoader bundleLoader, Future<List<BundleStorageUnit>> result) {
+		try {
+			return result.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DandelionException("Interrupted while loading the bundles of " + bundleLoader.getName(), e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof DandelionException) {
+				throw (DandelionException) e.getCause();
+			}
+			throw new DandelionException("Unable to load the bundles of " + bundleLoader.getName(), e.getCause());
 		}
-		bundleStorage.checkBundleDag();
+	}
+
+	/**
+	 * @return the executor parsing the bundle definitions, only available
+	 *         while the {@link BundleStorage} is initialized, {@code null}
+	 *         otherwise.
+	 */
+	public Executor getBundleLoadingExecutor() {
+		return bundleLoadingExecutor;
+	}
+
+	/**
+	 * @return the scanner used to look for resources in the classpath, which
+	 *         indexes each classpath root only once.
+	 */
+	public ResourceScanner getResourceScanner() {
+		return resourceScanner;
+	}
+
+	/**
+	 * <p>
+	 * In development mode, if {@code bundle.watch.interval} is set, starts
+	 * watching the bundle definitions and the asset files so that the caches
+	 * are kept while only what has changed is reloaded, see
+	 * {@link BundleWatcher}.
+	 */
+	public void initBundleWatcher() {
+		bundleWatcher = null;
+		if (!isDevModeEnabled() || configuration.getBundleWatchInterval() <= 0) {
+			return;
+		}
+		if (precompiledAssets != null || bundleStorage.getBundleIndex() != null) {
+			LOG.info("The bundles are not watched since they are precompiled or loaded on demand");
+			return;
+		}
+
+		bundleWatcher = new BundleWatcher(this);
+		bundleWatcher.start(configuration.getBundleWatchInterval());
+	}
+
+	/**
+	 * @return the watcher of the bundle definitions and asset files, or
+	 *         {@code null} if they are not watched.
+	 */
+	public BundleWatcher getBundleWatcher() {
+		return bundleWatcher;
 	}
 
 	/**
@@ -341,6 +760,18 @@ public class Context {
 	}
 	
 	public void destroy(){
+		if (bundleWatcher != null) {
+			bundleWatcher.stop();
+		}
+		if (assetProcessorManager != null) {
+			assetProcessorManager.destroy();
+		}
+		if (resourceScanner != null) {
+			resourceScanner.clear();
+		}
+		if (diskAssetStore != null) {
+			diskAssetStore.close();
+		}
 		if (configuration.isJmxEnabled()) {
 			try {
 				MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
@@ -359,6 +790,22 @@ public class Context {
 		return assetCache;
 	}
 
+	/**
+	 * @return the assets precompiled at build time, or {@code null} if there
+	 *         is none.
+	 */
+	public PrecompiledAssets getPrecompiledAssets() {
+		return precompiledAssets;
+	}
+
+	/**
+	 * @return the disk tier of the asset cache, or {@code null} if it is
+	 *         disabled.
+	 */
+	public DiskAssetStore getDiskAssetStore() {
+		return diskAssetStore;
+	}
+
 	public Map<String, AssetProcessor> getProcessorsMap() {
 		return processorsMap;
 	}
@@ -375,10 +822,44 @@ public class Context {
 		return activeProcessors;
 	}
 
+	/**
+	 * @param assetType
+	 *            The type of an asset.
+	 * @return the active processors to apply, in order, on the assets of the
+	 *         given type. The returned list can't be modified.
+	 */
+	public List<AssetProcessor> getActiveProcessors(AssetType assetType) {
+		if (assetType == null) {
+			return Collections.emptyList();
+		}
+		return activeProcessorsByType[assetType.ordinal()];
+	}
+
 	public BundleStorage getBundleStorage() {
 		return bundleStorage;
 	}
 
+	/**
+	 * <p>
+	 * Publishes a new {@link BundleStorage}, e.g. once the bundles have been
+	 * reloaded. The new storage must be fully built beforehand and must not be
+	 * modified afterwards, except by the lazy loading of its bundles.
+	 * 
+	 * <p>
+	 * The generation of the new storage follows the one of the replaced
+	 * storage, so that the assets cached per request for the latter are no
+	 * longer used.
+	 * 
+	 * @param bundleStorage
+	 *            The new bundle storage.
+	 */
+	public synchronized void setBundleStorage(BundleStorage bundleStorage) {
+		if (this.bundleStorage != null) {
+			bundleStorage.setGeneration(this.bundleStorage.getGeneration() + 1);
+		}
+		this.bundleStorage = bundleStorage;
+	}
+
 	public AssetProcessorManager getProcessorManager() {
 		return assetProcessorManager;
 	}
@@ -403,4 +884,13 @@ public class Context {
 	public boolean isDevModeEnabled() {
 		return "development".equalsIgnoreCase(configuration.getDandelionMode().toString());
 	}
+
+	/**
+	 * @return {@code true} if the assets must be computed again on each
+	 *         request, i.e. in development mode unless the bundles and asset
+	 *         files are watched for changes.
+	 */
+	public boolean isCachingBypassed() {
+		return isDevModeEnabled() && bundleWatcher == null;
+	}
 }
\ No newline at end of file
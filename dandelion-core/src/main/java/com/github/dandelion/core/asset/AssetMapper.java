@@ -32,6 +32,7 @@ package com.github.dandelion.core.asset;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -40,9 +41,12 @@ import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.cache.AssetCacheManager;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
+import com.github.dandelion.core.asset.locator.spi.AbstractAssetLocator;
 import com.github.dandelion.core.asset.locator.spi.AssetLocator;
 import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.storage.BundleWatcher;
 import com.github.dandelion.core.utils.UrlUtils;
 import com.github.dandelion.core.web.DandelionServlet;
 
@@ -160,31 +164,47 @@ public class AssetMapper {
 		asset.setConfigLocation(asu.getLocations().get(locationKey));
 
 		if (locator.isCachingForced() || this.context.getConfiguration().isMinificationEnabled()) {
-			String context = UrlUtils.getCurrentUrl(request, true).toString();
-			context = context.replaceAll("\\?", "_").replaceAll("&", "_");
-			String cacheKey = this.context.getCacheManager().generateCacheKey(context, asset);
+			String cacheKey = this.context.getCacheManager().generateCacheKey(request, asset, false);
 			asu.setCacheKey(cacheKey);
 			asset.setCacheKey(cacheKey);
 			asset.setFinalLocation(UrlUtils.getProcessedUrl(DandelionServlet.DANDELION_ASSETS_URL + cacheKey, request,
 					null));
 			
-			// First try to access the asset content in order to see if it must be
-			// cached
-			String content = this.context.getCacheManager().getContent(asset.getCacheKey());
-
-			if (content == null || this.context.isDevModeEnabled()) {
+			// First check whether the asset content must be cached. Since the
+			// cache keys are shared between pages, the content may have already
+			// been cached, possibly already processed, by another request.
+			if (this.context.isCachingBypassed() || !isCached(asset)) {
 				Map<String, AssetLocator> assetLocatorsMap = this.context.getAssetLocatorsMap();
 				if (assetLocatorsMap.containsKey(asset.getConfigLocationKey())
 						&& assetLocatorsMap.get(asset.getConfigLocationKey()).isActive()) {
-					// LOG.debug("use location wrapper for {} on {}.", locationKey,
-					// asu);
-					// location = wrappers.get(locationKey).getWrappedLocation(asu,
-					// request);
-
-					content = assetLocatorsMap.get(asset.getConfigLocationKey()).getContent(asu, request);
 
-					// Finally store the final content in cache
-					this.context.getCacheManager().storeContent(asset.getCacheKey(), content);
+					final AssetLocator assetLocator = assetLocatorsMap.get(asset.getConfigLocationKey());
+					final AssetStorageUnit assetStorageUnit = asu;
+					final BundleWatcher bundleWatcher = this.context.getBundleWatcher();
+					final String assetCacheKey = cacheKey;
+
+					Callable<String> loader = new Callable<String>() {
+
+						@Override
+						public String call() {
+							if (bundleWatcher != null && assetLocator instanceof AbstractAssetLocator) {
+								bundleWatcher.watchAsset(((AbstractAssetLocator) assetLocator).getSourceFile(
+										assetStorageUnit, request), assetCacheKey);
+							}
+							return assetLocator.getContent(assetStorageUnit, request);
+						}
+					};
+
+					// Finally store the final content in cache, loading it
+					// only once whatever the number of concurrent requests. A
+					// content about to be processed is never served and thus
+					// not compressed.
+					if (this.context.getProcessorManager().anyProcessorCanBeAppliedFor(asset)) {
+						this.context.getCacheManager().loadRawContent(asset.getCacheKey(), loader);
+					}
+					else {
+						this.context.getCacheManager().loadContent(asset.getCacheKey(), loader);
+					}
 				}
 			}
 		}
@@ -194,4 +214,19 @@ public class AssetMapper {
 
 		return asset;
 	}
+
+	/**
+	 * @param asset
+	 *            The asset to look for in the cache.
+	 * @return {@code true} if the content of the asset, raw or already
+	 *         processed, is stored in the cache.
+	 */
+	private boolean isCached(Asset asset) {
+		AssetCacheManager cacheManager = this.context.getCacheManager();
+		if (cacheManager.exists(asset.getCacheKey())) {
+			return true;
+		}
+		return this.context.getProcessorManager().anyProcessorCanBeAppliedFor(asset)
+				&& cacheManager.exists(cacheManager.generateCacheKey(request, asset, true));
+	}
 }
@@ -31,11 +31,15 @@ package com.github.dandelion.core.asset;
 
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import javax.servlet.http.HttpServletRequest;
 
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.locator.impl.DelegateLocator;
 import com.github.dandelion.core.storage.AssetStorageUnit;
 import com.github.dandelion.core.storage.BundleStorage;
 import com.github.dandelion.core.storage.BundleStorageUnit;
@@ -54,22 +58,29 @@ public class AssetQuery {
 	private Set<Asset> requestedAssets;
 	private Context context;
 	private HttpServletRequest request;
+
+	/**
+	 * The bundle storage used for the whole query, even if the bundles are
+	 * reloaded meanwhile.
+	 */
+	private BundleStorage bundleStorage;
 	
 	public AssetQuery(HttpServletRequest request, Context context) {
 
 		this.request = request;
 		this.context = context;
+		this.bundleStorage = context.getBundleStorage();
 
-		String key = UrlUtils.getCurrentUri(request).toString();
+		String key = getRequestSignature(AssetRequestContext.get(request));
 		this.requestedAssets = context.getCacheManager().getAssets(key);
 
-		if (this.requestedAssets == null || context.isDevModeEnabled()) {
+		if (this.requestedAssets == null || context.isCachingBypassed()) {
 
 			// All asset storage units are fetched in an ordered set
 			Set<AssetStorageUnit> assetStorageUnits = new LinkedHashSet<AssetStorageUnit>();
 
 			String[] bundleNames = AssetRequestContext.get(request).getBundles(true);
-			for (BundleStorageUnit bsu : context.getBundleStorage().bundlesFor(bundleNames)) {
+			for (BundleStorageUnit bsu : bundleStorage.bundlesFor(bundleNames)) {
 				assetStorageUnits.addAll(bsu.getAssetStorageUnits());
 			}
 
@@ -80,18 +91,105 @@ public class AssetQuery {
 			// Applying the active processors
 			mappedAssets = context.getProcessorManager().process(mappedAssets, request);
 
-			this.requestedAssets = context.getCacheManager().storeAssets(key, mappedAssets);
+			// Once all assets gathered, they are now filtered
+			this.requestedAssets = mappedAssets;
+			String[] excludedJsNames = collectJsToExclude();
+			if (excludedJsNames.length > 0) {
+				excludeJs(excludedJsNames);
+			}
+
+			String[] excludedCssNames = collectCssToExclude();
+			if (excludedCssNames.length > 0) {
+				excludeCss(excludedCssNames);
+			}
+
+			context.getCacheManager().storeAssets(key, this.requestedAssets);
 		}
+	}
 
-		// Once all assets gathered, they are now filtered
-		String[] excludedJsNames = collectJsToExclude();
-		if (excludedJsNames.length > 0) {
-			excludeJs(excludedJsNames);
+	/**
+	 * <p>
+	 * Computes the key under which the assets of the current request are
+	 * cached. The key is a normalized signature of everything that determines
+	 * the resulting set of assets, so that all pages using the same
+	 * combination share the same cache entry:
+	 * <ul>
+	 * <li>the included bundles, in order of appearance since the order in which
+	 * bundles are requested matters</li>
+	 * <li>the excluded bundles, JS and CSS, sorted</li>
+	 * <li>the asset parameters, sorted, since they are part of the asset cache
+	 * keys</li>
+	 * </ul>
+	 * 
+	 * <p>
+	 * The current URL is also part of the key when the asset cache keys are
+	 * built per request, i.e. when the {@code cache.asset.key.per.request}
+	 * option is enabled or when some delegated content is used.
+	 * 
+	 * <p>
+	 * The generation of the {@link BundleStorage} is also part of the key, so
+	 * that all assets cached for the previous bundles are no longer used once
+	 * they are reloaded, as well as the generation of the
+	 * {@link com.github.dandelion.core.storage.BundleWatcher} when the asset
+	 * files are watched.
+	 * 
+	 * @param arc
+	 *            The {@link AssetRequestContext} of the current request.
+	 * @return the signature of the current request.
+	 */
+	String getRequestSignature(AssetRequestContext arc) {
+		StringBuilder signature = new StringBuilder("b:");
+		Set<String> bundles = new LinkedHashSet<String>();
+		for (String bundle : arc.getBundles(false)) {
+			bundles.add(bundle.trim());
 		}
-		
-		String[] excludedCssNames = collectCssToExclude();
-		if (excludedCssNames.length > 0) {
-			excludeCss(excludedCssNames);
+		appendTo(signature, bundles);
+		signature.append("|xb:");
+		appendTo(signature, sorted(arc.getExcludedBundles()));
+		signature.append("|xj:");
+		appendTo(signature, sorted(arc.getExcludedJs()));
+		signature.append("|xc:");
+		appendTo(signature, sorted(arc.getExcludedCss()));
+
+		boolean perRequest = context.getConfiguration().isCacheAssetKeyPerRequest();
+		Map<String, Map<String, Object>> parameters = arc.getParameters();
+		if (!parameters.isEmpty()) {
+			signature.append("|p:");
+			for (Map.Entry<String, Map<String, Object>> assetParameters : new TreeMap<String, Map<String, Object>>(
+					parameters).entrySet()) {
+				if (assetParameters.getValue().containsKey(DelegateLocator.DELEGATED_CONTENT_PARAM)) {
+					perRequest = true;
+				}
+				signature.append(assetParameters.getKey()).append('{');
+				for (Map.Entry<String, Object> parameter : new TreeMap<String, Object>(assetParameters.getValue())
+						.entrySet()) {
+					signature.append(parameter.getKey()).append('=').append(parameter.getValue()).append(';');
+				}
+				signature.append('}');
+			}
+		}
+
+		if (perRequest) {
+			signature.append("|u:").append(UrlUtils.getCurrentUrl(request, true));
+		}
+		signature.append("|g:").append(bundleStorage.getGeneration());
+		if (context.getBundleWatcher() != null) {
+			signature.append('.').append(context.getBundleWatcher().getGeneration());
+		}
+		return signature.toString();
+	}
+
+	private static Set<String> sorted(String[] values) {
+		Set<String> sorted = new TreeSet<String>();
+		for (String value : values) {
+			sorted.add(value.trim());
+		}
+		return sorted;
+	}
+
+	private static void appendTo(StringBuilder signature, Set<String> values) {
+		for (String value : values) {
+			signature.append(value).append(',');
 		}
 	}
 
@@ -120,7 +218,7 @@ public class AssetQuery {
 
 		// First collect JS from the excluded bundles
 		for(String bundleToExclude : AssetRequestContext.get(request).getExcludedBundles()){
-			Set<BundleStorageUnit> bsus = context.getBundleStorage().bundlesFor(bundleToExclude);
+			Set<BundleStorageUnit> bsus = bundleStorage.bundlesFor(bundleToExclude);
 			for(BundleStorageUnit bsu : bsus){
 				excludedJs.addAll(bsu.getJsAssetStorageUnitNames());
 			}
@@ -140,7 +238,7 @@ public class AssetQuery {
 
 		// First collect CSS from the excluded bundles
 		for(String bundleToExclude : AssetRequestContext.get(request).getExcludedBundles()){
-			Set<BundleStorageUnit> bsus = context.getBundleStorage().bundlesFor(bundleToExclude);
+			Set<BundleStorageUnit> bsus = bundleStorage.bundlesFor(bundleToExclude);
 			for(BundleStorageUnit bsu : bsus){
 				excludedCss.addAll(bsu.getCssAssetStorageUnitNames());
 			}
@@ -29,7 +29,17 @@
  */
 package com.github.dandelion.core.asset.cache;
 
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -37,9 +47,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
 import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.impl.ConcurrentWeightedCache;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
+import com.github.dandelion.core.asset.locator.spi.AssetLocator;
 import com.github.dandelion.core.utils.Sha1Utils;
+import com.github.dandelion.core.utils.UrlUtils;
+import com.github.dandelion.core.web.AssetRequestContext;
 import com.github.dandelion.core.web.DandelionServlet;
 
 /**
@@ -54,34 +69,141 @@ import com.github.dandelion.core.web.DandelionServlet;
 public class AssetCacheManager {
 
 	private static final Logger LOG = LoggerFactory.getLogger(AssetCacheManager.class);
+
+	/**
+	 * Number of content sources kept for each cached set of request assets.
+	 */
+	private static final int SOURCES_PER_REQUEST = 64;
 	private Context context;
 
+	/**
+	 * Contents being loaded, indexed by cache key.
+	 */
+	private final ConcurrentMap<String, FutureTask<String>> loadingContents = new ConcurrentHashMap<String, FutureTask<String>>();
+
+	/**
+	 * Raw contents waiting to be processed, indexed by cache key. They are
+	 * never served and are removed as soon as processed, so they are kept
+	 * uncompressed and out of the {@link AssetCache}.
+	 */
+	private final ConcurrentMap<String, String> rawContents = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Assets whose content is served under a cache key, indexed by this key,
+	 * so that a content that is no longer cached can be computed again.
+	 */
+	private final ConcurrentWeightedCache<String, Asset> contentSources;
+	private final AtomicLong coalescedLoadings = new AtomicLong();
+	private final AtomicLong coalescingTimeouts = new AtomicLong();
+
 	public AssetCacheManager(Context context) {
 		this.context = context;
+		this.contentSources = new ConcurrentWeightedCache<String, Asset>((context.getConfiguration()
+				.getCacheRequestMaxSize() + 1) * SOURCES_PER_REQUEST);
 	}
 
 	public String generateCacheKey(String context, Asset asset) {
-		StringBuilder key = new StringBuilder(Sha1Utils.generateSha1(context, true));
-		key.append("/");
-		key.append(asset.getName());
-		key.append("-");
-		key.append(asset.getVersion());
-		key.append(".");
-		key.append(asset.getType().name());
-		return key.toString();
+		return buildCacheKey(Sha1Utils.generateSha1(context, true), asset, false);
 	}
 
 	public String generateCacheKeyMin(String context, Asset asset) {
-		StringBuilder key = new StringBuilder(Sha1Utils.generateSha1(context, true));
+		return buildCacheKey(Sha1Utils.generateSha1(context, true), asset, true);
+	}
+
+	/**
+	 * <p>
+	 * Generates the key under which the content of the given asset is cached.
+	 * 
+	 * <p>
+	 * By default, the key is derived from the asset identity, i.e. its name,
+	 * version, type, location and parameters, so that the same asset requested
+	 * from many pages is stored and served only once. The key is derived from
+	 * the current URL instead if the {@code cache.asset.key.per.request}
+	 * option is enabled or if the content of the asset depends on the request
+	 * (see {@link AssetLocator#isContentRequestDependent()}).
+	 * 
+	 * @param request
+	 *            The current request.
+	 * @param asset
+	 *            The asset to be cached.
+	 * @param minified
+	 *            Whether the key of the processed content is requested.
+	 * @return the cache key.
+	 */
+	public String generateCacheKey(HttpServletRequest request, Asset asset, boolean minified) {
+		String hash;
+		if (isKeyPerRequest(asset)) {
+			String url = UrlUtils.getCurrentUrl(request, true).toString();
+			hash = Sha1Utils.generateSha1(url.replaceAll("\\?", "_").replaceAll("&", "_"), true);
+		}
+		else {
+			hash = Sha1Utils.generateSha1(getIdentity(request, asset), true);
+		}
+		return buildCacheKey(hash, asset, minified);
+	}
+
+	/**
+	 * @param asset
+	 *            The asset to be cached.
+	 * @return {@code true} if the cache key of the asset is derived from the
+	 *         current URL rather than from the asset identity.
+	 */
+	public boolean isKeyPerRequest(Asset asset) {
+		if (context.getConfiguration().isCacheAssetKeyPerRequest()) {
+			return true;
+		}
+		AssetLocator locator = context.getAssetLocatorsMap().get(asset.getConfigLocationKey());
+		return locator != null && locator.isContentRequestDependent();
+	}
+
+	private String getIdentity(HttpServletRequest request, Asset asset) {
+		StringBuilder identity = new StringBuilder();
+		identity.append(asset.getName()).append('|');
+		identity.append(asset.getVersion()).append('|');
+		identity.append(asset.getType()).append('|');
+		identity.append(asset.getConfigLocationKey()).append('|');
+		identity.append(asset.getConfigLocation());
+
+		// Parameters are replaced in the content and thus are part of the
+		// identity. They are sorted so that the key doesn't depend on the
+		// order in which they have been added.
+		Map<String, Object> parameters = AssetRequestContext.get(request).getParameters(asset.getName());
+		if (!parameters.isEmpty()) {
+			for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(parameters).entrySet()) {
+				identity.append('|').append(entry.getKey()).append('=').append(entry.getValue());
+			}
+		}
+		return identity.toString();
+	}
+
+	private String buildCacheKey(String hash, Asset asset, boolean minified) {
+		StringBuilder key = new StringBuilder(hash);
 		key.append("/");
 		key.append(asset.getName());
 		key.append("-");
 		key.append(asset.getVersion());
-		key.append(".min.");
+		key.append(minified ? ".min." : ".");
 		key.append(asset.getType().name());
 		return key.toString();
 	}
 
+	/**
+	 * @param cacheKey
+	 *            The cache key to look for.
+	 * @return {@code true} if some content is stored under the given key.
+	 */
+	public boolean exists(String cacheKey) {
+		if (rawContents.containsKey(cacheKey) || context.getAssetCache().getAssetContent(cacheKey) != null) {
+			return true;
+		}
+		PrecompiledAssets precompiledAssets = context.getPrecompiledAssets();
+		if (precompiledAssets != null && precompiledAssets.contains(cacheKey)) {
+			return true;
+		}
+		DiskAssetStore diskAssetStore = context.getDiskAssetStore();
+		return diskAssetStore != null && diskAssetStore.contains(cacheKey);
+	}
+
 	public String getCacheKeyFromRequest(HttpServletRequest request) {
 		String cacheKey = request.getRequestURL().substring(
 				request.getRequestURL().indexOf(DandelionServlet.DANDELION_ASSETS_URL)
@@ -89,28 +211,315 @@ public class AssetCacheManager {
 		return cacheKey;
 	}
 
+	/**
+	 * @param cacheKey
+	 *            The cache key under which the asset content is stored.
+	 * @return the uncompressed content stored under the given key, or
+	 *         {@code null} if it doesn't exist in the cache.
+	 */
 	public String getContent(String cacheKey) {
+		String rawContent = rawContents.get(cacheKey);
+		if (rawContent != null) {
+			return rawContent;
+		}
+		AssetContent assetContent = getAssetContent(cacheKey);
+		return assetContent == null ? null : assetContent.asString();
+	}
+
+	/**
+	 * <p>
+	 * Contents missing from the {@link AssetCache} are looked up in the assets
+	 * precompiled at build time, then in the disk tier, if enabled, and put
+	 * back in the {@link AssetCache} when found.
+	 * 
+	 * @param cacheKey
+	 *            The cache key under which the asset content is stored.
+	 * @return the gzipped content stored under the given key, or {@code null}
+	 *         if it doesn't exist in the cache.
+	 */
+	public AssetContent getAssetContent(String cacheKey) {
 		LOG.debug("Retrieving asset with the key {}", cacheKey);
-		return context.getAssetCache().getAssetContent(cacheKey);
+		AssetContent assetContent = context.getAssetCache().getAssetContent(cacheKey);
+		if (assetContent != null) {
+			return assetContent;
+		}
+
+		PrecompiledAssets precompiledAssets = context.getPrecompiledAssets();
+		if (precompiledAssets != null) {
+			assetContent = precompiledAssets.read(cacheKey);
+		}
+		DiskAssetStore diskAssetStore = context.getDiskAssetStore();
+		if (assetContent == null && diskAssetStore != null) {
+			assetContent = diskAssetStore.read(cacheKey);
+		}
+
+		if (assetContent != null) {
+			LOG.debug("Asset with the key {} loaded from the precompiled assets or the disk cache", cacheKey);
+			context.getAssetCache().storeAssetContent(cacheKey, assetContent);
+		}
+		return assetContent;
+	}
+
+	/**
+	 * <p>
+	 * Same as {@link #getAssetContent(String)}, except that a content which is
+	 * no longer cached, e.g. because it has been evicted or not admitted by
+	 * the {@link AssetCache}, is computed again from the asset it is served
+	 * for, as registered by {@link #storeAssets(String, Set)}.
+	 * 
+	 * @param cacheKey
+	 *            The cache key under which the asset content is stored.
+	 * @param request
+	 *            The current request.
+	 * @return the gzipped content stored under the given key, or {@code null}
+	 *         if it doesn't exist and can't be computed again.
+	 */
+	public AssetContent getAssetContent(String cacheKey, HttpServletRequest request) {
+		AssetContent assetContent = getAssetContent(cacheKey);
+		if (assetContent != null) {
+			return assetContent;
+		}
+
+		Asset asset = contentSources.get(cacheKey);
+		if (asset == null) {
+			return null;
+		}
+
+		LOG.debug("The content under the key {} is no longer cached and is computed again", cacheKey);
+		try {
+			assetContent = AssetContent.fromString(context.getProcessorManager().regenerateContent(asset, request));
+		}
+		catch (DandelionException e) {
+			LOG.warn("Unable to compute again the content of the asset {}: {}", asset.toLog(), e.getMessage());
+			return null;
+		}
+		storeAssetContent(cacheKey, assetContent, !isKeyPerRequest(asset));
+		return assetContent;
 	}
 
 	public Set<Asset> getAssets(String cacheKey) {
 		return context.getAssetCache().getRequestAssets(cacheKey);
 	}
 
+	/**
+	 * <p>
+	 * Compresses the given content and stores it under the given key.
+	 * 
+	 * @param key
+	 *            The key under which the content is stored.
+	 * @param content
+	 *            The uncompressed content to store.
+	 * @return the passed content.
+	 */
 	public String storeContent(String key, String content) {
-		LOG.debug("Storing asset under the key {}", key);
-		context.getAssetCache().storeAssetContent(key, content);
+		return storeContent(key, content, false);
+	}
+
+	/**
+	 * <p>
+	 * Compresses the given content and stores it under the given key, also in
+	 * the disk tier if requested and enabled.
+	 * 
+	 * @param key
+	 *            The key under which the content is stored.
+	 * @param content
+	 *            The uncompressed content to store.
+	 * @param persistent
+	 *            Whether the content must survive restarts. Only the contents
+	 *            whose key is derived from the asset identity can be
+	 *            persisted.
+	 * @return the passed content.
+	 */
+	public String storeContent(String key, String content, boolean persistent) {
+		storeAssetContent(key, AssetContent.fromString(content), persistent);
 		return content;
 	}
 
+	private void storeAssetContent(String key, AssetContent assetContent, boolean persistent) {
+		LOG.debug("Storing asset under the key {}", key);
+		context.getAssetCache().storeAssetContent(key, assetContent);
+
+		DiskAssetStore diskAssetStore = context.getDiskAssetStore();
+		if (persistent && diskAssetStore != null) {
+			diskAssetStore.append(key, assetContent);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Loads the content to be stored under the given key, making sure that
+	 * concurrent requests for the same key don't all load it at the same time.
+	 * 
+	 * <p>
+	 * The first thread requesting a key runs the {@code loader} and stores its
+	 * result in the cache. All other threads requesting the same key in the
+	 * meantime wait for this result instead of running the loader themselves.
+	 * If the result is not available after the configured
+	 * {@code cache.loading.timeout}, a waiting thread gives up and runs the
+	 * loader on its own.
+	 * 
+	 * @param key
+	 *            The key under which the loaded content is stored.
+	 * @param loader
+	 *            The task loading the uncompressed content.
+	 * @return the loaded content.
+	 * @throws DandelionException
+	 *             if the loader fails.
+	 */
+	public String loadContent(String key, Callable<String> loader) {
+		return loadContent(key, loader, false);
+	}
+
+	/**
+	 * <p>
+	 * Same as {@link #loadContent(String, Callable)}, also storing the loaded
+	 * content in the disk tier if requested.
+	 * 
+	 * @param key
+	 *            The key under which the loaded content is stored.
+	 * @param loader
+	 *            The task loading the uncompressed content.
+	 * @param persistent
+	 *            Whether the content must survive restarts.
+	 * @return the loaded content.
+	 * @throws DandelionException
+	 *             if the loader fails.
+	 * @see #storeContent(String, String, boolean)
+	 */
+	public String loadContent(final String key, final Callable<String> loader, final boolean persistent) {
+		return load(key, new FutureTask<String>(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return storeContent(key, loader.call(), persistent);
+			}
+		}));
+	}
+
+	/**
+	 * <p>
+	 * Same as {@link #loadContent(String, Callable)} for a raw content that is
+	 * about to be processed. Such a content is neither compressed nor stored
+	 * in the {@link AssetCache}, but kept aside until it is processed and
+	 * {@link #remove(String) removed}.
+	 * 
+	 * @param key
+	 *            The key under which the loaded content is stored.
+	 * @param loader
+	 *            The task loading the raw content.
+	 * @return the loaded content.
+	 * @throws DandelionException
+	 *             if the loader fails.
+	 */
+	public String loadRawContent(final String key, final Callable<String> loader) {
+		return load(key, new FutureTask<String>(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				String content = loader.call();
+				LOG.debug("Keeping the raw asset content under the key {} until it is processed", key);
+				rawContents.put(key, content);
+				return content;
+			}
+		}));
+	}
+
+	private String load(String key, FutureTask<String> task) {
+		FutureTask<String> loadingTask = loadingContents.putIfAbsent(key, task);
+		if (loadingTask == null) {
+			try {
+				task.run();
+				return getResult(key, task);
+			}
+			finally {
+				loadingContents.remove(key, task);
+			}
+		}
+
+		coalescedLoadings.incrementAndGet();
+		LOG.debug("The content under the key {} is already being loaded, waiting for it", key);
+		try {
+			return loadingTask.get(context.getConfiguration().getCacheLoadingTimeout(), TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e) {
+			coalescingTimeouts.incrementAndGet();
+			LOG.warn("The content under the key {} took more than {} ms to load. Loading it again.", key, context
+					.getConfiguration().getCacheLoadingTimeout());
+			task.run();
+			return getResult(key, task);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DandelionException("Interrupted while waiting for the content under the key " + key, e);
+		}
+		catch (ExecutionException e) {
+			throw toDandelionException(key, e);
+		}
+	}
+
+	private String getResult(String key, FutureTask<String> task) {
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DandelionException("Interrupted while loading the content under the key " + key, e);
+		}
+		catch (ExecutionException e) {
+			throw toDandelionException(key, e);
+		}
+	}
+
+	private DandelionException toDandelionException(String key, ExecutionException e) {
+		if (e.getCause() instanceof DandelionException) {
+			return (DandelionException) e.getCause();
+		}
+		return new DandelionException("Unable to load the content under the key " + key, e.getCause());
+	}
+
+	/**
+	 * @return the number of requests that waited for a content being loaded by
+	 *         another request instead of loading it themselves.
+	 */
+	public long getCoalescedLoadings() {
+		return coalescedLoadings.get();
+	}
+
+	/**
+	 * @return the number of requests that gave up waiting for a content being
+	 *         loaded by another request.
+	 */
+	public long getCoalescingTimeouts() {
+		return coalescingTimeouts.get();
+	}
+
+	/**
+	 * <p>
+	 * Stores the assets of a request under the given key. The assets whose
+	 * content doesn't depend on the request are also registered as the
+	 * sources of their cached contents, see
+	 * {@link #getAssetContent(String, HttpServletRequest)}.
+	 * 
+	 * @param key
+	 *            The key under which the assets are stored.
+	 * @param a
+	 *            The assets of the request.
+	 * @return the passed assets.
+	 */
 	public Set<Asset> storeAssets(String key, Set<Asset> a) {
+		for (Asset asset : a) {
+			AssetLocator locator = context.getAssetLocatorsMap().get(asset.getConfigLocationKey());
+			if (asset.getCacheKey() != null && locator != null && !locator.isContentRequestDependent()) {
+				contentSources.put(asset.getCacheKey(), asset);
+			}
+		}
 		context.getAssetCache().storeRequestAssets(key, a);
 		return a;
 	}
 
 	public void remove(String key) {
 		LOG.debug("Removing asset under the key {}", key);
+		rawContents.remove(key);
 		context.getAssetCache().remove(key);
 	}
 
@@ -0,0 +1,272 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.cache.spi.AssetCache;
+import com.github.dandelion.core.utils.Sha1Utils;
+
+/**
+ * <p>
+ * Content of an asset, as stored in the {@link AssetCache}.
+ * 
+ * <p>
+ * The content is compressed only once, when stored, and kept gzipped in the
+ * cache. It can then be sent as is to any client that accepts the gzip
+ * encoding, or inflated on demand for the other ones.
+ * 
+ * <p>
+ * Subclasses may keep the gzipped content outside of the heap, in which case
+ * they must override the methods giving access to it, namely
+ * {@link #getGzippedLength()}, {@link #getGzippedBytes()},
+ * {@link #openGzippedStream()} and {@link #writeGzippedTo(OutputStream)}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class AssetContent implements Serializable {
+
+	private static final long serialVersionUID = -2279469409441284498L;
+
+	public static final String ENCODING = "UTF-8";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final byte[] gzippedBytes;
+	private final int length;
+	private final String hash;
+	private final long lastModified;
+
+	/**
+	 * @param gzippedBytes
+	 *            The gzipped content.
+	 * @param length
+	 *            The length, in bytes, of the uncompressed content.
+	 * @param hash
+	 *            The SHA-1 of the uncompressed content.
+	 * @param lastModified
+	 *            The time at which the content has been cached, in
+	 *            milliseconds.
+	 */
+	public AssetContent(byte[] gzippedBytes, int length, String hash, long lastModified) {
+		this.gzippedBytes = gzippedBytes;
+		this.length = length;
+		this.hash = hash;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * <p>
+	 * Constructor for subclasses storing the gzipped content by themselves.
+	 * 
+	 * @param length
+	 *            The length, in bytes, of the uncompressed content.
+	 * @param hash
+	 *            The SHA-1 of the uncompressed content.
+	 * @param lastModified
+	 *            The time at which the content has been cached, in
+	 *            milliseconds.
+	 */
+	protected AssetContent(int length, String hash, long lastModified) {
+		this(null, length, hash, lastModified);
+	}
+
+	/**
+	 * <p>
+	 * Compresses the given content, encoded in {@value #ENCODING}.
+	 * 
+	 * @param content
+	 *            The content to compress.
+	 * @return a new {@link AssetContent}.
+	 */
+	public static AssetContent fromString(String content) {
+		try {
+			return fromBytes(content.getBytes(ENCODING));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new DandelionException("The encoding " + ENCODING + " is not supported", e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Compresses the given uncompressed bytes.
+	 * 
+	 * @param bytes
+	 *            The bytes to compress.
+	 * @return a new {@link AssetContent}.
+	 */
+	public static AssetContent fromBytes(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 32);
+		try {
+			GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+			gzip.write(bytes);
+			gzip.close();
+		}
+		catch (IOException e) {
+			throw new DandelionException("Unable to compress the asset content", e);
+		}
+		// Trim the milliseconds off the value since the Last-Modified header is
+		// only accurate down to the second
+		long lastModified = TimeUnit.SECONDS.toMillis(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+		return new AssetContent(out.toByteArray(), bytes.length, Sha1Utils.generateSha1(bytes), lastModified);
+	}
+
+	/**
+	 * @return the length, in bytes, of the uncompressed content.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the SHA-1 of the uncompressed content.
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * <p>
+	 * The gzipped and the uncompressed contents are two different
+	 * representations of the same asset and thus get two different entity
+	 * tags.
+	 * 
+	 * @param gzipped
+	 *            Whether the tag of the gzipped representation is requested.
+	 * @return the quoted entity tag of the requested representation.
+	 */
+	public String getEtag(boolean gzipped) {
+		return gzipped ? "\"" + hash + "-gz\"" : "\"" + hash + "\"";
+	}
+
+	/**
+	 * @return the time at which the content has been cached, in milliseconds,
+	 *         truncated to the second.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the length, in bytes, of the gzipped content.
+	 */
+	public int getGzippedLength() {
+		return gzippedBytes.length;
+	}
+
+	/**
+	 * @return the gzipped content. The returned array must not be modified.
+	 *         Subclasses storing the content outside of the heap return a
+	 *         copy.
+	 */
+	public byte[] getGzippedBytes() {
+		return gzippedBytes;
+	}
+
+	/**
+	 * @return the uncompressed content.
+	 */
+	public byte[] getBytes() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+		try {
+			writeTo(out);
+		}
+		catch (IOException e) {
+			throw new DandelionException("Unable to inflate the asset content", e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return the uncompressed content, decoded using {@value #ENCODING}.
+	 */
+	public String asString() {
+		try {
+			return new String(getBytes(), ENCODING);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new DandelionException("The encoding " + ENCODING + " is not supported", e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Inflates the content into the given stream.
+	 * 
+	 * @param out
+	 *            The destination stream.
+	 * @throws IOException
+	 *             if the destination stream can't be written.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		InputStream in = new GZIPInputStream(openGzippedStream(), BUFFER_SIZE);
+		try {
+			byte[] buffer = new byte[Math.min(BUFFER_SIZE, Math.max(length, 1))];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return a new stream reading the gzipped content.
+	 */
+	protected InputStream openGzippedStream() {
+		return new ByteArrayInputStream(gzippedBytes);
+	}
+
+	/**
+	 * <p>
+	 * Writes the gzipped content, as is, into the given stream.
+	 * 
+	 * @param out
+	 *            The destination stream.
+	 * @throws IOException
+	 *             if the destination stream can't be written.
+	 */
+	public void writeGzippedTo(OutputStream out) throws IOException {
+		out.write(gzippedBytes);
+	}
+}
@@ -0,0 +1,505 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.DandelionException;
+
+/**
+ * <p>
+ * Disk tier of the asset cache, keeping the processed asset contents across
+ * restarts so that they are neither fetched nor processed again.
+ * 
+ * <p>
+ * The contents are appended, gzipped, to a single segment file. Each record
+ * is preceded by its length and its CRC-32. The segment starts with a
+ * fingerprint of everything that may change the processed contents, i.e.
+ * the chain of active processors and the {@code cache.disk.fingerprint}
+ * option, typically set to the version of the application. When this option
+ * is not set, the stamps of the deployed bundle definitions and webapp
+ * directories are used instead.
+ * 
+ * <p>
+ * When the store is opened, a segment written with another fingerprint is
+ * discarded as stale, and the records are scanned to rebuild the in-memory
+ * index of the store. The scan stops at the first incomplete or corrupted
+ * record, typically left by a crash, and the segment is truncated there.
+ * The contents are then read through a memory mapping of the segment.
+ * 
+ * <p>
+ * The segment is locked while the store is open, so that two applications
+ * configured with the same location don't write to it concurrently.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class DiskAssetStore {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(DiskAssetStore.class);
+
+	public static final String SEGMENT_FILE_NAME = "assets.seg";
+
+	private static final int MAGIC = 0x44444c53;
+	private static final int FORMAT_VERSION = 1;
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	private final File segmentFile;
+	private final String fingerprint;
+	private final long maxBytes;
+
+	private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<String, Entry>();
+	private volatile SegmentMapping mappedSegment;
+
+	private RandomAccessFile segment;
+	private FileChannel channel;
+	private FileLock lock;
+	private long size;
+	private int epoch;
+
+	/**
+	 * <p>
+	 * Opens, or creates, the store located in the given directory and
+	 * warm-loads its index.
+	 * 
+	 * @param directory
+	 *            The directory containing the segment file.
+	 * @param fingerprint
+	 *            The fingerprint of the contents to be stored.
+	 * @param maxBytes
+	 *            The maximum size of the segment, in bytes.
+	 * @return the opened store.
+	 * @throws IOException
+	 *             if the segment can't be created or is locked by another
+	 *             application.
+	 */
+	public static DiskAssetStore open(File directory, String fingerprint, long maxBytes) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create the directory " + directory.getAbsolutePath());
+		}
+		DiskAssetStore store = new DiskAssetStore(new File(directory, SEGMENT_FILE_NAME), fingerprint, Math.min(
+				maxBytes, Integer.MAX_VALUE));
+		store.openSegment();
+		try {
+			store.load();
+		}
+		catch (IOException e) {
+			store.close();
+			throw e;
+		}
+		return store;
+	}
+
+	private DiskAssetStore(File segmentFile, String fingerprint, long maxBytes) {
+		this.segmentFile = segmentFile;
+		this.fingerprint = fingerprint;
+		this.maxBytes = maxBytes;
+	}
+
+	private void openSegment() throws IOException {
+		segment = new RandomAccessFile(segmentFile, "rw");
+		channel = segment.getChannel();
+		try {
+			lock = channel.tryLock();
+		}
+		catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			segment.close();
+			throw new IOException("The segment " + segmentFile.getAbsolutePath()
+					+ " is already used by another application");
+		}
+	}
+
+	/**
+	 * <p>
+	 * Validates the header of the segment and indexes all its valid records.
+	 */
+	private synchronized void load() throws IOException {
+		size = channel.size();
+		if (size == 0) {
+			writeHeader();
+			return;
+		}
+
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		long position;
+		try {
+			position = readHeader(buffer);
+		}
+		catch (BufferUnderflowException e) {
+			position = -1;
+		}
+		if (position < 0) {
+			LOG.info("The asset segment {} is stale or corrupted and is discarded", segmentFile.getAbsolutePath());
+			channel.truncate(0);
+			size = 0;
+			writeHeader();
+			return;
+		}
+
+		CRC32 crc = new CRC32();
+		while (position + RECORD_HEADER_SIZE <= size) {
+			buffer.position((int) position);
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+				break;
+			}
+
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			crc.reset();
+			crc.update(payload);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+
+			Entry entry = readEntry(payload, position + RECORD_HEADER_SIZE);
+			if (entry == null) {
+				break;
+			}
+			index.put(entry.key, entry);
+			position += RECORD_HEADER_SIZE + length;
+		}
+
+		if (position < size) {
+			LOG.warn("Discarding {} incomplete or corrupted bytes at the end of the asset segment {}", size
+					- position, segmentFile.getAbsolutePath());
+			channel.truncate(position);
+			size = position;
+		}
+		LOG.info("{} processed assets warm-loaded from {}", index.size(), segmentFile.getAbsolutePath());
+	}
+
+	/**
+	 * @return the position of the first record, or {@code -1} if the header
+	 *         doesn't match the current format and fingerprint.
+	 */
+	private long readHeader(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+			return -1;
+		}
+		byte[] storedFingerprint = new byte[buffer.getShort() & 0xffff];
+		buffer.get(storedFingerprint);
+		return fingerprint.equals(fromUtf8(storedFingerprint)) ? buffer.position() : -1;
+	}
+
+	private void writeHeader() throws IOException {
+		byte[] fingerprintBytes = toUtf8(fingerprint);
+		ByteBuffer header = ByteBuffer.allocate(10 + fingerprintBytes.length);
+		header.putInt(MAGIC);
+		header.putInt(FORMAT_VERSION);
+		header.putShort((short) fingerprintBytes.length);
+		header.put(fingerprintBytes);
+		header.flip();
+		write(header, 0);
+		size = header.limit();
+	}
+
+	/**
+	 * @return the entry described by the payload of a record, or {@code null}
+	 *         if the payload is inconsistent.
+	 */
+	private Entry readEntry(byte[] payload, long payloadPosition) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			String key = in.readUTF();
+			int length = in.readInt();
+			long lastModified = in.readLong();
+			String hash = in.readUTF();
+			int gzippedLength = in.readInt();
+			if (gzippedLength != in.available()) {
+				return null;
+			}
+			return new Entry(key, payloadPosition + payload.length - gzippedLength, gzippedLength, length, hash,
+					lastModified, epoch);
+		}
+		catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param key
+	 *            The cache key of the content.
+	 * @return {@code true} if a content is stored under the given key.
+	 */
+	public boolean contains(String key) {
+		return index.containsKey(key);
+	}
+
+	/**
+	 * <p>
+	 * Reads the content stored under the given key, straight from the memory
+	 * mapping of the segment.
+	 * 
+	 * @param key
+	 *            The cache key of the content.
+	 * @return the stored content, or {@code null} if there is none.
+	 */
+	public AssetContent read(String key) {
+		Entry entry = index.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		MappedByteBuffer mapping = mapping(entry);
+		if (mapping == null) {
+			// The segment has been cleared since the entry was looked up
+			return null;
+		}
+
+		ByteBuffer buffer = mapping.duplicate();
+		buffer.position((int) entry.offset);
+		byte[] gzippedBytes = new byte[entry.gzippedLength];
+		buffer.get(gzippedBytes);
+		return new AssetContent(gzippedBytes, entry.length, entry.hash, entry.lastModified);
+	}
+
+	/**
+	 * @return a mapping of the segment covering the given entry, or
+	 *         {@code null} if the entry belongs to a segment cleared since.
+	 */
+	private MappedByteBuffer mapping(Entry entry) {
+		long end = entry.offset + entry.gzippedLength;
+		SegmentMapping mapping = mappedSegment;
+		if (mapping != null && mapping.epoch == entry.epoch && mapping.buffer.capacity() >= end) {
+			return mapping.buffer;
+		}
+
+		synchronized (this) {
+			if (entry.epoch != epoch || end > size) {
+				return null;
+			}
+			if (mappedSegment == null || mappedSegment.buffer.capacity() < end) {
+				try {
+					mappedSegment = new SegmentMapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), epoch);
+				}
+				catch (IOException e) {
+					throw new DandelionException("Unable to map the asset segment " + segmentFile.getAbsolutePath(), e);
+				}
+			}
+			return mappedSegment.buffer;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Appends the given content to the segment, unless it would exceed its
+	 * maximum size.
+	 * 
+	 * @param key
+	 *            The cache key of the content.
+	 * @param content
+	 *            The content to store.
+	 * @return {@code true} if the content has been stored.
+	 */
+	public synchronized boolean append(String key, AssetContent content) {
+		byte[] gzippedBytes = content.getGzippedBytes();
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(gzippedBytes.length + key.length() + 128);
+		try {
+			DataOutputStream out = new DataOutputStream(payload);
+			out.writeUTF(key);
+			out.writeInt(content.getLength());
+			out.writeLong(content.getLastModified());
+			out.writeUTF(content.getHash());
+			out.writeInt(gzippedBytes.length);
+			out.write(gzippedBytes);
+			out.close();
+		}
+		catch (IOException e) {
+			throw new DandelionException("Unable to serialize the content stored under the key " + key, e);
+		}
+
+		int recordLength = RECORD_HEADER_SIZE + payload.size();
+		if (size + recordLength > maxBytes) {
+			LOG.debug("The asset segment is full, the content under the key {} is not persisted", key);
+			return false;
+		}
+
+		byte[] payloadBytes = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payloadBytes);
+		ByteBuffer record = ByteBuffer.allocate(recordLength);
+		record.putInt(payloadBytes.length);
+		record.putInt((int) crc.getValue());
+		record.put(payloadBytes);
+		record.flip();
+
+		try {
+			write(record, size);
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to persist the content under the key {}: {}", key, e.getMessage());
+			return false;
+		}
+
+		long payloadPosition = size + RECORD_HEADER_SIZE;
+		index.put(key, new Entry(key, payloadPosition + payloadBytes.length - gzippedBytes.length,
+				gzippedBytes.length, content.getLength(), content.getHash(), content.getLastModified(), epoch));
+		size += recordLength;
+		return true;
+	}
+
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		long target = position;
+		while (buffer.hasRemaining()) {
+			target += channel.write(buffer, target);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Drops all stored contents. The segment is replaced by a new, empty one
+	 * rather than truncated, so that the mappings still being read stay
+	 * valid, and the entries looked up before are invalidated by a new epoch.
+	 */
+	public synchronized void clear() {
+		index.clear();
+		epoch++;
+		mappedSegment = null;
+		try {
+			close();
+			if (!segmentFile.delete()) {
+				LOG.warn("Unable to delete the asset segment {}", segmentFile.getAbsolutePath());
+			}
+			openSegment();
+			size = channel.size();
+			if (size == 0) {
+				writeHeader();
+			}
+		}
+		catch (IOException e) {
+			throw new DandelionException("Unable to clear the asset segment " + segmentFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Releases the lock and closes the segment.
+	 */
+	public synchronized void close() {
+		try {
+			if (lock != null && lock.isValid()) {
+				lock.release();
+			}
+			segment.close();
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to close the asset segment {}", segmentFile.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return the number of contents stored.
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return the size of the segment, in bytes.
+	 */
+	public synchronized long getSegmentSize() {
+		return size;
+	}
+
+	private static byte[] toUtf8(String value) {
+		try {
+			return value.getBytes(AssetContent.ENCODING);
+		}
+		catch (IOException e) {
+			throw DandelionException.wrap(e);
+		}
+	}
+
+	private static String fromUtf8(byte[] value) {
+		try {
+			return new String(value, AssetContent.ENCODING);
+		}
+		catch (IOException e) {
+			throw DandelionException.wrap(e);
+		}
+	}
+
+	private static final class Entry {
+
+		private final String key;
+		private final long offset;
+		private final int gzippedLength;
+		private final int length;
+		private final String hash;
+		private final long lastModified;
+		private final int epoch;
+
+		private Entry(String key, long offset, int gzippedLength, int length, String hash, long lastModified,
+				int epoch) {
+			this.key = key;
+			this.offset = offset;
+			this.gzippedLength = gzippedLength;
+			this.length = length;
+			this.hash = hash;
+			this.lastModified = lastModified;
+			this.epoch = epoch;
+		}
+	}
+
+	private static final class SegmentMapping {
+
+		private final MappedByteBuffer buffer;
+		private final int epoch;
+
+		private SegmentMapping(MappedByteBuffer buffer, int epoch) {
+			this.buffer = buffer;
+			this.epoch = epoch;
+		}
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.storage.BundleStorageUnit;
+import com.github.dandelion.core.utils.Sha1Utils;
+
+/**
+ * <p>
+ * Assets precompiled at build time by the {@code dandelion-maven-plugin},
+ * along with the bundles they belong to.
+ * 
+ * <p>
+ * The plugin writes, under {@value #LOCATION} in the classpath of the
+ * application, the gzipped contents of the assets and a manifest describing
+ * them. The manifest contains:
+ * <ul>
+ * <li>the chain of processors applied to the assets and the context path
+ * used to compute their URLs, which must both match the runtime ones for the
+ * manifest to be used</li>
+ * <li>all bundles, as they have been loaded by the bundle loaders</li>
+ * <li>for each cache key, the file containing the gzipped content and its
+ * metadata</li>
+ * </ul>
+ * 
+ * <p>
+ * When a valid manifest is detected, the bundles are read from it instead of
+ * being scanned, and the precompiled contents are served as they are,
+ * without being fetched or processed again.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class PrecompiledAssets {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(PrecompiledAssets.class);
+
+	public static final String LOCATION = "META-INF/dandelion/precompiled/";
+	public static final String MANIFEST = LOCATION + "manifest.json";
+
+	private static final int FORMAT_VERSION = 1;
+	private static final int BUFFER_SIZE = 8192;
+
+	private final ClassLoader classLoader;
+	private final String processorChain;
+	private final String contextPath;
+	private final List<BundleStorageUnit> bundles;
+	private final Map<String, Entry> entries;
+
+	private PrecompiledAssets(ClassLoader classLoader, String processorChain, String contextPath,
+			List<BundleStorageUnit> bundles, Map<String, Entry> entries) {
+		this.classLoader = classLoader;
+		this.processorChain = processorChain;
+		this.contextPath = contextPath;
+		this.bundles = bundles;
+		this.entries = entries;
+	}
+
+	/**
+	 * <p>
+	 * Looks for a manifest in the given class loader and reads it.
+	 * 
+	 * @param classLoader
+	 *            The class loader of the application.
+	 * @return the precompiled assets, or {@code null} if no manifest exists.
+	 * @throws DandelionException
+	 *             if the manifest can't be read.
+	 */
+	public static PrecompiledAssets load(ClassLoader classLoader) {
+		InputStream manifestStream = classLoader.getResourceAsStream(MANIFEST);
+		if (manifestStream == null) {
+			return null;
+		}
+
+		try {
+			ObjectMapper mapper = new ObjectMapper();
+			JsonNode manifest = mapper.readTree(manifestStream);
+			if (manifest.path("version").asInt() != FORMAT_VERSION) {
+				LOG.warn("The precompiled asset manifest {} has an unsupported format and is ignored", MANIFEST);
+				return null;
+			}
+
+			List<BundleStorageUnit> bundles = new ArrayList<BundleStorageUnit>();
+			for (JsonNode bundle : manifest.path("bundles")) {
+				bundles.add(mapper.treeToValue(bundle, BundleStorageUnit.class));
+			}
+
+			Map<String, Entry> entries = new HashMap<String, Entry>();
+			Iterator<Map.Entry<String, JsonNode>> assets = manifest.path("assets").fields();
+			while (assets.hasNext()) {
+				Map.Entry<String, JsonNode> asset = assets.next();
+				JsonNode entry = asset.getValue();
+				entries.put(asset.getKey(), new Entry(entry.path("file").asText(), entry.path("length").asInt(),
+						entry.path("hash").asText(), entry.path("lastModified").asLong()));
+			}
+
+			return new PrecompiledAssets(classLoader, manifest.path("processors").asText(), manifest.path(
+					"contextPath").asText(), bundles, entries);
+		}
+		catch (IOException e) {
+			throw new DandelionException("The precompiled asset manifest " + MANIFEST + " can't be read", e);
+		}
+		finally {
+			try {
+				manifestStream.close();
+			}
+			catch (IOException e) {
+				// Should never happen
+				LOG.warn("Unable to close the precompiled asset manifest {}", MANIFEST);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Writes the given bundles and asset contents, along with the manifest
+	 * describing them, into the given directory.
+	 * 
+	 * @param outputDirectory
+	 *            The root of the classpath of the application, under which
+	 *            {@value #LOCATION} is created.
+	 * @param processorChain
+	 *            The chain of processors applied to the assets.
+	 * @param contextPath
+	 *            The context path used to compute the URLs of the assets.
+	 * @param bundles
+	 *            All loaded bundles.
+	 * @param contents
+	 *            The asset contents, indexed by cache key.
+	 * @throws IOException
+	 *             if a file can't be written.
+	 */
+	public static void write(File outputDirectory, String processorChain, String contextPath,
+			Collection<BundleStorageUnit> bundles, Map<String, AssetContent> contents) throws IOException {
+		File directory = new File(outputDirectory, LOCATION);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create the directory " + directory.getAbsolutePath());
+		}
+
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectNode manifest = mapper.createObjectNode();
+		manifest.put("version", FORMAT_VERSION);
+		manifest.put("processors", processorChain);
+		manifest.put("contextPath", contextPath);
+
+		ArrayNode bundlesNode = manifest.putArray("bundles");
+		for (BundleStorageUnit bundle : bundles) {
+			bundlesNode.add(toNode(mapper, bundle));
+		}
+
+		ObjectNode assetsNode = manifest.putObject("assets");
+		for (Map.Entry<String, AssetContent> content : new TreeMap<String, AssetContent>(contents)
+				.entrySet()) {
+			String file = Sha1Utils.generateSha1(content.getKey(), true) + ".gz";
+			OutputStream out = new FileOutputStream(new File(directory, file));
+			try {
+				content.getValue().writeGzippedTo(out);
+			}
+			finally {
+				out.close();
+			}
+
+			ObjectNode entry = assetsNode.putObject(content.getKey());
+			entry.put("file", file);
+			entry.put("length", content.getValue().getLength());
+			entry.put("hash", content.getValue().getHash());
+			entry.put("lastModified", content.getValue().getLastModified());
+		}
+
+		mapper.writerWithDefaultPrettyPrinter().writeValue(new File(outputDirectory, MANIFEST), manifest);
+	}
+
+	/**
+	 * @return the bundle as it would be written in a JSON bundle file, its
+	 *         dependencies being the bundles it points to in the bundle graph.
+	 */
+	private static ObjectNode toNode(ObjectMapper mapper, BundleStorageUnit bundle) {
+		ObjectNode node = mapper.createObjectNode();
+		node.put("bundle", bundle.getName());
+		if (!bundle.getChildNames().isEmpty()) {
+			ArrayNode dependencies = node.putArray("dependencies");
+			for (String dependency : bundle.getChildNames()) {
+				dependencies.add(dependency);
+			}
+		}
+
+		ArrayNode assets = node.putArray("assets");
+		for (AssetStorageUnit asu : bundle.getAssetStorageUnits()) {
+			ObjectNode asset = assets.addObject();
+			asset.put("name", asu.getName());
+			asset.put("version", asu.getVersion());
+			asset.put("type", asu.getType() == null ? null : asu.getType().name());
+			if (asu.getDom() != null) {
+				asset.put("dom", asu.getDom().name());
+			}
+			asset.put("locations", mapper.valueToTree(orEmpty(asu.getLocations())));
+			if (asu.getAttributes() != null) {
+				asset.put("attributes", mapper.valueToTree(asu.getAttributes()));
+			}
+			if (asu.getAttributesOnlyName().length > 0) {
+				asset.put("attributesOnlyName", mapper.valueToTree(asu.getAttributesOnlyName()));
+			}
+		}
+		return node;
+	}
+
+	private static Map<String, String> orEmpty(Map<String, String> map) {
+		return map == null ? Collections.<String, String> emptyMap() : new LinkedHashMap<String, String>(map);
+	}
+
+	/**
+	 * @param key
+	 *            The cache key of the content.
+	 * @return {@code true} if a precompiled content exists for the given key.
+	 */
+	public boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * @param key
+	 *            The cache key of the content.
+	 * @return the precompiled content stored under the given key, or
+	 *         {@code null} if there is none or if it can't be read.
+	 */
+	public AssetContent read(String key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+
+		InputStream in = classLoader.getResourceAsStream(LOCATION + entry.file);
+		if (in == null) {
+			LOG.warn("The precompiled content {} listed in the manifest is missing", entry.file);
+			return null;
+		}
+		try {
+			ByteArrayOutputStream gzippedBytes = new ByteArrayOutputStream(BUFFER_SIZE);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				gzippedBytes.write(buffer, 0, n);
+			}
+			return new AssetContent(gzippedBytes.toByteArray(), entry.length, entry.hash, entry.lastModified);
+		}
+		catch (IOException e) {
+			LOG.warn("The precompiled content {} can't be read", entry.file, e);
+			return null;
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException e) {
+				// Should never happen
+				LOG.warn("Unable to close the precompiled content {}", entry.file);
+			}
+		}
+	}
+
+	/**
+	 * @return all bundles, as loaded at build time.
+	 */
+	public List<BundleStorageUnit> getBundles() {
+		return bundles;
+	}
+
+	/**
+	 * @return the chain of processors applied to the assets at build time.
+	 */
+	public String getProcessorChain() {
+		return processorChain;
+	}
+
+	/**
+	 * @return the context path used at build time to compute the URLs of the
+	 *         assets.
+	 */
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	/**
+	 * @return the number of precompiled contents.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private static final class Entry {
+
+		private final String file;
+		private final int length;
+		private final String hash;
+		private final long lastModified;
+
+		private Entry(String file, int length, String hash, long lastModified) {
+			this.file = file;
+			this.length = length;
+			this.hash = hash;
+			this.lastModified = lastModified;
+		}
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * Thread-safe cache bounded both by a number of entries and by a total weight,
+ * typically a number of bytes.
+ * 
+ * <p>
+ * Entries are spread among several segments, each one guarded by its own lock
+ * and kept in access order, so that concurrent accesses to different keys
+ * rarely contend and the least recently used entry of a segment is always its
+ * eldest one.
+ * 
+ * <p>
+ * When the cache is full, a new entry is admitted only if its key has been
+ * accessed more often than the key it would evict, as estimated by a
+ * {@link FrequencySketch}. This prevents a burst of one-off keys, such as a
+ * crawler visiting many distinct pages, from flushing the entries that are
+ * actually reused.
+ * 
+ * @param <K>
+ *            Type of the keys.
+ * @param <V>
+ *            Type of the values.
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class ConcurrentWeightedCache<K, V> {
+
+	/**
+	 * <p>
+	 * Computes the weight of a value stored in the cache.
+	 */
+	public interface Weigher<V> {
+
+		/**
+		 * @param value
+		 *            The value to weigh.
+		 * @return the weight of the value, which must be positive.
+		 */
+		int weigh(V value);
+	}
+
+	/**
+	 * <p>
+	 * Notified, outside of any lock, each time a value leaves the cache,
+	 * whether it has been evicted, removed, replaced or cleared.
+	 */
+	public interface RemovalListener<K, V> {
+
+		/**
+		 * @param key
+		 *            The key under which the value was stored.
+		 * @param value
+		 *            The value that left the cache.
+		 */
+		void onRemoval(K key, V value);
+	}
+
+	/**
+	 * Weigher giving the same weight to all values, thus bounding the cache by
+	 * its number of entries only.
+	 */
+	@SuppressWarnings("rawtypes")
+	public static final Weigher SINGLETON_WEIGHER = new Weigher() {
+
+		@Override
+		public int weigh(Object value) {
+			return 1;
+		}
+	};
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+	private final Weigher<V> weigher;
+	private final long maxWeight;
+	private final int maxEntries;
+	private final FrequencySketch sketch;
+	private final RemovalListener<K, V> removalListener;
+
+	private final AtomicLong weight = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger evictionCursor = new AtomicInteger();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong rejectionCount = new AtomicLong();
+
+	/**
+	 * @param maxEntries
+	 *            Maximum number of entries.
+	 * @param maxWeight
+	 *            Maximum total weight of the entries.
+	 * @param weigher
+	 *            The weigher used to compute the weight of each value.
+	 * @param removalListener
+	 *            The listener notified when a value leaves the cache, may be
+	 *            {@code null}.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentWeightedCache(int maxEntries, long maxWeight, Weigher<V> weigher,
+			RemovalListener<K, V> removalListener) {
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.removalListener = removalListener;
+		this.sketch = new FrequencySketch(maxEntries);
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment<K, V>();
+		}
+	}
+
+	/**
+	 * @param maxEntries
+	 *            Maximum number of entries.
+	 * @param maxWeight
+	 *            Maximum total weight of the entries.
+	 * @param weigher
+	 *            The weigher used to compute the weight of each value.
+	 */
+	public ConcurrentWeightedCache(int maxEntries, long maxWeight, Weigher<V> weigher) {
+		this(maxEntries, maxWeight, weigher, null);
+	}
+
+	/**
+	 * <p>
+	 * Creates a cache bounded by its number of entries only.
+	 * 
+	 * @param maxEntries
+	 *            Maximum number of entries.
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentWeightedCache(int maxEntries) {
+		this(maxEntries, Long.MAX_VALUE, SINGLETON_WEIGHER);
+	}
+
+	public V get(K key) {
+		sketch.increment(key);
+		Segment<K, V> segment = segmentFor(key);
+		Node<V> node;
+		segment.lock.lock();
+		try {
+			node = segment.map.get(key);
+		}
+		finally {
+			segment.lock.unlock();
+		}
+
+		if (node == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return node.value;
+	}
+
+	/**
+	 * <p>
+	 * Stores the value under the given key, unless the value is heavier than
+	 * the whole cache or the admission policy rejects it.
+	 * 
+	 * @param key
+	 *            The key under which the value is stored.
+	 * @param value
+	 *            The value to store.
+	 * @return {@code true} if the value has been stored.
+	 */
+	public boolean put(K key, V value) {
+		int valueWeight = weigher.weigh(value);
+		sketch.increment(key);
+		if (valueWeight > maxWeight || maxEntries <= 0) {
+			rejectionCount.incrementAndGet();
+			return false;
+		}
+
+		Segment<K, V> segment = segmentFor(key);
+		if (isFull(valueWeight) && !containsKey(segment, key) && !admit(key)) {
+			rejectionCount.incrementAndGet();
+			return false;
+		}
+
+		Node<V> previous;
+		segment.lock.lock();
+		try {
+			previous = segment.map.put(key, new Node<V>(value, valueWeight));
+		}
+		finally {
+			segment.lock.unlock();
+		}
+
+		if (previous == null) {
+			size.incrementAndGet();
+			weight.addAndGet(valueWeight);
+		}
+		else {
+			weight.addAndGet(valueWeight - previous.weight);
+			notifyRemoval(key, previous.value);
+		}
+
+		evictWhileFull(key);
+		return true;
+	}
+
+	public V remove(K key) {
+		Segment<K, V> segment = segmentFor(key);
+		Node<V> removed;
+		segment.lock.lock();
+		try {
+			removed = segment.map.remove(key);
+		}
+		finally {
+			segment.lock.unlock();
+		}
+
+		if (removed == null) {
+			return null;
+		}
+		size.decrementAndGet();
+		weight.addAndGet(-removed.weight);
+		notifyRemoval(key, removed.value);
+		return removed.value;
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			Map<K, Node<V>> cleared;
+			segment.lock.lock();
+			try {
+				cleared = new LinkedHashMap<K, Node<V>>(segment.map);
+				segment.map.clear();
+			}
+			finally {
+				segment.lock.unlock();
+			}
+
+			for (Map.Entry<K, Node<V>> entry : cleared.entrySet()) {
+				size.decrementAndGet();
+				weight.addAndGet(-entry.getValue().weight);
+				notifyRemoval(entry.getKey(), entry.getValue().value);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Evicts the least recently used entry of the next segment that is not
+	 * empty, regardless of the bounds of the cache. Used by callers whose own
+	 * storage, backing the values, runs out of space.
+	 * 
+	 * @return {@code true} if an entry has been evicted, {@code false} if the
+	 *         cache is empty.
+	 */
+	public boolean evictOne() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			if (evictFrom(segments[evictionCursor.getAndIncrement() & (SEGMENTS - 1)], null)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void notifyRemoval(K key, V value) {
+		if (removalListener != null) {
+			removalListener.onRemoval(key, value);
+		}
+	}
+
+	private boolean isFull(int additionalWeight) {
+		return size.get() + 1 > maxEntries || weight.get() + additionalWeight > maxWeight;
+	}
+
+	private boolean containsKey(Segment<K, V> segment, K key) {
+		segment.lock.lock();
+		try {
+			return segment.map.containsKey(key);
+		}
+		finally {
+			segment.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return {@code true} if the candidate key is used more frequently than
+	 *         the next entry to be evicted.
+	 */
+	private boolean admit(K candidate) {
+		K victim = nextVictim();
+		return victim == null || sketch.frequency(candidate) > sketch.frequency(victim);
+	}
+
+	private K nextVictim() {
+		int start = evictionCursor.get();
+		for (int i = 0; i < SEGMENTS; i++) {
+			Segment<K, V> segment = segments[(start + i) & (SEGMENTS - 1)];
+			segment.lock.lock();
+			try {
+				Iterator<K> keys = segment.map.keySet().iterator();
+				if (keys.hasNext()) {
+					return keys.next();
+				}
+			}
+			finally {
+				segment.lock.unlock();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Evicts the least recently used entry of the segments, in turn, until the
+	 * cache fits in its bounds again. The entry just stored is never evicted.
+	 */
+	private void evictWhileFull(K justStored) {
+		int emptySegments = 0;
+		while ((size.get() > maxEntries || weight.get() > maxWeight) && emptySegments < SEGMENTS) {
+			Segment<K, V> segment = segments[evictionCursor.getAndIncrement() & (SEGMENTS - 1)];
+			if (evictFrom(segment, justStored)) {
+				emptySegments = 0;
+			}
+			else {
+				emptySegments++;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Evicts the least recently used entry of the given segment, skipping the
+	 * given key.
+	 * 
+	 * @return {@code true} if an entry has been evicted.
+	 */
+	private boolean evictFrom(Segment<K, V> segment, K excluded) {
+		Map.Entry<K, Node<V>> evicted = null;
+		segment.lock.lock();
+		try {
+			Iterator<Map.Entry<K, Node<V>>> entries = segment.map.entrySet().iterator();
+			while (entries.hasNext()) {
+				Map.Entry<K, Node<V>> eldest = entries.next();
+				if (!eldest.getKey().equals(excluded)) {
+					evicted = eldest;
+					entries.remove();
+					break;
+				}
+			}
+		}
+		finally {
+			segment.lock.unlock();
+		}
+
+		if (evicted == null) {
+			return false;
+		}
+		size.decrementAndGet();
+		weight.addAndGet(-evicted.getValue().weight);
+		evictionCount.incrementAndGet();
+		notifyRemoval(evicted.getKey(), evicted.getValue().value);
+		return true;
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * @return the current number of entries.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return the current total weight of the entries.
+	 */
+	public long weight() {
+		return weight.get();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * @return the number of values that have not been stored, either because
+	 *         they were too heavy or because of the admission policy.
+	 */
+	public long getRejectionCount() {
+		return rejectionCount.get();
+	}
+
+	private static final class Node<V> {
+
+		private final V value;
+		private final int weight;
+
+		private Node(V value, int weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private static final class Segment<K, V> {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<K, Node<V>>(16, 0.75f, true);
+	}
+}
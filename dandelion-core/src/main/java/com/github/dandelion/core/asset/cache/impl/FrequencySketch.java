@@ -0,0 +1,142 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Probabilistic structure estimating how often keys have been accessed, used
+ * by the {@link ConcurrentWeightedCache} to decide whether a new entry
+ * deserves to replace an existing one.
+ * 
+ * <p>
+ * This is a Count-Min sketch: each key increments one counter in each of the
+ * four rows of the table and its frequency is the smallest of these counters.
+ * Counters saturate at 15 and are all halved once the number of increments
+ * reaches ten times the table width, so that the frequencies reflect the
+ * recent history rather than the whole life of the application.
+ * 
+ * <p>
+ * Increments are not synchronized with the periodic halving: a few
+ * increments may be lost under contention, which only slightly affects the
+ * estimation.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class FrequencySketch {
+
+	private static final int DEPTH = 4;
+	private static final int MAX_FREQUENCY = 15;
+	private static final int[] SEEDS = { 0x97cb3127, 0xa5b0c3f1, 0x4f6b2e9d, 0x3c6ef372 };
+
+	private final AtomicIntegerArray table;
+	private final int widthMask;
+	private final long sampleSize;
+	private final AtomicLong additions = new AtomicLong();
+
+	/**
+	 * @param expectedEntries
+	 *            The expected maximum number of entries of the cache.
+	 */
+	public FrequencySketch(int expectedEntries) {
+		int width = 64;
+		while (width < expectedEntries * 8L && width < (1 << 16)) {
+			width <<= 1;
+		}
+		this.widthMask = width - 1;
+		this.table = new AtomicIntegerArray(width * DEPTH);
+		this.sampleSize = 10L * width;
+	}
+
+	/**
+	 * <p>
+	 * Records an access to the given key.
+	 * 
+	 * @param key
+	 *            The accessed key.
+	 */
+	public void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int i = 0; i < DEPTH; i++) {
+			int index = indexOf(hash, i);
+			int count = table.get(index);
+			if (count < MAX_FREQUENCY && table.compareAndSet(index, count, count + 1)) {
+				added = true;
+			}
+		}
+
+		if (added && additions.incrementAndGet() >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * @param key
+	 *            The key to look for.
+	 * @return the estimated number of recent accesses to the given key.
+	 */
+	public int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_FREQUENCY;
+		for (int i = 0; i < DEPTH; i++) {
+			frequency = Math.min(frequency, table.get(indexOf(hash, i)));
+		}
+		return frequency;
+	}
+
+	/**
+	 * <p>
+	 * Halves all counters.
+	 */
+	private void reset() {
+		additions.set(0);
+		for (int i = 0; i < table.length(); i++) {
+			int count = table.get(i);
+			if (count > 0) {
+				table.set(i, count >>> 1);
+			}
+		}
+	}
+
+	private int indexOf(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+		h ^= h >>> 16;
+		return row * (widthMask + 1) + (h & widthMask);
+	}
+
+	private static int spread(int hash) {
+		int h = hash * 0x85ebca6b;
+		return h ^ (h >>> 13);
+	}
+}
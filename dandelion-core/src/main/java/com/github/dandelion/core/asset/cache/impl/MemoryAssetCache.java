@@ -29,18 +29,24 @@
  */
 package com.github.dandelion.core.asset.cache.impl;
 
-import java.util.Map;
 import java.util.Set;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.AssetContent;
 import com.github.dandelion.core.asset.cache.spi.AbstractAssetCache;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
 
 /**
  * <p>
- * Service provider for {@link AssetCache} that uses {@link SimpleLruCache}s as
- * stores.
+ * Service provider for {@link AssetCache} that uses
+ * {@link ConcurrentWeightedCache}s as stores.
+ * 
+ * <p>
+ * The asset contents are bounded both by {@code cache.asset.max.size} entries
+ * and by {@code cache.asset.max.bytes} bytes of gzipped content, while the
+ * sets of request assets are bounded by {@code cache.request.max.size}
+ * entries.
  * 
  * @author Thibault Duchateau
  * @author Romain Lespinasse
@@ -48,8 +54,20 @@ import com.github.dandelion.core.asset.cache.spi.AssetCache;
  */
 public class MemoryAssetCache extends AbstractAssetCache {
 
-	private Map<String, String> mapAssetContent;
-	private Map<String, Set<Asset>> mapRequestAssets;
+	/**
+	 * Weighs an asset content by its gzipped size, plus a fixed overhead for
+	 * the holder itself.
+	 */
+	private static final ConcurrentWeightedCache.Weigher<AssetContent> ASSET_CONTENT_WEIGHER = new ConcurrentWeightedCache.Weigher<AssetContent>() {
+
+		@Override
+		public int weigh(AssetContent value) {
+			return value.getGzippedLength() + 64;
+		}
+	};
+
+	private ConcurrentWeightedCache<String, AssetContent> mapAssetContent;
+	private ConcurrentWeightedCache<String, Set<Asset>> mapRequestAssets;
 
 	/**
 	 * {@inheritDoc}
@@ -57,8 +75,10 @@ public class MemoryAssetCache extends AbstractAssetCache {
 	@Override
 	public void initCache(Context context) {
 		super.initCache(context);
-		mapAssetContent = new ConcurrentLruCache<String, String>(context.getConfiguration().getCacheAssetMaxSize());
-		mapRequestAssets = new ConcurrentLruCache<String, Set<Asset>>(context.getConfiguration().getCacheRequestMaxSize());
+		mapAssetContent = new ConcurrentWeightedCache<String, AssetContent>(context.getConfiguration()
+				.getCacheAssetMaxSize(), context.getConfiguration().getCacheAssetMaxBytes(), ASSET_CONTENT_WEIGHER);
+		mapRequestAssets = new ConcurrentWeightedCache<String, Set<Asset>>(context.getConfiguration()
+				.getCacheRequestMaxSize());
 	}
 
 	/**
@@ -71,7 +91,7 @@ public class MemoryAssetCache extends AbstractAssetCache {
 	/**
 	 * {@inheritDoc}
 	 */
-	public String getAssetContent(String cacheKey) {
+	public AssetContent getAssetContent(String cacheKey) {
 		return mapAssetContent.get(cacheKey);
 	}
 
@@ -85,7 +105,7 @@ public class MemoryAssetCache extends AbstractAssetCache {
 	/**
 	 * {@inheritDoc}
 	 */
-	public void storeAssetContent(String cacheKey, String cacheContent) {
+	public void storeAssetContent(String cacheKey, AssetContent cacheContent) {
 		mapAssetContent.put(cacheKey, cacheContent);
 	}
 
@@ -103,7 +123,11 @@ public class MemoryAssetCache extends AbstractAssetCache {
 		mapAssetContent.remove(cacheKey);
 	}
 	
-	public Map<String, String> getCache(){
+	/**
+	 * @return the store holding the asset contents, giving access to its
+	 *         statistics.
+	 */
+	public ConcurrentWeightedCache<String, AssetContent> getCache(){
 		return mapAssetContent;
 	}
 
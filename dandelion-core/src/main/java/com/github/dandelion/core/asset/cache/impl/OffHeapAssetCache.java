@@ -0,0 +1,202 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache.impl;
+
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.AssetContent;
+import com.github.dandelion.core.asset.cache.spi.AbstractAssetCache;
+import com.github.dandelion.core.asset.cache.spi.AssetCache;
+
+/**
+ * <p>
+ * Service provider for {@link AssetCache} that keeps the gzipped asset
+ * contents outside of the Java heap, in direct buffers managed by a
+ * {@link SlabAllocator}, so that large amounts of cached assets don't weigh on
+ * the garbage collector.
+ * 
+ * <p>
+ * Only a small index, mapping each cache key to its off-heap region, remains
+ * on the heap. It is bounded both by {@code cache.asset.max.size} entries and
+ * by {@code cache.asset.max.bytes} bytes of gzipped content, the latter also
+ * being the capacity of the allocator. Slabs are reserved by
+ * {@code cache.offheap.slab.size} bytes.
+ * 
+ * <p>
+ * This cache is selected by setting {@code cache.name} to
+ * {@value #CACHE_NAME}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class OffHeapAssetCache extends AbstractAssetCache {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(OffHeapAssetCache.class);
+
+	public static final String CACHE_NAME = "offheap";
+
+	private static final ConcurrentWeightedCache.Weigher<OffHeapAssetContent> ASSET_CONTENT_WEIGHER = new ConcurrentWeightedCache.Weigher<OffHeapAssetContent>() {
+
+		@Override
+		public int weigh(OffHeapAssetContent value) {
+			return value.getGzippedLength();
+		}
+	};
+
+	private SlabAllocator allocator;
+	private ConcurrentWeightedCache<String, OffHeapAssetContent> mapAssetContent;
+	private ConcurrentWeightedCache<String, Set<Asset>> mapRequestAssets;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initCache(Context context) {
+		super.initCache(context);
+		allocator = new SlabAllocator(context.getConfiguration().getCacheOffHeapSlabSize(), context
+				.getConfiguration().getCacheAssetMaxBytes());
+
+		// Regions are freed as soon as their content leaves the index
+		final SlabAllocator currentAllocator = allocator;
+		mapAssetContent = new ConcurrentWeightedCache<String, OffHeapAssetContent>(context.getConfiguration()
+				.getCacheAssetMaxSize(), context.getConfiguration().getCacheAssetMaxBytes(), ASSET_CONTENT_WEIGHER,
+				new ConcurrentWeightedCache.RemovalListener<String, OffHeapAssetContent>() {
+
+					@Override
+					public void onRemoval(String key, OffHeapAssetContent value) {
+						currentAllocator.free(value.getAllocation());
+					}
+				});
+		mapRequestAssets = new ConcurrentWeightedCache<String, Set<Asset>>(context.getConfiguration()
+				.getCacheRequestMaxSize());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getCacheName() {
+		return CACHE_NAME;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public AssetContent getAssetContent(String cacheKey) {
+		return mapAssetContent.get(cacheKey);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set<Asset> getRequestAssets(String cacheKey) {
+		return mapRequestAssets.get(cacheKey);
+	}
+
+	/**
+	 * <p>
+	 * Copies the gzipped content into an off-heap region. If the allocator
+	 * runs out of space, even once compacted, the least recently used
+	 * contents are evicted until the new one fits. A content that doesn't
+	 * fit at all is not cached.
+	 */
+	public void storeAssetContent(String cacheKey, AssetContent cacheContent) {
+		byte[] gzippedBytes = cacheContent.getGzippedBytes();
+		SlabAllocator.Allocation allocation = allocate(gzippedBytes);
+		if (allocation == null) {
+			LOG.debug("Not enough off-heap space to cache the {} bytes stored under the key {}",
+					gzippedBytes.length, cacheKey);
+			return;
+		}
+
+		if (!mapAssetContent.put(cacheKey, new OffHeapAssetContent(allocation, cacheContent))) {
+			allocator.free(allocation);
+		}
+	}
+
+	private SlabAllocator.Allocation allocate(byte[] bytes) {
+		SlabAllocator.Allocation allocation = allocateOrCompact(bytes);
+		while (allocation == null && mapAssetContent.evictOne()) {
+			allocation = allocateOrCompact(bytes);
+		}
+		return allocation;
+	}
+
+	private SlabAllocator.Allocation allocateOrCompact(byte[] bytes) {
+		SlabAllocator.Allocation allocation = allocator.allocate(bytes);
+		if (allocation == null && allocator.compact() > 0) {
+			allocation = allocator.allocate(bytes);
+		}
+		return allocation;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void storeRequestAssets(String cacheKey, Set<Asset> a) {
+		mapRequestAssets.put(cacheKey, a);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void remove(String cacheKey) {
+		mapAssetContent.remove(cacheKey);
+	}
+
+	/**
+	 * @return the index of the asset contents, giving access to its
+	 *         statistics.
+	 */
+	public ConcurrentWeightedCache<String, ? extends AssetContent> getCache() {
+		return mapAssetContent;
+	}
+
+	/**
+	 * @return the allocator of the off-heap regions.
+	 */
+	public SlabAllocator getAllocator() {
+		return allocator;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clearAll() {
+		mapAssetContent.clear();
+		mapRequestAssets.clear();
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.github.dandelion.core.asset.cache.AssetContent;
+
+/**
+ * <p>
+ * {@link AssetContent} whose gzipped bytes are stored outside of the heap, in
+ * a region allocated by a {@link SlabAllocator}.
+ * 
+ * <p>
+ * The content is written to the response straight from the off-heap region,
+ * through a small transfer buffer. It is serialized as a regular
+ * {@link AssetContent}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+class OffHeapAssetContent extends AssetContent {
+
+	private static final long serialVersionUID = 4626411325934932127L;
+
+	private static final int TRANSFER_SIZE = 8192;
+
+	private final transient SlabAllocator.Allocation allocation;
+
+	OffHeapAssetContent(SlabAllocator.Allocation allocation, AssetContent content) {
+		super(content.getLength(), content.getHash(), content.getLastModified());
+		this.allocation = allocation;
+	}
+
+	SlabAllocator.Allocation getAllocation() {
+		return allocation;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getGzippedLength() {
+		return allocation.getLength();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] getGzippedBytes() {
+		byte[] bytes = new byte[allocation.getLength()];
+		allocation.read().get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected InputStream openGzippedStream() {
+		return new ByteBufferInputStream(allocation.read());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeGzippedTo(OutputStream out) throws IOException {
+		ByteBuffer buffer = allocation.read();
+		byte[] chunk = new byte[Math.min(TRANSFER_SIZE, Math.max(buffer.remaining(), 1))];
+		while (buffer.hasRemaining()) {
+			int n = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, n);
+			out.write(chunk, 0, n);
+		}
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new AssetContent(getGzippedBytes(), getLength(), getHash(), getLastModified());
+	}
+
+	/**
+	 * <p>
+	 * {@link InputStream} reading the remaining bytes of a {@link ByteBuffer}.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
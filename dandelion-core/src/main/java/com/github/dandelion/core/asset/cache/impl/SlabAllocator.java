@@ -0,0 +1,304 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * Allocator of immutable byte regions inside direct {@link ByteBuffer}s, thus
+ * kept outside of the Java heap.
+ * 
+ * <p>
+ * Memory is reserved by slabs of a fixed size, in which the regions are
+ * allocated one after the other. Regions larger than a slab get a dedicated
+ * slab of their own size. The space of a freed region is never overwritten:
+ * a slab is released as soon as none of its regions is in use anymore, while
+ * the slabs that are mostly made of freed regions can be reclaimed by
+ * {@link #compact()}, which copies their remaining regions into new slabs.
+ * Readers that started reading a region before it was moved or freed thus
+ * always see consistent bytes.
+ * 
+ * <p>
+ * The total size of the slabs is bounded by the capacity of the allocator.
+ * During a compaction, the slabs being reclaimed are released only once
+ * their regions have been copied, so that the direct memory actually used
+ * may briefly exceed the capacity by the size of a slab.
+ * 
+ * <p>
+ * Allocations are synchronized, reads are not.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class SlabAllocator {
+
+	private final int slabSize;
+	private final long capacity;
+
+	private final List<Slab> slabs = new ArrayList<Slab>();
+	private Slab current;
+	private long reservedBytes;
+	private long liveBytes;
+	private long compactionCount;
+
+	/**
+	 * @param slabSize
+	 *            The size of a slab, in bytes.
+	 * @param capacity
+	 *            The maximum total size of the slabs, in bytes.
+	 */
+	public SlabAllocator(int slabSize, long capacity) {
+		if (slabSize <= 0) {
+			throw new IllegalArgumentException("The slab size must be positive");
+		}
+		this.slabSize = slabSize;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * <p>
+	 * Copies the given bytes into a new region.
+	 * 
+	 * @param bytes
+	 *            The bytes to store.
+	 * @return the allocated region, or {@code null} if there isn't enough
+	 *         room left.
+	 */
+	public synchronized Allocation allocate(byte[] bytes) {
+		Allocation allocation = new Allocation(bytes.length);
+		return place(allocation, ByteBuffer.wrap(bytes)) ? allocation : null;
+	}
+
+	/**
+	 * <p>
+	 * Frees the given region. Freeing a region twice has no effect.
+	 * 
+	 * @param allocation
+	 *            The region to free.
+	 */
+	public synchronized void free(Allocation allocation) {
+		Slab slab = allocation.slab;
+		if (slab == null) {
+			return;
+		}
+		allocation.slab = null;
+		slab.allocations.remove(allocation);
+		slab.liveBytes -= allocation.length;
+		liveBytes -= allocation.length;
+		if (slab.allocations.isEmpty() && slab != current) {
+			release(slab);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Reclaims the slabs of which more than half of the space is wasted by
+	 * freed regions, by moving their remaining regions into new slabs.
+	 * 
+	 * @return the number of bytes reclaimed.
+	 */
+	public synchronized long compact() {
+		long before = reservedBytes;
+		List<Slab> sparse = new ArrayList<Slab>();
+		for (Slab slab : slabs) {
+			if ((slab.position - slab.liveBytes) * 2 > slab.buffer.capacity()) {
+				sparse.add(slab);
+			}
+		}
+		if (sparse.isEmpty()) {
+			return 0;
+		}
+
+		for (Slab slab : sparse) {
+			release(slab);
+			if (slab == current) {
+				current = null;
+			}
+
+			Iterator<Allocation> allocations = slab.allocations.iterator();
+			while (allocations.hasNext()) {
+				Allocation allocation = allocations.next();
+				if (!place(allocation, allocation.read())) {
+					// No room left to move the remaining regions: keep the
+					// slab as it is
+					break;
+				}
+				allocations.remove();
+				slab.liveBytes -= allocation.length;
+				liveBytes -= allocation.length;
+			}
+
+			if (!slab.allocations.isEmpty()) {
+				slabs.add(slab);
+				reservedBytes += slab.buffer.capacity();
+			}
+		}
+		compactionCount++;
+		return before - reservedBytes;
+	}
+
+	/**
+	 * <p>
+	 * Copies the source bytes at the end of the current slab, or of a new one,
+	 * and makes the given allocation point to them.
+	 */
+	private boolean place(Allocation allocation, ByteBuffer source) {
+		int length = allocation.length;
+		Slab slab;
+		if (length > slabSize) {
+			slab = reserve(length);
+		}
+		else {
+			if (current == null || current.buffer.capacity() - current.position < length) {
+				Slab next = reserve(slabSize);
+				if (next == null) {
+					return false;
+				}
+				if (current != null && current.allocations.isEmpty()) {
+					release(current);
+				}
+				current = next;
+			}
+			slab = current;
+		}
+		if (slab == null) {
+			return false;
+		}
+
+		ByteBuffer target = slab.buffer.duplicate();
+		target.position(slab.position);
+		target.put(source);
+		target.flip();
+		target.position(slab.position);
+		slab.position += length;
+
+		allocation.view = target.slice().asReadOnlyBuffer();
+		allocation.slab = slab;
+		slab.allocations.add(allocation);
+		slab.liveBytes += length;
+		liveBytes += length;
+		return true;
+	}
+
+	private Slab reserve(int size) {
+		if (reservedBytes + size > capacity) {
+			return null;
+		}
+		Slab slab = new Slab(ByteBuffer.allocateDirect(size));
+		slabs.add(slab);
+		reservedBytes += size;
+		return slab;
+	}
+
+	private void release(Slab slab) {
+		if (slabs.remove(slab)) {
+			reservedBytes -= slab.buffer.capacity();
+		}
+	}
+
+	public int getSlabSize() {
+		return slabSize;
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the total size of the slabs currently reserved, in bytes.
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	/**
+	 * @return the total size of the regions in use, in bytes.
+	 */
+	public synchronized long getLiveBytes() {
+		return liveBytes;
+	}
+
+	public synchronized int getSlabCount() {
+		return slabs.size();
+	}
+
+	public synchronized long getCompactionCount() {
+		return compactionCount;
+	}
+
+	/**
+	 * <p>
+	 * Region allocated by a {@link SlabAllocator}. The region may be moved by
+	 * a compaction but its content never changes.
+	 */
+	public static final class Allocation {
+
+		private final int length;
+		private volatile ByteBuffer view;
+		private Slab slab;
+
+		private Allocation(int length) {
+			this.length = length;
+		}
+
+		/**
+		 * @return the length of the region, in bytes.
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return a new read-only buffer over the region, positioned at its
+		 *         beginning.
+		 */
+		public ByteBuffer read() {
+			return view.duplicate();
+		}
+	}
+
+	private static final class Slab {
+
+		private final ByteBuffer buffer;
+		private final Set<Allocation> allocations = new LinkedHashSet<Allocation>();
+		private int position;
+		private int liveBytes;
+
+		private Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+}
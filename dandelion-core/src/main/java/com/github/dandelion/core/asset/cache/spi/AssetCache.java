@@ -34,6 +34,7 @@ import java.util.Set;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.AssetContent;
 import com.github.dandelion.core.asset.cache.impl.MemoryAssetCache;
 import com.github.dandelion.core.web.DandelionFilter;
 
@@ -79,7 +80,7 @@ public interface AssetCache {
 	 *            cache.
 	 * @return the content associated with the cache key.
 	 */
-	String getAssetContent(String cacheKey);
+	AssetContent getAssetContent(String cacheKey);
 
 	/**
 	 * Gets the set of assets to be displayed for a request stored under the
@@ -98,9 +99,9 @@ public interface AssetCache {
 	 * @param cacheKey
 	 *            The key used to puts the content to the cache.
 	 * @param assetContent
-	 *            The content to store in the cache.
+	 *            The content to store in the cache, already gzipped.
 	 */
-	void storeAssetContent(String cacheKey, String assetContent);
+	void storeAssetContent(String cacheKey, AssetContent assetContent);
 
 	/**
 	 * Puts the passed {@code assets} to the cache.
@@ -30,6 +30,10 @@
 
 package com.github.dandelion.core.asset.locator.impl;
 
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -85,4 +89,27 @@ public class ClasspathLocator extends AbstractAssetLocator implements Servlet2Co
 	protected String doGetContent(String location, Map<String, Object> parameters, HttpServletRequest request) {
 		return ResourceUtils.getFileContentFromClasspath(location, false);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Only the assets found in a folder of the classpath, e.g. the
+	 * {@code WEB-INF/classes} folder of an exploded application, have a source
+	 * file.
+	 */
+	@Override
+	public File getSourceFile(AssetStorageUnit asu, HttpServletRequest request) {
+		String location = asu.getLocations().get(getLocationKey());
+		URL url = Thread.currentThread().getContextClassLoader().getResource(location);
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(URLDecoder.decode(url.getPath(), "UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
 }
@@ -76,6 +76,16 @@ public class DelegateLocator extends AbstractAssetLocator implements Servlet2Com
 		return true;
 	}
 
+	/**
+	 * <p>
+	 * The delegated content is generated for each request and can differ from
+	 * one page to another.
+	 */
+	@Override
+	public boolean isContentRequestDependent() {
+		return true;
+	}
+
 	@Override
 	public String doGetLocation(AssetStorageUnit asu, HttpServletRequest request) {
 		return null;
@@ -30,8 +30,10 @@
 
 package com.github.dandelion.core.asset.locator.impl;
 
+import java.io.File;
 import java.util.Map;
 
+import javax.servlet.FilterConfig;
 import javax.servlet.http.HttpServletRequest;
 
 import com.github.dandelion.core.asset.locator.Servlet2Compatible;
@@ -76,4 +78,22 @@ public class WebappLocator extends AbstractAssetLocator implements Servlet2Compa
 	protected String doGetContent(String location, Map<String, Object> parameters, HttpServletRequest request) {
 		return ResourceUtils.getContentFromUrl(request, location, true);
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * Only the assets of an exploded application have a source file.
+	 */
+	@Override
+	public File getSourceFile(AssetStorageUnit asu, HttpServletRequest request) {
+		FilterConfig filterConfig = context.getConfiguration().getFilterConfig();
+		if (filterConfig == null || filterConfig.getServletContext() == null) {
+			return null;
+		}
+		String location = asu.getLocations().get(getLocationKey());
+		String realPath = filterConfig.getServletContext().getRealPath(
+				location.startsWith("/") ? location : "/" + location);
+		return realPath == null ? null : new File(realPath);
+	}
 }
@@ -30,6 +30,7 @@
 
 package com.github.dandelion.core.asset.locator.spi;
 
+import java.io.File;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -47,8 +48,9 @@ import com.github.dandelion.core.web.AssetRequestContext;
  * Abstract base class for all {@link AssetLocator}.
  * 
  * <p>
- * By default, all {@link AssetLocator} are active and caching of assets is not
- * forced. It's up to the implementation to adapt this behaviour.
+ * By default, all {@link AssetLocator} are active, caching of assets is not
+ * forced and the content of assets doesn't depend on the request. It's up to
+ * the implementation to adapt this behaviour.
  * 
  * @author Thibault Duchateau
  * @since 0.10.0
@@ -74,6 +76,14 @@ public abstract class AbstractAssetLocator implements AssetLocator {
 		return false;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isContentRequestDependent() {
+		return false;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -178,4 +188,20 @@ public abstract class AbstractAssetLocator implements AssetLocator {
 	}
 
 	protected abstract String doGetContent(String location, Map<String, Object> parameters, HttpServletRequest request);
+
+	/**
+	 * <p>
+	 * Returns the file the content of the given {@link AssetStorageUnit} is
+	 * read from, if it may be modified while the application is running, so
+	 * that it can be watched in development mode.
+	 * 
+	 * @param asu
+	 *            The asset storage unit.
+	 * @param request
+	 *            The current HTTP request.
+	 * @return the source file of the asset, {@code null} by default.
+	 */
+	public File getSourceFile(AssetStorageUnit asu, HttpServletRequest request) {
+		return null;
+	}
 }
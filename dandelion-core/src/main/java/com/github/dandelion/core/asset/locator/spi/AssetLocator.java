@@ -118,4 +118,12 @@ public interface AssetLocator {
 	 *         it can be directly accessed.
 	 */
 	boolean isCachingForced();
+
+	/**
+	 * @return {@code true} if the content returned by the locator may vary from
+	 *         one request to another for the same asset. Such content is cached
+	 *         under a key derived from the current request URL instead of the
+	 *         asset identity.
+	 */
+	boolean isContentRequestDependent();
 }
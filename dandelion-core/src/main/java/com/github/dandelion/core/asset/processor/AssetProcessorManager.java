@@ -29,15 +29,15 @@
  */
 package com.github.dandelion.core.asset.processor;
 
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.StringWriter;
-import java.io.Writer;
-import java.lang.annotation.Annotation;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -45,9 +45,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
 import com.github.dandelion.core.asset.Asset;
 import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.locator.spi.AssetLocator;
 import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.utils.DaemonThreadFactory;
+import com.github.dandelion.core.utils.StringUtils;
 import com.github.dandelion.core.utils.UrlUtils;
 import com.github.dandelion.core.web.DandelionServlet;
 
@@ -64,9 +69,50 @@ public final class AssetProcessorManager {
 
 	private static final Logger LOG = LoggerFactory.getLogger(AssetProcessorManager.class);
 	private Context context;
+
+	/**
+	 * Runs the processors of a chain that read their content from the
+	 * previous processor through a pipe.
+	 */
+	private final ExecutorService pipelineExecutor;
+
+	/**
+	 * Results of the processor chains, keyed by the hash of the raw contents.
+	 */
+	private final ProcessorResultCache resultCache;
+
+	/**
+	 * Statistics of each active processor, also indexed by asset type in the
+	 * order of the chain of processors of each type.
+	 */
+	private final Map<AssetProcessor, ProcessorStatistics> statisticsByProcessor;
+	private final ProcessorStatistics[][] statisticsByType;
 	
 	public AssetProcessorManager(Context context){
 		this.context = context;
+		this.pipelineExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("dandelion-processor"));
+		this.resultCache = ProcessorResultCache.create(context.getConfiguration());
+
+		this.statisticsByProcessor = new IdentityHashMap<AssetProcessor, ProcessorStatistics>();
+		for (AssetProcessor assetProcessor : context.getActiveProcessors()) {
+			statisticsByProcessor.put(assetProcessor, new ProcessorStatistics(assetProcessor.getProcessorKey()));
+		}
+		this.statisticsByType = new ProcessorStatistics[AssetType.values().length][];
+		for (AssetType assetType : AssetType.values()) {
+			List<AssetProcessor> chain = context.getActiveProcessors(assetType);
+			ProcessorStatistics[] chainStatistics = new ProcessorStatistics[chain.size()];
+			for (int i = 0; i < chain.size(); i++) {
+				chainStatistics[i] = statisticsByProcessor.get(chain.get(i));
+			}
+			statisticsByType[assetType.ordinal()] = chainStatistics;
+		}
+	}
+
+	/**
+	 * @return the cache of the results of the processor chains.
+	 */
+	public ProcessorResultCache getResultCache() {
+		return resultCache;
 	}
 
 	public Set<Asset> process(Set<Asset> assets, HttpServletRequest request) {
@@ -77,34 +123,39 @@ public final class AssetProcessorManager {
 
 				if (anyProcessorCanBeAppliedFor(asset)) {
 
-					String content = context.getCacheManager().getContent(asset.getCacheKey());
+					// The new cache key is built, with ".min" applied before
+					// the extension
+					String newCacheKey = context.getCacheManager().generateCacheKey(request, asset, true);
+
+					// The processed content may have already been cached by
+					// another request
+					if (context.isCachingBypassed() || !context.getCacheManager().exists(newCacheKey)) {
+						final Asset rawAsset = asset;
+						final String processedCacheKey = newCacheKey;
+						final HttpServletRequest currentRequest = request;
 
-					Reader assetReader = new StringReader(content);
-					Writer assetWriter = new StringWriter();
+						// Processed contents that don't depend on the request
+						// survive restarts if the disk tier is enabled
+						boolean persistent = !context.getCacheManager().isKeyPerRequest(asset);
+						context.getCacheManager().loadContent(newCacheKey, new Callable<String>() {
 
-					List<AssetProcessor> compatibleAssetProcessors = getCompatibleProcessorFor(asset);
-					for (AssetProcessor assetProcessor : compatibleAssetProcessors) {
-						LOG.trace("Applying processor {} on {}", assetProcessor.getProcessorKey(), asset.toLog());
-						assetWriter = new StringWriter();
-						assetProcessor.process(asset, assetReader, assetWriter, context);
-						assetReader = new StringReader(assetWriter.toString());
+							@Override
+							public String call() {
+								return applyProcessors(rawAsset, processedCacheKey, currentRequest);
+							}
+						}, persistent);
+					}
+					else {
+						// The raw content loaded for this request won't be
+						// processed
+						context.getCacheManager().remove(asset.getCacheKey());
 					}
 
-					// The old asset is removed from cache
-					context.getCacheManager().remove(asset.getCacheKey());
-
-					// The new cache key is built, with ".min" applied before
-					// the extension
-					String contextTmp = UrlUtils.getCurrentUrl(request, true).toString();
-					contextTmp = contextTmp.replaceAll("\\?", "_").replaceAll("&", "_");
-					String newCacheKey = this.context.getCacheManager().generateCacheKeyMin(contextTmp, asset);
 					asset.setCacheKey(newCacheKey);
-					
+
 					// The final asset location is overriden
 					asset.setFinalLocation(UrlUtils.getProcessedUrl(DandelionServlet.DANDELION_ASSETS_URL + newCacheKey,
 							request, null));
-					// The cache system is updated with the new key/content pair
-					context.getCacheManager().storeContent(newCacheKey, assetWriter.toString());
 				}
 			}
 		}
@@ -112,35 +163,132 @@ public final class AssetProcessorManager {
 		return assets;
 	}
 
-	private List<AssetProcessor> getCompatibleProcessorFor(Asset asset) {
+	/**
+	 * <p>
+	 * Applies all compatible processors on the raw content of the given asset
+	 * and removes this raw content from the cache.
+	 * 
+	 * @param asset
+	 *            The asset to process.
+	 * @param processedCacheKey
+	 *            The key under which the processed content is cached.
+	 * @param request
+	 *            The current request.
+	 * @return the processed content.
+	 */
+	private String applyProcessors(Asset asset, String processedCacheKey, HttpServletRequest request) {
+		if (context.getBundleWatcher() != null) {
+			context.getBundleWatcher().linkCacheKey(asset.getCacheKey(), processedCacheKey);
+		}
+		try {
+			String content = context.getCacheManager().getContent(asset.getCacheKey());
+			if (content == null) {
+				// Another request has already processed the asset and removed
+				// its raw content
+				String processedContent = context.getCacheManager().getContent(processedCacheKey);
+				if (processedContent != null) {
+					return processedContent;
+				}
 
-		List<AssetProcessor> compatibleProcessors = new ArrayList<AssetProcessor>();
+				// Otherwise the raw content has been evicted, or not admitted,
+				// by the cache and must be fetched again
+				content = fetchRawContent(asset, request);
+			}
 
-		for (AssetProcessor assetProcessor : context.getActiveProcessors()) {
-			Annotation annotation = assetProcessor.getClass().getAnnotation(CompatibleAssetType.class);
-			CompatibleAssetType compatibleAssetType = (CompatibleAssetType) annotation;
-			List<AssetType> compatibleAssetTypes = Arrays.asList(compatibleAssetType.types());
-			if (compatibleAssetTypes.contains(asset.getType())) {
-				compatibleProcessors.add(assetProcessor);
+			return processContent(asset, content);
+		}
+		finally {
+			// The old asset is removed from cache, even if the processing
+			// failed
+			context.getCacheManager().remove(asset.getCacheKey());
+		}
+	}
+
+	/**
+	 * <p>
+	 * Computes again the content served for the given asset, i.e. its raw
+	 * content, processed if some processors apply to it. Used when this
+	 * content is no longer cached while pages still reference it.
+	 * 
+	 * @param asset
+	 *            The asset whose content is served.
+	 * @param request
+	 *            The current request.
+	 * @return the content to serve.
+	 * @throws DandelionException
+	 *             if the raw content can't be fetched or processed.
+	 */
+	public String regenerateContent(Asset asset, HttpServletRequest request) {
+		String content = fetchRawContent(asset, request);
+		return anyProcessorCanBeAppliedFor(asset) ? processContent(asset, content) : content;
+	}
+
+	/**
+	 * @return the result of the compatible processors applied on the given
+	 *         raw content.
+	 */
+	private String processContent(Asset asset, String content) {
+		List<AssetProcessor> compatibleAssetProcessors = context.getActiveProcessors(asset.getType());
+
+		// The same content may have already been processed for another asset,
+		// or by a previous run. In development mode, the processors themselves
+		// may change and are always applied.
+		String resultKey = context.isDevModeEnabled() ? null : resultCache.getKey(asset, content,
+				compatibleAssetProcessors);
+		String processedContent = resultKey == null ? null : resultCache.get(resultKey);
+		if (processedContent != null) {
+			LOG.trace("Processed content of {} found in the processor result cache", asset.toLog());
+		}
+		else {
+			LOG.trace("Applying processors {} on {}", compatibleAssetProcessors, asset.toLog());
+			processedContent = AssetProcessorPipeline.process(asset, content, compatibleAssetProcessors,
+					statisticsByType[asset.getType().ordinal()], context, pipelineExecutor);
+			if (resultKey != null) {
+				resultCache.put(resultKey, processedContent);
 			}
 		}
-		return compatibleProcessors;
+		return processedContent;
+	}
+
+	private String fetchRawContent(Asset asset, HttpServletRequest request) {
+		AssetLocator locator = context.getAssetLocatorsMap().get(asset.getConfigLocationKey());
+		if (locator == null || StringUtils.isBlank(asset.getConfigLocation())) {
+			throw new DandelionException("The content of the asset " + asset.toLog()
+					+ " is no longer available in the cache");
+		}
+
+		LOG.debug("The raw content of the asset {} is no longer cached and is fetched again", asset.toLog());
+		Map<String, String> locations = new HashMap<String, String>();
+		locations.put(asset.getConfigLocationKey(), asset.getConfigLocation());
+		return locator.getContent(new AssetStorageUnit(asset.getName(), asset.getVersion(), asset.getType(),
+				locations), request);
 	}
 
 	public boolean anyProcessorCanBeAppliedFor(Asset asset) {
+		return !context.getActiveProcessors(asset.getType()).isEmpty();
+	}
 
+	/**
+	 * @return the statistics of the active processors, in the order in which
+	 *         they are applied.
+	 */
+	public List<ProcessorStatistics> getStatistics() {
+		List<ProcessorStatistics> statistics = new ArrayList<ProcessorStatistics>();
 		for (AssetProcessor assetProcessor : context.getActiveProcessors()) {
-			Annotation annotation = assetProcessor.getClass().getAnnotation(CompatibleAssetType.class);
-			CompatibleAssetType compatibleAssetType = (CompatibleAssetType) annotation;
-			List<AssetType> compatibleAssetTypes = Arrays.asList(compatibleAssetType.types());
-			if (compatibleAssetTypes.contains(asset.getType())) {
-				return true;
-			}
+			statistics.add(statisticsByProcessor.get(assetProcessor));
 		}
-
-		return false;
+		return statistics;
 	}
 
+	/**
+	 * <p>
+	 * Stops the threads running the processors and releases the persisted
+	 * results.
+	 */
+	public void destroy() {
+		pipelineExecutor.shutdownNow();
+		resultCache.close();
+	}
 
 	/**
 	 * <p>
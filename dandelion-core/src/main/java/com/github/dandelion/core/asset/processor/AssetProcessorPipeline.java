@@ -0,0 +1,493 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+import com.github.dandelion.core.asset.processor.spi.StreamingAssetProcessor;
+import com.github.dandelion.core.utils.CharPipe;
+
+/**
+ * <p>
+ * Chain of {@link AssetProcessor}s applied on the content of an asset, only
+ * the output of the last processor being accumulated:
+ * <ul>
+ * <li>the {@link StreamingAssetProcessor}s receive their content in bounded
+ * chunks, written by the previous processor in the current thread</li>
+ * <li>the other processors, which read their content from a
+ * {@link java.io.Reader}, run on a separate thread reading the output of the
+ * previous processor through a bounded {@link CharPipe}, unless they are the
+ * first of the chain, in which case they read the content directly</li>
+ * </ul>
+ * 
+ * <p>
+ * The output of each processor is buffered before being passed to the next
+ * one, which also allows to measure the characters read and written by each
+ * processor and the time it spends, excluding the time spent by the other
+ * processors. The {@link ProcessorStatistics} are updated once the whole
+ * chain has succeeded.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+final class AssetProcessorPipeline {
+
+	static final int CHUNK_SIZE = 8192;
+
+	private AssetProcessorPipeline() {
+	}
+
+	/**
+	 * <p>
+	 * Applies the given processors, in order, on the given content.
+	 * 
+	 * @param asset
+	 *            The asset being processed.
+	 * @param content
+	 *            The content to process.
+	 * @param processors
+	 *            The processors to apply, at least one.
+	 * @param statistics
+	 *            The statistics of each processor, in the same order.
+	 * @param context
+	 *            The Dandelion context.
+	 * @param executor
+	 *            The executor running the processors reading from a pipe.
+	 * @return the processed content.
+	 */
+	static String process(Asset asset, String content, List<AssetProcessor> processors,
+			ProcessorStatistics[] statistics, Context context, Executor executor) {
+		StringBuilderWriter output = new StringBuilderWriter(content.length());
+		StageMeter[] meters = new StageMeter[processors.size()];
+		List<PipedStage> pipedStages = new ArrayList<PipedStage>();
+		try {
+			Writer writer = output;
+			for (int i = processors.size() - 1; i > 0; i--) {
+				AssetProcessor processor = processors.get(i);
+				meters[i] = new StageMeter();
+				MeteredWriter stageOutput = new MeteredWriter(writer, meters[i]);
+				if (processor instanceof StreamingAssetProcessor) {
+					writer = new MeteredInput(((StreamingAssetProcessor) processor).open(asset, stageOutput, context),
+							meters[i]);
+				}
+				else {
+					PipedStage pipedStage = new PipedStage(processor, asset, stageOutput, meters[i], context);
+					pipedStages.add(pipedStage);
+					executor.execute(pipedStage);
+					writer = pipedStage.getWriter();
+				}
+			}
+
+			AssetProcessor first = processors.get(0);
+			meters[0] = new StageMeter();
+			MeteredWriter firstOutput = new MeteredWriter(writer, meters[0]);
+			if (first instanceof StreamingAssetProcessor) {
+				Writer firstWriter = new MeteredInput(((StreamingAssetProcessor) first).open(asset, firstOutput,
+						context), meters[0]);
+				char[] chunk = new char[Math.min(CHUNK_SIZE, Math.max(content.length(), 1))];
+				for (int start = 0; start < content.length(); start += chunk.length) {
+					int end = Math.min(start + chunk.length, content.length());
+					content.getChars(start, end, chunk, 0);
+					firstWriter.write(chunk, 0, end - start);
+				}
+				firstWriter.close();
+			}
+			else {
+				long start = System.nanoTime();
+				first.process(asset, new MeteredReader(new StringReader(content), meters[0]), firstOutput, context);
+				firstOutput.close();
+				meters[0].inclusiveNanos += System.nanoTime() - start;
+			}
+		}
+		catch (IOException e) {
+			abort(pipedStages, e);
+			if (e.getCause() instanceof DandelionException) {
+				throw (DandelionException) e.getCause();
+			}
+			throw new DandelionException("An exception occurred while processing the asset " + asset.toLog(), e);
+		}
+		catch (RuntimeException e) {
+			abort(pipedStages, e);
+			throw e;
+		}
+
+		for (int i = 0; i < meters.length; i++) {
+			statistics[i].record(meters[i].charsIn, meters[i].charsOut, meters[i].inclusiveNanos
+					- meters[i].excludedNanos);
+		}
+		return output.toString();
+	}
+
+	private static void abort(List<PipedStage> pipedStages, Throwable cause) {
+		for (PipedStage pipedStage : pipedStages) {
+			pipedStage.abort(cause);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Measures of a processor during a single application, only updated by
+	 * the thread running the processor.
+	 */
+	private static final class StageMeter {
+		private long charsIn;
+		private long charsOut;
+		private long inclusiveNanos;
+		private long excludedNanos;
+	}
+
+	/**
+	 * <p>
+	 * Input of a {@link StreamingAssetProcessor}, measuring the time spent in
+	 * each of its calls.
+	 */
+	private static final class MeteredInput extends Writer {
+
+		private final Writer writer;
+		private final StageMeter meter;
+
+		private MeteredInput(Writer writer, StageMeter meter) {
+			this.writer = writer;
+			this.meter = meter;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			writer.write(cbuf, off, len);
+			meter.inclusiveNanos += System.nanoTime() - start;
+			meter.charsIn += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() throws IOException {
+			long start = System.nanoTime();
+			writer.close();
+			meter.inclusiveNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Output of a processor, buffering what it writes and passing it to the
+	 * next processor by chunks, whose time is excluded from the time spent by
+	 * the processor. Flushing has no effect: everything is passed on once the
+	 * buffer is full or closed.
+	 */
+	private static final class MeteredWriter extends Writer {
+
+		private final Writer writer;
+		private final StageMeter meter;
+		private final char[] buffer = new char[CHUNK_SIZE];
+		private int count;
+		private boolean closed;
+
+		private MeteredWriter(Writer writer, StageMeter meter) {
+			this.writer = writer;
+			this.meter = meter;
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			if (count == buffer.length) {
+				flushBuffer();
+			}
+			buffer[count++] = (char) c;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (len >= buffer.length) {
+				flushBuffer();
+				writeThrough(cbuf, off, len);
+				return;
+			}
+			if (len > buffer.length - count) {
+				flushBuffer();
+			}
+			System.arraycopy(cbuf, off, buffer, count, len);
+			count += len;
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length) {
+					flushBuffer();
+				}
+				int length = Math.min(len, buffer.length - count);
+				str.getChars(off, off + length, buffer, count);
+				count += length;
+				off += length;
+				len -= length;
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			if (count > 0) {
+				writeThrough(buffer, 0, count);
+				count = 0;
+			}
+		}
+
+		private void writeThrough(char[] cbuf, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			writer.write(cbuf, off, len);
+			meter.excludedNanos += System.nanoTime() - start;
+			meter.charsOut += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				flushBuffer();
+				long start = System.nanoTime();
+				writer.close();
+				meter.excludedNanos += System.nanoTime() - start;
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Input of a processor reading its content, buffering it by chunks whose
+	 * reading time is excluded from the time spent by the processor.
+	 */
+	private static final class MeteredReader extends Reader {
+
+		private final Reader reader;
+		private final StageMeter meter;
+		private final char[] buffer = new char[CHUNK_SIZE];
+		private int position;
+		private int count;
+
+		private MeteredReader(Reader reader, StageMeter meter) {
+			this.reader = reader;
+			this.meter = meter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position == count && !fill()) {
+				return -1;
+			}
+			return buffer[position++];
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (position == count) {
+				if (len >= buffer.length) {
+					return readThrough(cbuf, off, len);
+				}
+				if (!fill()) {
+					return -1;
+				}
+			}
+			int length = Math.min(len, count - position);
+			System.arraycopy(buffer, position, cbuf, off, length);
+			position += length;
+			return length;
+		}
+
+		private boolean fill() throws IOException {
+			int length = readThrough(buffer, 0, buffer.length);
+			position = 0;
+			count = Math.max(length, 0);
+			return length > 0;
+		}
+
+		private int readThrough(char[] cbuf, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			int length = reader.read(cbuf, off, len);
+			meter.excludedNanos += System.nanoTime() - start;
+			if (length > 0) {
+				meter.charsIn += length;
+			}
+			return length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Processor reading its content from a pipe, written by the previous
+	 * processor of the chain.
+	 */
+	private static final class PipedStage implements Runnable {
+
+		private final AssetProcessor processor;
+		private final Asset asset;
+		private final MeteredWriter writer;
+		private final StageMeter meter;
+		private final Context context;
+		private final CharPipe pipe = new CharPipe(CHUNK_SIZE);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Throwable failure;
+
+		private final Writer pipeWriter = new Writer() {
+
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				pipe.getWriter().write(cbuf, off, len);
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			/**
+			 * Signals the end of the content and waits for the processor to
+			 * complete, so that closing the first writer of the chain returns
+			 * once the whole content has been processed.
+			 */
+			@Override
+			public void close() throws IOException {
+				pipe.closeWriter();
+				try {
+					done.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					pipe.abort(e);
+					throw new InterruptedIOException("Interrupted while waiting for the processor "
+							+ processor.getProcessorKey());
+				}
+				if (failure != null) {
+					throw new IOException("The processor " + processor.getProcessorKey() + " has failed", failure);
+				}
+			}
+		};
+
+		private PipedStage(AssetProcessor processor, Asset asset, MeteredWriter writer, StageMeter meter,
+				Context context) {
+			this.processor = processor;
+			this.asset = asset;
+			this.writer = writer;
+			this.meter = meter;
+			this.context = context;
+		}
+
+		private Writer getWriter() {
+			return pipeWriter;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long start = System.nanoTime();
+				processor.process(asset, new MeteredReader(pipe.getReader(), meter), writer, context);
+				writer.close();
+				meter.inclusiveNanos += System.nanoTime() - start;
+			}
+			catch (Throwable e) {
+				failure = e;
+				pipe.abort(e);
+			}
+			finally {
+				pipe.closeReader();
+				done.countDown();
+			}
+		}
+
+		private void abort(Throwable cause) {
+			pipe.abort(cause);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Unsynchronized writer accumulating the output of the chain.
+	 */
+	private static final class StringBuilderWriter extends Writer {
+
+		private final StringBuilder builder;
+
+		private StringBuilderWriter(int capacity) {
+			this.builder = new StringBuilder(capacity);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			builder.append(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			builder.append(str, off, off + len);
+		}
+
+		@Override
+		public void write(int c) {
+			builder.append((char) c);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return builder.toString();
+		}
+	}
+}
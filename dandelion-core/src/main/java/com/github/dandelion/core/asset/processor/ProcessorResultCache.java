@@ -0,0 +1,283 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.AssetContent;
+import com.github.dandelion.core.asset.cache.DiskAssetStore;
+import com.github.dandelion.core.asset.cache.impl.ConcurrentWeightedCache;
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+import com.github.dandelion.core.config.Configuration;
+import com.github.dandelion.core.utils.Sha1Utils;
+import com.github.dandelion.core.utils.StringUtils;
+
+/**
+ * <p>
+ * Cache of the contents produced by the chains of {@link AssetProcessor}s.
+ * 
+ * <p>
+ * A processed content depends on the raw content, on the processors applied
+ * on it and on the directory the asset is served from, against which some
+ * processors resolve relative URLs. The results are therefore keyed by a hash
+ * of the raw content, of this directory, of the keys, classes and versions of
+ * the processors and of the processing encoding. Unlike the asset cache,
+ * whose keys also depend on the name of the assets and possibly on the
+ * requested page, a library used by several pages is therefore processed
+ * only once.
+ * 
+ * <p>
+ * The version of a processor is the implementation version of its package,
+ * or the stamp of its class file when the package has no version, so that a
+ * modified processor doesn't reuse the results of the previous one.
+ * 
+ * <p>
+ * The results are kept in memory, up to {@code cache.processed.max.bytes},
+ * and also persisted in {@code cache.processed.location} if set, so that they
+ * survive restarts as long as the raw contents, the locations and the
+ * processors haven't changed.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class ProcessorResultCache {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(ProcessorResultCache.class);
+
+	/**
+	 * Name of the directory holding the persisted results, inside the
+	 * configured location.
+	 */
+	public static final String DIRECTORY_NAME = "processed";
+
+	private static final int MAX_ENTRIES = 1024;
+
+	/**
+	 * The keys already contain everything the results depend on, the
+	 * fingerprint only changes with the format of the keys.
+	 */
+	private static final String FINGERPRINT = "processor-results-2";
+
+	/**
+	 * Versions of the processor classes, computed once per class.
+	 */
+	private static final ConcurrentMap<Class<?>, String> PROCESSOR_VERSIONS = new ConcurrentHashMap<Class<?>, String>();
+
+	private final ConcurrentWeightedCache<String, String> memoryCache;
+	private final DiskAssetStore diskStore;
+	private final String encoding;
+
+	/**
+	 * @param maxBytes
+	 *            The maximum size of the results kept in memory.
+	 * @param diskStore
+	 *            The store persisting the results, may be {@code null}.
+	 * @param encoding
+	 *            The encoding used by the processors.
+	 */
+	public ProcessorResultCache(long maxBytes, DiskAssetStore diskStore, String encoding) {
+		this.memoryCache = new ConcurrentWeightedCache<String, String>(MAX_ENTRIES, maxBytes,
+				new ConcurrentWeightedCache.Weigher<String>() {
+
+					@Override
+					public int weigh(String value) {
+						return Math.max(value.length() * 2, 1);
+					}
+				});
+		this.diskStore = diskStore;
+		this.encoding = encoding;
+	}
+
+	/**
+	 * <p>
+	 * Creates the cache configured by the {@code cache.processed.*} options.
+	 * If the persisted results can't be opened, they are only kept in memory.
+	 * 
+	 * @param configuration
+	 *            The Dandelion configuration.
+	 * @return a new cache.
+	 */
+	public static ProcessorResultCache create(Configuration configuration) {
+		DiskAssetStore diskStore = null;
+		String location = configuration.getCacheProcessedLocation();
+		if (StringUtils.isNotBlank(location)) {
+			File directory = new File(location.trim(), DIRECTORY_NAME);
+			try {
+				diskStore = DiskAssetStore.open(directory, FINGERPRINT, configuration.getCacheDiskMaxBytes());
+				LOG.info("{} processed asset(s) read from {}", diskStore.size(), directory.getAbsolutePath());
+			}
+			catch (IOException e) {
+				LOG.warn("Unable to open the processor result cache located in {}. Processed assets won't be persisted.",
+						directory.getAbsolutePath(), e);
+			}
+		}
+		return new ProcessorResultCache(configuration.getCacheProcessedMaxBytes(), diskStore,
+				configuration.getAssetProcessorEncoding());
+	}
+
+	/**
+	 * @param asset
+	 *            The asset whose content is processed.
+	 * @param content
+	 *            The raw content to process.
+	 * @param processors
+	 *            The processors to apply, in order.
+	 * @return the key of the result of the given processors applied on the
+	 *         given content, or {@code null} if it can't be computed.
+	 */
+	public String getKey(Asset asset, String content, List<AssetProcessor> processors) {
+		StringBuilder chain = new StringBuilder(encoding);
+		String finalLocation = asset.getFinalLocation();
+		chain.append('|').append(finalLocation == null ? null : finalLocation.substring(0,
+				finalLocation.lastIndexOf('/') + 1));
+		for (AssetProcessor processor : processors) {
+			chain.append('|').append(processor.getProcessorKey());
+			chain.append(':').append(processor.getClass().getName());
+			chain.append(':').append(getVersion(processor.getClass()));
+		}
+		String contentHash;
+		try {
+			contentHash = Sha1Utils.generateSha1(content.getBytes(encoding));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new DandelionException("The encoding " + encoding + " is not supported", e);
+		}
+		return contentHash == null ? null : contentHash + "-" + Sha1Utils.generateSha1(chain.toString(), true);
+	}
+
+	/**
+	 * @return the implementation version of the package of the given processor
+	 *         class, or the size and last modification date of its class file
+	 *         if the package has no version.
+	 */
+	private static String getVersion(Class<?> processorClass) {
+		String version = PROCESSOR_VERSIONS.get(processorClass);
+		if (version == null) {
+			Package processorPackage = processorClass.getPackage();
+			version = processorPackage == null ? null : processorPackage.getImplementationVersion();
+			if (version == null) {
+				String className = processorClass.getName();
+				URL classFile = processorClass.getResource(className.substring(className.lastIndexOf('.') + 1)
+						+ ".class");
+				try {
+					if (classFile != null) {
+						URLConnection connection = classFile.openConnection();
+						connection.setUseCaches(false);
+						version = connection.getContentLength() + ":" + connection.getLastModified();
+					}
+				}
+				catch (IOException e) {
+					LOG.debug("Unable to read the class file of {}", className, e);
+				}
+				if (version == null) {
+					// The results of this processor are never reused after a
+					// restart
+					version = "unknown:" + System.nanoTime();
+				}
+			}
+			PROCESSOR_VERSIONS.put(processorClass, version);
+		}
+		return version;
+	}
+
+	/**
+	 * @param key
+	 *            The key of the result.
+	 * @return the cached result, or {@code null} if there is none.
+	 */
+	public String get(String key) {
+		String result = memoryCache.get(key);
+		if (result == null && diskStore != null) {
+			AssetContent content = diskStore.read(key);
+			if (content != null) {
+				result = content.asString();
+				memoryCache.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Stores the given result, in memory and on disk.
+	 * 
+	 * @param key
+	 *            The key of the result.
+	 * @param result
+	 *            The processed content.
+	 */
+	public void put(String key, String result) {
+		memoryCache.put(key, result);
+		if (diskStore != null && !diskStore.contains(key)) {
+			diskStore.append(key, AssetContent.fromString(result));
+		}
+	}
+
+	/**
+	 * @return the results kept in memory.
+	 */
+	public ConcurrentWeightedCache<String, String> getMemoryCache() {
+		return memoryCache;
+	}
+
+	/**
+	 * <p>
+	 * Drops all cached results.
+	 */
+	public void clear() {
+		memoryCache.clear();
+		if (diskStore != null) {
+			diskStore.clear();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Releases the persisted results.
+	 */
+	public void close() {
+		if (diskStore != null) {
+			diskStore.close();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+
+/**
+ * <p>
+ * Statistics of an active {@link AssetProcessor}, updated each time it is
+ * applied on an asset.
+ * 
+ * <p>
+ * The time spent by the processor excludes the time spent by the next
+ * processors of the chain, as well as the time spent waiting for the content
+ * of the previous ones.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class ProcessorStatistics {
+
+	private final String processorKey;
+	private final AtomicLong invocations = new AtomicLong();
+	private final AtomicLong charsIn = new AtomicLong();
+	private final AtomicLong charsOut = new AtomicLong();
+	private final AtomicLong nanos = new AtomicLong();
+
+	public ProcessorStatistics(String processorKey) {
+		this.processorKey = processorKey;
+	}
+
+	/**
+	 * <p>
+	 * Records an application of the processor.
+	 * 
+	 * @param charsIn
+	 *            The number of characters read by the processor.
+	 * @param charsOut
+	 *            The number of characters written by the processor.
+	 * @param nanos
+	 *            The time spent by the processor, in nanoseconds.
+	 */
+	public void record(long charsIn, long charsOut, long nanos) {
+		this.invocations.incrementAndGet();
+		this.charsIn.addAndGet(charsIn);
+		this.charsOut.addAndGet(charsOut);
+		this.nanos.addAndGet(nanos);
+	}
+
+	public String getProcessorKey() {
+		return processorKey;
+	}
+
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	public long getCharsIn() {
+		return charsIn.get();
+	}
+
+	public long getCharsOut() {
+		return charsOut.get();
+	}
+
+	/**
+	 * @return the cumulative time spent by the processor, in milliseconds.
+	 */
+	public long getTotalMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+	}
+
+	@Override
+	public String toString() {
+		return processorKey + ": " + getInvocations() + " invocation(s), " + getCharsIn() + " char(s) in, "
+				+ getCharsOut() + " char(s) out, " + getTotalMillis() + " ms";
+	}
+}
@@ -0,0 +1,813 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Single-pass CSS minifier reading the content as a stream of tokens.
+ * 
+ * <p>
+ * The content is read into a character array and copied token by token into
+ * an output array, which is written at once. Unlike the regular expressions
+ * of {@link com.github.dandelion.core.asset.processor.vendor.CssCompressor},
+ * the tokenizer knows whether it is reading a selector, an at-rule prelude or
+ * a declaration, and never alters strings or unquoted URLs. It performs the
+ * same optimizations:
+ * <ul>
+ * <li>comments are removed, except the ones starting with {@code /*!} and the
+ * IE Mac hack</li>
+ * <li>whitespaces are collapsed and removed around delimiters</li>
+ * <li>duplicate and trailing semicolons are removed, as well as empty rules</li>
+ * <li>zero lengths lose their unit, numbers their useless zeros and
+ * {@code 0 0 0 0} is shortened to {@code 0} for the box properties</li>
+ * <li>{@code rgb(r,g,b)} and {@code #aabbcc} colors are shortened</li>
+ * </ul>
+ * 
+ * <p>
+ * The optimizations known to break the CSS, such as removing the spaces of a
+ * {@code calc()} expression or the unit of a zero inside a function, are not
+ * performed.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+class CssMinifier {
+
+	private static final int EOF = -1;
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String[] NESTING_AT_RULES = { "media", "supports", "document", "-moz-document",
+			"container", "layer", "scope" };
+
+	private static final String[] LENGTH_UNITS = { "px", "em", "in", "cm", "mm", "pc", "pt", "ex" };
+
+	private static final String[] BOX_PROPERTIES = { "margin", "padding", "border-width", "border-radius" };
+
+	private static final Map<String, String> COLOR_NAMES = new HashMap<String, String>();
+
+	static {
+		COLOR_NAMES.put("C0C0C0", "silver");
+		COLOR_NAMES.put("800000", "maroon");
+		COLOR_NAMES.put("800080", "purple");
+		COLOR_NAMES.put("008000", "green");
+		COLOR_NAMES.put("808000", "olive");
+		COLOR_NAMES.put("000080", "navy");
+		COLOR_NAMES.put("008080", "teal");
+	}
+
+	private final char[] in;
+	private final int length;
+	private int pos;
+
+	private char[] out;
+	private int outLength;
+
+	/**
+	 * Whether the current block contains declarations, rather than rules.
+	 */
+	private boolean declarations;
+
+	/**
+	 * Output index of the current statement, i.e. the current rule or at-rule
+	 * prelude, or the current declaration.
+	 */
+	private int statementStart;
+
+	/**
+	 * Output index of the content of the current block.
+	 */
+	private int blockStart;
+
+	/**
+	 * Output index of the value of the current declaration, or -1.
+	 */
+	private int valueStart = -1;
+
+	private boolean customProperty;
+
+	private int parens;
+
+	private boolean pendingSpace;
+
+	private boolean pendingSemicolon;
+
+	private boolean ieMacHack;
+
+	private boolean[] declarationsStack = new boolean[16];
+	private int[] statementStartStack = new int[16];
+	private int[] blockStartStack = new int[16];
+	private int depth;
+
+	CssMinifier(Reader reader) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		int count = 0;
+		int n;
+		while ((n = reader.read(buffer, count, buffer.length - count)) != EOF) {
+			count += n;
+			if (count == buffer.length) {
+				char[] grown = new char[buffer.length * 2];
+				System.arraycopy(buffer, 0, grown, 0, count);
+				buffer = grown;
+			}
+		}
+		this.in = buffer;
+		this.length = count;
+	}
+
+	/**
+	 * <p>
+	 * Minifies the whole content and writes it to the given writer.
+	 * 
+	 * @param writer
+	 *            The writer to write the minified content to.
+	 */
+	void minify(Writer writer) throws IOException {
+		out = new char[Math.max(length, 16)];
+		outLength = 0;
+		while (pos < length) {
+			char c = in[pos];
+			if (isWhitespace(c)) {
+				pendingSpace = true;
+				pos++;
+			}
+			else if (c == '/' && pos + 1 < length && in[pos + 1] == '*') {
+				comment();
+			}
+			else if (c == '{') {
+				pos++;
+				openBlock();
+			}
+			else if (c == '}') {
+				pos++;
+				closeBlock();
+			}
+			else if (c == ';') {
+				pos++;
+				semicolon();
+			}
+			else if (c == '"' || c == '\'') {
+				string(c);
+			}
+			else if (c == '\\') {
+				flushPending(c);
+				put(c);
+				pos++;
+				if (pos < length) {
+					put(in[pos++]);
+				}
+			}
+			else if (c == '(') {
+				pos++;
+				openParenthesis();
+			}
+			else if (c == ')') {
+				pos++;
+				flushPending(c);
+				put(c);
+				if (parens > 0) {
+					parens--;
+				}
+			}
+			else if (c == ':' && declarations && parens == 0 && valueStart < 0) {
+				pos++;
+				flushPending(c);
+				String property = new String(out, statementStart, outLength - statementStart);
+				customProperty = property.startsWith("--");
+				put(c);
+				valueStart = outLength;
+			}
+			else if (valueStart >= 0 && c == '#') {
+				hash();
+			}
+			else if (valueStart >= 0 && isNumberStart(c)) {
+				number();
+			}
+			else {
+				flushPending(c);
+				put(c);
+				pos++;
+			}
+		}
+		if (declarations) {
+			endDeclaration();
+		}
+		if (pendingSemicolon && depth == 0) {
+			put(';');
+		}
+		writer.write(out, 0, outLength);
+	}
+
+	private void put(char c) {
+		if (outLength == out.length) {
+			char[] grown = new char[out.length * 2];
+			System.arraycopy(out, 0, grown, 0, outLength);
+			out = grown;
+		}
+		out[outLength++] = c;
+	}
+
+	private void put(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			put(s.charAt(i));
+		}
+	}
+
+	/**
+	 * Outputs the pending semicolon and whitespace, if any, before the given
+	 * character.
+	 */
+	private void flushPending(char next) {
+		if (pendingSemicolon) {
+			put(';');
+			pendingSemicolon = false;
+			pendingSpace = false;
+			startStatement();
+		}
+		if (pendingSpace) {
+			pendingSpace = false;
+			if (outLength > statementStart && !stripsAfter(out[outLength - 1]) && !stripsBefore(next)) {
+				put(' ');
+			}
+		}
+	}
+
+	private void startStatement() {
+		statementStart = outLength;
+		valueStart = -1;
+		customProperty = false;
+		parens = 0;
+	}
+
+	private boolean stripsBefore(char c) {
+		switch (c) {
+		case '{':
+		case '}':
+		case ';':
+		case ',':
+		case ')':
+		case ']':
+		case '!':
+			return true;
+		case ':':
+			return declarations;
+		case '(':
+			return !declarations && followsAtKeyword();
+		case '>':
+		case '~':
+			return !declarations;
+		case '+':
+			return !declarations && parens == 0;
+		default:
+			return false;
+		}
+	}
+
+	private boolean stripsAfter(char c) {
+		switch (c) {
+		case '{':
+		case '}':
+		case ';':
+		case ',':
+		case '(':
+		case '[':
+		case '!':
+		case ':':
+			return true;
+		case '>':
+		case '~':
+			return !declarations;
+		case '+':
+			return !declarations && parens == 0;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Whether the output ends with the at-keyword starting the current
+	 * statement, as in {@code @media (...)}.
+	 */
+	private boolean followsAtKeyword() {
+		if (outLength - statementStart < 2 || out[statementStart] != '@') {
+			return false;
+		}
+		for (int i = statementStart + 1; i < outLength; i++) {
+			if (!isNameChar(out[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void comment() {
+		int start = pos + 2;
+		int end = indexOf('*', '/', start);
+		boolean preserve = start < length && in[start] == '!';
+		if (end < 0) {
+			if (preserve) {
+				copyComment(pos, length);
+			}
+			pos = length;
+			return;
+		}
+
+		boolean keep;
+		if (end > start && in[end - 1] == '\\') {
+			// Looks like a comment to hide rules from IE Mac.
+			// Leave this comment, and the following one, alone...
+			keep = true;
+			ieMacHack = true;
+		}
+		else if (ieMacHack) {
+			keep = true;
+			ieMacHack = false;
+		}
+		else {
+			keep = preserve;
+		}
+
+		if (keep) {
+			copyComment(pos, end + 2);
+		}
+		pos = end + 2;
+	}
+
+	private void copyComment(int from, int to) {
+		flushPending('/');
+		boolean atStatementStart = outLength == statementStart;
+		for (int i = from; i < to; i++) {
+			put(in[i]);
+		}
+		if (atStatementStart) {
+			statementStart = outLength;
+		}
+		pendingSpace = false;
+	}
+
+	private int indexOf(char first, char second, int from) {
+		for (int i = from; i < length - 1; i++) {
+			if (in[i] == first && in[i + 1] == second) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void string(char quote) {
+		flushPending(quote);
+		put(quote);
+		pos++;
+		while (pos < length) {
+			char c = in[pos++];
+			put(c);
+			if (c == '\\') {
+				if (pos < length) {
+					put(in[pos++]);
+				}
+			}
+			else if (c == quote || c == '\n') {
+				return;
+			}
+		}
+	}
+
+	private void openBlock() {
+		flushPending('{');
+		if (declarations) {
+			endDeclaration();
+		}
+		boolean nested = !declarations && isNestingAtRule();
+
+		if (depth == declarationsStack.length) {
+			boolean[] grownDeclarations = new boolean[depth * 2];
+			int[] grownStatementStarts = new int[depth * 2];
+			int[] grownBlockStarts = new int[depth * 2];
+			System.arraycopy(declarationsStack, 0, grownDeclarations, 0, depth);
+			System.arraycopy(statementStartStack, 0, grownStatementStarts, 0, depth);
+			System.arraycopy(blockStartStack, 0, grownBlockStarts, 0, depth);
+			declarationsStack = grownDeclarations;
+			statementStartStack = grownStatementStarts;
+			blockStartStack = grownBlockStarts;
+		}
+		declarationsStack[depth] = declarations;
+		statementStartStack[depth] = statementStart;
+		blockStartStack[depth] = blockStart;
+		depth++;
+
+		put('{');
+		declarations = !nested;
+		blockStart = outLength;
+		startStatement();
+	}
+
+	private boolean isNestingAtRule() {
+		if (statementStart == outLength || out[statementStart] != '@') {
+			return false;
+		}
+		int end = statementStart + 1;
+		while (end < outLength && isNameChar(out[end])) {
+			end++;
+		}
+		String name = new String(out, statementStart + 1, end - statementStart - 1).toLowerCase();
+		if (name.endsWith("keyframes")) {
+			return true;
+		}
+		for (String atRule : NESTING_AT_RULES) {
+			if (atRule.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void closeBlock() {
+		pendingSemicolon = false;
+		pendingSpace = false;
+		if (declarations) {
+			endDeclaration();
+		}
+		if (depth == 0) {
+			put('}');
+			startStatement();
+			return;
+		}
+
+		depth--;
+		if (outLength == blockStart) {
+			// Empty rule
+			outLength = statementStartStack[depth];
+		}
+		else {
+			put('}');
+		}
+		declarations = declarationsStack[depth];
+		blockStart = blockStartStack[depth];
+		startStatement();
+	}
+
+	private void semicolon() {
+		if (parens > 0) {
+			flushPending(';');
+			put(';');
+			return;
+		}
+		pendingSpace = false;
+		if (pendingSemicolon || outLength == statementStart) {
+			return;
+		}
+		if (declarations) {
+			endDeclaration();
+			valueStart = -1;
+		}
+		pendingSemicolon = true;
+	}
+
+	/**
+	 * Shortens the value of the declaration being closed, if it is only made of
+	 * zeros.
+	 */
+	private void endDeclaration() {
+		if (valueStart < 0 || customProperty) {
+			return;
+		}
+		int valueLength = outLength - valueStart;
+		if (valueLength >= 3 && valueLength <= 7 && valueLength % 2 == 1) {
+			for (int i = valueStart; i < outLength; i++) {
+				if (out[i] != ((i - valueStart) % 2 == 0 ? '0' : ' ')) {
+					return;
+				}
+			}
+			String property = new String(out, statementStart, valueStart - 1 - statementStart).toLowerCase();
+			for (String boxProperty : BOX_PROPERTIES) {
+				if (boxProperty.equals(property)) {
+					outLength = valueStart + 1;
+					return;
+				}
+			}
+		}
+	}
+
+	private void openParenthesis() {
+		flushPending('(');
+		if (valueStart >= 0 && endsWithFunction("rgb") && rgb()) {
+			return;
+		}
+		boolean url = endsWithFunction("url");
+		put('(');
+		parens++;
+		if (url) {
+			url();
+		}
+	}
+
+	private boolean endsWithFunction(String name) {
+		int start = outLength - name.length();
+		if (start < statementStart || (start > statementStart && isNameChar(out[start - 1]))) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (Character.toLowerCase(out[start + i]) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the content of an unquoted URL, without the surrounding
+	 * whitespaces.
+	 */
+	private void url() {
+		int start = pos;
+		while (start < length && isWhitespace(in[start])) {
+			start++;
+		}
+		if (start < length && (in[start] == '"' || in[start] == '\'')) {
+			return;
+		}
+		int end = start;
+		while (end < length && in[end] != ')') {
+			if (in[end] == '\\') {
+				end++;
+			}
+			end++;
+		}
+		end = Math.min(end, length);
+		int trimmedEnd = end;
+		while (trimmedEnd > start && isWhitespace(in[trimmedEnd - 1])) {
+			trimmedEnd--;
+		}
+		for (int i = start; i < trimmedEnd; i++) {
+			put(in[i]);
+		}
+		pos = end;
+	}
+
+	/**
+	 * Replaces {@code rgb(r,g,b)} by the corresponding hexadecimal color,
+	 * provided that the three components are integers between 0 and 255.
+	 */
+	private boolean rgb() {
+		char[] hex = new char[6];
+		int i = pos;
+		for (int component = 0; component < 3; component++) {
+			while (i < length && isWhitespace(in[i])) {
+				i++;
+			}
+			int start = i;
+			int value = 0;
+			while (i < length && i - start < 3 && isDigit(in[i])) {
+				value = value * 10 + in[i++] - '0';
+			}
+			if (i == start || value > 255 || (i < length && isDigit(in[i]))) {
+				return false;
+			}
+			while (i < length && isWhitespace(in[i])) {
+				i++;
+			}
+			if (i == length || in[i] != (component < 2 ? ',' : ')')) {
+				return false;
+			}
+			i++;
+			hex[component * 2] = Character.forDigit(value >> 4, 16);
+			hex[component * 2 + 1] = Character.forDigit(value & 0xF, 16);
+		}
+		outLength -= 3;
+		putColor(hex);
+		pos = i;
+		return true;
+	}
+
+	private void hash() {
+		flushPending('#');
+		pos++;
+		int start = pos;
+		while (pos < length && isNameChar(in[pos])) {
+			pos++;
+		}
+		if (pos - start == 6 && isHexColor(start) && !followsEquals()) {
+			char[] hex = new char[6];
+			System.arraycopy(in, start, hex, 0, 6);
+			putColor(hex);
+		}
+		else {
+			put('#');
+			for (int i = start; i < pos; i++) {
+				put(in[i]);
+			}
+		}
+	}
+
+	private boolean isHexColor(int start) {
+		for (int i = start; i < start + 6; i++) {
+			if (Character.digit(in[i], 16) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * A color preceded by an equal sign, as in
+	 * {@code filter: chroma(color=#FFFFFF)}, must not be shortened as it would
+	 * break the filter in IE.
+	 */
+	private boolean followsEquals() {
+		int i = outLength - 1;
+		while (i >= 0 && out[i] == ' ') {
+			i--;
+		}
+		return i >= 0 && out[i] == '=';
+	}
+
+	private void putColor(char[] hex) {
+		if (equalsIgnoreCase(hex[0], hex[1]) && equalsIgnoreCase(hex[2], hex[3]) && equalsIgnoreCase(hex[4], hex[5])) {
+			put('#');
+			put(hex[0]);
+			put(hex[2]);
+			put(hex[4]);
+			return;
+		}
+		String name = COLOR_NAMES.get(new String(hex).toUpperCase());
+		if (name != null) {
+			put(name);
+		}
+		else {
+			put('#');
+			for (char c : hex) {
+				put(c);
+			}
+		}
+	}
+
+	private static boolean equalsIgnoreCase(char c1, char c2) {
+		return Character.toLowerCase(c1) == Character.toLowerCase(c2);
+	}
+
+	/**
+	 * Whether a number starts at the current position, i.e. the current
+	 * character is a digit, or a dot followed by a digit, which is not part of
+	 * a name.
+	 */
+	private boolean isNumberStart(char c) {
+		if (!isDigit(c) && !(c == '.' && pos + 1 < length && isDigit(in[pos + 1]))) {
+			return false;
+		}
+		int previous = outLength - 1;
+		if (pendingSpace || pendingSemicolon || previous < statementStart) {
+			return true;
+		}
+		if (out[previous] == '-' || out[previous] == '+') {
+			previous--;
+		}
+		return previous < statementStart || !isNameChar(out[previous]);
+	}
+
+	private void number() {
+		int start = pos;
+		int integerEnd = start;
+		while (integerEnd < length && isDigit(in[integerEnd])) {
+			integerEnd++;
+		}
+		int fractionStart = integerEnd;
+		int fractionEnd = integerEnd;
+		if (integerEnd + 1 < length && in[integerEnd] == '.' && isDigit(in[integerEnd + 1])) {
+			fractionStart = integerEnd + 1;
+			fractionEnd = fractionStart;
+			while (fractionEnd < length && isDigit(in[fractionEnd])) {
+				fractionEnd++;
+			}
+		}
+		int unitStart = fractionEnd;
+		int unitEnd = unitStart;
+		if (unitEnd < length && in[unitEnd] == '%') {
+			unitEnd++;
+		}
+		else {
+			while (unitEnd < length && isNameChar(in[unitEnd]) && in[unitEnd] != '\\') {
+				unitEnd++;
+			}
+		}
+
+		flushPending(in[start]);
+		if (isExponent(unitStart)) {
+			// Leave the numbers in scientific notation unchanged
+			for (int i = start; i < unitEnd; i++) {
+				put(in[i]);
+			}
+			pos = unitEnd;
+			return;
+		}
+
+		int integerStart = start;
+		while (integerStart < integerEnd && in[integerStart] == '0') {
+			integerStart++;
+		}
+		int trimmedFractionEnd = fractionEnd;
+		while (trimmedFractionEnd > fractionStart && in[trimmedFractionEnd - 1] == '0') {
+			trimmedFractionEnd--;
+		}
+
+		if (integerStart == integerEnd && trimmedFractionEnd == fractionStart) {
+			put('0');
+			if (!isRemovableZeroUnit(unitStart, unitEnd)) {
+				copy(unitStart, unitEnd);
+			}
+		}
+		else {
+			copy(integerStart, integerEnd);
+			if (trimmedFractionEnd > fractionStart) {
+				put('.');
+				copy(fractionStart, trimmedFractionEnd);
+			}
+			copy(unitStart, unitEnd);
+		}
+		pos = unitEnd;
+	}
+
+	private boolean isExponent(int unitStart) {
+		if (unitStart >= length || (in[unitStart] != 'e' && in[unitStart] != 'E')) {
+			return false;
+		}
+		int i = unitStart + 1;
+		if (i < length && (in[i] == '+' || in[i] == '-')) {
+			i++;
+		}
+		return i < length && isDigit(in[i]);
+	}
+
+	/**
+	 * The unit of a zero length can be removed, except inside a function such
+	 * as {@code calc()} and in the flex shorthand, where a unitless zero is not
+	 * a length.
+	 */
+	private boolean isRemovableZeroUnit(int unitStart, int unitEnd) {
+		if (customProperty || parens > 0 || unitEnd - unitStart != 2) {
+			return false;
+		}
+		String property = new String(out, statementStart, valueStart - 1 - statementStart).toLowerCase();
+		if (property.equals("flex") || property.equals("flex-basis")) {
+			return false;
+		}
+		String unit = new String(in, unitStart, 2).toLowerCase();
+		for (String lengthUnit : LENGTH_UNITS) {
+			if (lengthUnit.equals(unit)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void copy(int from, int to) {
+		for (int i = from; i < to; i++) {
+			put(in[i]);
+		}
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isNameChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+				|| c == '\\' || c > 127;
+	}
+}
@@ -27,50 +27,41 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
  * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
-package com.github.dandelion.core.asset.cache.impl;
+package com.github.dandelion.core.asset.processor.impl;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.Reader;
+import java.io.Writer;
 
-public class ConcurrentLruCache<K, V> extends LinkedHashMap<K, V> {
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.processor.CompatibleAssetType;
+import com.github.dandelion.core.asset.processor.spi.AbstractAssetProcessor;
 
-	private static final long serialVersionUID = 4555114766903087183L;
-	private int maxEntries;
-	private ReadWriteLock lock = new ReentrantReadWriteLock();
-
-	public ConcurrentLruCache(int maxEntries) {
-		super(maxEntries + 1);
-		this.maxEntries = maxEntries;
-	}
-
-	@Override
-	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-		return super.size() > maxEntries && isRemovable(eldest);
-	}
-
-	protected boolean isRemovable(Map.Entry<K, V> eldest) {
-		return true;
-	}
+/**
+ * <p>
+ * CSS processor based on the single-pass {@link CssMinifier}, a faster
+ * alternative to the {@link CssMinProcessor}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+@CompatibleAssetType(types = AssetType.css)
+public class CssTokenMinProcessor extends AbstractAssetProcessor {
 
+	/**
+	 * {@inheritDoc}
+	 */
 	@Override
-	public V get(Object key) {
-		try {
-			lock.readLock().lock();
-			return super.get(key);
-		} finally {
-			lock.readLock().unlock();
-		}
+	public String getProcessorKey() {
+		return "csstokenmin";
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
 	@Override
-	public V put(K key, V value) {
-		try {
-			lock.writeLock().lock();
-			return super.put(key, value);
-		} finally {
-			lock.writeLock().unlock();
-		}
+	public void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
+		new CssMinifier(reader).minify(writer);
+		writer.flush();
 	}
-}
\ No newline at end of file
+}
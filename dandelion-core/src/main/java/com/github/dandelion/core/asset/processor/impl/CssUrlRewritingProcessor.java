@@ -29,23 +29,17 @@
  */
 package com.github.dandelion.core.asset.processor.impl;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.Reader;
 import java.io.Writer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.github.dandelion.core.Beta;
-import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
 import com.github.dandelion.core.asset.AssetType;
 import com.github.dandelion.core.asset.processor.CompatibleAssetType;
-import com.github.dandelion.core.asset.processor.spi.AbstractAssetProcessor;
+import com.github.dandelion.core.asset.processor.spi.AbstractStreamingAssetProcessor;
 import com.github.dandelion.core.utils.StringUtils;
 
 /**
@@ -86,9 +80,8 @@ import com.github.dandelion.core.utils.StringUtils;
  */
 @Beta
 @CompatibleAssetType(types = AssetType.css)
-public class CssUrlRewritingProcessor extends AbstractAssetProcessor {
+public class CssUrlRewritingProcessor extends AbstractStreamingAssetProcessor {
 
-	private static final Logger LOG = LoggerFactory.getLogger(CssUrlRewritingProcessor.class);
 	private Pattern pattern = Pattern.compile("url\\((.*)\\)", Pattern.CASE_INSENSITIVE);
 
 	/**
@@ -103,62 +96,103 @@ public class CssUrlRewritingProcessor extends AbstractAssetProcessor {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
+	public Writer open(Asset asset, Writer writer, Context context) {
+		this.context = context;
+		return new UrlRewritingWriter(asset, writer);
+	}
+
+	/**
+	 * <p>
+	 * Rewrites the relative paths of the given line.
+	 */
+	private String processLine(Asset asset, String line) {
+		Matcher matcher = pattern.matcher(line);
+		while (matcher.find()) {
 
-		BufferedReader bufferedReader = new BufferedReader(reader);
-		BufferedWriter bufferedWriter = new BufferedWriter(writer);
+			int lvl = StringUtils.countMatches(line, "..");
 
-		try {
-			String line = null;
+			if (lvl > 0) {
+				String tmp2 = null;
+				int c = lvl + 1;
+				for (int i = asset.getFinalLocation().length() - 1; i >= 0; i--) {
+					if (c > 0 && asset.getFinalLocation().charAt(i) == '/') {
+						tmp2 = asset.getFinalLocation().substring(0, i + 1);
+						c--;
+					}
 
-			while ((line = bufferedReader.readLine()) != null) {
+					if (c == 0) {
+						break;
+					}
+				}
+				line = line.replaceAll("(\\.\\./)+", tmp2);
+			}
+		}
+		return line;
+	}
 
-				Matcher matcher = pattern.matcher(line);
-				while (matcher.find()) {
+	/**
+	 * <p>
+	 * Writer splitting the content into lines, as
+	 * {@link java.io.BufferedReader#readLine()} does, and writing each
+	 * processed line followed by a line feed.
+	 */
+	private final class UrlRewritingWriter extends Writer {
 
-					int lvl = StringUtils.countMatches(line, "..");
+		private final Asset asset;
+		private final Writer writer;
+		private final StringBuilder line = new StringBuilder();
+		private boolean skipLineFeed;
+		private boolean closed;
 
-					if (lvl > 0) {
-						String tmp2 = null;
-						int c = lvl + 1;
-						for (int i = asset.getFinalLocation().length() - 1; i >= 0; i--) {
-							if (c > 0 && asset.getFinalLocation().charAt(i) == '/') {
-								tmp2 = asset.getFinalLocation().substring(0, i + 1);
-								c--;
-							}
+		private UrlRewritingWriter(Asset asset, Writer writer) {
+			this.asset = asset;
+			this.writer = writer;
+		}
 
-							if (c == 0) {
-								break;
-							}
-						}
-						line = line.replaceAll("(\\.\\./)+", tmp2);
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			int lineStart = off;
+			int end = off + len;
+			for (int i = off; i < end; i++) {
+				char c = cbuf[i];
+				if (c == '\n' || c == '\r') {
+					if (c == '\n' && skipLineFeed) {
+						// Second character of a CRLF sequence
+						lineStart = i + 1;
+					}
+					else {
+						line.append(cbuf, lineStart, i - lineStart);
+						writeLine();
+						lineStart = i + 1;
 					}
+					skipLineFeed = c == '\r';
+				}
+				else {
+					skipLineFeed = false;
 				}
-				bufferedWriter.write(line + '\n');
 			}
+			line.append(cbuf, lineStart, end - lineStart);
 		}
-		catch (IOException e) {
-			LOG.error("An error occurred when processing relative paths inside the asset " + asset.toLog());
-			throw DandelionException.wrap(e);
+
+		private void writeLine() throws IOException {
+			writer.write(processLine(asset, line.toString()));
+			writer.write('\n');
+			line.setLength(0);
 		}
-		finally {
-			try {
-				if (reader != null)
-					reader.close();
-			}
-			catch (IOException e) {
-				// Should never happen
-				LOG.error("An error occurred when processing relative paths inside the asset " + asset.toLog());
-				throw DandelionException.wrap(e);
-			}
-			try {
-				if (bufferedWriter != null)
-					bufferedWriter.close();
-			}
-			catch (IOException e) {
-				// Should never happen
-				LOG.error("An error occurred when processing relative paths inside the asset " + asset.toLog());
-				throw DandelionException.wrap(e);
+
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				if (line.length() > 0) {
+					writeLine();
+				}
+				writer.close();
 			}
 		}
 	}
@@ -29,8 +29,6 @@
  */
 package com.github.dandelion.core.asset.processor.impl;
 
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 
@@ -39,8 +37,6 @@ import com.github.dandelion.core.asset.AssetType;
 import com.github.dandelion.core.asset.processor.CompatibleAssetType;
 import com.github.dandelion.core.asset.processor.spi.AbstractAssetProcessor;
 import com.github.dandelion.core.asset.processor.vendor.JSMin;
-import com.github.dandelion.core.utils.ReaderInputStream;
-import com.github.dandelion.core.utils.WriterOutputStream;
 
 /**
  * <p>
@@ -65,17 +61,6 @@ public class JsMinProcessor extends AbstractAssetProcessor {
 	 */
 	@Override
 	public void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
-		InputStream is = new ReaderInputStream(reader, context.getConfiguration().getAssetProcessorEncoding());
-		OutputStream os = new WriterOutputStream(writer, context.getConfiguration().getAssetProcessorEncoding());
-		try {
-			new JSMin(is, os).jsmin();
-		}
-		catch (Exception e) {
-			throw e;
-		}
-		finally {
-			is.close();
-			os.close();
-		}
+		new JSMin(reader, writer).jsmin();
 	}
 }
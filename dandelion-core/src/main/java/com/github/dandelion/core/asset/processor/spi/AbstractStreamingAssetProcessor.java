@@ -0,0 +1,65 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor.spi;
+
+import java.io.Reader;
+import java.io.Writer;
+
+import com.github.dandelion.core.asset.Asset;
+
+/**
+ * <p>
+ * Abstract superclass for the {@link StreamingAssetProcessor}s, which can
+ * also be used as regular {@link AssetProcessor}s by streaming the content of
+ * the given {@link Reader} to the writer returned by
+ * {@link #open(Asset, Writer, com.github.dandelion.core.Context)}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public abstract class AbstractStreamingAssetProcessor extends AbstractAssetProcessor implements
+		StreamingAssetProcessor {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
+		Writer processingWriter = open(asset, writer, context);
+		char[] buffer = new char[BUFFER_SIZE];
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			processingWriter.write(buffer, 0, length);
+		}
+		processingWriter.close();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor.spi;
+
+import java.io.Writer;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.Asset;
+
+/**
+ * <p>
+ * SPI for the asset processors able to process a content as it is written,
+ * chunk by chunk. The processors applied on an asset are chained so that the
+ * content flows from one to the next in bounded chunks, without being copied
+ * entirely between them.
+ * 
+ * <p>
+ * The other {@link AssetProcessor}s are still supported in a chain, each of
+ * them being run on a separate thread reading its content from the previous
+ * processor through a bounded pipe.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public interface StreamingAssetProcessor extends AssetProcessor {
+
+	/**
+	 * <p>
+	 * Opens the processing of the given {@link Asset}.
+	 * 
+	 * @param asset
+	 *            The asset being processed.
+	 * @param writer
+	 *            The destination writer, receiving the processed content.
+	 * @param context
+	 *            The Dandelion context.
+	 * @return a writer receiving the content to process. Closing it signals
+	 *         the end of the content: the remaining processed content is
+	 *         written and the destination writer is closed.
+	 */
+	Writer open(Asset asset, Writer writer, Context context);
+}
@@ -35,11 +35,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.slf4j.Logger;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.DandelionException;
 import com.github.dandelion.core.storage.BundleStorageUnit;
@@ -62,7 +69,22 @@ import com.github.dandelion.core.utils.ResourceScanner;
  */
 public abstract class AbstractBundleLoader implements BundleLoader {
 
-	private ObjectMapper mapper = new ObjectMapper();
+	/**
+	 * Reader shared by all loaders. Once configured, an {@link ObjectReader}
+	 * is immutable and thus thread-safe.
+	 */
+	private static final ObjectReader BUNDLE_READER;
+	private static final JsonFactory BUNDLE_FACTORY;
+
+	static {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+		mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+		mapper.configure(JsonParser.Feature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER, true);
+		BUNDLE_READER = mapper.reader(BundleStorageUnit.class);
+		BUNDLE_FACTORY = mapper.getFactory();
+	}
+
 	protected Context context;
 
 	/**
@@ -75,45 +97,182 @@ public abstract class AbstractBundleLoader implements BundleLoader {
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * <p>
+	 * The JSON files are parsed in parallel when the {@link Context} provides
+	 * an executor for it, i.e. while the bundle storage is initialized. The
+	 * bundles are returned in the order of the scanned paths anyway.
 	 */
 	public List<BundleStorageUnit> loadBundles() {
 
-		mapper.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
-		mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-		mapper.configure(JsonParser.Feature.ALLOW_BACKSLASH_ESCAPING_ANY_CHARACTER, true);
+		Set<String> resourcePaths = getResourcePaths();
+
+		getLogger().debug("{} resources scanned inside the folder '{}'. Parsing to bundle...", resourcePaths.size(),
+				getPath());
+
+		final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		Executor executor = context != null ? context.getBundleLoadingExecutor() : null;
+
+		List<BundleStorageUnit> bundles = new ArrayList<BundleStorageUnit>(resourcePaths.size());
+		if (executor == null || resourcePaths.size() < 2) {
+			for (String resourcePath : resourcePaths) {
+				bundles.add(loadBundle(classLoader, resourcePath));
+			}
+			return bundles;
+		}
 
-		List<BundleStorageUnit> bundles = new ArrayList<BundleStorageUnit>();
+		List<FutureTask<BundleStorageUnit>> tasks = new ArrayList<FutureTask<BundleStorageUnit>>(
+				resourcePaths.size());
+		for (final String resourcePath : resourcePaths) {
+			FutureTask<BundleStorageUnit> task = new FutureTask<BundleStorageUnit>(new Callable<BundleStorageUnit>() {
+
+				@Override
+				public BundleStorageUnit call() {
+					return loadBundle(classLoader, resourcePath);
+				}
+			});
+			executor.execute(task);
+			tasks.add(task);
+		}
 
-		Set<String> resourcePaths = null;
 		try {
-			resourcePaths = ResourceScanner.findResourcePaths(getPath(), getExcludedPaths(), null, ".json",
-					isRecursive());
+			for (FutureTask<BundleStorageUnit> task : tasks) {
+				bundles.add(task.get());
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DandelionException("Interrupted while parsing the bundles of " + getPath(), e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof DandelionException) {
+				throw (DandelionException) e.getCause();
+			}
+			throw new DandelionException("Unable to parse the bundles of " + getPath(), e.getCause());
+		}
+		finally {
+			for (FutureTask<BundleStorageUnit> task : tasks) {
+				task.cancel(false);
+			}
+		}
+
+		return bundles;
+	}
+
+	/**
+	 * @return the paths of all JSON files containing the bundles of this
+	 *         loader.
+	 * @throws DandelionException
+	 *             if the classpath can't be scanned.
+	 */
+	public Set<String> getResourcePaths() {
+		try {
+			if (context != null) {
+				return context.getResourceScanner().scan(getPath(), getExcludedPaths(), null, null, ".json",
+						isRecursive());
+			}
+			return ResourceScanner.findResourcePaths(getPath(), getExcludedPaths(), null, ".json", isRecursive());
 		}
 		catch (IOException e) {
 			throw new DandelionException("Something went wrong when scanning files in " + getPath(), e);
 		}
+	}
 
-		getLogger().debug("{} resources scanned inside the folder '{}'. Parsing to bundle...", resourcePaths.size(),
-				getPath());
+	/**
+	 * <p>
+	 * Parses the bundle defined in the given JSON file.
+	 * 
+	 * @param classLoader
+	 *            The class loader used to read the file.
+	 * @param resourcePath
+	 *            The path of the JSON file.
+	 * @return the parsed bundle.
+	 * @throws DandelionException
+	 *             if the file can't be read or parsed.
+	 */
+	public BundleStorageUnit loadBundle(ClassLoader classLoader, String resourcePath) {
+		InputStream configFileStream = openResource(classLoader, resourcePath);
 
-		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		try {
+			BundleStorageUnit bsu = BUNDLE_READER.readValue(configFileStream);
+			getLogger().debug("Parsed {}", bsu);
+			return bsu;
+		}
+		catch (IOException e) {
+			StringBuilder sb = new StringBuilder("The file '");
+			sb.append(resourcePath);
+			sb.append("' is wrongly formatted. Please correct it before continuing.");
+			throw new DandelionException(sb.toString(), e);
+		}
+		finally {
+			try {
+				configFileStream.close();
+			}
+			catch (IOException e) {
+				getLogger().warn("Unable to close the file '{}'", resourcePath);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Reads the name of the bundle defined in the given JSON file, without
+	 * parsing the whole file: the top-level fields are skipped until the
+	 * {@code bundle} one is found.
+	 * 
+	 * @param classLoader
+	 *            The class loader used to read the file.
+	 * @param resourcePath
+	 *            The path of the JSON file.
+	 * @return the name of the bundle, or {@code null} if the file doesn't
+	 *         name its bundle.
+	 * @throws DandelionException
+	 *             if the file can't be read or parsed.
+	 */
+	public String readBundleName(ClassLoader classLoader, String resourcePath) {
+		InputStream configFileStream = openResource(classLoader, resourcePath);
 
-		for (String resourcePath : resourcePaths) {
+		try {
+			JsonParser parser = BUNDLE_FACTORY.createParser(configFileStream);
 			try {
-				InputStream configFileStream = classLoader.getResourceAsStream(resourcePath);
-				BundleStorageUnit bsu = mapper.readValue(configFileStream, BundleStorageUnit.class);
-				getLogger().debug("Parsed {}", bsu);
-				bundles.add(bsu);
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					return null;
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String fieldName = parser.getCurrentName();
+					if (parser.nextToken() == JsonToken.VALUE_STRING && "bundle".equals(fieldName)) {
+						return parser.getText();
+					}
+					parser.skipChildren();
+				}
+				return null;
+			}
+			finally {
+				parser.close();
+			}
+		}
+		catch (IOException e) {
+			StringBuilder sb = new StringBuilder("The file '");
+			sb.append(resourcePath);
+			sb.append("' is wrongly formatted. Please correct it before continuing.");
+			throw new DandelionException(sb.toString(), e);
+		}
+		finally {
+			try {
+				configFileStream.close();
 			}
 			catch (IOException e) {
-				StringBuilder sb = new StringBuilder("The file '");
-				sb.append(resourcePath);
-				sb.append("' is wrongly formatted. Please correct it before continuing.");
-				throw new DandelionException(sb.toString(), e);
+				getLogger().warn("Unable to close the file '{}'", resourcePath);
 			}
 		}
+	}
 
-		return bundles;
+	private InputStream openResource(ClassLoader classLoader, String resourcePath) {
+		InputStream configFileStream = classLoader.getResourceAsStream(resourcePath);
+		if (configFileStream == null) {
+			throw new DandelionException("The file '" + resourcePath + "' can't be read.");
+		}
+		return configFileStream;
 	}
 
 	protected abstract Logger getLogger();
@@ -73,13 +73,29 @@ public class Configuration {
 	private String assetProcessorEncoding;
 	private List<String> assetJsExcludes;
 	private List<String> assetCssExcludes;
+	private boolean injectionStreaming;
+	private int injectionSpillThreshold;
+	private int injectionBufferPoolSize;
 	private String cacheName;
 	private int cacheAssetMaxSize;
+	private long cacheAssetMaxBytes;
+	private int cacheOffHeapSlabSize;
+	private String cacheDiskLocation;
+	private long cacheDiskMaxBytes;
+	private String cacheDiskFingerprint;
+	private long cacheProcessedMaxBytes;
+	private String cacheProcessedLocation;
 	private int cacheRequestMaxSize;
 	private String cacheManagerName;
 	private String cacheConfigurationLocation;
+	private boolean cacheAssetKeyPerRequest;
+	private long cacheLoadingTimeout;
 	private List<String> bundleIncludes;
 	private List<String> bundleExcludes;
+	private int bundleLoadingThreads;
+	private String bundleSnapshotLocation;
+	private boolean bundleLoadingLazy;
+	private long bundleWatchInterval;
 
 	public Configuration(FilterConfig filterConfig, Properties userProperties) {
 		this.filterConfig = filterConfig;
@@ -118,6 +134,29 @@ public class Configuration {
 		this.assetJsExcludes = PropertiesUtils.propertyAsList(readConfig(DandelionConfig.ASSET_JS_EXCLUDES), ",");
 		this.assetCssExcludes = PropertiesUtils.propertyAsList(readConfig(DandelionConfig.ASSET_CSS_EXCLUDES), ",");
 
+		// Injection-related properties
+		this.injectionStreaming = Boolean.parseBoolean(readConfig(DandelionConfig.INJECTION_STREAMING));
+		try {
+			this.injectionSpillThreshold = Integer.parseInt(readConfig(DandelionConfig.INJECTION_SPILL_THRESHOLD));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.INJECTION_SPILL_THRESHOLD.getName(),
+					DandelionConfig.INJECTION_SPILL_THRESHOLD.getDefaultDevValue());
+			this.injectionSpillThreshold = Integer.parseInt(DandelionConfig.INJECTION_SPILL_THRESHOLD
+					.getDefaultDevValue());
+		}
+		try {
+			this.injectionBufferPoolSize = Integer.parseInt(readConfig(DandelionConfig.INJECTION_BUFFER_POOL_SIZE));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.INJECTION_BUFFER_POOL_SIZE.getName(),
+					DandelionConfig.INJECTION_BUFFER_POOL_SIZE.getDefaultDevValue());
+			this.injectionBufferPoolSize = Integer.parseInt(DandelionConfig.INJECTION_BUFFER_POOL_SIZE
+					.getDefaultDevValue());
+		}
+
 		// Caching-related properties
 		this.cacheName = readConfig(DandelionConfig.CACHE_NAME);
 		try {
@@ -129,6 +168,24 @@ public class Configuration {
 					DandelionConfig.CACHE_ASSET_MAX_SIZE.getDefaultDevValue());
 			this.cacheAssetMaxSize = Integer.parseInt(DandelionConfig.CACHE_ASSET_MAX_SIZE.getDefaultDevValue());
 		}
+		try {
+			this.cacheAssetMaxBytes = Long.parseLong(readConfig(DandelionConfig.CACHE_ASSET_MAX_BYTES));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.CACHE_ASSET_MAX_BYTES.getName(),
+					DandelionConfig.CACHE_ASSET_MAX_BYTES.getDefaultDevValue());
+			this.cacheAssetMaxBytes = Long.parseLong(DandelionConfig.CACHE_ASSET_MAX_BYTES.getDefaultDevValue());
+		}
+		try {
+			this.cacheOffHeapSlabSize = Integer.parseInt(readConfig(DandelionConfig.CACHE_OFFHEAP_SLAB_SIZE));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.CACHE_OFFHEAP_SLAB_SIZE.getName(),
+					DandelionConfig.CACHE_OFFHEAP_SLAB_SIZE.getDefaultDevValue());
+			this.cacheOffHeapSlabSize = Integer.parseInt(DandelionConfig.CACHE_OFFHEAP_SLAB_SIZE.getDefaultDevValue());
+		}
 		try {
 			this.cacheRequestMaxSize = Integer.parseInt(readConfig(DandelionConfig.CACHE_REQUEST_MAX_SIZE));
 		}
@@ -140,6 +197,58 @@ public class Configuration {
 		}
 		this.cacheManagerName = readConfig(DandelionConfig.CACHE_MANAGER_NAME);
 		this.cacheConfigurationLocation = readConfig(DandelionConfig.CACHE_CONFIGURATION_LOCATION);
+		this.cacheAssetKeyPerRequest = Boolean.parseBoolean(readConfig(DandelionConfig.CACHE_ASSET_KEY_PER_REQUEST));
+		try {
+			this.cacheLoadingTimeout = Long.parseLong(readConfig(DandelionConfig.CACHE_LOADING_TIMEOUT));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.CACHE_LOADING_TIMEOUT.getName(),
+					DandelionConfig.CACHE_LOADING_TIMEOUT.getDefaultDevValue());
+			this.cacheLoadingTimeout = Long.parseLong(DandelionConfig.CACHE_LOADING_TIMEOUT.getDefaultDevValue());
+		}
+		this.cacheDiskLocation = readConfig(DandelionConfig.CACHE_DISK_LOCATION);
+		try {
+			this.cacheDiskMaxBytes = Long.parseLong(readConfig(DandelionConfig.CACHE_DISK_MAX_BYTES));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.CACHE_DISK_MAX_BYTES.getName(),
+					DandelionConfig.CACHE_DISK_MAX_BYTES.getDefaultDevValue());
+			this.cacheDiskMaxBytes = Long.parseLong(DandelionConfig.CACHE_DISK_MAX_BYTES.getDefaultDevValue());
+		}
+		this.cacheDiskFingerprint = readConfig(DandelionConfig.CACHE_DISK_FINGERPRINT);
+		try {
+			this.cacheProcessedMaxBytes = Long.parseLong(readConfig(DandelionConfig.CACHE_PROCESSED_MAX_BYTES));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.CACHE_PROCESSED_MAX_BYTES.getName(),
+					DandelionConfig.CACHE_PROCESSED_MAX_BYTES.getDefaultDevValue());
+			this.cacheProcessedMaxBytes = Long.parseLong(DandelionConfig.CACHE_PROCESSED_MAX_BYTES
+					.getDefaultDevValue());
+		}
+		this.cacheProcessedLocation = readConfig(DandelionConfig.CACHE_PROCESSED_LOCATION);
+		try {
+			this.bundleLoadingThreads = Integer.parseInt(readConfig(DandelionConfig.BUNDLE_LOADING_THREADS));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.BUNDLE_LOADING_THREADS.getName(),
+					DandelionConfig.BUNDLE_LOADING_THREADS.getDefaultDevValue());
+			this.bundleLoadingThreads = Integer.parseInt(DandelionConfig.BUNDLE_LOADING_THREADS.getDefaultDevValue());
+		}
+		this.bundleSnapshotLocation = readConfig(DandelionConfig.BUNDLE_SNAPSHOT_LOCATION);
+		this.bundleLoadingLazy = Boolean.parseBoolean(readConfig(DandelionConfig.BUNDLE_LOADING_LAZY));
+		try {
+			this.bundleWatchInterval = Long.parseLong(readConfig(DandelionConfig.BUNDLE_WATCH_INTERVAL));
+		}
+		catch (NumberFormatException e) {
+			LOG.warn("The '{}' property is incorrectly configured. Falling back to the default value ({})",
+					DandelionConfig.BUNDLE_WATCH_INTERVAL.getName(),
+					DandelionConfig.BUNDLE_WATCH_INTERVAL.getDefaultDevValue());
+			this.bundleWatchInterval = Long.parseLong(DandelionConfig.BUNDLE_WATCH_INTERVAL.getDefaultDevValue());
+		}
 
 		// Configure Servlet3 flag
 		String overrideServlet3 = readConfig(DandelionConfig.OVERRIDE_SERVLET3);
@@ -179,10 +288,30 @@ public class Configuration {
 		return assetCssExcludes;
 	}
 
+	public boolean isInjectionStreaming() {
+		return injectionStreaming;
+	}
+
+	public int getInjectionSpillThreshold() {
+		return injectionSpillThreshold;
+	}
+
+	public int getInjectionBufferPoolSize() {
+		return injectionBufferPoolSize;
+	}
+
 	public int getCacheAssetMaxSize() {
 		return cacheAssetMaxSize;
 	}
 
+	public long getCacheAssetMaxBytes() {
+		return cacheAssetMaxBytes;
+	}
+
+	public int getCacheOffHeapSlabSize() {
+		return cacheOffHeapSlabSize;
+	}
+
 	public int getCacheRequestMaxSize() {
 		return cacheRequestMaxSize;
 	}
@@ -195,6 +324,75 @@ public class Configuration {
 		return cacheConfigurationLocation;
 	}
 
+	public boolean isCacheAssetKeyPerRequest() {
+		return cacheAssetKeyPerRequest;
+	}
+
+	public long getCacheLoadingTimeout() {
+		return cacheLoadingTimeout;
+	}
+
+	/**
+	 * @return the number of threads parsing the bundle definitions, the number
+	 *         of available processors if not strictly positive.
+	 */
+	public int getBundleLoadingThreads() {
+		return bundleLoadingThreads;
+	}
+
+	/**
+	 * @return the directory where the snapshot of the loaded bundles is
+	 *         written, blank if no snapshot is used.
+	 */
+	public String getBundleSnapshotLocation() {
+		return bundleSnapshotLocation;
+	}
+
+	/**
+	 * @return {@code true} if the bundles are only loaded the first time they
+	 *         are requested.
+	 */
+	public boolean isBundleLoadingLazy() {
+		return bundleLoadingLazy;
+	}
+
+	/**
+	 * @return the interval, in milliseconds, at which the bundle definitions
+	 *         and the asset files are checked for changes in development
+	 *         mode, {@code 0} if they are not watched.
+	 */
+	public long getBundleWatchInterval() {
+		return bundleWatchInterval;
+	}
+
+	public String getCacheDiskLocation() {
+		return cacheDiskLocation;
+	}
+
+	public long getCacheDiskMaxBytes() {
+		return cacheDiskMaxBytes;
+	}
+
+	public String getCacheDiskFingerprint() {
+		return cacheDiskFingerprint;
+	}
+
+	/**
+	 * @return the maximum size, in bytes, of the processed contents kept in
+	 *         memory by the processor result cache, {@code 0} to disable it.
+	 */
+	public long getCacheProcessedMaxBytes() {
+		return cacheProcessedMaxBytes;
+	}
+
+	/**
+	 * @return the directory where the processor result cache persists the
+	 *         processed contents, blank if they are not persisted.
+	 */
+	public String getCacheProcessedLocation() {
+		return cacheProcessedLocation;
+	}
+
 	public List<String> getBundleIncludes() {
 		return bundleIncludes;
 	}
@@ -207,6 +405,14 @@ public class Configuration {
 		return userProperties;
 	}
 
+	/**
+	 * @return the configuration of the Dandelion filter, {@code null} if the
+	 *         configuration hasn't been read from a filter.
+	 */
+	public FilterConfig getFilterConfig() {
+		return filterConfig;
+	}
+
 	public void setProperties(Properties properties) {
 		this.userProperties = properties;
 	}
@@ -305,6 +511,18 @@ public class Configuration {
 		this.assetCssExcludes = assetCssExcludes;
 	}
 
+	public void setInjectionStreaming(boolean injectionStreaming) {
+		this.injectionStreaming = injectionStreaming;
+	}
+
+	public void setInjectionSpillThreshold(int injectionSpillThreshold) {
+		this.injectionSpillThreshold = injectionSpillThreshold;
+	}
+
+	public void setInjectionBufferPoolSize(int injectionBufferPoolSize) {
+		this.injectionBufferPoolSize = injectionBufferPoolSize;
+	}
+
 	public String getCacheName() {
 		return cacheName;
 	}
@@ -317,6 +535,14 @@ public class Configuration {
 		this.cacheAssetMaxSize = cacheAssetMaxSize;
 	}
 
+	public void setCacheAssetMaxBytes(long cacheAssetMaxBytes) {
+		this.cacheAssetMaxBytes = cacheAssetMaxBytes;
+	}
+
+	public void setCacheOffHeapSlabSize(int cacheOffHeapSlabSize) {
+		this.cacheOffHeapSlabSize = cacheOffHeapSlabSize;
+	}
+
 	public void setCacheRequestMaxSize(int cacheRequestMaxSize) {
 		this.cacheRequestMaxSize = cacheRequestMaxSize;
 	}
@@ -329,6 +555,50 @@ public class Configuration {
 		this.cacheConfigurationLocation = cacheConfigurationLocation;
 	}
 
+	public void setCacheAssetKeyPerRequest(boolean cacheAssetKeyPerRequest) {
+		this.cacheAssetKeyPerRequest = cacheAssetKeyPerRequest;
+	}
+
+	public void setBundleLoadingThreads(int bundleLoadingThreads) {
+		this.bundleLoadingThreads = bundleLoadingThreads;
+	}
+
+	public void setBundleSnapshotLocation(String bundleSnapshotLocation) {
+		this.bundleSnapshotLocation = bundleSnapshotLocation;
+	}
+
+	public void setBundleLoadingLazy(boolean bundleLoadingLazy) {
+		this.bundleLoadingLazy = bundleLoadingLazy;
+	}
+
+	public void setBundleWatchInterval(long bundleWatchInterval) {
+		this.bundleWatchInterval = bundleWatchInterval;
+	}
+
+	public void setCacheLoadingTimeout(long cacheLoadingTimeout) {
+		this.cacheLoadingTimeout = cacheLoadingTimeout;
+	}
+
+	public void setCacheDiskLocation(String cacheDiskLocation) {
+		this.cacheDiskLocation = cacheDiskLocation;
+	}
+
+	public void setCacheDiskMaxBytes(long cacheDiskMaxBytes) {
+		this.cacheDiskMaxBytes = cacheDiskMaxBytes;
+	}
+
+	public void setCacheDiskFingerprint(String cacheDiskFingerprint) {
+		this.cacheDiskFingerprint = cacheDiskFingerprint;
+	}
+
+	public void setCacheProcessedMaxBytes(long cacheProcessedMaxBytes) {
+		this.cacheProcessedMaxBytes = cacheProcessedMaxBytes;
+	}
+
+	public void setCacheProcessedLocation(String cacheProcessedLocation) {
+		this.cacheProcessedLocation = cacheProcessedLocation;
+	}
+
 	public void setBundleIncludes(List<String> bundleIncludes) {
 		this.bundleIncludes = bundleIncludes;
 	}
@@ -56,16 +56,34 @@ public enum DandelionConfig {
 	ASSET_JS_EXCLUDES("asset.js.excludes", "", ""), 
 	ASSET_CSS_EXCLUDES("asset.css.excludes", "", ""),
 
+	// Injection configurations
+	INJECTION_STREAMING("injection.streaming", "false", "false"),
+	INJECTION_SPILL_THRESHOLD("injection.spill.threshold", "1048576", "1048576"),
+	INJECTION_BUFFER_POOL_SIZE("injection.buffer.pool.size", "256", "256"),
+
 	// Cache configurations
 	CACHE_NAME("cache.name", "", ""),
 	CACHE_ASSET_MAX_SIZE("cache.asset.max.size", "50", "50"), 
+	CACHE_ASSET_MAX_BYTES("cache.asset.max.bytes", "33554432", "33554432"),
+	CACHE_OFFHEAP_SLAB_SIZE("cache.offheap.slab.size", "1048576", "1048576"),
 	CACHE_REQUEST_MAX_SIZE("cache.request.max.size", "50", "50"), 
 	CACHE_MANAGER_NAME("cache.manager.name", "", ""), 
 	CACHE_CONFIGURATION_LOCATION("cache.configuration.location", "", ""),
+	CACHE_ASSET_KEY_PER_REQUEST("cache.asset.key.per.request", "false", "false"),
+	CACHE_LOADING_TIMEOUT("cache.loading.timeout", "30000", "30000"),
+	CACHE_DISK_LOCATION("cache.disk.location", "", ""),
+	CACHE_DISK_MAX_BYTES("cache.disk.max.bytes", "268435456", "268435456"),
+	CACHE_DISK_FINGERPRINT("cache.disk.fingerprint", "", ""),
+	CACHE_PROCESSED_MAX_BYTES("cache.processed.max.bytes", "16777216", "16777216"),
+	CACHE_PROCESSED_LOCATION("cache.processed.location", "", ""),
 
 	// Bundle configurations
 	BUNDLE_INCLUDES("bundle.includes", "", ""), 
-	BUNDLE_EXCLUDES("bundle.excludes", "", "");
+	BUNDLE_EXCLUDES("bundle.excludes", "", ""),
+	BUNDLE_LOADING_THREADS("bundle.loading.threads", "0", "0"),
+	BUNDLE_SNAPSHOT_LOCATION("bundle.snapshot.location", "", ""),
+	BUNDLE_LOADING_LAZY("bundle.loading.lazy", "false", "false"),
+	BUNDLE_WATCH_INTERVAL("bundle.watch.interval", "0", "0");
 
 	private String propertyName;
 	private String defaultDevValue;
@@ -33,6 +33,10 @@ import javax.servlet.FilterConfig;
 
 import com.github.dandelion.core.Beta;
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.cache.impl.ConcurrentWeightedCache;
+import com.github.dandelion.core.asset.cache.impl.MemoryAssetCache;
+import com.github.dandelion.core.asset.cache.impl.OffHeapAssetCache;
+import com.github.dandelion.core.asset.processor.ProcessorStatistics;
 
 /**
  * 
@@ -55,6 +59,7 @@ public class DandelionRuntime implements DandelionRuntimeMBean {
 	public void reloadBundles() {
 		// TODO Auto-generated method stub
 		System.out.println("RELOADING!!!");
+		context.getResourceScanner().clear();
 		context.initBundleStorage();
 		System.out.println("Context reloaded");
 	}
@@ -63,6 +68,10 @@ public class DandelionRuntime implements DandelionRuntimeMBean {
 	public void clearAllCache() {
 		System.out.println("Clearing all cache");
 		context.getAssetCache().clearAll();
+		if (context.getDiskAssetStore() != null) {
+			context.getDiskAssetStore().clear();
+		}
+		context.getProcessorManager().getResultCache().clear();
 		System.out.println("All caches cleared");
 	}
 
@@ -71,6 +80,78 @@ public class DandelionRuntime implements DandelionRuntimeMBean {
 		// TODO Auto-generated method stub
 		
 	}
-	
-	
+
+	@Override
+	public long getCoalescedLoadings() {
+		return context.getCacheManager().getCoalescedLoadings();
+	}
+
+	@Override
+	public long getCoalescingTimeouts() {
+		return context.getCacheManager().getCoalescingTimeouts();
+	}
+
+	@Override
+	public long getAssetCacheHits() {
+		ConcurrentWeightedCache<?, ?> cache = getMemoryCache();
+		return cache == null ? -1 : cache.getHitCount();
+	}
+
+	@Override
+	public long getAssetCacheMisses() {
+		ConcurrentWeightedCache<?, ?> cache = getMemoryCache();
+		return cache == null ? -1 : cache.getMissCount();
+	}
+
+	@Override
+	public long getAssetCacheEvictions() {
+		ConcurrentWeightedCache<?, ?> cache = getMemoryCache();
+		return cache == null ? -1 : cache.getEvictionCount();
+	}
+
+	@Override
+	public long getAssetCacheWeight() {
+		ConcurrentWeightedCache<?, ?> cache = getMemoryCache();
+		return cache == null ? -1 : cache.weight();
+	}
+
+	@Override
+	public long getAssetCacheOffHeapBytes() {
+		if (context.getAssetCache() instanceof OffHeapAssetCache) {
+			return ((OffHeapAssetCache) context.getAssetCache()).getAllocator().getReservedBytes();
+		}
+		return -1;
+	}
+
+	@Override
+	public String getBundleLoadingReport() {
+		return context.getBundleStorage().getLoadingReport().toString();
+	}
+
+	@Override
+	public String getProcessorStatistics() {
+		StringBuilder statistics = new StringBuilder();
+		for (ProcessorStatistics processorStatistics : context.getProcessorManager().getStatistics()) {
+			if (statistics.length() > 0) {
+				statistics.append('\n');
+			}
+			statistics.append(processorStatistics);
+		}
+		return statistics.toString();
+	}
+
+	/**
+	 * @return the store of the {@link MemoryAssetCache} or the index of the
+	 *         {@link OffHeapAssetCache} if one of them is the configured
+	 *         cache, {@code null} otherwise.
+	 */
+	private ConcurrentWeightedCache<?, ?> getMemoryCache() {
+		if (context.getAssetCache() instanceof MemoryAssetCache) {
+			return ((MemoryAssetCache) context.getAssetCache()).getCache();
+		}
+		if (context.getAssetCache() instanceof OffHeapAssetCache) {
+			return ((OffHeapAssetCache) context.getAssetCache()).getCache();
+		}
+		return null;
+	}
 }
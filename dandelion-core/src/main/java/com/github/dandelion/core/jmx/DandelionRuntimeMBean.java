@@ -42,4 +42,13 @@ public interface DandelionRuntimeMBean {
 	public void reloadBundles();
 	public void clearAllCache();
 	public void clearAssetCache();
+	public long getCoalescedLoadings();
+	public long getCoalescingTimeouts();
+	public long getAssetCacheHits();
+	public long getAssetCacheMisses();
+	public long getAssetCacheEvictions();
+	public long getAssetCacheWeight();
+	public long getAssetCacheOffHeapBytes();
+	public String getBundleLoadingReport();
+	public String getProcessorStatistics();
 }
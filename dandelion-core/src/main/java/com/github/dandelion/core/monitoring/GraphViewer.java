@@ -52,6 +52,7 @@ import com.github.dandelion.core.asset.AssetDomPosition;
 import com.github.dandelion.core.asset.AssetMapper;
 import com.github.dandelion.core.asset.AssetQuery;
 import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.storage.BundlePlan;
 import com.github.dandelion.core.storage.BundleStorageUnit;
 import com.github.dandelion.core.utils.ResourceUtils;
 import com.github.dandelion.core.utils.UrlUtils;
@@ -147,7 +148,13 @@ public class GraphViewer {
 		}
 
 		// Application nodes
-		List<BundleStorageUnit> allBundles = context.getBundleStorage().getBundleDag().getVerticies();
+		// The compiled plan is read rather than the graph, which may be
+		// updated concurrently when the bundles are loaded on demand
+		BundlePlan bundlePlan = context.getBundleStorage().getBundlePlan();
+		List<BundleStorageUnit> allBundles = new ArrayList<BundleStorageUnit>(bundlePlan.size());
+		for (int i = 0; i < bundlePlan.size(); i++) {
+			allBundles.add(bundlePlan.getBundle(i));
+		}
 		for (BundleStorageUnit bsu : allBundles) {
 			Map<String, Object> map = new HashMap<String, Object>();
 			map.put("label", bsu.getName());
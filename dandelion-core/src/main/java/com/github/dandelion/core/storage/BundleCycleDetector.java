@@ -29,115 +29,251 @@
  */
 package com.github.dandelion.core.storage;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import com.github.dandelion.core.DandelionException;
+
 /**
  * <p>
- * Cycle detector used by the {@link BundleDag}.
+ * Cycle detector used by the {@link BundleStorage} once bundles are loaded.
  * 
  * <p>
- * Part of this code has been kindly borrowed and adapted from Michal Maczka,
- * who contributed a DAG implementation to <a
- * href="http://plexus.codehaus.org/plexus-utils">Plexus Utils</a>.
+ * All cycles are found in a single pass, linear in the size of the graph,
+ * using Tarjan's strongly connected components algorithm: each component of
+ * more than one bundle, or made of a bundle depending on itself, contains at
+ * least one cycle. One cycle is reported per component, as the shortest path
+ * leading from its first bundle back to it.
  * 
  * @author Thibault Duchateau
  * @since 0.10.0
  */
 public class BundleCycleDetector {
 
-	private static Integer NOT_VISTITED = new Integer(0);
-	private static Integer VISITING = new Integer(1);
-	private static Integer VISITED = new Integer(2);
-
-	public static List<BundleStorageUnit> hasCycle(BundleDag graph) {
+	/**
+	 * <p>
+	 * Finds the cycles of the given graph.
+	 * 
+	 * @param graph
+	 *            The graph of bundles to check.
+	 * @return the cycles, each one starting and ending with the same bundle, in
+	 *         the order of the verticies of the graph. An empty list if the
+	 *         graph is acyclic.
+	 */
+	public static List<List<BundleStorageUnit>> findCycles(BundleDag graph) {
 		List<BundleStorageUnit> verticies = graph.getVerticies();
+		int count = verticies.size();
 
-		Map<BundleStorageUnit, Integer> vertexStateMap = new HashMap<BundleStorageUnit, Integer>();
-
-		List<BundleStorageUnit> retValue = null;
+		Map<String, Integer> ids = new HashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			ids.put(verticies.get(i).getName(), i);
+		}
+		int[][] edges = new int[count][];
+		for (int i = 0; i < count; i++) {
+			List<BundleStorageUnit> children = verticies.get(i).getChildren();
+			edges[i] = new int[children.size()];
+			for (int j = 0; j < edges[i].length; j++) {
+				edges[i][j] = ids.get(children.get(j).getName());
+			}
+		}
 
-		for (BundleStorageUnit vertex : verticies) {
-			if (isNotVisited(vertex, vertexStateMap)) {
-				retValue = introducesCycle(vertex, vertexStateMap);
+		// Vertices are scanned in order, so the first vertex met in a
+		// component is its lowest one
+		int[] components = findStronglyConnectedComponents(edges);
+		int[] componentSizes = new int[count];
+		for (int i = 0; i < count; i++) {
+			componentSizes[components[i]]++;
+		}
+		BitSet reported = new BitSet(count);
+		int[] parents = new int[count];
+		int[] visited = new int[count];
+		int[] queue = new int[count];
 
-				if (retValue != null) {
-					break;
+		List<List<BundleStorageUnit>> cycles = new ArrayList<List<BundleStorageUnit>>();
+		for (int first = 0; first < count; first++) {
+			int component = components[first];
+			if (reported.get(component)) {
+				continue;
+			}
+			reported.set(component);
+			if (componentSizes[component] > 1 || contains(edges[first], first)) {
+				List<BundleStorageUnit> cycle = new ArrayList<BundleStorageUnit>();
+				for (int id : shortestCycle(edges, components, first, parents, visited, queue)) {
+					cycle.add(verticies.get(id));
 				}
+				cycles.add(cycle);
 			}
 		}
+		return cycles;
+	}
 
-		return retValue;
+	/**
+	 * @param graph
+	 *            The graph of bundles to check.
+	 * @return the first cycle of the graph or {@code null} if the graph is
+	 *         acyclic.
+	 */
+	public static List<BundleStorageUnit> hasCycle(BundleDag graph) {
+		List<List<BundleStorageUnit>> cycles = findCycles(graph);
+		return cycles.isEmpty() ? null : cycles.get(0);
 	}
 
 	/**
-	 * This method will be called when an edge leading to given vertex was added
-	 * and we want to check if introduction of this edge has not resulted in
-	 * apparition of cycle in the graph
+	 * <p>
+	 * Checks that the given graph is acyclic.
 	 * 
-	 * @param vertex
-	 * @param vertexStateMap
-	 * @return
+	 * @param graph
+	 *            The graph of bundles to check.
+	 * @throws DandelionException
+	 *             listing all cycles if the graph contains any.
 	 */
-	public static List<BundleStorageUnit> introducesCycle(BundleStorageUnit vertex,
-			Map<BundleStorageUnit, Integer> vertexStateMap) {
-		LinkedList<BundleStorageUnit> cycleStack = new LinkedList<BundleStorageUnit>();
-
-		boolean hasCycle = dfsVisit(vertex, cycleStack, vertexStateMap);
-
-		if (hasCycle) {
-			BundleStorageUnit firstBsu = cycleStack.getFirst();
-			int pos = cycleStack.lastIndexOf(firstBsu);
-			List<BundleStorageUnit> cycle = cycleStack.subList(0, pos + 1);
-			Collections.reverse(cycle);
-			return cycle;
+	public static void checkAcyclic(BundleDag graph) {
+		List<List<BundleStorageUnit>> cycles = findCycles(graph);
+		if (cycles.isEmpty()) {
+			return;
 		}
 
-		return null;
-	}
-
-	public static List<BundleStorageUnit> introducesCycle(BundleStorageUnit vertex) {
-		Map<BundleStorageUnit, Integer> vertexStateMap = new HashMap<BundleStorageUnit, Integer>();
-		return introducesCycle(vertex, vertexStateMap);
+		StringBuilder sb = new StringBuilder();
+		sb.append(cycles.size() == 1 ? "A cycle has" : cycles.size() + " cycles have");
+		sb.append(" been detected in the bundle graph: ");
+		for (int i = 0; i < cycles.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			List<BundleStorageUnit> cycle = cycles.get(i);
+			for (int j = 0; j < cycle.size(); j++) {
+				if (j > 0) {
+					sb.append(" -> ");
+				}
+				sb.append(cycle.get(j).getName());
+			}
+		}
+		sb.append(".");
+		throw new DandelionException(sb.toString());
 	}
 
-	private static boolean isNotVisited(BundleStorageUnit vertex, Map<BundleStorageUnit, Integer> vertexStateMap) {
-		Integer state = vertexStateMap.get(vertex);
-		return (state == null) || NOT_VISTITED.equals(state);
-	}
+	/**
+	 * Iterative version of Tarjan's algorithm, so that deep graphs don't
+	 * overflow the stack.
+	 * 
+	 * @return the id of the component of each vertex.
+	 */
+	private static int[] findStronglyConnectedComponents(int[][] edges) {
+		int count = edges.length;
+		int[] index = new int[count];
+		int[] lowLink = new int[count];
+		BitSet onStack = new BitSet(count);
+		int[] stack = new int[count];
+		int stackSize = 0;
+		int[] callStack = new int[count];
+		int[] nextEdge = new int[count];
+		int nextIndex = 1;
 
-	private static boolean isVisiting(BundleStorageUnit vertex, Map<BundleStorageUnit, Integer> vertexStateMap) {
-		Integer state = vertexStateMap.get(vertex);
-		return VISITING.equals(state);
-	}
+		int[] components = new int[count];
+		int componentCount = 0;
+		for (int root = 0; root < count; root++) {
+			if (index[root] != 0) {
+				continue;
+			}
 
-	private static boolean dfsVisit(BundleStorageUnit vertex, LinkedList<BundleStorageUnit> cycle,
-			Map<BundleStorageUnit, Integer> vertexStateMap) {
-		cycle.addFirst(vertex);
+			int depth = 0;
+			callStack[depth] = root;
+			index[root] = nextIndex;
+			lowLink[root] = nextIndex++;
+			stack[stackSize++] = root;
+			onStack.set(root);
 
-		vertexStateMap.put(vertex, VISITING);
+			while (depth >= 0) {
+				int vertex = callStack[depth];
+				if (nextEdge[vertex] < edges[vertex].length) {
+					int child = edges[vertex][nextEdge[vertex]++];
+					if (index[child] == 0) {
+						index[child] = nextIndex;
+						lowLink[child] = nextIndex++;
+						stack[stackSize++] = child;
+						onStack.set(child);
+						callStack[++depth] = child;
+					}
+					else if (onStack.get(child)) {
+						lowLink[vertex] = Math.min(lowLink[vertex], index[child]);
+					}
+					continue;
+				}
 
-		for (BundleStorageUnit v : vertex.getChildren()) {
-			if (isNotVisited(v, vertexStateMap)) {
-				boolean hasCycle = dfsVisit(v, cycle, vertexStateMap);
+				// All children visited, the vertex may be the root of a
+				// component
+				if (lowLink[vertex] == index[vertex]) {
+					int member;
+					do {
+						member = stack[--stackSize];
+						onStack.clear(member);
+						components[member] = componentCount;
+					}
+					while (member != vertex);
+					componentCount++;
+				}
 
-				if (hasCycle) {
-					return true;
+				depth--;
+				if (depth >= 0) {
+					int parent = callStack[depth];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
 				}
 			}
-			else if (isVisiting(v, vertexStateMap)) {
-				cycle.addFirst(v);
+		}
+		return components;
+	}
 
-				return true;
+	/**
+	 * Breadth-first search, restricted to the component of the given vertex,
+	 * of the shortest path leading from this vertex back to it. The work
+	 * arrays are shared between the searches, the vertices being marked as
+	 * visited with the id of the component, plus one, so that each search only
+	 * costs the size of its component.
+	 */
+	private static List<Integer> shortestCycle(int[][] edges, int[] components, int start, int[] parents,
+			int[] visited, int[] queue) {
+		int component = components[start];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		visited[start] = component + 1;
+
+		int last = -1;
+		while (head < tail && last == -1) {
+			int vertex = queue[head++];
+			for (int child : edges[vertex]) {
+				if (child == start) {
+					last = vertex;
+					break;
+				}
+				if (components[child] == component && visited[child] != component + 1) {
+					visited[child] = component + 1;
+					parents[child] = vertex;
+					queue[tail++] = child;
+				}
 			}
 		}
-		vertexStateMap.put(vertex, VISITED);
 
-		cycle.removeFirst();
+		List<Integer> cycle = new ArrayList<Integer>();
+		cycle.add(start);
+		for (int vertex = last; vertex != start; vertex = parents[vertex]) {
+			cycle.add(vertex);
+		}
+		cycle.add(start);
+		Collections.reverse(cycle);
+		return cycle;
+	}
 
+	private static boolean contains(int[] values, int value) {
+		for (int candidate : values) {
+			if (candidate == value) {
+				return true;
+			}
+		}
 		return false;
 	}
-}
\ No newline at end of file
+}
@@ -35,8 +35,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import com.github.dandelion.core.DandelionException;
-
 /**
  * <p>
  * Implementation of a directed acyclic graph adapted to Dandelion.
@@ -85,19 +83,14 @@ public class BundleDag {
 		return retValue;
 	}
 
+	/**
+	 * <p>
+	 * Adds an edge between two bundles. Cycles are not checked here but once
+	 * all edges are added, see {@link BundleCycleDetector}.
+	 */
 	public void addEdge(BundleStorageUnit from, BundleStorageUnit to) {
-
 		from.addEdgeTo(to);
 		to.addEdgeFrom(from);
-
-		List<BundleStorageUnit> cycle = BundleCycleDetector.introducesCycle(to);
-
-		if (cycle != null) {
-			StringBuilder sb = new StringBuilder("A cycle has been detected in the asset graph for the bundle ");
-			sb.append(from.getName());
-			sb.append(".");
-			throw new DandelionException(sb.toString());
-		}
 	}
 
 	public void removeEdge(BundleStorageUnit from, BundleStorageUnit to) {
@@ -105,6 +98,15 @@ public class BundleDag {
 		to.removeEdgeFrom(from);
 	}
 
+	/**
+	 * <p>
+	 * Removes a vertex from the DAG. Its edges must have been removed first.
+	 */
+	public void removeVertex(BundleStorageUnit bsu) {
+		vertexMap.remove(bsu.getName());
+		vertexList.remove(bsu);
+	}
+
 	public Map<String, BundleStorageUnit> getVertexMap() {
 		return this.vertexMap;
 	}
@@ -0,0 +1,175 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
+
+/**
+ * <p>
+ * Index of the JSON files defining each bundle, used to load the bundles on
+ * demand rather than all of them at startup.
+ * 
+ * <p>
+ * The index is built by reading only the name of the bundle from each JSON
+ * file. A bundle may be defined by several files, e.g. a vendor bundle
+ * extended by the application, in which case they are loaded in the order
+ * of the loaders. Once built, the index is immutable and may be shared
+ * between threads.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public final class BundleIndex {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(BundleIndex.class);
+
+	private final ClassLoader classLoader;
+	private final Map<String, List<Source>> sources = new HashMap<String, List<Source>>();
+	private int fileCount;
+
+	private BundleIndex(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * <p>
+	 * Indexes the JSON files of the given loaders.
+	 * 
+	 * @param bundleLoaders
+	 *            The loaders, in the order they are run.
+	 * @param classLoader
+	 *            The class loader used to read the JSON files.
+	 * @return the index, or {@code null} if one of the loaders doesn't expose
+	 *         the files it reads, in which case the bundles can't be loaded on
+	 *         demand.
+	 */
+	public static BundleIndex build(List<BundleLoader> bundleLoaders, ClassLoader classLoader) {
+		for (BundleLoader bundleLoader : bundleLoaders) {
+			if (!(bundleLoader instanceof AbstractBundleLoader)) {
+				LOG.info("The loader {} doesn't expose its resources, the bundles can't be loaded on demand",
+						bundleLoader.getName());
+				return null;
+			}
+		}
+
+		BundleIndex bundleIndex = new BundleIndex(classLoader);
+		for (BundleLoader bundleLoader : bundleLoaders) {
+			AbstractBundleLoader loader = (AbstractBundleLoader) bundleLoader;
+			for (String resourcePath : loader.getResourcePaths()) {
+				String bundleName = loader.readBundleName(classLoader, resourcePath);
+				if (bundleName == null) {
+					LOG.warn("The file '{}' doesn't define the name of its bundle and is ignored", resourcePath);
+					continue;
+				}
+
+				List<Source> bundleSources = bundleIndex.sources.get(bundleName);
+				if (bundleSources == null) {
+					bundleSources = new ArrayList<Source>(1);
+					bundleIndex.sources.put(bundleName, bundleSources);
+				}
+				bundleSources.add(new Source(loader, resourcePath));
+				bundleIndex.fileCount++;
+			}
+		}
+		return bundleIndex;
+	}
+
+	/**
+	 * @param bundleName
+	 *            The name of a bundle.
+	 * @return {@code true} if at least one JSON file defines the bundle.
+	 */
+	public boolean contains(String bundleName) {
+		return sources.containsKey(bundleName);
+	}
+
+	/**
+	 * <p>
+	 * Parses all JSON files defining the given bundle.
+	 * 
+	 * @param bundleName
+	 *            The name of the bundle.
+	 * @return the parsed bundles, in the order of the loaders, empty if the
+	 *         bundle isn't indexed.
+	 */
+	public List<BundleStorageUnit> load(String bundleName) {
+		List<Source> bundleSources = sources.get(bundleName);
+		if (bundleSources == null) {
+			return Collections.emptyList();
+		}
+
+		List<BundleStorageUnit> bundles = new ArrayList<BundleStorageUnit>(bundleSources.size());
+		for (Source source : bundleSources) {
+			LOG.debug("Loading the bundle '{}' from {}", bundleName, source.resourcePath);
+			bundles.add(source.loader.loadBundle(classLoader, source.resourcePath));
+		}
+		return bundles;
+	}
+
+	/**
+	 * @return the names of all indexed bundles.
+	 */
+	public Set<String> getBundleNames() {
+		return Collections.unmodifiableSet(sources.keySet());
+	}
+
+	/**
+	 * @return the number of indexed JSON files.
+	 */
+	public int getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * A JSON file together with the loader it comes from.
+	 */
+	private static final class Source {
+
+		private final AbstractBundleLoader loader;
+		private final String resourcePath;
+
+		private Source(AbstractBundleLoader loader, String resourcePath) {
+			this.loader = loader;
+			this.resourcePath = resourcePath;
+		}
+	}
+}
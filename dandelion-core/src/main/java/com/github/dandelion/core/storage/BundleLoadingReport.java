@@ -0,0 +1,147 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Report of the loading of the bundles into the {@link BundleStorage}, listing
+ * the assets overridden by other ones and the time spent by each bundle
+ * loader.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class BundleLoadingReport {
+
+	private final List<String> overrides = new ArrayList<String>();
+	private final List<String> loaderTimings = new ArrayList<String>();
+	private long totalNanos;
+
+	/**
+	 * <p>
+	 * Records that an asset has been overridden by an asset of the same name
+	 * and type.
+	 * 
+	 * @param name
+	 *            The name of the asset.
+	 * @param type
+	 *            The type of the asset.
+	 * @param replacedVersion
+	 *            The version of the overridden asset.
+	 * @param replacedBundle
+	 *            The bundle holding the overridden asset.
+	 * @param version
+	 *            The version of the overriding asset.
+	 * @param bundle
+	 *            The bundle the overriding asset comes from.
+	 */
+	public synchronized void addOverride(String name, Object type, String replacedVersion, String replacedBundle,
+			String version, String bundle) {
+		StringBuilder override = new StringBuilder();
+		override.append(name).append(" (").append(type).append(") ");
+		override.append(replacedVersion).append(" from '").append(replacedBundle).append("'");
+		override.append(" overridden by ");
+		override.append(version).append(" from '").append(bundle).append("'");
+		overrides.add(override.toString());
+	}
+
+	/**
+	 * <p>
+	 * Records an override already described, e.g. by a snapshot.
+	 */
+	synchronized void addOverride(String description) {
+		overrides.add(description);
+	}
+
+	/**
+	 * <p>
+	 * Records the time spent by a bundle loader.
+	 * 
+	 * @param loaderName
+	 *            The name of the loader.
+	 * @param bundleCount
+	 *            The number of bundles it has loaded.
+	 * @param loadingNanos
+	 *            The time spent loading the bundles.
+	 * @param storingNanos
+	 *            The time spent storing the bundles into the bundle graph.
+	 */
+	public synchronized void addLoaderTiming(String loaderName, int bundleCount, long loadingNanos, long storingNanos) {
+		StringBuilder timing = new StringBuilder();
+		timing.append(loaderName).append(": ").append(bundleCount).append(" bundle(s) loaded in ");
+		timing.append(toMillis(loadingNanos)).append(" ms, stored in ").append(toMillis(storingNanos)).append(" ms");
+		loaderTimings.add(timing.toString());
+		totalNanos += loadingNanos + storingNanos;
+	}
+
+	/**
+	 * @return a description of each override, in order of occurrence.
+	 */
+	public synchronized List<String> getOverrides() {
+		return Collections.unmodifiableList(new ArrayList<String>(overrides));
+	}
+
+	/**
+	 * @return a description of the time spent by each loader, in order of
+	 *         execution.
+	 */
+	public synchronized List<String> getLoaderTimings() {
+		return Collections.unmodifiableList(new ArrayList<String>(loaderTimings));
+	}
+
+	/**
+	 * @return the time spent by all loaders, in milliseconds.
+	 */
+	public synchronized long getTotalMillis() {
+		return toMillis(totalNanos);
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1000000L;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder report = new StringBuilder("Bundles loaded in ");
+		report.append(getTotalMillis()).append(" ms");
+		for (String timing : loaderTimings) {
+			report.append("\n  ").append(timing);
+		}
+		report.append("\n").append(overrides.size()).append(" asset(s) overridden");
+		for (String override : overrides) {
+			report.append("\n  ").append(override);
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.storage;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Immutable, compiled form of a {@link BundleDag}, used to resolve the bundles
+ * requested by a page without traversing the graph.
+ * 
+ * <p>
+ * Bundles are numbered in the order of {@link BundleDag#getVerticies()}. The
+ * edges and the transitive closure of each bundle are stored in flat arrays,
+ * the closure being already sorted the same way as
+ * {@link TopologicalSorter#sort(BundleStorageUnit)}: dependencies first, the
+ * bundle itself last. Resolving several bundles merges their closures in the
+ * requested order, a {@link BitSet} skipping the bundles already added.
+ * 
+ * <p>
+ * The plan reflects the graph at compilation time and must be compiled again
+ * once the graph has changed.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public final class BundlePlan {
+
+	private final BundleStorageUnit[] bundles;
+	private final Map<String, Integer> ids;
+
+	/**
+	 * Children of the bundle {@code i}, i.e. its direct dependencies, stored in
+	 * {@code edges[edgeOffsets[i]..edgeOffsets[i + 1]]}.
+	 */
+	private final int[] edgeOffsets;
+	private final int[] edges;
+
+	/**
+	 * Ordered transitive closure of the bundle {@code i}, stored in
+	 * {@code closures[closureOffsets[i]..closureOffsets[i + 1]]}.
+	 */
+	private final int[] closureOffsets;
+	private final int[] closures;
+
+	private BundlePlan(BundleStorageUnit[] bundles, Map<String, Integer> ids, int[] edgeOffsets, int[] edges,
+			int[] closureOffsets, int[] closures) {
+		this.bundles = bundles;
+		this.ids = ids;
+		this.edgeOffsets = edgeOffsets;
+		this.edges = edges;
+		this.closureOffsets = closureOffsets;
+		this.closures = closures;
+	}
+
+	/**
+	 * <p>
+	 * Compiles the given graph.
+	 * 
+	 * @param bundleDag
+	 *            The graph of bundles, assumed to be acyclic.
+	 * @return the compiled plan.
+	 */
+	public static BundlePlan compile(BundleDag bundleDag) {
+		List<BundleStorageUnit> verticies = bundleDag.getVerticies();
+		int count = verticies.size();
+
+		BundleStorageUnit[] bundles = verticies.toArray(new BundleStorageUnit[count]);
+		Map<String, Integer> ids = new HashMap<String, Integer>(count * 2);
+		for (int i = 0; i < count; i++) {
+			ids.put(bundles[i].getName(), i);
+		}
+
+		int[] edgeOffsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			edgeOffsets[i + 1] = edgeOffsets[i] + bundles[i].getChildren().size();
+		}
+		int[] edges = new int[edgeOffsets[count]];
+		for (int i = 0; i < count; i++) {
+			int edge = edgeOffsets[i];
+			for (BundleStorageUnit child : bundles[i].getChildren()) {
+				edges[edge++] = ids.get(child.getName());
+			}
+		}
+
+		int[] closureOffsets = new int[count + 1];
+		int[] closures = new int[count];
+		int[] closure = new int[count];
+		BitSet visited = new BitSet(count);
+		int[] stack = new int[count];
+		int[] nextEdges = new int[count];
+		for (int i = 0; i < count; i++) {
+			visited.clear();
+			int size = visit(i, edgeOffsets, edges, visited, closure, stack, nextEdges);
+
+			closureOffsets[i + 1] = closureOffsets[i] + size;
+			if (closureOffsets[i + 1] > closures.length) {
+				int[] grown = new int[Math.max(closures.length * 2, closureOffsets[i + 1])];
+				System.arraycopy(closures, 0, grown, 0, closureOffsets[i]);
+				closures = grown;
+			}
+			System.arraycopy(closure, 0, closures, closureOffsets[i], size);
+		}
+		if (closures.length > closureOffsets[count]) {
+			int[] trimmed = new int[closureOffsets[count]];
+			System.arraycopy(closures, 0, trimmed, 0, trimmed.length);
+			closures = trimmed;
+		}
+
+		return new BundlePlan(bundles, ids, edgeOffsets, edges, closureOffsets, closures);
+	}
+
+	/**
+	 * Depth-first post-order visit, identical to the one of the
+	 * {@link TopologicalSorter}. The visit is iterative, using the given
+	 * arrays as stack, so that long chains of dependencies don't overflow the
+	 * thread stack.
+	 * 
+	 * @return the number of bundles written in {@code closure}.
+	 */
+	private static int visit(int root, int[] edgeOffsets, int[] edges, BitSet visited, int[] closure, int[] stack,
+			int[] nextEdges) {
+		int size = 0;
+		int depth = 0;
+		stack[0] = root;
+		nextEdges[0] = edgeOffsets[root];
+		visited.set(root);
+
+		while (depth >= 0) {
+			int id = stack[depth];
+			int edge = nextEdges[depth];
+			if (edge < edgeOffsets[id + 1]) {
+				nextEdges[depth] = edge + 1;
+				int child = edges[edge];
+				if (!visited.get(child)) {
+					visited.set(child);
+					stack[++depth] = child;
+					nextEdges[depth] = edgeOffsets[child];
+				}
+			}
+			else {
+				// All dependencies visited
+				closure[size++] = id;
+				depth--;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * <p>
+	 * Resolves the given bundles and all the bundles they depend on.
+	 * 
+	 * @param bundleNames
+	 *            The names of the requested bundles. Unknown names are ignored.
+	 * @return the bundles to load, in the order of the topological sort of each
+	 *         requested bundle, each bundle appearing only once. The returned
+	 *         set may be unmodifiable.
+	 */
+	public Set<BundleStorageUnit> resolve(String... bundleNames) {
+		if (bundleNames.length == 1) {
+			return resolve(bundleNames[0].trim());
+		}
+
+		Set<BundleStorageUnit> retval = new LinkedHashSet<BundleStorageUnit>();
+		BitSet added = new BitSet(bundles.length);
+		for (String bundleName : bundleNames) {
+			Integer id = ids.get(bundleName.trim());
+			if (id == null) {
+				continue;
+			}
+			for (int i = closureOffsets[id]; i < closureOffsets[id + 1]; i++) {
+				int dependency = closures[i];
+				if (!added.get(dependency)) {
+					added.set(dependency);
+					retval.add(bundles[dependency]);
+				}
+			}
+		}
+		return retval;
+	}
+
+	private Set<BundleStorageUnit> resolve(String bundleName) {
+		Integer id = ids.get(bundleName);
+		if (id == null) {
+			return Collections.emptySet();
+		}
+
+		int from = closureOffsets[id];
+		int to = closureOffsets[id + 1];
+		if (to - from == 1) {
+			return Collections.singleton(bundles[id]);
+		}
+
+		Set<BundleStorageUnit> retval = new LinkedHashSet<BundleStorageUnit>(to - from, 1f);
+		for (int i = from; i < to; i++) {
+			retval.add(bundles[closures[i]]);
+		}
+		return retval;
+	}
+
+	/**
+	 * @param bundleName
+	 *            The name of a bundle.
+	 * @return the id of the bundle in this plan, or {@code -1} if it is
+	 *         unknown.
+	 */
+	public int getId(String bundleName) {
+		Integer id = ids.get(bundleName);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id
+	 *            The id of a bundle.
+	 * @return the bundle.
+	 */
+	public BundleStorageUnit getBundle(int id) {
+		return bundles[id];
+	}
+
+	/**
+	 * @return the number of bundles in this plan.
+	 */
+	public int size() {
+		return bundles.length;
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.asset.AssetDomPosition;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
+import com.github.dandelion.core.utils.Sha1Utils;
+
+/**
+ * <p>
+ * Binary snapshot of a {@link BundleStorage}, allowing to restore the bundle
+ * graph at startup without scanning and parsing all the JSON files again.
+ * 
+ * <p>
+ * The snapshot contains the bundles of the graph, in the order of the graph,
+ * with their assets as they are once all overrides are applied, and the edges
+ * between them. It is preceded by a fingerprint of the JSON files read by the
+ * bundle loaders, made of their path, size and last modification date. For
+ * files packaged in a JAR, the size and date of the JAR are used. A snapshot
+ * is only read back if the fingerprint of the current files matches.
+ * 
+ * <p>
+ * The snapshot ends with a CRC-32 of its content, so that a truncated or
+ * corrupted file is detected and ignored.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public final class BundleSnapshot {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(BundleSnapshot.class);
+
+	public static final String FILE_NAME = "bundles.snapshot";
+
+	private static final int MAGIC = 0x44424e53;
+	private static final int FORMAT_VERSION = 1;
+	private static final int BUFFER_SIZE = 8192;
+
+	private BundleSnapshot() {
+	}
+
+	/**
+	 * <p>
+	 * Computes the fingerprint of the JSON files read by the given loaders.
+	 * 
+	 * @param bundleLoaders
+	 *            The loaders, in the order they are run.
+	 * @param classLoader
+	 *            The class loader used to read the JSON files.
+	 * @return the fingerprint, or {@code null} if one of the loaders doesn't
+	 *         expose the files it reads, in which case no snapshot can be
+	 *         used.
+	 */
+	public static String fingerprint(List<BundleLoader> bundleLoaders, ClassLoader classLoader) {
+		StringBuilder fingerprint = new StringBuilder();
+		Map<String, String> archiveStamps = new HashMap<String, String>();
+		for (BundleLoader bundleLoader : bundleLoaders) {
+			if (!(bundleLoader instanceof AbstractBundleLoader)) {
+				LOG.debug("The loader {} doesn't expose its resources, the bundle snapshot is not used",
+						bundleLoader.getName());
+				return null;
+			}
+
+			fingerprint.append(bundleLoader.getClass().getName()).append('\n');
+			Set<String> resourcePaths = new TreeSet<String>(((AbstractBundleLoader) bundleLoader).getResourcePaths());
+			for (String resourcePath : resourcePaths) {
+				fingerprint.append(resourcePath).append('|');
+				fingerprint.append(getStamp(classLoader.getResource(resourcePath), archiveStamps)).append('\n');
+			}
+		}
+
+		try {
+			return Sha1Utils.generateSha1(fingerprint.toString().getBytes("UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the size and last modification date of the file behind the
+	 *         given URL, or of the archive containing it.
+	 */
+	private static String getStamp(URL url, Map<String, String> archiveStamps) {
+		if (url == null) {
+			return "missing";
+		}
+
+		try {
+			String protocol = url.getProtocol();
+			if ("file".equals(protocol)) {
+				return getStamp(new File(URLDecoder.decode(url.getPath(), "UTF-8")));
+			}
+
+			String externalForm = url.toExternalForm();
+			int separator = externalForm.indexOf("!/");
+			if (separator != -1) {
+				String archive = externalForm.substring(protocol.length() + 1, separator);
+				String stamp = archiveStamps.get(archive);
+				if (stamp == null) {
+					File archiveFile = archive.startsWith("file:") ? new File(URLDecoder.decode(
+							new URL(archive).getPath(), "UTF-8")) : new File(archive);
+					stamp = archiveFile.isFile() ? getStamp(archiveFile) : getStamp(url.openConnection());
+					archiveStamps.put(archive, stamp);
+				}
+				return stamp;
+			}
+			return getStamp(url.openConnection());
+		}
+		catch (IOException e) {
+			// The snapshot will never match
+			return "unreadable:" + System.nanoTime();
+		}
+	}
+
+	private static String getStamp(File file) {
+		return file.length() + ":" + file.lastModified();
+	}
+
+	private static String getStamp(URLConnection connection) {
+		connection.setUseCaches(false);
+		return connection.getContentLength() + ":" + connection.getLastModified();
+	}
+
+	/**
+	 * <p>
+	 * Restores the bundle storage saved in the given file.
+	 * 
+	 * @param file
+	 *            The snapshot file.
+	 * @param fingerprint
+	 *            The fingerprint of the current JSON files.
+	 * @return the restored storage, or {@code null} if the file doesn't exist,
+	 *         doesn't match the fingerprint or is corrupted.
+	 */
+	public static BundleStorage read(File file, String fingerprint) {
+		CheckedInputStream checkedStream;
+		try {
+			checkedStream = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE),
+					new CRC32());
+		}
+		catch (FileNotFoundException e) {
+			LOG.debug("No bundle snapshot found at {}", file.getAbsolutePath());
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(checkedStream);
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !fingerprint.equals(in.readUTF())) {
+				LOG.info("The bundle snapshot {} is stale and is ignored", file.getAbsolutePath());
+				return null;
+			}
+
+			BundleStorage bundleStorage = new BundleStorage();
+			BundleDag bundleDag = bundleStorage.getBundleDag();
+			int bundleCount = in.readInt();
+			List<BundleStorageUnit> bundles = new ArrayList<BundleStorageUnit>(bundleCount);
+			for (int i = 0; i < bundleCount; i++) {
+				BundleStorageUnit bsu = bundleDag.addVertexIfNeeded(in.readUTF());
+				int assetCount = in.readInt();
+				for (int j = 0; j < assetCount; j++) {
+					AssetStorageUnit asu = readAsset(in);
+					bsu.getAssetStorageUnits().add(asu);
+					bundleStorage.indexAsset(asu, bsu);
+				}
+				bundles.add(bsu);
+			}
+
+			for (BundleStorageUnit bsu : bundles) {
+				int childCount = in.readInt();
+				for (int j = 0; j < childCount; j++) {
+					bsu.addEdgeTo(bundles.get(in.readInt()));
+				}
+				int parentCount = in.readInt();
+				for (int j = 0; j < parentCount; j++) {
+					bsu.addEdgeFrom(bundles.get(in.readInt()));
+				}
+			}
+
+			int overrideCount = in.readInt();
+			for (int i = 0; i < overrideCount; i++) {
+				bundleStorage.getLoadingReport().addOverride(in.readUTF());
+			}
+
+			long checksum = checkedStream.getChecksum().getValue();
+			if (in.readLong() != checksum || in.read() != -1) {
+				LOG.warn("The bundle snapshot {} is corrupted and is ignored", file.getAbsolutePath());
+				return null;
+			}
+			return bundleStorage;
+		}
+		catch (IOException e) {
+			LOG.warn("The bundle snapshot {} can't be read and is ignored: {}", file.getAbsolutePath(), e.toString());
+			return null;
+		}
+		catch (RuntimeException e) {
+			LOG.warn("The bundle snapshot {} is corrupted and is ignored: {}", file.getAbsolutePath(), e.toString());
+			return null;
+		}
+		finally {
+			close(in, file);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Saves the given bundle storage to the given file. The snapshot is first
+	 * written to a temporary file, which then replaces the previous snapshot.
+	 * 
+	 * @param file
+	 *            The snapshot file.
+	 * @param fingerprint
+	 *            The fingerprint of the JSON files the bundles come from.
+	 * @param bundleStorage
+	 *            The storage to save.
+	 * @throws IOException
+	 *             if the snapshot can't be written.
+	 */
+	public static void write(File file, String fingerprint, BundleStorage bundleStorage) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create the directory " + directory.getAbsolutePath());
+		}
+
+		File tmpFile = new File(directory, file.getName() + ".tmp");
+		CheckedOutputStream checkedStream = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(
+				tmpFile), BUFFER_SIZE), new CRC32());
+		DataOutputStream out = new DataOutputStream(checkedStream);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(fingerprint);
+
+			List<BundleStorageUnit> bundles = bundleStorage.getBundleDag().getVerticies();
+			Map<BundleStorageUnit, Integer> ids = new IdentityHashMap<BundleStorageUnit, Integer>();
+			out.writeInt(bundles.size());
+			for (BundleStorageUnit bsu : bundles) {
+				ids.put(bsu, ids.size());
+				out.writeUTF(bsu.getName());
+				Set<AssetStorageUnit> asus = bsu.getAssetStorageUnits();
+				out.writeInt(asus == null ? 0 : asus.size());
+				if (asus != null) {
+					for (AssetStorageUnit asu : asus) {
+						writeAsset(out, asu);
+					}
+				}
+			}
+
+			for (BundleStorageUnit bsu : bundles) {
+				writeIds(out, bsu.getChildren(), ids);
+				writeIds(out, bsu.getParents(), ids);
+			}
+
+			List<String> overrides = bundleStorage.getLoadingReport().getOverrides();
+			out.writeInt(overrides.size());
+			for (String override : overrides) {
+				out.writeUTF(override);
+			}
+
+			out.writeLong(checkedStream.getChecksum().getValue());
+		}
+		finally {
+			out.close();
+		}
+
+		if (file.exists() && !file.delete() || !tmpFile.renameTo(file)) {
+			tmpFile.delete();
+			throw new IOException("Unable to replace the bundle snapshot " + file.getAbsolutePath());
+		}
+		LOG.debug("Bundle snapshot written to {}", file.getAbsolutePath());
+	}
+
+	private static void writeIds(DataOutputStream out, List<BundleStorageUnit> bundles,
+			Map<BundleStorageUnit, Integer> ids) throws IOException {
+		out.writeInt(bundles.size());
+		for (BundleStorageUnit bsu : bundles) {
+			out.writeInt(ids.get(bsu));
+		}
+	}
+
+	private static void writeAsset(DataOutputStream out, AssetStorageUnit asu) throws IOException {
+		writeString(out, asu.getName());
+		writeString(out, asu.getVersion());
+		writeString(out, asu.getType() == null ? null : asu.getType().name());
+		writeString(out, asu.getDom() == null ? null : asu.getDom().name());
+		writeMap(out, asu.getLocations());
+		writeMap(out, asu.getAttributes());
+		String[] attributesOnlyName = asu.getAttributesOnlyName();
+		out.writeInt(attributesOnlyName.length);
+		for (String attributeName : attributesOnlyName) {
+			writeString(out, attributeName);
+		}
+		writeString(out, asu.getCacheKey());
+	}
+
+	private static AssetStorageUnit readAsset(DataInputStream in) throws IOException {
+		AssetStorageUnit asu = new AssetStorageUnit();
+		asu.setName(readString(in));
+		asu.setVersion(readString(in));
+		String type = readString(in);
+		asu.setType(type == null ? null : AssetType.valueOf(type));
+		String dom = readString(in);
+		asu.setDom(dom == null ? null : AssetDomPosition.valueOf(dom));
+		asu.setLocations(readMap(in));
+		asu.setAttributes(readMap(in));
+		int attributeCount = in.readInt();
+		if (attributeCount > 0) {
+			String[] attributesOnlyName = new String[attributeCount];
+			for (int i = 0; i < attributeCount; i++) {
+				attributesOnlyName[i] = readString(in);
+			}
+			asu.setAttributesOnlyName(attributesOnlyName);
+		}
+		asu.setCacheKey(readString(in));
+		return asu;
+	}
+
+	private static void writeMap(DataOutputStream out, Map<String, String> map) throws IOException {
+		if (map == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(map.size());
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+	}
+
+	private static Map<String, String> readMap(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			return null;
+		}
+		Map<String, String> map = new LinkedHashMap<String, String>();
+		for (int i = 0; i < size; i++) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	private static void close(DataInputStream in, File file) {
+		try {
+			in.close();
+		}
+		catch (IOException e) {
+			LOG.warn("Unable to close the bundle snapshot {}", file.getAbsolutePath());
+		}
+	}
+}
@@ -29,10 +29,13 @@
  */
 package com.github.dandelion.core.storage;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -50,7 +53,39 @@ import com.github.dandelion.core.DandelionException;
 public class BundleStorage {
 
 	private static final Logger LOG = LoggerFactory.getLogger(BundleStorage.class);
-	private BundleDag bundleDag;
+	private final BundleDag bundleDag;
+
+	/**
+	 * Compiled form of the dag, used to resolve bundles. Compiled on first use
+	 * and discarded as soon as bundles are stored.
+	 */
+	private volatile BundlePlan bundlePlan;
+
+	/**
+	 * All assets stored in the dag, indexed by their lower-cased name and type,
+	 * used to find the assets to override.
+	 */
+	private final Map<String, IndexedAsset> assetIndex = new HashMap<String, IndexedAsset>();
+
+	private final BundleLoadingReport loadingReport = new BundleLoadingReport();
+
+	/**
+	 * Index of the bundles to load on demand, {@code null} if all bundles are
+	 * stored upfront.
+	 */
+	private volatile BundleIndex bundleIndex;
+
+	/**
+	 * Names of the bundles already requested from the index, guarded by this
+	 * storage.
+	 */
+	private final Set<String> requestedBundles = new HashSet<String>();
+
+	/**
+	 * Number of storages published before this one, part of the keys of the
+	 * assets cached per request.
+	 */
+	private volatile long generation;
 
 	public BundleStorage() {
 		this.bundleDag = new BundleDag();
@@ -69,25 +104,46 @@ public class BundleStorage {
 	 * @return the {@link BundleDag} updated with the new
 	 *         {@link BundleStorageUnit} and {@link AssetStorageUnit}.
 	 * @throws DandelionException
-	 *             as soon as a cycle is detected in the bundle DAG.
+	 *             if the bundle DAG would contain cycles once the bundles are
+	 *             stored. All cycles are listed in the message and the storage
+	 *             is left as it was.
 	 */
-	public BundleDag storeBundles(List<BundleStorageUnit> bundleStorageUnits) {
+	public synchronized BundleDag storeBundles(List<BundleStorageUnit> bundleStorageUnits) {
 
+		// DAG updating and dependencies handling, undone if cycles appear
+		List<BundleStorageUnit> addedVerticies = new ArrayList<BundleStorageUnit>();
+		Map<BundleStorageUnit, int[]> edgeCounts = new HashMap<BundleStorageUnit, int[]>();
 		for (BundleStorageUnit bsu : bundleStorageUnits) {
-
-			BundleStorageUnit bsuToAdd = bundleDag.addVertexIfNeeded(bsu);
-
-			// DAG updating and dependencies handling
-			if (bsu.getDependencies() != null && !bsu.getDependencies().isEmpty()) {
+			BundleStorageUnit bsuToAdd = addVertex(bsu.getName(), addedVerticies, edgeCounts);
+			if (bsu.getDependencies() != null) {
 				for (String dependency : bsu.getDependencies()) {
-
-					BundleStorageUnit to = bundleDag.addVertexIfNeeded(dependency);
+					BundleStorageUnit to = addVertex(dependency, addedVerticies, edgeCounts);
 					bundleDag.addEdge(bsuToAdd, to);
 				}
 			}
-			else {
-				bsuToAdd = bundleDag.addVertexIfNeeded(bsu);
+		}
+
+		// All cycles are reported at once
+		try {
+			BundleCycleDetector.checkAcyclic(bundleDag);
+		}
+		catch (DandelionException e) {
+			for (Map.Entry<BundleStorageUnit, int[]> entry : edgeCounts.entrySet()) {
+				List<BundleStorageUnit> children = entry.getKey().getChildren();
+				List<BundleStorageUnit> parents = entry.getKey().getParents();
+				children.subList(entry.getValue()[0], children.size()).clear();
+				parents.subList(entry.getValue()[1], parents.size()).clear();
+			}
+			for (BundleStorageUnit bsu : addedVerticies) {
+				bundleDag.removeVertex(bsu);
 			}
+			throw e;
+		}
+
+		bundlePlan = null;
+		for (BundleStorageUnit bsu : bundleStorageUnits) {
+
+			BundleStorageUnit bsuToAdd = bundleDag.getVertex(bsu.getName());
 
 			// Asset updating
 
@@ -97,42 +153,38 @@ public class BundleStorage {
 				// Let's see if each asset already exists in any bundle
 				for (AssetStorageUnit asu : bsu.getAssetStorageUnits()) {
 
-					boolean exists = false;
-					for (BundleStorageUnit existingBundle : bundleDag.getVerticies()) {
-						for (AssetStorageUnit existingAsu : existingBundle.getAssetStorageUnits()) {
-
-							// Si un asset de meme nom existe deja, on l'ecrase
-							if (existingAsu.getName().equalsIgnoreCase(asu.getName())
-									&& existingAsu.getType().equals(asu.getType())) {
-
-								LOG.debug(
-										"Replacing asset '{}' ({}) from the bundle '{}' by the asset {} ({}) from the bundle {}.",
-										existingAsu.getName(), existingAsu.getVersion(), existingBundle.getName(),
-										asu.getName(), asu.getVersion(), bsuToAdd.getName());
-
-								existingAsu.setVersion(asu.getVersion());
-								existingAsu.setLocations(asu.getLocations());
-								existingAsu.setDom(asu.getDom());
-								existingAsu.setType(asu.getType());
-								existingAsu.setAttributes(asu.getAttributes());
-								existingAsu.setAttributesOnlyName(asu.getAttributesOnlyName());
-								exists = true;
-								break;
-							}
-						}
-
-						if (exists) {
-							break;
-						}
+					String assetKey = getAssetKey(asu);
+					IndexedAsset existing = assetIndex.get(assetKey);
+
+					// An asset with the same name and type already exists, it
+					// gets overridden
+					if (existing != null) {
+						AssetStorageUnit existingAsu = existing.asu;
+
+						LOG.debug(
+								"Replacing asset '{}' ({}) from the bundle '{}' by the asset {} ({}) from the bundle {}.",
+								existingAsu.getName(), existingAsu.getVersion(), existing.bundle.getName(),
+								asu.getName(), asu.getVersion(), bsuToAdd.getName());
+						loadingReport.addOverride(existingAsu.getName(), existingAsu.getType(),
+								existingAsu.getVersion(), existing.bundle.getName(), asu.getVersion(),
+								bsuToAdd.getName());
+
+						existingAsu.setVersion(asu.getVersion());
+						existingAsu.setLocations(asu.getLocations());
+						existingAsu.setDom(asu.getDom());
+						existingAsu.setType(asu.getType());
+						existingAsu.setAttributes(asu.getAttributes());
+						existingAsu.setAttributesOnlyName(asu.getAttributesOnlyName());
 					}
 
 					// If the asset doesn't already exist, we just add it to the
 					// current bundle
-					if (!exists) {
+					else {
 
 						LOG.debug("Adding {} '{}' ({}) to the bundle '{}'", asu.getType(), asu.getName(),
 								asu.getVersion(), bsuToAdd.getName());
 						bsuToAdd.getAssetStorageUnits().add(asu);
+						assetIndex.put(assetKey, new IndexedAsset(asu, bsuToAdd));
 					}
 				}
 			}
@@ -141,6 +193,25 @@ public class BundleStorage {
 		return bundleDag;
 	}
 
+	/**
+	 * <p>
+	 * Adds the given bundle to the dag if needed, recording the vertices added
+	 * and the number of edges of the existing ones, so that the dag can be
+	 * restored if cycles appear.
+	 */
+	private BundleStorageUnit addVertex(String bundleName, List<BundleStorageUnit> addedVerticies,
+			Map<BundleStorageUnit, int[]> edgeCounts) {
+		BundleStorageUnit bsu = bundleDag.getVertex(bundleName);
+		if (bsu == null) {
+			bsu = bundleDag.addVertexIfNeeded(bundleName);
+			addedVerticies.add(bsu);
+		}
+		if (!edgeCounts.containsKey(bsu)) {
+			edgeCounts.put(bsu, new int[] { bsu.getChildren().size(), bsu.getParents().size() });
+		}
+		return bsu;
+	}
+
 	public void checkBundleDag() {
 
 		for (BundleStorageUnit bsu : bundleDag.getVerticies()) {
@@ -151,41 +222,183 @@ public class BundleStorage {
 	}
 
 	/**
-	 * Return the list of labels of bundles according to the topological sort.
+	 * @return the report of the bundle loading, filled as bundles are stored.
+	 */
+	public BundleLoadingReport getLoadingReport() {
+		return loadingReport;
+	}
+
+	/**
+	 * <p>
+	 * Registers an asset restored from a {@link BundleSnapshot}, so that it
+	 * can still be overridden by the bundles stored afterwards.
+	 */
+	void indexAsset(AssetStorageUnit asu, BundleStorageUnit bundle) {
+		assetIndex.put(getAssetKey(asu), new IndexedAsset(asu, bundle));
+	}
+
+	private static String getAssetKey(AssetStorageUnit asu) {
+		return asu.getName().toLowerCase(Locale.ENGLISH) + "|" + asu.getType();
+	}
+
+	/**
+	 * @return the compiled form of the bundle dag, compiled if needed.
+	 */
+	public BundlePlan getBundlePlan() {
+		BundlePlan plan = bundlePlan;
+		if (plan == null) {
+			synchronized (this) {
+				plan = bundlePlan;
+				if (plan == null) {
+					plan = BundlePlan.compile(bundleDag);
+					bundlePlan = plan;
+				}
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * <p>
+	 * Switches the storage to the lazy mode: the bundles of the given index
+	 * are only parsed and stored, along with their dependencies, the first
+	 * time they are requested through {@link #bundlesFor(String...)}.
 	 * 
-	 * @param bundleName
-	 *            The name of the bundle.
+	 * <p>
+	 * Note that in this mode, an asset only overrides the assets of the
+	 * bundles loaded before it.
 	 * 
-	 * @return The list of bundle names sorted by a topological order. The list
-	 *         also contains the given bundle name, always in last.
+	 * @param bundleIndex
+	 *            The index of the bundles to load on demand.
 	 */
-	public Set<BundleStorageUnit> bundlesFor(String bundleName) {
-		BundleStorageUnit bsu = bundleDag.getVertex(bundleName);
+	public void setBundleIndex(BundleIndex bundleIndex) {
+		this.bundleIndex = bundleIndex;
+	}
+
+	/**
+	 * @return the index of the bundles loaded on demand, {@code null} if all
+	 *         bundles are stored upfront.
+	 */
+	public BundleIndex getBundleIndex() {
+		return bundleIndex;
+	}
+
+	/**
+	 * @return the generation of this storage, incremented each time the
+	 *         bundles are reloaded.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
 
-		if (bsu != null) {
-			Set<BundleStorageUnit> retval = null;
+	/**
+	 * @param generation
+	 *            The generation of this storage, set when it is published.
+	 */
+	public void setGeneration(long generation) {
+		this.generation = generation;
+	}
 
-			if (bsu.isLeaf()) {
-				retval = new HashSet<BundleStorageUnit>(1);
-				retval.add(bsu);
+	/**
+	 * <p>
+	 * Stores the indexed bundles among the given ones that are not stored
+	 * yet, as well as their dependencies.
+	 * 
+	 * <p>
+	 * Once a bundle has been stored, it is part of all compiled plans, which
+	 * allows to check without locking whether the requested bundles are all
+	 * available.
+	 * 
+	 * <p>
+	 * The bundles are only marked as requested once stored, so that bundles
+	 * rejected because of a cycle are loaded again on the next request, once
+	 * their definitions may have been fixed.
+	 */
+	private void loadIndexedBundles(BundleIndex index, String... bundleNames) {
+		BundlePlan plan = bundlePlan;
+		if (plan != null) {
+			boolean loaded = true;
+			for (String bundleName : bundleNames) {
+				String name = bundleName.trim();
+				if (plan.getId(name) == -1 && index.contains(name)) {
+					loaded = false;
+					break;
+				}
 			}
-			else {
-				retval = new LinkedHashSet<BundleStorageUnit>(TopologicalSorter.sort(bsu));
+			if (loaded) {
+				return;
 			}
+		}
 
-			return retval;
+		synchronized (this) {
+			List<BundleStorageUnit> bundlesToStore = new ArrayList<BundleStorageUnit>();
+			Set<String> loadedBundles = new HashSet<String>();
+			LinkedList<String> pendingBundles = new LinkedList<String>();
+			for (String bundleName : bundleNames) {
+				pendingBundles.add(bundleName.trim());
+			}
+
+			while (!pendingBundles.isEmpty()) {
+				String bundleName = pendingBundles.removeFirst();
+				if (requestedBundles.contains(bundleName) || !loadedBundles.add(bundleName)
+						|| !index.contains(bundleName)) {
+					continue;
+				}
+				for (BundleStorageUnit bsu : index.load(bundleName)) {
+					bundlesToStore.add(bsu);
+					if (bsu.getDependencies() != null) {
+						pendingBundles.addAll(bsu.getDependencies());
+					}
+				}
+			}
+
+			if (!bundlesToStore.isEmpty()) {
+				long start = System.nanoTime();
+				storeBundles(bundlesToStore);
+				requestedBundles.addAll(loadedBundles);
+				bundlePlan = BundlePlan.compile(bundleDag);
+				LOG.debug("{} bundle(s) loaded on demand in {} ms", bundlesToStore.size(),
+						(System.nanoTime() - start) / 1000000);
+			}
 		}
+	}
 
-		return Collections.emptySet();
+	/**
+	 * Return the list of labels of bundles according to the topological sort.
+	 * 
+	 * @param bundleName
+	 *            The name of the bundle.
+	 * 
+	 * @return The list of bundle names sorted by a topological order. The list
+	 *         also contains the given bundle name, always in last.
+	 */
+	public Set<BundleStorageUnit> bundlesFor(String bundleName) {
+		BundleIndex index = bundleIndex;
+		if (index != null) {
+			loadIndexedBundles(index, bundleName);
+		}
+		return getBundlePlan().resolve(bundleName);
 	}
 
 	public Set<BundleStorageUnit> bundlesFor(String... bundleNames) {
-
-		Set<BundleStorageUnit> retval = new LinkedHashSet<BundleStorageUnit>();
-		for (String bundleName : bundleNames) {
-			retval.addAll(bundlesFor(bundleName.trim()));
+		BundleIndex index = bundleIndex;
+		if (index != null) {
+			loadIndexedBundles(index, bundleNames);
 		}
+		return getBundlePlan().resolve(bundleNames);
+	}
+
+	/**
+	 * An asset of the dag together with the bundle holding it.
+	 */
+	private static final class IndexedAsset {
+
+		private final AssetStorageUnit asu;
+		private final BundleStorageUnit bundle;
 
-		return retval;
+		private IndexedAsset(AssetStorageUnit asu, BundleStorageUnit bundle) {
+			this.asu = asu;
+			this.bundle = bundle;
+		}
 	}
 }
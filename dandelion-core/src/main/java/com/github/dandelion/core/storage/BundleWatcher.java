@@ -0,0 +1,463 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.storage;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
+import com.github.dandelion.core.utils.DaemonThreadFactory;
+
+/**
+ * <p>
+ * Watches, in development mode, the files the bundles and the assets come
+ * from, so that the caches can be kept while only what has changed is
+ * reloaded.
+ * 
+ * <p>
+ * The files are polled at a fixed interval, set by the
+ * {@code bundle.watch.interval} option:
+ * <ul>
+ * <li>the JSON files of the bundle loaders located in a folder of the
+ * classpath, as well as the folders containing them so that added or deleted
+ * files are detected. Only the modified files are parsed again. The bundle
+ * graph is then rebuilt from the parsed bundles and replaces the current one
+ * if at least one bundle has actually changed.</li>
+ * <li>the source files of the assets whose content is cached, as returned by
+ * {@link com.github.dandelion.core.asset.locator.spi.AbstractAssetLocator#getSourceFile}
+ * . When a file is modified, only the cache entries of its contents, raw or
+ * processed, are removed.</li>
+ * </ul>
+ * 
+ * <p>
+ * The reloaded bundles are published as a new {@link BundleStorage}, whose
+ * generation is part of the keys of the assets cached per request. Likewise,
+ * each modified asset file increments the generation of the watcher, so that
+ * the assets are computed again against the updated contents.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class BundleWatcher {
+
+	// Logger
+	private static Logger LOG = LoggerFactory.getLogger(BundleWatcher.class);
+
+	private final Context context;
+	private final ClassLoader classLoader;
+	private ScheduledExecutorService executor;
+	private volatile long generation;
+
+	// Bundle definitions, only accessed by the watching thread
+	private List<Map<String, BundleStorageUnit>> parsedBundles;
+	private final Map<File, Long> bundleFileStamps = new HashMap<File, Long>();
+	private final Map<String, File> bundleFiles = new HashMap<String, File>();
+
+	// Asset sources, registered by the request threads
+	private final ConcurrentMap<File, Long> assetFileStamps = new ConcurrentHashMap<File, Long>();
+	private final ConcurrentMap<File, Set<String>> assetCacheKeys = new ConcurrentHashMap<File, Set<String>>();
+	private final ConcurrentMap<String, File> cacheKeySources = new ConcurrentHashMap<String, File>();
+
+	public BundleWatcher(Context context) {
+		this.context = context;
+		this.classLoader = Thread.currentThread().getContextClassLoader();
+	}
+
+	/**
+	 * <p>
+	 * Starts polling the watched files in a background thread.
+	 * 
+	 * @param intervalMillis
+	 *            The interval between two checks, in milliseconds.
+	 */
+	public synchronized void start(long intervalMillis) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("dandelion-bundle-watcher"));
+			executor.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						checkForChanges();
+					}
+					catch (RuntimeException e) {
+						LOG.error("Unable to check the bundles and assets for changes", e);
+					}
+				}
+			}, 0, intervalMillis, TimeUnit.MILLISECONDS);
+			LOG.info("Watching the bundles and assets for changes every {} ms", intervalMillis);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Stops polling the watched files.
+	 */
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * @return the generation of the watched asset files, incremented each time
+	 *         one of them is modified.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * <p>
+	 * Watches the given source file of an asset, whose content is about to be
+	 * read and cached under the given key.
+	 * 
+	 * @param sourceFile
+	 *            The source file of the asset, may be {@code null}.
+	 * @param cacheKey
+	 *            The key under which its content is cached.
+	 */
+	public void watchAsset(File sourceFile, String cacheKey) {
+		if (sourceFile == null) {
+			return;
+		}
+
+		// The stamp is taken before the content is read, so that a
+		// modification made meanwhile is detected during the next check
+		assetFileStamps.putIfAbsent(sourceFile, sourceFile.lastModified());
+		getCacheKeys(sourceFile).add(cacheKey);
+		cacheKeySources.put(cacheKey, sourceFile);
+	}
+
+	/**
+	 * <p>
+	 * Links a cache key to another one holding a content derived from it,
+	 * e.g. the processed content of an asset, so that both are removed when
+	 * the source file of the asset is modified.
+	 * 
+	 * @param cacheKey
+	 *            The key of the original content.
+	 * @param derivedCacheKey
+	 *            The key of the derived content.
+	 */
+	public void linkCacheKey(String cacheKey, String derivedCacheKey) {
+		File sourceFile = cacheKeySources.get(cacheKey);
+		if (sourceFile != null) {
+			getCacheKeys(sourceFile).add(derivedCacheKey);
+			cacheKeySources.put(derivedCacheKey, sourceFile);
+		}
+	}
+
+	private Set<String> getCacheKeys(File sourceFile) {
+		Set<String> cacheKeys = assetCacheKeys.get(sourceFile);
+		if (cacheKeys == null) {
+			Set<String> newCacheKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			cacheKeys = assetCacheKeys.putIfAbsent(sourceFile, newCacheKeys);
+			if (cacheKeys == null) {
+				cacheKeys = newCacheKeys;
+			}
+		}
+		return cacheKeys;
+	}
+
+	/**
+	 * <p>
+	 * Checks all watched files for changes and reloads what needs to be. The
+	 * first check only records the current state of the bundle definitions.
+	 */
+	public synchronized void checkForChanges() {
+		checkBundles();
+		if (checkAssets()) {
+			generation++;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Reloads the bundles if some of their definitions have changed.
+	 */
+	private void checkBundles() {
+		List<BundleLoader> bundleLoaders = context.getBundleLoaders();
+		if (parsedBundles == null) {
+			for (BundleLoader bundleLoader : bundleLoaders) {
+				if (!(bundleLoader instanceof AbstractBundleLoader)) {
+					LOG.info("The loader {} doesn't expose its resources, the bundles are not watched",
+							bundleLoader.getName());
+					parsedBundles = Collections.emptyList();
+					return;
+				}
+			}
+			parsedBundles = new ArrayList<Map<String, BundleStorageUnit>>();
+			for (int i = 0; i < bundleLoaders.size(); i++) {
+				parsedBundles.add(new LinkedHashMap<String, BundleStorageUnit>());
+			}
+			scanBundleFiles(bundleLoaders, null);
+			return;
+		}
+		if (parsedBundles.isEmpty()) {
+			return;
+		}
+
+		// Added or deleted files change the last modification date of the
+		// folders containing them, in which case the loaders scan again
+		Set<String> modifiedPaths = new HashSet<String>();
+		boolean foldersModified = false;
+		for (Map.Entry<File, Long> stamp : bundleFileStamps.entrySet()) {
+			if (stamp.getKey().lastModified() != stamp.getValue()) {
+				if (stamp.getKey().isFile()) {
+					modifiedPaths.add(getPath(stamp.getKey()));
+				}
+				else {
+					foldersModified = true;
+				}
+			}
+		}
+		if (!foldersModified && modifiedPaths.isEmpty()) {
+			return;
+		}
+
+		try {
+			if (foldersModified) {
+				context.getResourceScanner().clear();
+			}
+			scanBundleFiles(bundleLoaders, modifiedPaths);
+		}
+		catch (DandelionException e) {
+			LOG.error("The bundles can't be reloaded: {}", e.getMessage());
+			return;
+		}
+		reloadBundles();
+	}
+
+	private String getPath(File file) {
+		for (Map.Entry<String, File> bundleFile : bundleFiles.entrySet()) {
+			if (bundleFile.getValue().equals(file)) {
+				return bundleFile.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <p>
+	 * Lists the JSON files of the loaders and parses the new ones as well as
+	 * the given modified ones.
+	 */
+	private void scanBundleFiles(List<BundleLoader> bundleLoaders, Set<String> modifiedPaths) {
+		Map<File, Long> stamps = new HashMap<File, Long>();
+		Map<String, File> files = new HashMap<String, File>();
+		List<Map<String, BundleStorageUnit>> bundles = new ArrayList<Map<String, BundleStorageUnit>>();
+		for (int i = 0; i < bundleLoaders.size(); i++) {
+			AbstractBundleLoader bundleLoader = (AbstractBundleLoader) bundleLoaders.get(i);
+			Map<String, BundleStorageUnit> previousBundles = parsedBundles.get(i);
+			Map<String, BundleStorageUnit> loaderBundles = new LinkedHashMap<String, BundleStorageUnit>();
+			for (String resourcePath : bundleLoader.getResourcePaths()) {
+				File file = toFile(classLoader.getResource(resourcePath));
+				if (file != null) {
+					stamps.put(file, file.lastModified());
+					stamps.put(file.getParentFile(), file.getParentFile().lastModified());
+					files.put(resourcePath, file);
+				}
+
+				BundleStorageUnit bsu = previousBundles.get(resourcePath);
+				if (bsu == null || modifiedPaths != null && modifiedPaths.contains(resourcePath)) {
+					bsu = bundleLoader.loadBundle(classLoader, resourcePath);
+				}
+				loaderBundles.put(resourcePath, bsu);
+			}
+			bundles.add(loaderBundles);
+		}
+
+		// The state is only updated once all files have been parsed, so that
+		// a malformed file is parsed again during the next check
+		parsedBundles = bundles;
+		bundleFileStamps.clear();
+		bundleFileStamps.putAll(stamps);
+		bundleFiles.clear();
+		bundleFiles.putAll(files);
+	}
+
+	private static File toFile(URL url) {
+		if (url == null || !"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(URLDecoder.decode(url.getPath(), "UTF-8"));
+		}
+		catch (UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Rebuilds the bundle storage from the parsed bundles and replaces the
+	 * current one if some bundles have changed.
+	 */
+	private void reloadBundles() {
+		BundleStorage bundleStorage = new BundleStorage();
+		try {
+			for (Map<String, BundleStorageUnit> loaderBundles : parsedBundles) {
+				List<BundleStorageUnit> copies = new ArrayList<BundleStorageUnit>(loaderBundles.size());
+				for (BundleStorageUnit bsu : loaderBundles.values()) {
+					copies.add(copy(bsu));
+				}
+				bundleStorage.storeBundles(copies);
+			}
+		}
+		catch (DandelionException e) {
+			LOG.error("The bundles can't be reloaded: {}", e.getMessage());
+			return;
+		}
+
+		Set<String> changedBundles = diff(context.getBundleStorage().getBundleDag(), bundleStorage.getBundleDag());
+		if (changedBundles.isEmpty()) {
+			LOG.debug("The bundle definitions have been modified but no bundle has changed");
+			return;
+		}
+
+		bundleStorage.checkBundleDag();
+		bundleStorage.getBundlePlan();
+		context.setBundleStorage(bundleStorage);
+		LOG.info("Bundles reloaded, changed bundle(s): {}", changedBundles);
+	}
+
+	/**
+	 * @return the names of the bundles added, removed or modified between the
+	 *         two given graphs.
+	 */
+	static Set<String> diff(BundleDag previousDag, BundleDag dag) {
+		Set<String> changedBundles = new TreeSet<String>();
+		Set<String> bundleNames = new HashSet<String>(previousDag.getBundleNames());
+		bundleNames.addAll(dag.getBundleNames());
+		for (String bundleName : bundleNames) {
+			BundleStorageUnit previous = previousDag.getVertex(bundleName);
+			BundleStorageUnit current = dag.getVertex(bundleName);
+			if (previous == null || current == null || !describe(previous).equals(describe(current))) {
+				changedBundles.add(bundleName);
+			}
+		}
+		return changedBundles;
+	}
+
+	private static String describe(BundleStorageUnit bsu) {
+		StringBuilder description = new StringBuilder();
+		description.append(bsu.getChildNames());
+		if (bsu.getAssetStorageUnits() != null) {
+			for (AssetStorageUnit asu : bsu.getAssetStorageUnits()) {
+				description.append('|').append(asu.getName()).append(',').append(asu.getVersion());
+				description.append(',').append(asu.getType()).append(',').append(asu.getDom());
+				description.append(',').append(asu.getLocations()).append(',').append(asu.getAttributes());
+				description.append(',').append(Arrays.toString(asu.getAttributesOnlyName()));
+			}
+		}
+		return description.toString();
+	}
+
+	/**
+	 * <p>
+	 * Copies a parsed bundle before storing it, since the assets are modified
+	 * in place when they get overridden.
+	 */
+	private static BundleStorageUnit copy(BundleStorageUnit bsu) {
+		Set<AssetStorageUnit> asus = new LinkedHashSet<AssetStorageUnit>();
+		if (bsu.getAssetStorageUnits() != null) {
+			for (AssetStorageUnit asu : bsu.getAssetStorageUnits()) {
+				AssetStorageUnit copy = new AssetStorageUnit(asu.getName(), asu.getVersion(), asu.getType(),
+						asu.getDom());
+				copy.setLocations(asu.getLocations() == null ? null : new LinkedHashMap<String, String>(asu
+						.getLocations()));
+				copy.setAttributes(asu.getAttributes() == null ? null : new HashMap<String, String>(asu
+						.getAttributes()));
+				copy.setAttributesOnlyName(asu.getAttributesOnlyName().clone());
+				asus.add(copy);
+			}
+		}
+		BundleStorageUnit copy = new BundleStorageUnit(bsu.getName(), asus);
+		if (bsu.getDependencies() != null) {
+			copy.setDependencies(new ArrayList<String>(bsu.getDependencies()));
+		}
+		return copy;
+	}
+
+	/**
+	 * <p>
+	 * Removes from the cache the contents of the assets whose source file has
+	 * been modified or deleted.
+	 * 
+	 * @return {@code true} if at least one source file has changed.
+	 */
+	private boolean checkAssets() {
+		boolean changed = false;
+		for (Map.Entry<File, Long> stamp : assetFileStamps.entrySet()) {
+			File sourceFile = stamp.getKey();
+			if (sourceFile.lastModified() == stamp.getValue()) {
+				continue;
+			}
+
+			assetFileStamps.remove(sourceFile);
+			Set<String> cacheKeys = assetCacheKeys.remove(sourceFile);
+			if (cacheKeys != null) {
+				for (String cacheKey : cacheKeys) {
+					cacheKeySources.remove(cacheKey);
+					context.getCacheManager().remove(cacheKey);
+				}
+				LOG.info("{} modified, {} cached content(s) removed", sourceFile.getAbsolutePath(), cacheKeys.size());
+			}
+			changed = true;
+		}
+		return changed;
+	}
+}
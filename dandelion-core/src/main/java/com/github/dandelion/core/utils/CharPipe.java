@@ -0,0 +1,207 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * <p>
+ * Bounded buffer of characters connecting a {@link Writer}, used by one
+ * thread, to a {@link Reader}, used by another one. The writer blocks while
+ * the buffer is full and the reader while it is empty, so that a content is
+ * streamed between both threads without ever being held entirely in memory.
+ * 
+ * <p>
+ * Unlike {@link java.io.PipedReader}, the pipe doesn't depend on the liveness
+ * of the threads using it, which may therefore be pooled, and can be aborted
+ * from any thread, e.g. when the other side of the pipe has failed.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public final class CharPipe {
+
+	private final char[] buffer;
+	private int readPosition;
+	private int count;
+	private boolean writerClosed;
+	private boolean readerClosed;
+	private Throwable failure;
+
+	private final Writer writer = new Writer() {
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			CharPipe.this.write(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+			closeWriter();
+		}
+	};
+
+	private final Reader reader = new Reader() {
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return CharPipe.this.read(cbuf, off, len);
+		}
+
+		@Override
+		public void close() {
+			closeReader();
+		}
+	};
+
+	/**
+	 * @param capacity
+	 *            The maximum number of characters held by the pipe.
+	 */
+	public CharPipe(int capacity) {
+		this.buffer = new char[capacity];
+	}
+
+	/**
+	 * @return the writing side of the pipe. Closing it signals the end of the
+	 *         content to the reader.
+	 */
+	public Writer getWriter() {
+		return writer;
+	}
+
+	/**
+	 * @return the reading side of the pipe. Once it is closed, the characters
+	 *         written are discarded.
+	 */
+	public Reader getReader() {
+		return reader;
+	}
+
+	private synchronized void write(char[] cbuf, int off, int len) throws IOException {
+		if (writerClosed) {
+			throw new IOException("The pipe is closed");
+		}
+		while (len > 0) {
+			while (count == buffer.length && !readerClosed && failure == null) {
+				await();
+			}
+			checkFailure();
+			if (readerClosed) {
+				return;
+			}
+
+			int writePosition = (readPosition + count) % buffer.length;
+			int length = Math.min(len, Math.min(buffer.length - count, buffer.length - writePosition));
+			System.arraycopy(cbuf, off, buffer, writePosition, length);
+			count += length;
+			off += length;
+			len -= length;
+			notifyAll();
+		}
+	}
+
+	private synchronized int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		while (count == 0 && !writerClosed && failure == null) {
+			await();
+		}
+		checkFailure();
+		if (count == 0) {
+			return -1;
+		}
+
+		int length = Math.min(len, Math.min(count, buffer.length - readPosition));
+		System.arraycopy(buffer, readPosition, cbuf, off, length);
+		readPosition = (readPosition + length) % buffer.length;
+		count -= length;
+		notifyAll();
+		return length;
+	}
+
+	private void await() throws IOException {
+		try {
+			wait();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting on the pipe");
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			throw new IOException("The pipe has been aborted", failure);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Signals the end of the content to the reader.
+	 */
+	public synchronized void closeWriter() {
+		writerClosed = true;
+		notifyAll();
+	}
+
+	/**
+	 * <p>
+	 * Signals that no more content will be read, in which case the characters
+	 * written afterwards are discarded.
+	 */
+	public synchronized void closeReader() {
+		readerClosed = true;
+		count = 0;
+		notifyAll();
+	}
+
+	/**
+	 * <p>
+	 * Aborts the pipe: both sides fail as soon as they use it.
+	 * 
+	 * @param cause
+	 *            The reason why the pipe is aborted.
+	 */
+	public synchronized void abort(Throwable cause) {
+		if (failure == null) {
+			failure = cause;
+		}
+		notifyAll();
+	}
+}
@@ -35,9 +35,21 @@ import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -50,6 +62,16 @@ import com.github.dandelion.core.DandelionException;
  * <p>
  * Utility class used for searching for resources in the classpath.
  * 
+ * <p>
+ * Each classpath root (a folder or a JAR file) containing the scanned location
+ * is indexed once: all its entries are listed and sorted, so that the entries
+ * under a location are then found with a binary search instead of filtering
+ * the whole root. The static methods use a new scanner for each call while a
+ * {@link ResourceScanner} instance, such as the one held by the
+ * {@link com.github.dandelion.core.Context}, keeps the indexes until it is
+ * cleared. The roots not indexed yet are scanned in parallel if an
+ * {@link Executor} is set.
+ * 
  * @author Thibault Duchateau
  * @since 0.10.0
  */
@@ -58,6 +80,20 @@ public final class ResourceScanner {
 	// Logger
 	private static final Logger LOG = LoggerFactory.getLogger(ResourceScanner.class);
 
+	private static final String[] NO_ENTRIES = new String[0];
+
+	private final ClassLoader classLoader;
+	private final ConcurrentMap<String, FutureTask<String[]>> indexes = new ConcurrentHashMap<String, FutureTask<String[]>>();
+	private volatile Executor executor;
+
+	/**
+	 * @param classLoader
+	 *            The class loader whose classpath is scanned.
+	 */
+	public ResourceScanner(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
 	/**
 	 * <p>
 	 * Finds the logical path of the first resource that matches the given
@@ -78,13 +114,7 @@ public final class ResourceScanner {
 	 *             if something goes wrong during the scanning.
 	 */
 	public static String findResourcePath(String location, String nameFilter) throws IOException {
-		Set<String> resourcePaths = scanForResourcePaths(location, null, nameFilter, null, null, false);
-		if (resourcePaths.isEmpty()) {
-			return null;
-		}
-		else {
-			return resourcePaths.iterator().next();
-		}
+		return newScanner().findPath(location, nameFilter);
 	}
 
 	/**
@@ -107,7 +137,7 @@ public final class ResourceScanner {
 	 */
 	public static Set<String> findResourcePaths(String location, Set<String> excludedPaths, String nameFilter,
 			boolean recursive) throws IOException {
-		return scanForResourcePaths(location, excludedPaths, nameFilter, null, null, recursive);
+		return newScanner().scan(location, excludedPaths, nameFilter, null, null, recursive);
 	}
 
 	/**
@@ -132,7 +162,24 @@ public final class ResourceScanner {
 	 */
 	public static Set<String> findResourcePaths(String location, Set<String> excludedPaths, String prefixFilter,
 			String suffixFilter, boolean recursive) throws IOException {
-		return scanForResourcePaths(location, excludedPaths, null, prefixFilter, suffixFilter, recursive);
+		return newScanner().scan(location, excludedPaths, null, prefixFilter, suffixFilter, recursive);
+	}
+
+	private static ResourceScanner newScanner() {
+		return new ResourceScanner(Thread.currentThread().getContextClassLoader());
+	}
+
+	/**
+	 * @see #findResourcePath(String, String)
+	 */
+	public String findPath(String location, String nameFilter) throws IOException {
+		Set<String> resourcePaths = scan(location, null, nameFilter, null, null, false);
+		if (resourcePaths.isEmpty()) {
+			return null;
+		}
+		else {
+			return resourcePaths.iterator().next();
+		}
 	}
 
 	/**
@@ -161,105 +208,211 @@ public final class ResourceScanner {
 	 *             supported. This may happen with the JBoss VFS which is still
 	 *             not supported.
 	 */
-	private static Set<String> scanForResourcePaths(String location, Set<String> excludedPaths, String nameFilter,
-			String prefixFilter, String suffixFilter, boolean recursive) throws IOException {
+	public Set<String> scan(String location, Set<String> excludedPaths, String nameFilter, String prefixFilter,
+			String suffixFilter, boolean recursive) throws IOException {
 
 		LOG.trace("Scanning for resources at '{}'...", location);
 
+		// All roots containing the location are indexed, in parallel if
+		// possible, before being searched
+		Map<String, FutureTask<String[]>> rootIndexes = new LinkedHashMap<String, FutureTask<String[]>>();
+		Enumeration<URL> urls = classLoader.getResources(location);
+		while (urls.hasMoreElements()) {
+			URL url = urls.nextElement();
+			String root = getRoot(url, location);
+			if (!rootIndexes.containsKey(root)) {
+				rootIndexes.put(root, getIndex(root, url, location));
+			}
+		}
+
+		String locationPrefix = location.length() == 0 || location.endsWith("/") ? location : location + "/";
 		Set<String> resourcePaths = new HashSet<String>();
+		for (FutureTask<String[]> rootIndex : rootIndexes.values()) {
+			String[] entries = getEntries(rootIndex);
+
+			// Only the entries under the location are considered
+			int index = Arrays.binarySearch(entries, locationPrefix);
+			for (int i = index < 0 ? -index - 1 : index; i < entries.length; i++) {
+				String resourcePath = entries[i];
+				if (!resourcePath.startsWith(locationPrefix)) {
+					break;
+				}
+				if ((recursive || resourcePath.indexOf('/', locationPrefix.length()) == -1)
+						&& isPathAuthorized(resourcePath, excludedPaths)
+						&& matches(resourcePath, nameFilter, prefixFilter, suffixFilter)) {
+					resourcePaths.add(resourcePath);
+				}
+			}
+		}
 
-		Enumeration<URL> urls = Thread.currentThread().getContextClassLoader().getResources(location);
+		LOG.debug("{} resources found after filtering", resourcePaths.size());
+		return resourcePaths;
+	}
 
-		while (urls.hasMoreElements()) {
+	/**
+	 * @param executor
+	 *            The executor used to index the classpath roots in parallel,
+	 *            {@code null} to index them in the calling thread.
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
 
-			URL url = urls.nextElement();
-			if ("file".equals(url.getProtocol())) {
+	/**
+	 * <p>
+	 * Clears all indexes, so that the classpath roots are scanned again.
+	 */
+	public void clear() {
+		indexes.clear();
+	}
 
-				// Computes the physical root of the classpath to later
-				// determine the resource path more easily
-				String resourcePath = URLDecoder.decode(url.getPath(), "UTF-8");
-				if (resourcePath.endsWith("/") && location.length() > 1) {
-					resourcePath = resourcePath.substring(0, resourcePath.length() - 1);
-				}
-				String classpathPhysicalRoot = resourcePath.substring(0, resourcePath.length() - location.length());
+	/**
+	 * @return the key of the classpath root containing the given URL: the URL
+	 *         of the JAR file or the path of the folder.
+	 */
+	private static String getRoot(URL url, String location) throws IOException {
+		String protocol = url.getProtocol();
+		if ("file".equals(protocol)) {
+
+			// Computes the physical root of the classpath to later
+			// determine the resource path more easily
+			String resourcePath = URLDecoder.decode(url.getPath(), "UTF-8");
+			if (resourcePath.endsWith("/") && location.length() > 1) {
+				resourcePath = resourcePath.substring(0, resourcePath.length() - 1);
+			}
+			return resourcePath.substring(0, resourcePath.length() - location.length());
+		}
+		else if ("jar".equals(protocol) || "zip".equals(protocol) // Weblogic
+				|| "wsjar".equals(protocol)) // Websphere
+		{
+			String externalForm = url.toExternalForm();
+			int separator = externalForm.indexOf("!/");
+			return separator == -1 ? externalForm : externalForm.substring(0, separator + 2);
+		}
+		else {
+			StringBuilder sb = new StringBuilder("The protocol ");
+			sb.append(protocol);
+			sb.append(" is not supported.");
+			throw new DandelionException(sb.toString());
+		}
+	}
+
+	private FutureTask<String[]> getIndex(final String root, final URL url, String location) {
+		FutureTask<String[]> index = indexes.get(root);
+		if (index != null) {
+			return index;
+		}
 
-				// Gets the folder in which files will be scanned
-				File folder = new File(resourcePath);
+		final boolean folder = "file".equals(url.getProtocol());
+		index = new FutureTask<String[]>(new Callable<String[]>() {
 
-				resourcePaths.addAll(scanForResourcePathsInFileSystem(folder, classpathPhysicalRoot, recursive));
+			@Override
+			public String[] call() throws IOException {
+				long start = System.nanoTime();
+				List<String> entries = new ArrayList<String>();
+				if (folder) {
+					indexFileSystem(new File(root), root, entries);
+				}
+				else {
+					indexJarFile(url, entries);
+				}
+				String[] sortedEntries = entries.toArray(new String[entries.size()]);
+				Arrays.sort(sortedEntries);
+				LOG.trace("{} entries indexed in {} in {} ms", sortedEntries.length, root,
+						(System.nanoTime() - start) / 1000000);
+				return sortedEntries;
 			}
-			else if ("jar".equals(url.getProtocol()) || "zip".equals(url.getProtocol()) // Weblogic
-					|| "wsjar".equals(url.getProtocol())) // Websphere
-			{
+		});
 
-				resourcePaths.addAll(scanForResourcePathsInJarFile(url));
+		FutureTask<String[]> existing = indexes.putIfAbsent(root, index);
+		if (existing != null) {
+			return existing;
+		}
+
+		Executor currentExecutor = executor;
+		if (currentExecutor == null) {
+			index.run();
+		}
+		else {
+			try {
+				currentExecutor.execute(index);
 			}
-			else {
-				StringBuilder sb = new StringBuilder("The protocol ");
-				sb.append(url.getProtocol());
-				sb.append(" is not supported.");
-				throw new DandelionException(sb.toString());
+			catch (RejectedExecutionException e) {
+				index.run();
 			}
 		}
+		return index;
+	}
 
-		LOG.trace("{} resources found before filtering", resourcePaths.size());
-		return filterResourcePaths(location, resourcePaths, excludedPaths, nameFilter, prefixFilter, suffixFilter);
+	private String[] getEntries(FutureTask<String[]> index) throws IOException {
+		try {
+			return index.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return NO_ENTRIES;
+		}
+		catch (ExecutionException e) {
+
+			// The root will be indexed again during the next scan
+			indexes.values().remove(index);
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new DandelionException("Unable to index the classpath", e.getCause());
+		}
 	}
 
 	/**
 	 * <p>
-	 * Scans for all resources in the given file system {@code folder}.
+	 * Lists all files of the given {@code folder}, recursively.
 	 * 
 	 * @param folder
-	 *            Folder in which the files will be scanned/listed.
+	 *            Folder in which the files will be listed.
 	 * @param classpathPhysicalRoot
 	 *            Physical root of the classpath, used to compute the resource
 	 *            path.
-	 * @param recursive
-	 *            Whether the scanning should be recursive or not.
-	 * @return A set of non-filtered resource paths.
+	 * @param entries
+	 *            The list to fill with the resource paths.
 	 * @throws IOException
 	 *             if something goes wrong during the scanning.
 	 */
-	private static Set<String> scanForResourcePathsInFileSystem(File folder, String classpathPhysicalRoot,
-			boolean recursive) throws IOException {
-
-		Set<String> extractedResourcePaths = new HashSet<String>();
+	private static void indexFileSystem(File folder, String classpathPhysicalRoot, List<String> entries)
+			throws IOException {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
 
-		for (File file : folder.listFiles()) {
+		for (File file : files) {
 			if (file.canRead()) {
-
-				if (file.isDirectory() && recursive) {
-					extractedResourcePaths.addAll(scanForResourcePathsInFileSystem(file, classpathPhysicalRoot,
-							recursive));
+				if (file.isDirectory()) {
+					indexFileSystem(file, classpathPhysicalRoot, entries);
 				}
 				else {
 					String filePath = URLDecoder.decode(file.toURI().toURL().getFile(), "UTF-8");
-					String resourcePath = filePath.substring(classpathPhysicalRoot.length());
-					extractedResourcePaths.add(resourcePath);
+					entries.add(filePath.substring(classpathPhysicalRoot.length()));
 				}
 			}
 		}
-
-		return extractedResourcePaths;
 	}
 
 	/**
 	 * <p>
-	 * Scans for all resources in the given {@code url} that reffers to a JAR
-	 * file.
+	 * Lists all file entries of the JAR file the given {@code url} reffers to.
 	 * 
 	 * @param url
 	 *            The URL that reffers to the JAR file in which resources will
 	 *            be scanned.
-	 * @return A set of non-filtered resource paths.
+	 * @param entries
+	 *            The list to fill with the resource paths.
 	 * @throws IOException
 	 *             if something goes wrong during the scanning.
 	 */
-	private static Set<String> scanForResourcePathsInJarFile(URL url) throws IOException {
-
-		Set<String> extractedResourcePaths = new HashSet<String>();
-
+	private static void indexJarFile(URL url, List<String> entries) throws IOException {
 		URLConnection connection = url.openConnection();
 
 		if (connection instanceof JarURLConnection) {
@@ -269,18 +422,18 @@ public final class ResourceScanner {
 			JarFile jarFile = jarConnection.getJarFile();
 
 			try {
-				Enumeration<JarEntry> entries = jarFile.entries();
-				while (entries.hasMoreElements()) {
-					String resourcePath = entries.nextElement().getName();
-					extractedResourcePaths.add(resourcePath);
+				Enumeration<JarEntry> jarEntries = jarFile.entries();
+				while (jarEntries.hasMoreElements()) {
+					JarEntry entry = jarEntries.nextElement();
+					if (!entry.isDirectory()) {
+						entries.add(entry.getName());
+					}
 				}
 			}
 			finally {
 				jarFile.close();
 			}
 		}
-
-		return extractedResourcePaths;
 	}
 
 	/**
@@ -288,105 +441,64 @@ public final class ResourceScanner {
 	 * Tests whether the given {@code path} is authorized according to the
 	 * passed list of paths to exclude.
 	 * 
-	 * @param path
+	 * @param resourcePath
 	 *            The path name that must not be present in the list of excluded
 	 *            paths.
-	 * @param authorizedLocation
-	 *            Current location being scanned by the scanner.
 	 * @param excludedPaths
 	 *            List of paths which will be excluded during the classpath
 	 *            scanning.
 	 * @return {@code true} if the path is authorized, otherwise {@code false}.
 	 */
-	private static boolean isPathAuthorized(String resourcePath, String authorizedLocation, Set<String> excludedPaths) {
-
+	private static boolean isPathAuthorized(String resourcePath, Set<String> excludedPaths) {
 		if (excludedPaths != null) {
 			for (String excludedFolder : excludedPaths) {
 				if (resourcePath.startsWith(excludedFolder)) {
 					return false;
 				}
 			}
-			return true;
-		}
-		else if (resourcePath.startsWith(authorizedLocation)) {
-			return true;
-		}
-		else {
-			return false;
 		}
+		return true;
 	}
 
 	/**
 	 * <p>
-	 * Filters the given set of resource paths in multiple ways:
+	 * Filters the given resource path:
 	 * <ul>
-	 * <li>If the resource path contains any of the given {@code excludedPaths},
-	 * the resource path will be filtered out.</li>
 	 * <li>If the {@code nameFilter} is used, the resource is only filtered on
 	 * its name. Suffix and prefix have no effect.</li>
 	 * <li>If either {@code prefixFilter} or {@code suffixFilter} or both are
 	 * used, the resource won't be filtered on its name at all.</li>
 	 * </ul>
 	 * 
-	 * @param resourcePaths
-	 *            The scanned resource paths.
-	 * @param excludedPaths
-	 *            List of paths which will be excluded during the classpath
-	 *            scanning.
+	 * @param resourcePath
+	 *            The scanned resource path.
 	 * @param nameFilter
 	 *            The name of the resource to look for.
 	 * @param prefixFilter
 	 *            The prefix condition to be applied on the resource name.
 	 * @param suffixFilter
 	 *            The suffix condition to be applied on the resource name;
-	 * @return A set of resource paths that match the given conditions.
+	 * @return {@code true} if the resource path matches the given conditions.
 	 */
-	private static Set<String> filterResourcePaths(String location, Set<String> resourcePaths,
-			Set<String> excludedPaths, String nameFilter, String prefixFilter, String suffixFilter) {
-		Set<String> filteredResources = new HashSet<String>();
-
-		LOG.debug("Filtering scanned resources");
-		for (String resourcePath : resourcePaths) {
-
-			if (isPathAuthorized(resourcePath, location, excludedPaths)) {
-
-				String resourceName = resourcePath.substring(resourcePath.lastIndexOf("/") + 1);
+	private static boolean matches(String resourcePath, String nameFilter, String prefixFilter, String suffixFilter) {
+		String resourceName = resourcePath.substring(resourcePath.lastIndexOf("/") + 1);
 
-				if (StringUtils.isBlank(nameFilter) && StringUtils.isBlank(prefixFilter)
-						&& StringUtils.isBlank(suffixFilter)) {
-					filteredResources.add(resourcePath);
-					continue;
-				}
-
-				// if name condition is set, it's the only test on resources.
-				if (StringUtils.isNotBlank(nameFilter)) {
-					if (nameFilter.equalsIgnoreCase(resourceName)) {
-						filteredResources.add(resourcePath);
-					}
-				}
-				else {
-					// otherwise prefix and suffix conditions are verified
-					if (suffixFilter == null && resourceName.startsWith(prefixFilter)) {
-						filteredResources.add(resourcePath);
-					}
-					else if (prefixFilter == null && resourceName.endsWith(suffixFilter)) {
-						filteredResources.add(resourcePath);
-					}
-					else if (prefixFilter != null && suffixFilter != null && resourceName.startsWith(prefixFilter)
-							&& resourceName.endsWith(suffixFilter)) {
-						filteredResources.add(resourcePath);
-					}
-				}
-			}
+		if (StringUtils.isBlank(nameFilter) && StringUtils.isBlank(prefixFilter) && StringUtils.isBlank(suffixFilter)) {
+			return true;
 		}
 
-		LOG.debug("{} resources found after filtering", filteredResources.size());
-		return filteredResources;
-	}
+		// if name condition is set, it's the only test on resources.
+		if (StringUtils.isNotBlank(nameFilter)) {
+			return nameFilter.equalsIgnoreCase(resourceName);
+		}
 
-	/**
-	 * Prevents instantiation.
-	 */
-	private ResourceScanner() {
+		// otherwise prefix and suffix conditions are verified
+		if (suffixFilter == null) {
+			return resourceName.startsWith(prefixFilter);
+		}
+		else if (prefixFilter == null) {
+			return resourceName.endsWith(suffixFilter);
+		}
+		return resourceName.startsWith(prefixFilter) && resourceName.endsWith(suffixFilter);
 	}
 }
@@ -85,8 +85,48 @@ public final class Sha1Utils {
 			}
 		}
 
-		byte[] result = mDigest.digest(input.getBytes());
-		StringBuilder sb = new StringBuilder();
+		return toHex(newDigest().digest(input.getBytes()));
+	}
+
+	/**
+	 * <p>
+	 * Generates a SHA1 from the supplied bytes.
+	 * 
+	 * @param input
+	 *            The bytes from which the SHA1 is generated.
+	 * @return a hash value from the {@code input}, or {@code null} if the
+	 *         {@link MessageDigest} algorithm can't be loaded.
+	 */
+	public static String generateSha1(byte[] input) {
+		if (mDigest == null) {
+			LOG.error("SHA-1 can't be calculated. Returning null instead.");
+			return null;
+		}
+
+		return toHex(newDigest().digest(input));
+	}
+
+	/**
+	 * <p>
+	 * A {@link MessageDigest} holds a state and thus can't be shared between
+	 * threads. A copy of the loaded one is used for each computation.
+	 */
+	private static MessageDigest newDigest() {
+		try {
+			return (MessageDigest) mDigest.clone();
+		}
+		catch (CloneNotSupportedException e) {
+			try {
+				return MessageDigest.getInstance("SHA1");
+			}
+			catch (NoSuchAlgorithmException nsae) {
+				throw new IllegalStateException(nsae);
+			}
+		}
+	}
+
+	private static String toHex(byte[] result) {
+		StringBuilder sb = new StringBuilder(result.length * 2);
 		for (byte aResult : result) {
 			sb.append(Integer.toString((aResult & 0xff) + 0x100, 16).substring(1));
 		}
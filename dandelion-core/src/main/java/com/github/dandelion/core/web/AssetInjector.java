@@ -0,0 +1,106 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.web;
+
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetDomPosition;
+import com.github.dandelion.core.asset.AssetQuery;
+import com.github.dandelion.core.html.HtmlTag;
+import com.github.dandelion.core.utils.HtmlUtils;
+
+/**
+ * <p>
+ * Builds the HTML tags to inject into a page, respectively before the
+ * {@code </head>} and the {@code </body>} tags.
+ * 
+ * <p>
+ * The assets are queried lazily, i.e. only when the corresponding closing tag
+ * is reached in the page, so that all bundles added to the
+ * {@link AssetRequestContext} so far are taken into account.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class AssetInjector {
+
+	private HttpServletRequest request;
+	private Context context;
+
+	public AssetInjector(HttpServletRequest request, Context context) {
+		this.request = request;
+		this.context = context;
+	}
+
+	/**
+	 * @return the HTML code to insert just before the {@code </head>} tag, or
+	 *         an empty String if there is no asset to inject.
+	 */
+	public String getHeadContent() {
+		Set<Asset> assetsHead = new AssetQuery(request, context).withPosition(AssetDomPosition.head).perform();
+
+		if (assetsHead.isEmpty()) {
+			return "";
+		}
+
+		StringBuilder htmlHead = new StringBuilder();
+		for (Asset asset : assetsHead) {
+			HtmlTag tag = HtmlUtils.transformAsset(asset);
+			htmlHead.append(tag.toHtml());
+			htmlHead.append("\n");
+		}
+		htmlHead.append("\n");
+		return htmlHead.toString();
+	}
+
+	/**
+	 * @return the HTML code to insert just before the {@code </body>} tag, or
+	 *         an empty String if there is no asset to inject.
+	 */
+	public String getBodyContent() {
+		Set<Asset> assetsBody = new AssetQuery(request, context).withPosition(AssetDomPosition.body).perform();
+
+		if (assetsBody.isEmpty()) {
+			return "";
+		}
+
+		StringBuilder htmlBody = new StringBuilder();
+		for (Asset asset : assetsBody) {
+			HtmlTag tag = HtmlUtils.transformAsset(asset);
+			htmlBody.append(tag.toHtml());
+			htmlBody.append("\n");
+		}
+		return htmlBody.toString();
+	}
+}
@@ -458,6 +458,14 @@ public class AssetRequestContext {
 		return addParameter(assetName.toString(), parameter, value, replaceIfExists);
 	}
 
+	/**
+	 * @return all asset parameters stored in the current
+	 *         {@link AssetRequestContext}, indexed by asset name.
+	 */
+	public Map<String, Map<String, Object>> getParameters() {
+		return Collections.unmodifiableMap(parameters);
+	}
+
 	/**
 	 * Get the parameters for a asset name
 	 * 
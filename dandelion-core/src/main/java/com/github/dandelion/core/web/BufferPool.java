@@ -0,0 +1,111 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.web;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * Pool of fixed-size byte chunks used to buffer the responses, so that a new
+ * set of arrays doesn't need to be allocated (and then collected) for each
+ * filtered request.
+ * 
+ * <p>
+ * The pool is bounded: chunks released while the pool is full are simply left
+ * to the garbage collector.
+ * 
+ * <p>
+ * Instances of this class are thread safe.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class BufferPool {
+
+	public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+	private final int chunkSize;
+	private final int maxPooledChunks;
+	private final ConcurrentLinkedQueue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+	private final AtomicInteger pooledChunks = new AtomicInteger();
+
+	/**
+	 * @param chunkSize
+	 *            Size, in bytes, of each chunk.
+	 * @param maxPooledChunks
+	 *            Maximum number of chunks retained by the pool.
+	 */
+	public BufferPool(int chunkSize, int maxPooledChunks) {
+		this.chunkSize = chunkSize;
+		this.maxPooledChunks = maxPooledChunks;
+	}
+
+	/**
+	 * @return a chunk, either taken from the pool or newly allocated.
+	 */
+	public byte[] acquire() {
+		byte[] chunk = chunks.poll();
+		if (chunk == null) {
+			return new byte[chunkSize];
+		}
+		pooledChunks.decrementAndGet();
+		return chunk;
+	}
+
+	/**
+	 * <p>
+	 * Gives a chunk back to the pool. The chunk must not be used afterwards.
+	 * 
+	 * @param chunk
+	 *            The chunk to release.
+	 */
+	public void release(byte[] chunk) {
+		if (chunk.length != chunkSize) {
+			return;
+		}
+		if (pooledChunks.incrementAndGet() > maxPooledChunks) {
+			pooledChunks.decrementAndGet();
+			return;
+		}
+		chunks.offer(chunk);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the number of chunks currently available in the pool.
+	 */
+	public int getPooledChunks() {
+		return pooledChunks.get();
+	}
+}
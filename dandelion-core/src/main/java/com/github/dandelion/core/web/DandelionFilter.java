@@ -30,7 +30,10 @@
 package com.github.dandelion.core.web;
 
 import java.io.IOException;
-import java.util.Set;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -46,11 +49,7 @@ import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
-import com.github.dandelion.core.asset.AssetDomPosition;
-import com.github.dandelion.core.asset.AssetQuery;
-import com.github.dandelion.core.html.HtmlTag;
 import com.github.dandelion.core.monitoring.GraphViewer;
-import com.github.dandelion.core.utils.HtmlUtils;
 
 /**
  * <p>
@@ -65,11 +64,14 @@ public class DandelionFilter implements Filter {
 	private static Logger LOG = LoggerFactory.getLogger(DandelionFilter.class);
 
 	private Context context;
+	private BufferPool bufferPool;
 	
 	@Override
 	public void init(FilterConfig filterConfig) throws ServletException {
 		LOG.info("Initializing the Dandelion context");
 		context = new Context(filterConfig);
+		bufferPool = new BufferPool(BufferPool.DEFAULT_CHUNK_SIZE, context.getConfiguration()
+				.getInjectionBufferPoolSize());
 		LOG.info("Dandelion context initialized");
 	}
 
@@ -109,45 +111,38 @@ public class DandelionFilter implements Filter {
 		if (isFilterApplyable(request, response)) {
 			LOG.trace("The AssetFilter applies to the request {}", request.getRequestURL().toString());
 
-			DandelionResponseWrapper wrapper = new DandelionResponseWrapper(response);
-			filterChain.doFilter(request, wrapper);
-
-			String html = wrapper.getWrappedContent();
-			AssetRequestContext arc = AssetRequestContext.get(request);
+			if (context.getConfiguration().isInjectionStreaming()) {
+				StreamingResponseWrapper wrapper = new StreamingResponseWrapper(response, new AssetInjector(request,
+						context));
+				filterChain.doFilter(request, wrapper);
+				wrapper.finish();
+				return;
+			}
 
-			if (isDandelionApplyable(request, arc, wrapper)) {
+			int spillThreshold = context.getConfiguration().getInjectionSpillThreshold();
+			DandelionResponseWrapper wrapper = new DandelionResponseWrapper(response, bufferPool, spillThreshold);
+			try {
+				filterChain.doFilter(request, wrapper);
 
-				Set<Asset> assetsHead = new AssetQuery(request, context).withPosition(AssetDomPosition.head).perform();
+				AssetRequestContext arc = AssetRequestContext.get(request);
 
-				if (!assetsHead.isEmpty()) {
-					StringBuilder htmlHead = new StringBuilder();
-					for (Asset asset : assetsHead) {
-						HtmlTag tag = HtmlUtils.transformAsset(asset);
-						htmlHead.append(tag.toHtml());
-						htmlHead.append("\n");
+				if (isDandelionApplyable(request, arc, wrapper)) {
+					SpillableOutputStream injected = new SpillableOutputStream(bufferPool, spillThreshold);
+					try {
+						injectAssets(request, wrapper, injected);
+						sendContent(response, injected);
 					}
-
-					html = html.replace("</head>", htmlHead + "\n</head>");
-				}
-
-				Set<Asset> assetsBody = new AssetQuery(request, context).withPosition(AssetDomPosition.body).perform();
-
-				if (!assetsBody.isEmpty()) {
-					StringBuilder htmlBody = new StringBuilder();
-					for (Asset asset : assetsBody) {
-						HtmlTag tag = HtmlUtils.transformAsset(asset);
-						htmlBody.append(tag.toHtml());
-						htmlBody.append("\n");
+					finally {
+						injected.dispose();
 					}
-					html = html.replace("</body>", htmlBody + "</body>");
+				}
+				else {
+					sendContent(response, wrapper.getWrappedContentBuffer());
 				}
 			}
-
-			response.getWriter().println(html);
-
-			// The response is explicitely closed here instead of setting a
-			// Content-Length header
-			response.getWriter().close();
+			finally {
+				wrapper.dispose();
+			}
 		}
 		// All other requests are not filtered
 		else {
@@ -203,6 +198,45 @@ public class DandelionFilter implements Filter {
 		return applyFilter;
 	}
 
+	/**
+	 * <p>
+	 * Decodes the wrapped content using the character encoding of the response,
+	 * splices the asset tags into it and encodes the result back into the
+	 * given stream.
+	 */
+	private void injectAssets(HttpServletRequest request, DandelionResponseWrapper wrapper, OutputStream out)
+			throws IOException {
+		String charset = wrapper.getCharacterEncoding();
+		InjectingWriter injectingWriter = new InjectingWriter(new OutputStreamWriter(out, charset), new AssetInjector(
+				request, context), false);
+		Reader reader = new InputStreamReader(wrapper.getWrappedContentAsStream(), charset);
+		try {
+			char[] buffer = new char[BufferPool.DEFAULT_CHUNK_SIZE];
+			int n;
+			while ((n = reader.read(buffer)) != -1) {
+				injectingWriter.write(buffer, 0, n);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		injectingWriter.finish();
+	}
+
+	/**
+	 * <p>
+	 * Sends the final content to the client with an exact Content-Length, so
+	 * that the connection can be kept alive.
+	 */
+	private void sendContent(HttpServletResponse response, SpillableOutputStream content) throws IOException {
+		if (content.size() <= Integer.MAX_VALUE) {
+			response.setContentLength((int) content.size());
+		}
+		OutputStream out = response.getOutputStream();
+		content.writeTo(out);
+		out.flush();
+	}
+
 	/**
 	 * Only update the response if:
 	 * <ul>
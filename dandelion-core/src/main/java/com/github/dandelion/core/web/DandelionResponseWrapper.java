@@ -30,8 +30,10 @@
 package com.github.dandelion.core.web;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
@@ -42,34 +44,121 @@ import javax.servlet.http.HttpServletResponseWrapper;
  * Used to wrap the real {@link HttpServletResponse} so that we can modify it
  * after that the target of the request has delivered its response.
  * 
+ * <p>
+ * The response is buffered as bytes in a {@link SpillableOutputStream}, whether
+ * it is written through {@link #getWriter()} or {@link #getOutputStream()}.
+ * The characters written through {@link #getWriter()} are encoded using the
+ * character encoding of the response, so that the buffered bytes are exactly
+ * the ones that would have been sent without the wrapper.
+ * 
  * @author Thibault Duchateau
  * @author Romain Lespinasse
  * @since 0.10.0
  */
 public class DandelionResponseWrapper extends HttpServletResponseWrapper {
 
-	protected PrintWriter printWriter = null;
-	protected StringWriter stringWriter = null;
+	protected SpillableOutputStream buffer;
+	protected PrintWriter printWriter;
 	protected ServletOutputStream servletOutputStreamWrapper;
 
 	public DandelionResponseWrapper(HttpServletResponse response) {
+		this(response, new BufferPool(BufferPool.DEFAULT_CHUNK_SIZE, 0), -1);
+	}
+
+	/**
+	 * @param response
+	 *            The response to wrap.
+	 * @param pool
+	 *            The pool in which the buffer chunks are borrowed.
+	 * @param spillThreshold
+	 *            Number of bytes beyond which the response is moved to a
+	 *            temporary file. A negative value keeps the response in memory
+	 *            whatever its size.
+	 */
+	public DandelionResponseWrapper(HttpServletResponse response, BufferPool pool, int spillThreshold) {
 		super(response);
-		stringWriter = new StringWriter();
-		servletOutputStreamWrapper = new ServletOutputStreamWrapper(stringWriter);
-		printWriter = new PrintWriter(stringWriter);
+		buffer = new SpillableOutputStream(pool, spillThreshold);
 	}
 
 	@Override
 	public ServletOutputStream getOutputStream() throws IOException {
+		if (servletOutputStreamWrapper == null) {
+			servletOutputStreamWrapper = new ServletOutputStreamWrapper(buffer);
+		}
 		return servletOutputStreamWrapper;
 	}
 
 	@Override
 	public PrintWriter getWriter() throws IOException {
+		if (printWriter == null) {
+			printWriter = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+		}
 		return printWriter;
 	}
 
+	/**
+	 * <p>
+	 * The content length is ignored since the wrapped content is likely to be
+	 * modified before being sent.
+	 */
+	@Override
+	public void setContentLength(int len) {
+	}
+
+	/**
+	 * <p>
+	 * Only flushes the wrapped content: the real response must not be
+	 * committed before the final content length is known.
+	 */
+	@Override
+	public void flushBuffer() throws IOException {
+		flushWrappedContent();
+	}
+
+	/**
+	 * @return the buffer holding the bytes written by the application, once
+	 *         flushed.
+	 * @throws IOException
+	 *             if the pending characters can't be flushed.
+	 */
+	public SpillableOutputStream getWrappedContentBuffer() throws IOException {
+		flushWrappedContent();
+		return buffer;
+	}
+
+	/**
+	 * @return a stream reading the wrapped content, as is.
+	 * @throws IOException
+	 *             if the wrapped content can't be read.
+	 */
+	public InputStream getWrappedContentAsStream() throws IOException {
+		flushWrappedContent();
+		return buffer.getInputStream();
+	}
+
 	public String getWrappedContent() {
-		return stringWriter != null ? stringWriter.toString() : "";
+		try {
+			flushWrappedContent();
+			return buffer.toString(getCharacterEncoding());
+		}
+		catch (IOException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * <p>
+	 * Releases all resources, such as the pooled chunks or a temporary file,
+	 * used to buffer the response.
+	 */
+	public void dispose() {
+		buffer.dispose();
+	}
+
+	private void flushWrappedContent() throws IOException {
+		if (printWriter != null) {
+			printWriter.flush();
+		}
+		buffer.flush();
 	}
 }
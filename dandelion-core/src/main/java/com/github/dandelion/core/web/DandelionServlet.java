@@ -30,7 +30,7 @@
 package com.github.dandelion.core.web;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -42,6 +42,7 @@ import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.cache.AssetContent;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
 
 /**
@@ -63,6 +64,8 @@ public class DandelionServlet extends HttpServlet {
 	public static final String DANDELION_ASSETS_URL = "/dandelion-assets/";
 	public static final String DANDELION_ASSETS_URL_PATTERN = "/dandelion-assets/*";
 
+	private static final String GZIP = "gzip";
+
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		getLogger().debug("Dandelion Asset servlet captured GET request {}", request.getRequestURI());
@@ -74,16 +77,116 @@ public class DandelionServlet extends HttpServlet {
 		String assetKey = context.getCacheManager().getCacheKeyFromRequest(request);
 		AssetType assetType = AssetType.typeOfAsset(assetKey);
 		
+		AssetContent assetContent = context.getCacheManager().getAssetContent(assetKey, request);
+		if (assetContent == null) {
+			getLogger().debug("No asset found in the cache under the key {}", assetKey);
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		boolean gzip = acceptsGzip(request);
+		response.setHeader(HttpHeader.VARY.getName(), HttpHeader.ACCEPT_ENCODING.getName());
+		httpHeadersConfigurer.configureValidatorHeaders(response, assetContent, gzip);
+
+		// Answer conditional requests without sending the content again
+		if (isNotModified(request, assetContent, gzip)) {
+			httpHeadersConfigurer.configureCachingHeaders(response);
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+
 		// Configure response headers
 		httpHeadersConfigurer.configureResponseHeaders(response, assetType.getContentType());
-		
-		// Send the asset's content
-		PrintWriter writer = response.getWriter();
-		writer.write(context.getCacheManager().getContent(assetKey));
-		
-		// The response is explicitely closed here instead of setting a
-		// Content-Length header
-		writer.close();
+		response.setCharacterEncoding(AssetContent.ENCODING);
+
+		// Send the asset's content, as stored in the cache if the client
+		// accepts it, inflated otherwise
+		OutputStream out = response.getOutputStream();
+		if (gzip) {
+			response.setHeader(HttpHeader.CONTENT_ENCODING.getName(), GZIP);
+			response.setContentLength(assetContent.getGzippedLength());
+			assetContent.writeGzippedTo(out);
+		}
+		else {
+			response.setContentLength(assetContent.getLength());
+			assetContent.writeTo(out);
+		}
+		out.flush();
+	}
+
+	/**
+	 * <p>
+	 * Evaluates the conditional headers of the request against the content to
+	 * be sent. As stated in the RFC 2616, {@code If-Modified-Since} is ignored
+	 * as soon as {@code If-None-Match} is present.
+	 * 
+	 * @param request
+	 *            The current request.
+	 * @param assetContent
+	 *            The content to be sent.
+	 * @param gzip
+	 *            Whether the gzipped representation is to be sent.
+	 * @return {@code true} if the client already holds the content.
+	 */
+	boolean isNotModified(HttpServletRequest request, AssetContent assetContent, boolean gzip) {
+		String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.getName());
+		if (ifNoneMatch != null) {
+			String etag = assetContent.getEtag(gzip);
+			for (String candidate : ifNoneMatch.split(",")) {
+				candidate = candidate.trim();
+				if (candidate.startsWith("W/")) {
+					candidate = candidate.substring(2);
+				}
+				if (candidate.equals("*") || candidate.equals(etag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long ifModifiedSince;
+		try {
+			ifModifiedSince = request.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.getName());
+		}
+		catch (IllegalArgumentException e) {
+			return false;
+		}
+		return ifModifiedSince != -1 && assetContent.getLastModified() <= ifModifiedSince;
+	}
+
+	/**
+	 * @param request
+	 *            The current request.
+	 * @return {@code true} if the {@code Accept-Encoding} header of the request
+	 *         contains the gzip encoding and doesn't explicitly refuse it
+	 *         using {@code q=0}.
+	 */
+	boolean acceptsGzip(HttpServletRequest request) {
+		String acceptEncoding = request.getHeader(HttpHeader.ACCEPT_ENCODING.getName());
+		if (acceptEncoding == null) {
+			return false;
+		}
+
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.split(";");
+			String name = parts[0].trim();
+			if (!name.equalsIgnoreCase(GZIP) && !name.equalsIgnoreCase("x-gzip")) {
+				continue;
+			}
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						return Float.parseFloat(param.substring(2).trim()) > 0;
+					}
+					catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
 	}
 
 	protected Logger getLogger() {
@@ -42,8 +42,14 @@ public enum HttpHeader {
 	EXPIRES("Expires"), // Proxies
 	PRAGMA("Pragma"), // HTTP 1.0
 	LAST_MODIFIED("Last-Modified"),
+	ETAG("ETag"),
+	IF_NONE_MATCH("If-None-Match"),
+	IF_MODIFIED_SINCE("If-Modified-Since"),
 	CONTENT_TYPE("Content-Type"),
-	ACCEPT("Accept");
+	CONTENT_ENCODING("Content-Encoding"),
+	VARY("Vary"),
+	ACCEPT("Accept"),
+	ACCEPT_ENCODING("Accept-Encoding");
 
 	private String name;
 
@@ -29,20 +29,19 @@
  */
 package com.github.dandelion.core.web;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
-
 import javax.servlet.http.HttpServletResponse;
 
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.cache.AssetContent;
 
 /**
  * <p>
  * Configures the HTTP headers of a {@link HttpServletResponse}.
  * 
+ * <p>
+ * All dates are written using {@link HttpServletResponse#setDateHeader}, thus
+ * letting the container format them in a thread-safe way.
+ * 
  * @author Thibault Duchateau
  * @since 0.10.0
  */
@@ -50,13 +49,7 @@ public class HttpHeadersConfigurer {
 
 	public static final long ONE_YEAR_IN_MILLISECONDS = 365 * 24 * 60 * 60 * 1000L;
 	public static final String DEFAULT_CACHE_CONTROL = "public, max-age=315360000";
-	private static final SimpleDateFormat DATE_FORMAT;
 	private Context context;
-	
-	static {
-		DATE_FORMAT = new SimpleDateFormat("E, dd MMM yyyy HH:mm:ss z", Locale.US);
-		DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
-	}
 
 	public HttpHeadersConfigurer(Context context){
 		this.context = context;
@@ -65,22 +58,46 @@ public class HttpHeadersConfigurer {
 	public void configureResponseHeaders(HttpServletResponse response, String contentType) {
 
 		response.setContentType(contentType == null ? "text/plain" : contentType);
+		configureCachingHeaders(response);
+	}
+
+	/**
+	 * <p>
+	 * Configures the headers used by the browsers and the proxies to cache the
+	 * response. They must be sent both with the full response and with a
+	 * {@code 304 Not Modified} response.
+	 * 
+	 * @param response
+	 *            The response to configure.
+	 */
+	public void configureCachingHeaders(HttpServletResponse response) {
 
 		if (context.isDevModeEnabled()) {
 			response.setHeader(HttpHeader.CACHE_CONTROL.getName(), "no-cache, no-store, must-revalidate");
 			response.setHeader(HttpHeader.PRAGMA.getName(), "no-cache");
-			response.setHeader(HttpHeader.EXPIRES.getName(), String.valueOf(0));
+			response.setDateHeader(HttpHeader.EXPIRES.getName(), 0);
 		}
 		else {
 			response.setHeader(HttpHeader.CACHE_CONTROL.getName(), DEFAULT_CACHE_CONTROL);
-			response.setHeader(HttpHeader.EXPIRES.getName(), String.valueOf(ONE_YEAR_IN_MILLISECONDS));
-
-			// Trim the milliseconds off the value since the header is only
-			// accurate down to the second
-			long lastModified = new Date().getTime();
-			lastModified = TimeUnit.MILLISECONDS.toSeconds(lastModified);
-			lastModified = TimeUnit.SECONDS.toMillis(lastModified);
-			response.setHeader(HttpHeader.LAST_MODIFIED.getName(), DATE_FORMAT.format(lastModified));
+			response.setDateHeader(HttpHeader.EXPIRES.getName(), System.currentTimeMillis()
+					+ ONE_YEAR_IN_MILLISECONDS);
 		}
 	}
+
+	/**
+	 * <p>
+	 * Configures the validators of the given asset content, i.e. its entity
+	 * tag and the date at which it has been cached.
+	 * 
+	 * @param response
+	 *            The response to configure.
+	 * @param assetContent
+	 *            The content to be sent.
+	 * @param gzipped
+	 *            Whether the gzipped representation of the content is sent.
+	 */
+	public void configureValidatorHeaders(HttpServletResponse response, AssetContent assetContent, boolean gzipped) {
+		response.setHeader(HttpHeader.ETAG.getName(), assetContent.getEtag(gzipped));
+		response.setDateHeader(HttpHeader.LAST_MODIFIED.getName(), assetContent.getLastModified());
+	}
 }
@@ -0,0 +1,228 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.web;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>
+ * {@link Writer} that scans the HTML written through it and splices the
+ * content provided by an {@link AssetInjector} just before the first
+ * {@code </head>} and {@code </body>} closing tags, without ever buffering
+ * the page.
+ * 
+ * <p>
+ * Closing tags are matched case-insensitively, even when they are split
+ * across several calls to {@link #write(char[], int, int)}. Only the few
+ * characters of a potential closing tag are held back until the match is
+ * confirmed or invalidated.
+ * 
+ * <p>
+ * Instances of this class are not thread safe.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class InjectingWriter extends Writer {
+
+	private static final char[] HEAD_END = "</head>".toCharArray();
+	private static final char[] BODY_END = "</body>".toCharArray();
+
+	private final Writer out;
+	private final AssetInjector injector;
+	private final boolean flushAfterHead;
+
+	private boolean headInjected = false;
+	private boolean bodyInjected = false;
+
+	/**
+	 * Characters of a potential closing tag, not yet written to {@link #out}.
+	 */
+	private final char[] pending = new char[HEAD_END.length];
+	private int pendingLength = 0;
+
+	/**
+	 * @param out
+	 *            The writer to which the (modified) HTML is written.
+	 * @param injector
+	 *            The injector providing the HTML to insert.
+	 * @param flushAfterHead
+	 *            Whether the underlying writer must be flushed right after
+	 *            the {@code </head>} tag, allowing the browser to start
+	 *            fetching the assets as soon as possible.
+	 */
+	public InjectingWriter(Writer out, AssetInjector injector, boolean flushAfterHead) {
+		this.out = out;
+		this.injector = injector;
+		this.flushAfterHead = flushAfterHead;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+
+		// Nothing left to inject: straight copy
+		if (headInjected && bodyInjected) {
+			out.write(cbuf, off, len);
+			return;
+		}
+
+		int end = off + len;
+		int segmentStart = off;
+		int i = off;
+
+		while (i < end) {
+			char c = cbuf[i];
+
+			if (pendingLength == 0) {
+				if (c == '<') {
+					out.write(cbuf, segmentStart, i - segmentStart);
+					pending[pendingLength++] = c;
+					segmentStart = i + 1;
+				}
+				i++;
+				continue;
+			}
+
+			pending[pendingLength++] = c;
+			char[] match = match();
+			if (match == null) {
+				// Not a closing tag we're interested in: release the held back
+				// characters, except the current one that may open a new tag
+				out.write(pending, 0, pendingLength - 1);
+				pendingLength = 0;
+				segmentStart = i;
+				continue;
+			}
+
+			i++;
+			segmentStart = i;
+			if (pendingLength == match.length) {
+				inject(match);
+				if (headInjected && bodyInjected) {
+					out.write(cbuf, i, end - i);
+					return;
+				}
+			}
+		}
+
+		if (pendingLength == 0) {
+			out.write(cbuf, segmentStart, end - segmentStart);
+		}
+	}
+
+	/**
+	 * @return the closing tag the pending characters are a prefix of, or
+	 *         {@code null} if they can't match any of the expected tags.
+	 */
+	private char[] match() {
+		if (!headInjected && isPrefixOf(HEAD_END)) {
+			return HEAD_END;
+		}
+		if (!bodyInjected && isPrefixOf(BODY_END)) {
+			return BODY_END;
+		}
+		return null;
+	}
+
+	private boolean isPrefixOf(char[] tag) {
+		for (int j = 0; j < pendingLength; j++) {
+			if (Character.toLowerCase(pending[j]) != tag[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void inject(char[] tag) throws IOException {
+		if (tag == HEAD_END) {
+			out.write(injector.getHeadContent());
+			out.write(pending, 0, pendingLength);
+			headInjected = true;
+			if (flushAfterHead) {
+				out.flush();
+			}
+		}
+		else {
+			out.write(injector.getBodyContent());
+			out.write(pending, 0, pendingLength);
+			bodyInjected = true;
+
+			// A page without head section won't get any head asset
+			headInjected = true;
+		}
+		pendingLength = 0;
+	}
+
+	/**
+	 * <p>
+	 * Flushes the underlying writer. The characters of a potential closing
+	 * tag are kept until the next write.
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * <p>
+	 * Releases the held back characters, if any, and closes the underlying
+	 * writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		finish();
+		out.close();
+	}
+
+	/**
+	 * <p>
+	 * Releases the held back characters, if any, without closing the
+	 * underlying writer.
+	 */
+	public void finish() throws IOException {
+		if (pendingLength > 0) {
+			out.write(pending, 0, pendingLength);
+			pendingLength = 0;
+		}
+		out.flush();
+	}
+
+	public boolean isHeadInjected() {
+		return headInjected;
+	}
+
+	public boolean isBodyInjected() {
+		return bodyInjected;
+	}
+}
@@ -29,23 +29,44 @@
  */
 package com.github.dandelion.core.web;
 
-import java.io.StringWriter;
+import java.io.IOException;
+import java.io.OutputStream;
 
 import javax.servlet.ServletOutputStream;
 
 /**
+ * <p>
+ * {@link ServletOutputStream} that delegates all writes to another
+ * {@link OutputStream}.
  * 
  * @author Thibault Duchateau
  * @since 0.10.0
  */
 public class ServletOutputStreamWrapper extends ServletOutputStream {
-    StringWriter writer;
 
-    ServletOutputStreamWrapper(StringWriter aWriter) {
-        writer = aWriter;
-    }
+	private OutputStream outputStream;
 
-    public void write(int aByte) {
-        writer.write(aByte);
-    }
-}
\ No newline at end of file
+	ServletOutputStreamWrapper(OutputStream outputStream) {
+		this.outputStream = outputStream;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		outputStream.write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		outputStream.write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		outputStream.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.close();
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.web;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * {@link OutputStream} that keeps the written bytes in chunks borrowed from a
+ * {@link BufferPool} until a configurable threshold is reached. Beyond this
+ * threshold, the whole content is moved to a temporary file and all
+ * subsequent writes go to this file.
+ * 
+ * <p>
+ * Once the writing is over, the content can be transferred to another
+ * {@link OutputStream} using {@link #writeTo(OutputStream)} or read back using
+ * {@link #getInputStream()}. The chunks and the temporary file, if any, must
+ * be released using {@link #dispose()}, which is the only place where the
+ * file is deleted.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class SpillableOutputStream extends OutputStream {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpillableOutputStream.class);
+
+	private final BufferPool pool;
+	private final long threshold;
+	private final List<byte[]> chunks = new ArrayList<byte[]>();
+	private byte[] current;
+	private int position;
+	private long size;
+	private File spillFile;
+	private OutputStream fileOutputStream;
+
+	/**
+	 * @param pool
+	 *            The pool in which the chunks are borrowed.
+	 * @param threshold
+	 *            Maximum number of bytes kept in memory. A negative value
+	 *            disables the spilling to disk.
+	 */
+	public SpillableOutputStream(BufferPool pool, long threshold) {
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (fileOutputStream == null && threshold >= 0 && size + 1 > threshold) {
+			spill();
+		}
+
+		if (fileOutputStream != null) {
+			fileOutputStream.write(b);
+		}
+		else {
+			if (current == null || position == current.length) {
+				nextChunk();
+			}
+			current[position++] = (byte) b;
+		}
+		size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (fileOutputStream == null && threshold >= 0 && size + len > threshold) {
+			spill();
+		}
+
+		if (fileOutputStream != null) {
+			fileOutputStream.write(b, off, len);
+		}
+		else {
+			int remaining = len;
+			int offset = off;
+			while (remaining > 0) {
+				if (current == null || position == current.length) {
+					nextChunk();
+				}
+				int n = Math.min(remaining, current.length - position);
+				System.arraycopy(b, offset, current, position, n);
+				position += n;
+				offset += n;
+				remaining -= n;
+			}
+		}
+		size += len;
+	}
+
+	private void nextChunk() {
+		current = pool.acquire();
+		position = 0;
+		chunks.add(current);
+	}
+
+	private void spill() throws IOException {
+		spillFile = File.createTempFile("dandelion-", ".tmp");
+		LOG.debug("The response exceeds {} bytes and is now buffered in {}", threshold, spillFile.getAbsolutePath());
+
+		fileOutputStream = new BufferedOutputStream(new FileOutputStream(spillFile), pool.getChunkSize());
+		writeChunksTo(fileOutputStream);
+		releaseChunks();
+	}
+
+	private void writeChunksTo(OutputStream out) throws IOException {
+		for (int i = 0; i < chunks.size(); i++) {
+			byte[] chunk = chunks.get(i);
+			out.write(chunk, 0, chunk == current ? position : chunk.length);
+		}
+	}
+
+	private void releaseChunks() {
+		for (byte[] chunk : chunks) {
+			pool.release(chunk);
+		}
+		chunks.clear();
+		current = null;
+		position = 0;
+	}
+
+	/**
+	 * @return the number of bytes written so far.
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return {@code true} if the content has been moved to a temporary file.
+	 */
+	public boolean isSpilled() {
+		return spillFile != null;
+	}
+
+	/**
+	 * <p>
+	 * Transfers the whole written content to the given {@link OutputStream}.
+	 * 
+	 * @param out
+	 *            The destination stream.
+	 * @throws IOException
+	 *             if the temporary file can't be read or if the destination
+	 *             stream can't be written.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (fileOutputStream == null) {
+			writeChunksTo(out);
+			return;
+		}
+
+		InputStream in = getInputStream();
+		try {
+			byte[] buffer = new byte[pool.getChunkSize()];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * @return a stream reading the whole written content.
+	 * @throws IOException
+	 *             if the temporary file can't be opened.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (fileOutputStream != null) {
+			fileOutputStream.flush();
+			return new BufferedInputStream(new FileInputStream(spillFile), pool.getChunkSize());
+		}
+
+		List<InputStream> streams = new ArrayList<InputStream>(chunks.size());
+		for (byte[] chunk : chunks) {
+			streams.add(new ByteArrayInputStream(chunk, 0, chunk == current ? position : chunk.length));
+		}
+		return new SequenceInputStream(Collections.enumeration(streams));
+	}
+
+	/**
+	 * @param charsetName
+	 *            The charset used to decode the bytes.
+	 * @return the whole written content, decoded with the given charset.
+	 * @throws IOException
+	 *             if the temporary file can't be read or if the charset is not
+	 *             supported.
+	 */
+	public String toString(String charsetName) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(size, Integer.MAX_VALUE));
+		writeTo(out);
+		return out.toString(charsetName);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (fileOutputStream != null) {
+			fileOutputStream.flush();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Only flushes the stream: the content must remain available to
+	 * {@link #writeTo(OutputStream)} after the page has been fully rendered.
+	 */
+	@Override
+	public void close() throws IOException {
+		flush();
+	}
+
+	/**
+	 * <p>
+	 * Gives the chunks back to the pool and releases the temporary file, if
+	 * any.
+	 */
+	public void dispose() {
+		releaseChunks();
+		if (fileOutputStream != null) {
+			try {
+				fileOutputStream.close();
+			}
+			catch (IOException e) {
+				LOG.warn("Unable to close the temporary file {}", spillFile.getAbsolutePath(), e);
+			}
+			fileOutputStream = null;
+		}
+		if (spillFile != null && !spillFile.delete()) {
+			LOG.warn("Unable to delete the temporary file {}", spillFile.getAbsolutePath());
+		}
+		spillFile = null;
+	}
+}
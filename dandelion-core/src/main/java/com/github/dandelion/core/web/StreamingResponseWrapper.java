@@ -0,0 +1,214 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.web;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.github.dandelion.core.utils.WriterOutputStream;
+
+/**
+ * <p>
+ * Wrapper of the {@link HttpServletResponse} used when the streaming injection
+ * is enabled.
+ * 
+ * <p>
+ * Contrary to the {@link DandelionResponseWrapper}, the page is never
+ * buffered: as soon as the response is detected as HTML, everything written
+ * by the application goes through an {@link InjectingWriter} directly
+ * plugged on the real response. The response is flushed right after the
+ * {@code </head>} tag so that the browser can start fetching the head assets
+ * while the rest of the page is being rendered.
+ * 
+ * <p>
+ * Note that the head assets are resolved when the {@code </head>} tag is
+ * reached. Bundles containing head assets must therefore be added to the
+ * {@link AssetRequestContext} before that point.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+public class StreamingResponseWrapper extends HttpServletResponseWrapper {
+
+	private static final String CONTENT_LENGTH = "Content-Length";
+
+	private AssetInjector injector;
+	private Boolean injecting;
+	private String contentLength;
+	private InjectingWriter injectingWriter;
+	private PrintWriter printWriter;
+	private WriterOutputStream outputStream;
+	private ServletOutputStream servletOutputStream;
+
+	public StreamingResponseWrapper(HttpServletResponse response, AssetInjector injector) {
+		super(response);
+		this.injector = injector;
+	}
+
+	/**
+	 * @return {@code true} if the response is HTML and thus must be scanned
+	 *         for injection. The decision is taken once, at the first access to
+	 *         the response body, and the content length held back until then is
+	 *         applied if the response is not injected.
+	 */
+	private boolean isInjecting() {
+		if (injecting == null) {
+			injecting = getContentType() != null && getContentType().contains("text/html");
+			if (!injecting && contentLength != null) {
+				super.setHeader(CONTENT_LENGTH, contentLength);
+			}
+		}
+		return injecting;
+	}
+
+	private InjectingWriter getInjectingWriter() throws IOException {
+		if (injectingWriter == null) {
+			injectingWriter = new InjectingWriter(getResponse().getWriter(), injector, true);
+		}
+		return injectingWriter;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (printWriter == null) {
+			printWriter = isInjecting() ? new PrintWriter(getInjectingWriter()) : super.getWriter();
+		}
+		return printWriter;
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if (servletOutputStream == null) {
+			if (isInjecting()) {
+				outputStream = new WriterOutputStream(getInjectingWriter(), getCharacterEncoding());
+				servletOutputStream = new ServletOutputStreamWrapper(outputStream);
+			}
+			else {
+				servletOutputStream = super.getOutputStream();
+			}
+		}
+		return servletOutputStream;
+	}
+
+	/**
+	 * <p>
+	 * The content length is ignored as soon as the injection applies because
+	 * the injected tags change the size of the response. Until the decision is
+	 * taken, the content length is only remembered, since the content type may
+	 * still change.
+	 */
+	@Override
+	public void setContentLength(int len) {
+		setContentLengthHeader(String.valueOf(len));
+	}
+
+	@Override
+	public void setHeader(String name, String value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthHeader(value);
+		}
+		else {
+			super.setHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addHeader(String name, String value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthHeader(value);
+		}
+		else {
+			super.addHeader(name, value);
+		}
+	}
+
+	@Override
+	public void setIntHeader(String name, int value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthHeader(String.valueOf(value));
+		}
+		else {
+			super.setIntHeader(name, value);
+		}
+	}
+
+	@Override
+	public void addIntHeader(String name, int value) {
+		if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+			setContentLengthHeader(String.valueOf(value));
+		}
+		else {
+			super.addIntHeader(name, value);
+		}
+	}
+
+	private void setContentLengthHeader(String value) {
+		if (injecting == null) {
+			contentLength = value;
+		}
+		else if (!injecting) {
+			super.setHeader(CONTENT_LENGTH, value);
+		}
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		flush();
+		super.flushBuffer();
+	}
+
+	/**
+	 * <p>
+	 * Writes all characters still held back by the {@link InjectingWriter} to
+	 * the real response. Must be called once the filter chain has completed.
+	 */
+	public void finish() throws IOException {
+		flush();
+		if (injectingWriter != null) {
+			injectingWriter.finish();
+		}
+	}
+
+	private void flush() throws IOException {
+		// The headers can't be changed once the response is committed, the
+		// decision must be taken beforehand
+		isInjecting();
+		if (printWriter != null) {
+			printWriter.flush();
+		}
+		if (outputStream != null) {
+			outputStream.flush();
+		}
+	}
+}
@@ -72,7 +72,64 @@ public class AssetQueryTest {
 		Asset asset = assets.iterator().next();
 		assertThat(context.getCacheManager().getContent(asset.getCacheKey())).isEqualTo("\nvar v={};");
 	}
+
+	@Test
+	public void should_share_the_cache_key_between_pages() {
+
+		request.setRequestURI("/context/page1");
+		AssetRequestContext.get(request).addBundles("bundle4");
+		Asset asset1 = new AssetQuery(request, context).perform().iterator().next();
+
+		MockHttpServletRequest otherRequest = new MockHttpServletRequest();
+		otherRequest.setContextPath("/context");
+		otherRequest.setRequestURI("/context/page2");
+		otherRequest.setQueryString("param=value");
+		otherRequest.setAttribute(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+		AssetRequestContext.get(otherRequest).addBundles("bundle4");
+		Asset asset2 = new AssetQuery(otherRequest, context).perform().iterator().next();
+
+		assertThat(asset2.getCacheKey()).isEqualTo(asset1.getCacheKey());
+		assertThat(context.getCacheManager().getContent(asset2.getCacheKey())).isEqualTo("\nvar v={};");
+	}
 	
+	@Test
+	public void should_build_the_same_signature_for_the_same_bundles() {
+
+		request.setRequestURI("/context/search");
+		request.setQueryString("page=1");
+		AssetRequestContext.get(request).addBundles("bundle4, bundle5").excludeJs("a5_1");
+
+		MockHttpServletRequest otherRequest = new MockHttpServletRequest();
+		otherRequest.setContextPath("/context");
+		otherRequest.setRequestURI("/context/search");
+		otherRequest.setQueryString("page=2");
+		otherRequest.setAttribute(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+		AssetRequestContext.get(otherRequest).addBundles("bundle4,bundle5").excludeJs("a5_1");
+
+		AssetQuery query = new AssetQuery(request, context);
+		assertThat(query.getRequestSignature(AssetRequestContext.get(otherRequest))).isEqualTo(
+				query.getRequestSignature(AssetRequestContext.get(request)));
+
+		AssetRequestContext.get(otherRequest).excludeCss("a5_4");
+		assertThat(query.getRequestSignature(AssetRequestContext.get(otherRequest))).isNotEqualTo(
+				query.getRequestSignature(AssetRequestContext.get(request)));
+	}
+
+	@Test
+	public void should_not_reuse_the_signature_once_the_bundles_are_reloaded() {
+
+		AssetRequestContext.get(request).addBundles("bundle4");
+		AssetQuery query = new AssetQuery(request, context);
+		String signature = query.getRequestSignature(AssetRequestContext.get(request));
+
+		context.initBundleStorage();
+		assertThat(new AssetQuery(request, context).getRequestSignature(AssetRequestContext.get(request)))
+				.isNotEqualTo(signature);
+
+		// Queries already in progress keep using the previous bundles
+		assertThat(query.getRequestSignature(AssetRequestContext.get(request))).isEqualTo(signature);
+	}
+
 	@Test
 	public void should_return_only_head_assets() {
 
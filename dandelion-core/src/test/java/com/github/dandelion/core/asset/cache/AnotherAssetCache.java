@@ -13,7 +13,7 @@ public class AnotherAssetCache extends AbstractAssetCache {
 	}
 
 	@Override
-	public String getAssetContent(String cacheKey) {
+	public AssetContent getAssetContent(String cacheKey) {
 		// TODO Auto-generated method stub
 		return null;
 	}
@@ -25,7 +25,7 @@ public class AnotherAssetCache extends AbstractAssetCache {
 	}
 
 	@Override
-	public void storeAssetContent(String cacheKey, String cacheContent) {
+	public void storeAssetContent(String cacheKey, AssetContent cacheContent) {
 		// TODO Auto-generated method stub
 		
 	}
@@ -0,0 +1,114 @@
+package com.github.dandelion.core.asset.cache;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+
+public class AssetCacheManagerTest {
+
+	private Context context;
+	private AssetCacheManager cacheManager;
+
+	@Before
+	public void setup() {
+		context = new Context(new MockFilterConfig());
+		cacheManager = context.getCacheManager();
+	}
+
+	@Test
+	public void should_load_the_content_only_once_for_concurrent_requests() throws Exception {
+		final AtomicInteger loadings = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<String> loader = new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				loadings.incrementAndGet();
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+				return "var a = 1;";
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<String>> results = new ArrayList<Future<String>>();
+		results.add(executor.submit(new Callable<String>() {
+
+			@Override
+			public String call() {
+				return cacheManager.loadContent("single-flight", loader);
+			}
+		}));
+		started.await(5, TimeUnit.SECONDS);
+		for (int i = 0; i < 7; i++) {
+			results.add(executor.submit(new Callable<String>() {
+
+				@Override
+				public String call() {
+					return cacheManager.loadContent("single-flight", loader);
+				}
+			}));
+		}
+
+		// Wait for all other requests to be coalesced
+		while (cacheManager.getCoalescedLoadings() < 7) {
+			Thread.sleep(10);
+		}
+		release.countDown();
+
+		for (Future<String> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("var a = 1;");
+		}
+		executor.shutdown();
+
+		assertThat(loadings.get()).isEqualTo(1);
+		assertThat(cacheManager.getCoalescedLoadings()).isEqualTo(7);
+		assertThat(cacheManager.getContent("single-flight")).isEqualTo("var a = 1;");
+	}
+
+	@Test
+	public void should_keep_the_raw_contents_out_of_the_asset_cache_until_processed() {
+		String content = cacheManager.loadRawContent("raw", new Callable<String>() {
+
+			@Override
+			public String call() {
+				return "var raw = 1;";
+			}
+		});
+		assertThat(content).isEqualTo("var raw = 1;");
+		assertThat(cacheManager.exists("raw")).isTrue();
+		assertThat(cacheManager.getContent("raw")).isEqualTo("var raw = 1;");
+		assertThat(context.getAssetCache().getAssetContent("raw")).isNull();
+
+		cacheManager.remove("raw");
+		assertThat(cacheManager.exists("raw")).isFalse();
+		assertThat(cacheManager.getContent("raw")).isNull();
+	}
+
+	@Test(expected = DandelionException.class)
+	public void should_propagate_the_loading_failure() {
+		cacheManager.loadContent("failure", new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				throw new IllegalStateException("Unreachable location");
+			}
+		});
+	}
+}
@@ -0,0 +1,168 @@
+package com.github.dandelion.core.asset.cache;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DiskAssetStoreTest {
+
+	private File directory;
+	private DiskAssetStore store;
+
+	@Before
+	public void setup() throws IOException {
+		directory = File.createTempFile("dandelion", "store");
+		directory.delete();
+		store = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+	}
+
+	@After
+	public void teardown() {
+		store.close();
+		new File(directory, DiskAssetStore.SEGMENT_FILE_NAME).delete();
+		directory.delete();
+	}
+
+	@Test
+	public void should_read_the_appended_contents() {
+		AssetContent content = AssetContent.fromString("var a = 1;");
+		assertThat(store.append("key1", content)).isTrue();
+
+		AssetContent read = store.read("key1");
+		assertThat(read.asString()).isEqualTo("var a = 1;");
+		assertThat(read.getHash()).isEqualTo(content.getHash());
+		assertThat(read.getLastModified()).isEqualTo(content.getLastModified());
+		assertThat(store.contains("key2")).isFalse();
+		assertThat(store.read("key2")).isNull();
+	}
+
+	@Test
+	public void should_warm_load_the_contents_on_restart() throws IOException {
+		store.append("key1", AssetContent.fromString("var a = 1;"));
+		store.append("key2", AssetContent.fromString("var b = 2;"));
+		store.append("key1", AssetContent.fromString("var a = 3;"));
+		store.close();
+
+		store = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+		assertThat(store.size()).isEqualTo(2);
+		assertThat(store.read("key1").asString()).isEqualTo("var a = 3;");
+		assertThat(store.read("key2").asString()).isEqualTo("var b = 2;");
+	}
+
+	@Test
+	public void should_discard_the_contents_written_with_another_fingerprint() throws IOException {
+		store.append("key1", AssetContent.fromString("var a = 1;"));
+		store.close();
+
+		store = DiskAssetStore.open(directory, "another", 1024 * 1024);
+		assertThat(store.size()).isEqualTo(0);
+		assertThat(store.contains("key1")).isFalse();
+	}
+
+	@Test
+	public void should_discard_the_records_following_a_corruption() throws IOException {
+		store.append("key1", AssetContent.fromString("var a = 1;"));
+		long validSize = store.getSegmentSize();
+		store.append("key2", AssetContent.fromString("var b = 2;"));
+		store.close();
+
+		RandomAccessFile segment = new RandomAccessFile(new File(directory, DiskAssetStore.SEGMENT_FILE_NAME), "rw");
+		segment.seek(segment.length() - 1);
+		int lastByte = segment.read();
+		segment.seek(segment.length() - 1);
+		segment.write(lastByte ^ 0xff);
+		segment.close();
+
+		store = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+		assertThat(store.contains("key1")).isTrue();
+		assertThat(store.contains("key2")).isFalse();
+		assertThat(store.getSegmentSize()).isEqualTo(validSize);
+
+		// New records are appended after the last valid one
+		store.append("key3", AssetContent.fromString("var c = 3;"));
+		assertThat(store.read("key3").asString()).isEqualTo("var c = 3;");
+	}
+
+	@Test
+	public void should_discard_an_incomplete_record() throws IOException {
+		store.append("key1", AssetContent.fromString("var a = 1;"));
+		long validSize = store.getSegmentSize();
+		store.append("key2", AssetContent.fromString("var b = 2;"));
+		store.close();
+
+		RandomAccessFile segment = new RandomAccessFile(new File(directory, DiskAssetStore.SEGMENT_FILE_NAME), "rw");
+		segment.setLength(segment.length() - 3);
+		segment.close();
+
+		store = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+		assertThat(store.size()).isEqualTo(1);
+		assertThat(store.getSegmentSize()).isEqualTo(validSize);
+	}
+
+	@Test
+	public void should_not_exceed_the_maximum_size() throws IOException {
+		store.close();
+		store = DiskAssetStore.open(directory, "fingerprint", 100);
+
+		assertThat(store.append("key1", AssetContent.fromString("var a = 1;"))).isFalse();
+		assertThat(store.contains("key1")).isFalse();
+	}
+
+	@Test
+	public void should_drop_all_contents_when_cleared() {
+		store.append("key1", AssetContent.fromString("var a = 1;"));
+		store.clear();
+
+		assertThat(store.contains("key1")).isFalse();
+		store.append("key2", AssetContent.fromString("var b = 2;"));
+		assertThat(store.read("key2").asString()).isEqualTo("var b = 2;");
+	}
+
+	@Test
+	public void should_not_read_the_contents_of_a_cleared_segment() throws InterruptedException {
+		final String script = "var a = '" + new String(new char[4096]).replace('\0', 'a') + "';";
+		store.append("key1", AssetContent.fromString(script));
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (running.get()) {
+						AssetContent read = store.read("key1");
+						if (read != null && !read.asString().equals(script)) {
+							throw new AssertionError("Unexpected content " + read.asString());
+						}
+					}
+				}
+				catch (Throwable e) {
+					failure.set(e);
+				}
+			}
+		};
+		reader.start();
+
+		for (int i = 0; i < 200; i++) {
+			store.clear();
+			store.append("key0", AssetContent.fromString("var b = 2;"));
+			store.append("key1", AssetContent.fromString(script));
+		}
+		running.set(false);
+		reader.join();
+
+		assertThat(failure.get()).isNull();
+	}
+
+	@Test(expected = IOException.class)
+	public void should_not_open_a_segment_already_in_use() throws IOException {
+		DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+	}
+}
@@ -0,0 +1,104 @@
+package com.github.dandelion.core.asset.cache;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.storage.BundleStorageUnit;
+
+public class PrecompiledAssetsTest {
+
+	private File directory;
+
+	@Before
+	public void setup() throws IOException {
+		directory = File.createTempFile("dandelion", "precompiled");
+		directory.delete();
+	}
+
+	@After
+	public void teardown() {
+		delete(directory);
+	}
+
+	@Test
+	public void should_not_load_anything_without_manifest() throws IOException {
+		directory.mkdirs();
+		assertThat(PrecompiledAssets.load(classLoader())).isNull();
+	}
+
+	@Test
+	public void should_read_the_written_contents() throws IOException {
+		AssetContent content = AssetContent.fromString("var a=1;");
+		Map<String, AssetContent> contents = new HashMap<String, AssetContent>();
+		contents.put("hash/a-1.0.min.js", content);
+
+		PrecompiledAssets.write(directory, "jsmin", "/app", Arrays.<BundleStorageUnit> asList(),
+				contents);
+
+		PrecompiledAssets precompiledAssets = PrecompiledAssets.load(classLoader());
+		assertThat(precompiledAssets.size()).isEqualTo(1);
+		assertThat(precompiledAssets.getProcessorChain()).isEqualTo("jsmin");
+		assertThat(precompiledAssets.getContextPath()).isEqualTo("/app");
+		assertThat(precompiledAssets.contains("hash/a-1.0.min.js")).isTrue();
+		assertThat(precompiledAssets.contains("hash/b-1.0.min.js")).isFalse();
+
+		AssetContent read = precompiledAssets.read("hash/a-1.0.min.js");
+		assertThat(read.asString()).isEqualTo("var a=1;");
+		assertThat(read.getHash()).isEqualTo(content.getHash());
+		assertThat(read.getLastModified()).isEqualTo(content.getLastModified());
+		assertThat(precompiledAssets.read("hash/b-1.0.min.js")).isNull();
+	}
+
+	@Test
+	public void should_restore_the_bundles_with_their_dependencies() throws IOException {
+		Map<String, String> locations = new HashMap<String, String>();
+		locations.put("webapp", "/js/a.js");
+		BundleStorageUnit lib = new BundleStorageUnit("lib", new HashSet<AssetStorageUnit>(
+				Arrays.asList(new AssetStorageUnit("a", "1.0", AssetType.js, locations))));
+		BundleStorageUnit app = new BundleStorageUnit("app", new HashSet<AssetStorageUnit>());
+		app.addEdgeTo(lib);
+		lib.addEdgeFrom(app);
+
+		PrecompiledAssets.write(directory, "", "", Arrays.asList(lib, app),
+				new HashMap<String, AssetContent>());
+
+		PrecompiledAssets precompiledAssets = PrecompiledAssets.load(classLoader());
+		assertThat(precompiledAssets.getBundles()).hasSize(2);
+		BundleStorageUnit restoredLib = precompiledAssets.getBundles().get(0);
+		assertThat(restoredLib.getName()).isEqualTo("lib");
+		assertThat(restoredLib.getAssetStorageUnits()).hasSize(1);
+		assertThat(restoredLib.getAssetStorageUnits().iterator().next().getLocations().get("webapp")).isEqualTo(
+				"/js/a.js");
+		BundleStorageUnit restoredApp = precompiledAssets.getBundles().get(1);
+		assertThat(restoredApp.getName()).isEqualTo("app");
+		assertThat(restoredApp.getDependencies()).containsOnly("lib");
+	}
+
+	private ClassLoader classLoader() throws IOException {
+		return new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
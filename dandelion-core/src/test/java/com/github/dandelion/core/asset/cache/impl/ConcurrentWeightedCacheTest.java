@@ -0,0 +1,93 @@
+package com.github.dandelion.core.asset.cache.impl;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class ConcurrentWeightedCacheTest {
+
+	private static final ConcurrentWeightedCache.Weigher<String> LENGTH_WEIGHER = new ConcurrentWeightedCache.Weigher<String>() {
+
+		@Override
+		public int weigh(String value) {
+			return value.length();
+		}
+	};
+
+	@Test
+	public void should_count_hits_and_misses() {
+		ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<String, String>(10);
+		cache.put("key", "value");
+
+		assertThat(cache.get("key")).isEqualTo("value");
+		assertThat(cache.get("unknown")).isNull();
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_stay_within_the_weight_budget() {
+		ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<String, String>(100, 10,
+				LENGTH_WEIGHER);
+		cache.put("a", "12345");
+		cache.put("b", "12345");
+		assertThat(cache.weight()).isEqualTo(10);
+
+		// Make "c" more frequent than the other keys so that it is admitted
+		cache.get("c");
+		cache.get("c");
+		cache.get("c");
+		assertThat(cache.put("c", "123")).isTrue();
+
+		assertThat(cache.weight()).isLessThanOrEqualTo(10);
+		assertThat(cache.getEvictionCount()).isEqualTo(1);
+		assertThat(cache.get("c")).isEqualTo("123");
+	}
+
+	@Test
+	public void should_reject_values_heavier_than_the_cache() {
+		ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<String, String>(100, 4,
+				LENGTH_WEIGHER);
+
+		assertThat(cache.put("a", "12345")).isFalse();
+		assertThat(cache.size()).isEqualTo(0);
+		assertThat(cache.getRejectionCount()).isEqualTo(1);
+	}
+
+	@Test
+	public void should_resist_one_off_keys() {
+		ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<String, String>(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put("popular" + i, "value");
+			cache.get("popular" + i);
+			cache.get("popular" + i);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			cache.put("scan" + i, "value");
+		}
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(cache.get("popular" + i)).isEqualTo("value");
+		}
+		assertThat(cache.size()).isEqualTo(10);
+	}
+
+	@Test
+	public void should_keep_the_counters_consistent_on_remove_and_clear() {
+		ConcurrentWeightedCache<String, String> cache = new ConcurrentWeightedCache<String, String>(10, 100,
+				LENGTH_WEIGHER);
+		cache.put("a", "123");
+		cache.put("b", "1234");
+		cache.put("a", "12");
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.weight()).isEqualTo(6);
+		assertThat(cache.remove("b")).isEqualTo("1234");
+		assertThat(cache.weight()).isEqualTo(2);
+
+		cache.clear();
+		assertThat(cache.size()).isEqualTo(0);
+		assertThat(cache.weight()).isEqualTo(0);
+	}
+}
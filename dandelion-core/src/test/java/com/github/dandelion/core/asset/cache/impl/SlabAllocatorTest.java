@@ -0,0 +1,101 @@
+package com.github.dandelion.core.asset.cache.impl;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.github.dandelion.core.asset.cache.AssetContent;
+
+public class SlabAllocatorTest {
+
+	@Test
+	public void should_store_the_bytes_off_heap() {
+		SlabAllocator allocator = new SlabAllocator(16, 64);
+		SlabAllocator.Allocation allocation = allocator.allocate("hello".getBytes());
+
+		ByteBuffer buffer = allocation.read();
+		assertThat(buffer.isDirect()).isTrue();
+		assertThat(read(allocation)).isEqualTo("hello");
+		assertThat(allocator.getLiveBytes()).isEqualTo(5);
+		assertThat(allocator.getReservedBytes()).isEqualTo(16);
+	}
+
+	@Test
+	public void should_give_large_regions_their_own_slab() {
+		SlabAllocator allocator = new SlabAllocator(4, 64);
+		SlabAllocator.Allocation allocation = allocator.allocate("hello world".getBytes());
+
+		assertThat(read(allocation)).isEqualTo("hello world");
+		assertThat(allocator.getReservedBytes()).isEqualTo(11);
+	}
+
+	@Test
+	public void should_not_exceed_the_capacity() {
+		SlabAllocator allocator = new SlabAllocator(8, 16);
+
+		assertThat(allocator.allocate("12345678".getBytes())).isNotNull();
+		assertThat(allocator.allocate("12345678".getBytes())).isNotNull();
+		assertThat(allocator.allocate("1".getBytes())).isNull();
+	}
+
+	@Test
+	public void should_release_a_slab_once_all_its_regions_are_freed() {
+		SlabAllocator allocator = new SlabAllocator(8, 16);
+		SlabAllocator.Allocation first = allocator.allocate("1234".getBytes());
+		SlabAllocator.Allocation second = allocator.allocate("5678".getBytes());
+		allocator.allocate("abcd".getBytes());
+		assertThat(allocator.getSlabCount()).isEqualTo(2);
+
+		allocator.free(first);
+		allocator.free(second);
+		allocator.free(second);
+
+		assertThat(allocator.getSlabCount()).isEqualTo(1);
+		assertThat(allocator.getLiveBytes()).isEqualTo(4);
+	}
+
+	@Test
+	public void should_move_the_remaining_regions_when_compacting() {
+		SlabAllocator allocator = new SlabAllocator(8, 16);
+		SlabAllocator.Allocation first = allocator.allocate("123456".getBytes());
+		SlabAllocator.Allocation kept = allocator.allocate("ab".getBytes());
+		SlabAllocator.Allocation other = allocator.allocate("cdefgh".getBytes());
+
+		// A reader that started before the compaction keeps consistent bytes
+		ByteBuffer before = kept.read();
+		allocator.free(first);
+		assertThat(allocator.allocate("ijklmnop".getBytes())).isNull();
+
+		assertThat(allocator.compact()).isEqualTo(8);
+		assertThat(read(kept)).isEqualTo("ab");
+		assertThat(read(other)).isEqualTo("cdefgh");
+		assertThat(before.get()).isEqualTo((byte) 'a');
+		assertThat(allocator.getCompactionCount()).isEqualTo(1);
+		assertThat(allocator.getLiveBytes()).isEqualTo(8);
+	}
+
+	@Test
+	public void should_serve_the_content_from_the_off_heap_region() throws Exception {
+		AssetContent content = AssetContent.fromString("var a = 1;");
+		SlabAllocator allocator = new SlabAllocator(1024, 1024);
+		OffHeapAssetContent offHeapContent = new OffHeapAssetContent(
+				allocator.allocate(content.getGzippedBytes()), content);
+
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		offHeapContent.writeGzippedTo(gzipped);
+		assertThat(gzipped.toByteArray()).isEqualTo(content.getGzippedBytes());
+		assertThat(offHeapContent.getGzippedLength()).isEqualTo(content.getGzippedLength());
+		assertThat(offHeapContent.asString()).isEqualTo("var a = 1;");
+		assertThat(offHeapContent.getEtag(true)).isEqualTo(content.getEtag(true));
+	}
+
+	private static String read(SlabAllocator.Allocation allocation) {
+		ByteBuffer buffer = allocation.read();
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return new String(bytes);
+	}
+}
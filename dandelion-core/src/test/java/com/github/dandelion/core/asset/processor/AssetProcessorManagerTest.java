@@ -0,0 +1,92 @@
+package com.github.dandelion.core.asset.processor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.cache.AssetCacheManager;
+import com.github.dandelion.core.config.DandelionConfig;
+import com.github.dandelion.core.web.WebConstants;
+
+public class AssetProcessorManagerTest {
+
+	private Context context;
+	private AssetCacheManager cacheManager;
+	private MockHttpServletRequest request;
+
+	@Before
+	public void setup() {
+		MockFilterConfig filterConfig = new MockFilterConfig();
+		filterConfig.addInitParameter(DandelionConfig.DANDELION_MODE.getName(), "production");
+		context = new Context(filterConfig);
+		cacheManager = context.getCacheManager();
+		request = new MockHttpServletRequest();
+		request.setAttribute(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+	}
+
+	@Test
+	public void should_remove_the_raw_content_once_processed() {
+		Asset asset = rawAsset("var a = 1;");
+
+		context.getProcessorManager().process(Collections.singleton(asset), request);
+
+		assertThat(cacheManager.exists("raw")).isFalse();
+		assertThat(cacheManager.getContent(asset.getCacheKey()).trim()).isEqualTo("var a=1;");
+	}
+
+	@Test
+	public void should_remove_the_raw_content_when_already_processed() {
+		Asset asset = rawAsset("var a = 1;");
+		String processedCacheKey = cacheManager.generateCacheKey(request, asset, true);
+		cacheManager.loadContent(processedCacheKey, new Callable<String>() {
+
+			@Override
+			public String call() {
+				return "var a=1;";
+			}
+		});
+
+		context.getProcessorManager().process(Collections.singleton(asset), request);
+
+		assertThat(asset.getCacheKey()).isEqualTo(processedCacheKey);
+		assertThat(cacheManager.exists("raw")).isFalse();
+	}
+
+	@Test
+	public void should_remove_the_raw_content_when_the_processing_fails() {
+		Asset asset = rawAsset("var a = 1; /* unterminated");
+
+		try {
+			context.getProcessorManager().process(Collections.singleton(asset), request);
+			throw new AssertionError("The processing should have failed");
+		}
+		catch (DandelionException e) {
+			assertThat(cacheManager.exists("raw")).isFalse();
+		}
+	}
+
+	private Asset rawAsset(final String content) {
+		Asset asset = new Asset("asset", "1.0.0", AssetType.js);
+		asset.setConfigLocationKey("classpath");
+		asset.setConfigLocation("locator/asset.js");
+		asset.setCacheKey("raw");
+		cacheManager.loadRawContent("raw", new Callable<String>() {
+
+			@Override
+			public String call() {
+				return content;
+			}
+		});
+		return asset;
+	}
+}
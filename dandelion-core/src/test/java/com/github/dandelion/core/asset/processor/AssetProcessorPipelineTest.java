@@ -0,0 +1,167 @@
+package com.github.dandelion.core.asset.processor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.processor.spi.AbstractAssetProcessor;
+import com.github.dandelion.core.asset.processor.spi.AbstractStreamingAssetProcessor;
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+
+public class AssetProcessorPipelineTest {
+
+	private ExecutorService executor = Executors.newCachedThreadPool();
+	private Asset asset = new Asset();
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void should_apply_the_processors_in_order() {
+		List<AssetProcessor> processors = Arrays.<AssetProcessor> asList(new UpperCaseProcessor(),
+				new ReplacingProcessor('A', 'b'), new UpperCaseProcessor(), new ReplacingProcessor('B', 'c'));
+
+		assertThat(AssetProcessorPipeline.process(asset, "a-z", processors, statistics(processors), null, executor)).isEqualTo("c-Z");
+	}
+
+	@Test
+	public void should_stream_contents_larger_than_the_pipes() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < AssetProcessorPipeline.CHUNK_SIZE * 10 + 7; i++) {
+			content.append((char) ('a' + i % 26));
+		}
+		List<AssetProcessor> processors = Arrays.<AssetProcessor> asList(new ReplacingProcessor('a', 'x'),
+				new UpperCaseProcessor(), new UpperCaseProcessor());
+
+		String processed = AssetProcessorPipeline.process(asset, content.toString(), processors, statistics(processors), null, executor);
+		assertThat(processed).isEqualTo(content.toString().replace('a', 'x').toUpperCase());
+	}
+
+	@Test
+	public void should_report_the_failure_of_a_piped_processor() {
+		List<AssetProcessor> processors = new ArrayList<AssetProcessor>();
+		processors.add(new ReplacingProcessor('a', 'b'));
+		processors.add(new FailingProcessor());
+		processors.add(new UpperCaseProcessor());
+
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < AssetProcessorPipeline.CHUNK_SIZE * 4; i++) {
+			content.append('a');
+		}
+		try {
+			AssetProcessorPipeline.process(asset, content.toString(), processors, statistics(processors), null, executor);
+			throw new AssertionError("The failure should have been reported");
+		}
+		catch (DandelionException e) {
+			assertThat(e.getMessage()).contains("failing");
+		}
+	}
+
+	@Test
+	public void should_record_the_statistics_of_each_processor() {
+		List<AssetProcessor> processors = Arrays.<AssetProcessor> asList(new ReplacingProcessor('a', 'b'),
+				new UpperCaseProcessor());
+		ProcessorStatistics[] statistics = statistics(processors);
+
+		AssetProcessorPipeline.process(asset, "abc", processors, statistics, null, executor);
+		AssetProcessorPipeline.process(asset, "de", processors, statistics, null, executor);
+
+		assertThat(statistics[0].getInvocations()).isEqualTo(2);
+		assertThat(statistics[0].getCharsIn()).isEqualTo(5);
+		assertThat(statistics[0].getCharsOut()).isEqualTo(5);
+		assertThat(statistics[1].getInvocations()).isEqualTo(2);
+		assertThat(statistics[1].getCharsIn()).isEqualTo(5);
+	}
+
+	private static ProcessorStatistics[] statistics(List<AssetProcessor> processors) {
+		ProcessorStatistics[] statistics = new ProcessorStatistics[processors.size()];
+		for (int i = 0; i < statistics.length; i++) {
+			statistics[i] = new ProcessorStatistics(processors.get(i).getProcessorKey());
+		}
+		return statistics;
+	}
+
+	private static class UpperCaseProcessor extends AbstractAssetProcessor {
+
+		@Override
+		public String getProcessorKey() {
+			return "uppercase";
+		}
+
+		@Override
+		protected void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
+			int c;
+			while ((c = reader.read()) != -1) {
+				writer.write(Character.toUpperCase((char) c));
+			}
+		}
+	}
+
+	private static class FailingProcessor extends AbstractAssetProcessor {
+
+		@Override
+		public String getProcessorKey() {
+			return "failing";
+		}
+
+		@Override
+		protected void doProcess(Asset asset, Reader reader, Writer writer) throws Exception {
+			reader.read();
+			throw new IOException("Unexpected content");
+		}
+	}
+
+	private static class ReplacingProcessor extends AbstractStreamingAssetProcessor {
+
+		private final char oldChar;
+		private final char newChar;
+
+		private ReplacingProcessor(char oldChar, char newChar) {
+			this.oldChar = oldChar;
+			this.newChar = newChar;
+		}
+
+		@Override
+		public String getProcessorKey() {
+			return "replacing";
+		}
+
+		@Override
+		public Writer open(Asset asset, final Writer writer, Context context) {
+			return new Writer() {
+
+				@Override
+				public void write(char[] cbuf, int off, int len) throws IOException {
+					for (int i = off; i < off + len; i++) {
+						writer.write(cbuf[i] == oldChar ? newChar : cbuf[i]);
+					}
+				}
+
+				@Override
+				public void flush() throws IOException {
+					writer.flush();
+				}
+
+				@Override
+				public void close() throws IOException {
+					writer.close();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.dandelion.core.asset.processor;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.cache.DiskAssetStore;
+import com.github.dandelion.core.asset.processor.impl.CssMinProcessor;
+import com.github.dandelion.core.asset.processor.impl.CssUrlRewritingProcessor;
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+
+public class ProcessorResultCacheTest {
+
+	private File directory;
+	private DiskAssetStore diskStore;
+	private ProcessorResultCache cache;
+	private Asset asset;
+
+	@Before
+	public void setup() throws IOException {
+		directory = File.createTempFile("dandelion", "processed");
+		directory.delete();
+		diskStore = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+		cache = new ProcessorResultCache(1024 * 1024, diskStore, "UTF-8");
+		asset = new Asset("style", "1.0", AssetType.css);
+		asset.setFinalLocation("/context/assets/css/style.css");
+	}
+
+	@After
+	public void teardown() {
+		cache.close();
+		new File(directory, DiskAssetStore.SEGMENT_FILE_NAME).delete();
+		directory.delete();
+	}
+
+	@Test
+	public void should_key_the_results_by_content_and_processor_chain() {
+		List<AssetProcessor> cssmin = Arrays.<AssetProcessor> asList(new CssMinProcessor());
+		List<AssetProcessor> chain = Arrays.<AssetProcessor> asList(new CssUrlRewritingProcessor(),
+				new CssMinProcessor());
+
+		String key = cache.getKey(asset, "a { color: red; }", cssmin);
+		assertThat(cache.getKey(asset, "a { color: red; }", cssmin)).isEqualTo(key);
+		assertThat(cache.getKey(asset, "a { color: blue; }", cssmin)).isNotEqualTo(key);
+		assertThat(cache.getKey(asset, "a { color: red; }", chain)).isNotEqualTo(key);
+		assertThat(new ProcessorResultCache(1024, null, "ISO-8859-1").getKey(asset, "a { color: red; }",
+				cssmin)).isNotEqualTo(key);
+	}
+
+	@Test
+	public void should_key_the_results_by_the_directory_of_the_asset() {
+		List<AssetProcessor> chain = Arrays.<AssetProcessor> asList(new CssUrlRewritingProcessor(),
+				new CssMinProcessor());
+		String key = cache.getKey(asset, "a { background: url(bg.png); }", chain);
+
+		Asset sibling = new Asset("theme", "1.0", AssetType.css);
+		sibling.setFinalLocation("/context/assets/css/theme.css");
+		assertThat(cache.getKey(sibling, "a { background: url(bg.png); }", chain)).isEqualTo(key);
+
+		Asset other = new Asset("style", "1.0", AssetType.css);
+		other.setFinalLocation("/context/vendor/style.css");
+		assertThat(cache.getKey(other, "a { background: url(bg.png); }", chain)).isNotEqualTo(key);
+	}
+
+	@Test
+	public void should_read_the_persisted_results_after_a_restart() throws IOException {
+		String key = cache
+				.getKey(asset, "a { color: red; }", Arrays.<AssetProcessor> asList(new CssMinProcessor()));
+		assertThat(cache.get(key)).isNull();
+		cache.put(key, "a{color:red}");
+		assertThat(cache.get(key)).isEqualTo("a{color:red}");
+		cache.close();
+
+		diskStore = DiskAssetStore.open(directory, "fingerprint", 1024 * 1024);
+		cache = new ProcessorResultCache(1024 * 1024, diskStore, "UTF-8");
+		assertThat(cache.get(key)).isEqualTo("a{color:red}");
+	}
+}
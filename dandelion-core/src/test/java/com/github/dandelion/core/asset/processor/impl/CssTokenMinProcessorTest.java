@@ -0,0 +1,90 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.core.asset.processor.impl;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterConfig;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
+
+public class CssTokenMinProcessorTest {
+
+	private AssetProcessor assetProcessor = new CssTokenMinProcessor();
+	private Context context;
+
+	@Before
+	public void setup() {
+		context = new Context(new MockFilterConfig());
+	}
+
+	private String minify(String css) {
+		Writer writer = new StringWriter();
+		assetProcessor.process(null, new StringReader(css), writer, context);
+		return writer.toString();
+	}
+
+	@Test
+	public void should_minifiy_css() {
+		assertThat(minify("body {\n	padding-top: 60px;\n padding-bottom: 40px; \n}")).isEqualTo(
+				"body{padding-top:60px;padding-bottom:40px}");
+	}
+
+	@Test
+	public void should_keep_strings_and_pseudo_class_spaces() {
+		assertThat(minify("a :hover:after { content: \"/* not a comment */  x\" ; }")).isEqualTo(
+				"a :hover:after{content:\"/* not a comment */  x\"}");
+	}
+
+	@Test
+	public void should_remove_empty_rules() {
+		assertThat(minify("@media print { .a { } .b{;} }\n.c{color:red}")).isEqualTo(".c{color:red}");
+	}
+
+	@Test
+	public void should_shorten_numbers_and_colors() {
+		assertThat(
+				minify("p { color : rgb( 51, 102 , 153 ) !important; border-color: #AABBCC #C0C0C0; "
+						+ "padding: 0.50em 00.0px 010.10% -0.5px; margin : 0px 0px 0px 0px; }")).isEqualTo(
+				"p{color:#369!important;border-color:#ABC silver;padding:.5em 0 10.1% -.5px;margin:0}");
+	}
+
+	@Test
+	public void should_not_break_calc_expressions() {
+		assertThat(minify("a { width: calc(100% - 10px + 0px) }")).isEqualTo("a{width:calc(100% - 10px + 0px)}");
+	}
+}
@@ -41,6 +41,9 @@ import org.junit.Test;
 import org.springframework.mock.web.MockFilterConfig;
 
 import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetType;
 import com.github.dandelion.core.asset.processor.spi.AssetProcessor;
 
 public class JsMinProcessorTest {
@@ -59,4 +62,18 @@ public class JsMinProcessorTest {
 		assetProcessor.process(null, new StringReader("var b = new Array()//commentaire\nfunction v(){}"), writer, context);
 		assertThat(writer.toString()).isEqualTo("\nvar b=new Array()\nfunction v(){}");
 	}
+
+	@Test
+	public void should_keep_literals_and_non_ascii_characters() throws IOException {
+		Writer writer = new StringWriter();
+		assetProcessor.process(null, new StringReader("var s = 'a  /* b */';\r\nvar r = /\\/  */g, \u00e9t\u00e9 = \"\u20ac\";"),
+				writer, context);
+		assertThat(writer.toString()).isEqualTo("\nvar s='a  /* b */';var r=/\\/  */g,\u00e9t\u00e9=\"\u20ac\";");
+	}
+
+	@Test(expected = DandelionException.class)
+	public void should_fail_on_unterminated_comment() throws IOException {
+		assetProcessor.process(new Asset("asset", "1.0", AssetType.js), new StringReader("var a = 1; /* comment"),
+				new StringWriter(), context);
+	}
 }
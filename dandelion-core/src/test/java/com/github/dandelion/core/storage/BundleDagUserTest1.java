@@ -82,4 +82,26 @@ public class BundleDagUserTest1 {
 		assertThat(assetsB4).extracting("name").containsExactly("asset4_1");
 		assertThat(assetsB4).extracting("version").containsExactly("1.0.0");
 	}
+
+	@Test
+	public void should_override_assets_whatever_the_case_of_their_name_and_report_it() {
+
+		Set<AssetStorageUnit> assetsBu5 = new LinkedHashSet<AssetStorageUnit>();
+		assetsBu5.add(new AssetStorageUnit("ASSET3_2", "2.0.0", AssetType.css));
+		assetsBu5.add(new AssetStorageUnit("asset3_2", "2.0.0", AssetType.js));
+		BundleStorageUnit bu5 = new BundleStorageUnit("b5", assetsBu5);
+
+		bundleStorage.storeBundles(Arrays.asList(bu5));
+
+		Set<AssetStorageUnit> assetsB3 = bundleStorage.getBundleDag().getVertex("b3").getAssetStorageUnits();
+		assertThat(assetsB3).extracting("version").containsExactly("1.0.0", "2.0.0", "1.0.0");
+
+		// The JS asset doesn't override the CSS one
+		Set<AssetStorageUnit> assetsB5 = bundleStorage.getBundleDag().getVertex("b5").getAssetStorageUnits();
+		assertThat(assetsB5).extracting("name").containsExactly("asset3_2");
+		assertThat(assetsB5).extracting("type").containsExactly(AssetType.js);
+
+		assertThat(bundleStorage.getLoadingReport().getOverrides()).containsExactly(
+				"asset3_2 (css) 1.0.0 from 'b3' overridden by 2.0.0 from 'b5'");
+	}
 }
@@ -0,0 +1,149 @@
+package com.github.dandelion.core.storage;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
+
+public class BundleIndexTest {
+
+	private BundleIndex bundleIndex;
+
+	@Before
+	public void setup() {
+		List<BundleLoader> bundleLoaders = Arrays.<BundleLoader> asList(new TestLoader("lazy"), new TestLoader(
+				"lazy/override"));
+		bundleIndex = BundleIndex.build(bundleLoaders, Thread.currentThread().getContextClassLoader());
+	}
+
+	@Test
+	public void should_index_the_bundles_by_name() {
+		assertThat(bundleIndex.getBundleNames()).containsOnly("lazy-a", "lazy-b", "lazy-c");
+		assertThat(bundleIndex.getFileCount()).isEqualTo(4);
+		assertThat(bundleIndex.load("lazy-b")).hasSize(2);
+		assertThat(bundleIndex.load("unknown")).isEmpty();
+	}
+
+	@Test
+	public void should_only_load_the_requested_bundles_and_their_dependencies() {
+		BundleStorage bundleStorage = new BundleStorage();
+		bundleStorage.setBundleIndex(bundleIndex);
+		assertThat(bundleStorage.getBundleDag().getVerticies()).isEmpty();
+
+		assertThat(names(bundleStorage.bundlesFor("lazy-a"))).containsExactly("lazy-b", "lazy-a");
+		assertThat(bundleStorage.getBundleDag().getBundleNames()).containsOnly("lazy-a", "lazy-b");
+
+		AssetStorageUnit lb = bundleStorage.getBundleDag().getVertex("lazy-b").getAssetStorageUnits().iterator()
+				.next();
+		assertThat(lb.getVersion()).isEqualTo("2");
+
+		assertThat(names(bundleStorage.bundlesFor("lazy-c", "unknown"))).containsExactly("lazy-c");
+		assertThat(bundleStorage.getBundleDag().getBundleNames()).containsOnly("lazy-a", "lazy-b", "lazy-c");
+	}
+
+	@Test
+	public void should_load_the_bundles_once_when_requested_concurrently() throws Exception {
+		final BundleStorage bundleStorage = new BundleStorage();
+		bundleStorage.setBundleIndex(bundleIndex);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < 32; i++) {
+				final String bundleName = i % 2 == 0 ? "lazy-a" : "lazy-c";
+				results.add(executor.submit(new Callable<List<String>>() {
+
+					@Override
+					public List<String> call() {
+						return names(bundleStorage.bundlesFor(bundleName));
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertThat(results.get(i).get()).isEqualTo(
+						i % 2 == 0 ? Arrays.asList("lazy-b", "lazy-a") : Arrays.asList("lazy-c"));
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		assertThat(bundleStorage.getBundleDag().getVerticies()).hasSize(3);
+		assertThat(bundleStorage.getBundleDag().getVertex("lazy-b").getAssetStorageUnits()).hasSize(1);
+	}
+
+	@Test
+	public void should_keep_the_storage_unchanged_when_a_lazy_bundle_creates_a_cycle() {
+		BundleStorage bundleStorage = new BundleStorage();
+		bundleStorage.setBundleIndex(BundleIndex.build(
+				Arrays.<BundleLoader> asList(new TestLoader("lazy"), new TestLoader("lazy-cyclic")), Thread
+						.currentThread().getContextClassLoader()));
+		assertThat(names(bundleStorage.bundlesFor("lazy-a"))).containsExactly("lazy-b", "lazy-a");
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				bundleStorage.bundlesFor("cyclic-a");
+				throw new AssertionError("The cycle should have been reported");
+			}
+			catch (DandelionException e) {
+				assertThat(e.getMessage()).contains("cyclic-a -> cyclic-b -> cyclic-a");
+			}
+			assertThat(bundleStorage.getBundleDag().getBundleNames()).containsOnly("lazy-a", "lazy-b");
+		}
+
+		assertThat(names(bundleStorage.bundlesFor("lazy-c"))).containsExactly("lazy-c");
+		assertThat(names(bundleStorage.bundlesFor("lazy-a"))).containsExactly("lazy-b", "lazy-a");
+		assertThat(bundleStorage.getBundleDag().getVertex("lazy-a").getChildren()).hasSize(1);
+	}
+
+	private static List<String> names(Set<BundleStorageUnit> bundles) {
+		List<String> names = new ArrayList<String>();
+		for (BundleStorageUnit bsu : bundles) {
+			names.add(bsu.getName());
+		}
+		return names;
+	}
+
+	private static class TestLoader extends AbstractBundleLoader {
+
+		private final String path;
+
+		private TestLoader(String path) {
+			this.path = path;
+		}
+
+		@Override
+		public String getName() {
+			return path;
+		}
+
+		@Override
+		public boolean isRecursive() {
+			return false;
+		}
+
+		@Override
+		protected Logger getLogger() {
+			return LoggerFactory.getLogger(TestLoader.class);
+		}
+
+		@Override
+		public String getPath() {
+			return path;
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package com.github.dandelion.core.storage;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.dandelion.core.asset.AssetDomPosition;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.bundle.loader.spi.BundleLoader;
+
+public class BundleSnapshotTest {
+
+	private File file;
+	private BundleStorage bundleStorage;
+
+	@Before
+	public void setup() throws IOException {
+		file = File.createTempFile("dandelion", "snapshot");
+
+		Set<AssetStorageUnit> assets1 = new LinkedHashSet<AssetStorageUnit>();
+		assets1.add(new AssetStorageUnit("asset1", "1.0.0", AssetType.js));
+		BundleStorageUnit b1 = new BundleStorageUnit("b1", assets1);
+
+		Set<AssetStorageUnit> assets2 = new LinkedHashSet<AssetStorageUnit>();
+		assets2.add(new AssetStorageUnit("asset2", "1.0.0", AssetType.css));
+		BundleStorageUnit b2 = new BundleStorageUnit("b2", assets2);
+		b2.addDependency("b1");
+		b2.addDependency("b3");
+
+		Map<String, String> locations = new LinkedHashMap<String, String>();
+		locations.put("webapp", "/assets/js/asset1.js");
+		AssetStorageUnit asset1 = new AssetStorageUnit("asset1", "2.0.0", AssetType.js, locations);
+		asset1.setDom(AssetDomPosition.head);
+		asset1.addAttribute("data-foo", "bar");
+		Set<AssetStorageUnit> assets3 = new LinkedHashSet<AssetStorageUnit>();
+		assets3.add(asset1);
+		BundleStorageUnit b3 = new BundleStorageUnit("b3", assets3);
+
+		bundleStorage = new BundleStorage();
+		bundleStorage.storeBundles(Arrays.asList(b1, b2, b3));
+	}
+
+	@After
+	public void teardown() {
+		file.delete();
+	}
+
+	@Test
+	public void should_restore_the_saved_bundle_graph() throws IOException {
+		BundleSnapshot.write(file, "fingerprint", bundleStorage);
+
+		BundleStorage restored = BundleSnapshot.read(file, "fingerprint");
+		assertThat(restored).isNotNull();
+		BundleDag bundleDag = restored.getBundleDag();
+		assertThat(bundleDag.getVerticies()).hasSize(3);
+		assertThat(bundleDag.getVerticies().get(2).getName()).isEqualTo("b3");
+		assertThat(bundleDag.getChildLabels("b2")).containsExactly("b1", "b3");
+		assertThat(bundleDag.getVertex("b3").getParentBundleNames()).containsExactly("b2");
+
+		AssetStorageUnit asset1 = bundleDag.getVertex("b1").getAssetStorageUnits().iterator().next();
+		assertThat(asset1.getVersion()).isEqualTo("2.0.0");
+		assertThat(asset1.getDom()).isEqualTo(AssetDomPosition.head);
+		assertThat(asset1.getAttributes().get("data-foo")).isEqualTo("bar");
+		assertThat(asset1.getLocations().get("webapp")).isEqualTo("/assets/js/asset1.js");
+		assertThat(bundleDag.getVertex("b3").getAssetStorageUnits()).isEmpty();
+		assertThat(restored.getLoadingReport().getOverrides()).isEqualTo(
+				bundleStorage.getLoadingReport().getOverrides());
+
+		List<String> resolved = names(restored.bundlesFor("b2"));
+		assertThat(resolved).isEqualTo(names(bundleStorage.bundlesFor("b2")));
+	}
+
+	@Test
+	public void should_keep_overriding_the_restored_assets() throws IOException {
+		BundleSnapshot.write(file, "fingerprint", bundleStorage);
+		BundleStorage restored = BundleSnapshot.read(file, "fingerprint");
+
+		Set<AssetStorageUnit> assets4 = new LinkedHashSet<AssetStorageUnit>();
+		assets4.add(new AssetStorageUnit("asset2", "3.0.0", AssetType.css));
+		restored.storeBundles(Arrays.asList(new BundleStorageUnit("b4", assets4)));
+
+		assertThat(restored.getBundleDag().getVertex("b2").getAssetStorageUnits().iterator().next().getVersion())
+				.isEqualTo("3.0.0");
+	}
+
+	@Test
+	public void should_ignore_a_snapshot_written_with_another_fingerprint() throws IOException {
+		BundleSnapshot.write(file, "fingerprint", bundleStorage);
+
+		assertThat(BundleSnapshot.read(file, "another-fingerprint")).isNull();
+	}
+
+	@Test
+	public void should_ignore_a_corrupted_snapshot() throws IOException {
+		BundleSnapshot.write(file, "fingerprint", bundleStorage);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length() - 20);
+		raf.write(0x7f);
+		raf.close();
+
+		assertThat(BundleSnapshot.read(file, "fingerprint")).isNull();
+		assertThat(BundleSnapshot.read(new File(file.getPath() + ".missing"), "fingerprint")).isNull();
+	}
+
+	@Test
+	public void should_fingerprint_the_json_files_of_the_loaders() {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		String fingerprint = BundleSnapshot.fingerprint(Arrays.<BundleLoader> asList(new TestLoader("scanning")),
+				classLoader);
+
+		assertThat(fingerprint).isNotNull();
+		assertThat(BundleSnapshot.fingerprint(Arrays.<BundleLoader> asList(new TestLoader("scanning")), classLoader))
+				.isEqualTo(fingerprint);
+		assertThat(
+				BundleSnapshot.fingerprint(Arrays.<BundleLoader> asList(new TestLoader("scanning/subfolder")),
+						classLoader)).isNotEqualTo(fingerprint);
+	}
+
+	private static List<String> names(Set<BundleStorageUnit> bundles) {
+		List<String> names = new ArrayList<String>();
+		for (BundleStorageUnit bsu : bundles) {
+			names.add(bsu.getName());
+		}
+		return names;
+	}
+
+	private static class TestLoader extends AbstractBundleLoader {
+
+		private final String path;
+
+		private TestLoader(String path) {
+			this.path = path;
+		}
+
+		@Override
+		public String getName() {
+			return "test";
+		}
+
+		@Override
+		public boolean isRecursive() {
+			return true;
+		}
+
+		@Override
+		protected Logger getLogger() {
+			return LoggerFactory.getLogger(TestLoader.class);
+		}
+
+		@Override
+		public String getPath() {
+			return path;
+		}
+	}
+}
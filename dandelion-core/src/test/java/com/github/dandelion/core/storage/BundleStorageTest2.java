@@ -109,4 +109,29 @@ public class BundleStorageTest2 {
 		Set<BundleStorageUnit> bundlesToLoad = bundleStorage.bundlesFor("b6");
 		assertThat(bundlesToLoad).extracting("name").containsExactly("b5", "b1", "b3", "b6");
 	}
+
+	@Test
+	public void should_merge_the_bundles_in_the_requested_order() {
+		assertThat(bundleStorage.bundlesFor("b2", "b3")).extracting("name").containsExactly("b1", "b2", "b5", "b3");
+		assertThat(bundleStorage.bundlesFor("b3", "b2")).extracting("name").containsExactly("b1", "b5", "b3", "b2");
+	}
+
+	@Test
+	public void should_ignore_unknown_bundles() {
+		assertThat(bundleStorage.bundlesFor("b12")).isEmpty();
+		assertThat(bundleStorage.bundlesFor("b12", " b2 ")).extracting("name").containsExactly("b1", "b2");
+	}
+
+	@Test
+	public void should_take_the_newly_stored_bundles_into_account() {
+		assertThat(bundleStorage.bundlesFor("b7")).isEmpty();
+
+		BundleStorageUnit b7 = new BundleStorageUnit("b7", new LinkedHashSet<AssetStorageUnit>());
+		b7.addDependency("b6");
+		List<BundleStorageUnit> bundlesToAdd = new LinkedList<BundleStorageUnit>();
+		bundlesToAdd.add(b7);
+		bundleStorage.storeBundles(bundlesToAdd);
+
+		assertThat(bundleStorage.bundlesFor("b7")).extracting("name").containsExactly("b5", "b1", "b3", "b6", "b7");
+	}
 }
@@ -0,0 +1,262 @@
+package com.github.dandelion.core.storage;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterConfig;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.cache.AssetCacheManager;
+import com.github.dandelion.core.bundle.loader.spi.AbstractBundleLoader;
+import com.github.dandelion.core.config.DandelionConfig;
+
+public class BundleWatcherTest {
+
+	private ClassLoader previousClassLoader;
+	private File root;
+	private File folder;
+	private Context context;
+	private CountingLoader loader;
+	private BundleWatcher watcher;
+
+	@Before
+	public void setup() throws IOException {
+		root = File.createTempFile("dandelion", "watcher");
+		root.delete();
+		folder = new File(root, "watched");
+		folder.mkdirs();
+		write("a.json", bundle("watched-a", "1", "watched-b"));
+		write("b.json", bundle("watched-b", "1", null));
+
+		// The folder is a classpath root of the context and of the watcher
+		previousClassLoader = Thread.currentThread().getContextClassLoader();
+		Thread.currentThread().setContextClassLoader(
+				new URLClassLoader(new URL[] { root.toURI().toURL() }, previousClassLoader));
+
+		MockFilterConfig filterConfig = new MockFilterConfig();
+		filterConfig.addInitParameter(DandelionConfig.BUNDLE_WATCH_INTERVAL.getName(), "0");
+		context = new Context(filterConfig);
+		loader = new CountingLoader();
+		loader.initLoader(context);
+		context.getBundleLoaders().clear();
+		context.getBundleLoaders().add(loader);
+		context.initBundleStorage();
+		loader.parsedPaths.clear();
+
+		// The first check parses all files
+		watcher = new BundleWatcher(context);
+		watcher.checkForChanges();
+		assertThat(loader.parsedPaths).containsOnly("watched/a.json", "watched/b.json");
+		loader.parsedPaths.clear();
+	}
+
+	@After
+	public void teardown() {
+		Thread.currentThread().setContextClassLoader(previousClassLoader);
+		delete(root);
+	}
+
+	@Test
+	public void should_only_parse_the_modified_bundle_files() throws IOException {
+		BundleStorage bundleStorage = context.getBundleStorage();
+		watcher.checkForChanges();
+		assertThat(loader.parsedPaths).isEmpty();
+		assertThat(context.getBundleStorage()).isSameAs(bundleStorage);
+
+		write("b.json", bundle("watched-b", "2", null));
+		watcher.checkForChanges();
+		assertThat(loader.parsedPaths).containsOnly("watched/b.json");
+		assertThat(context.getBundleStorage()).isNotSameAs(bundleStorage);
+		assertThat(version(context.getBundleStorage(), "watched-b")).isEqualTo("2");
+		assertThat(version(context.getBundleStorage(), "watched-a")).isEqualTo("1");
+	}
+
+	@Test
+	public void should_scan_the_folders_again_when_files_are_added_or_deleted() throws IOException {
+		write("c.json", bundle("watched-c", "1", null));
+		touch(folder);
+		watcher.checkForChanges();
+		assertThat(loader.parsedPaths).containsOnly("watched/c.json");
+		assertThat(context.getBundleStorage().getBundleDag().getBundleNames()).contains("watched-c");
+
+		loader.parsedPaths.clear();
+		new File(folder, "c.json").delete();
+		touch(folder);
+		watcher.checkForChanges();
+		assertThat(loader.parsedPaths).isEmpty();
+		assertThat(context.getBundleStorage().getBundleDag().getBundleNames()).containsOnly("watched-a",
+				"watched-b");
+	}
+
+	@Test
+	public void should_keep_the_current_bundles_when_the_new_ones_are_invalid() throws IOException {
+		BundleStorage bundleStorage = context.getBundleStorage();
+
+		write("b.json", bundle("watched-b", "2", "watched-a"));
+		watcher.checkForChanges();
+		assertThat(context.getBundleStorage()).isSameAs(bundleStorage);
+
+		write("a.json", "{ \"bundle\": ");
+		watcher.checkForChanges();
+		assertThat(context.getBundleStorage()).isSameAs(bundleStorage);
+
+		write("a.json", bundle("watched-a", "1", null));
+		watcher.checkForChanges();
+		assertThat(context.getBundleStorage()).isNotSameAs(bundleStorage);
+		assertThat(version(context.getBundleStorage(), "watched-b")).isEqualTo("2");
+	}
+
+	@Test
+	public void should_only_remove_the_contents_of_the_modified_assets() throws IOException {
+		File assetA = new File(root, "a.js");
+		File assetB = new File(root, "b.js");
+		write(assetA, "var a = 1;");
+		write(assetB, "var b = 1;");
+
+		AssetCacheManager cacheManager = context.getCacheManager();
+		cacheManager.storeContent("raw-a", "var a = 1;");
+		cacheManager.storeContent("min-a", "var a=1;");
+		cacheManager.storeContent("raw-b", "var b = 1;");
+		watcher.watchAsset(assetA, "raw-a");
+		watcher.linkCacheKey("raw-a", "min-a");
+		watcher.watchAsset(assetB, "raw-b");
+
+		watcher.checkForChanges();
+		assertThat(watcher.getGeneration()).isEqualTo(0);
+		assertThat(cacheManager.exists("raw-a")).isTrue();
+
+		touch(assetA);
+		watcher.checkForChanges();
+		assertThat(watcher.getGeneration()).isEqualTo(1);
+		assertThat(cacheManager.exists("raw-a")).isFalse();
+		assertThat(cacheManager.exists("min-a")).isFalse();
+		assertThat(cacheManager.exists("raw-b")).isTrue();
+	}
+
+	@Test
+	public void should_not_report_identical_bundles() {
+		assertThat(BundleWatcher.diff(dag("1.0.0", "b1"), dag("1.0.0", "b1"))).isEmpty();
+	}
+
+	@Test
+	public void should_report_the_bundles_whose_assets_have_changed() {
+		assertThat(BundleWatcher.diff(dag("1.0.0", "b1"), dag("1.0.1", "b1"))).containsOnly("b2");
+	}
+
+	@Test
+	public void should_report_the_added_and_removed_bundles() {
+		assertThat(BundleWatcher.diff(dag("1.0.0", "b1"), dag("1.0.0", "b3"))).containsOnly("b1", "b2", "b3");
+	}
+
+	private static BundleDag dag(String version, String dependency) {
+		Set<AssetStorageUnit> assets1 = new LinkedHashSet<AssetStorageUnit>();
+		assets1.add(new AssetStorageUnit("asset1", "1.0.0", AssetType.js));
+		BundleStorageUnit parent = new BundleStorageUnit(dependency, assets1);
+
+		Set<AssetStorageUnit> assets2 = new LinkedHashSet<AssetStorageUnit>();
+		assets2.add(new AssetStorageUnit("asset2", version, AssetType.css));
+		BundleStorageUnit b2 = new BundleStorageUnit("b2", assets2);
+		b2.addDependency(dependency);
+
+		BundleStorage bundleStorage = new BundleStorage();
+		bundleStorage.storeBundles(Arrays.asList(parent, b2));
+		return bundleStorage.getBundleDag();
+	}
+
+	private static String version(BundleStorage bundleStorage, String bundleName) {
+		return bundleStorage.getBundleDag().getVertex(bundleName).getAssetStorageUnits().iterator().next()
+				.getVersion();
+	}
+
+	private static String bundle(String name, String version, String dependency) {
+		return "{ \"bundle\": \"" + name + "\", "
+				+ (dependency == null ? "" : "\"dependencies\": [ \"" + dependency + "\" ], ")
+				+ "\"assets\": [ { \"name\": \"" + name + "-js\", \"version\": \"" + version
+				+ "\", \"type\": \"js\", \"locations\": { \"webapp\": \"/" + name + ".js\" } } ] }";
+	}
+
+	private void write(String fileName, String content) throws IOException {
+		File file = new File(folder, fileName);
+		boolean exists = file.exists();
+		write(file, content);
+		if (exists) {
+			touch(file);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Moves the last modification date forward, since the file system may
+	 * not be precise enough to tell two successive writes apart.
+	 */
+	private static void touch(File file) {
+		file.setLastModified(file.lastModified() + 2000);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static class CountingLoader extends AbstractBundleLoader {
+
+		private final List<String> parsedPaths = new ArrayList<String>();
+
+		@Override
+		public BundleStorageUnit loadBundle(ClassLoader classLoader, String resourcePath) {
+			parsedPaths.add(resourcePath);
+			return super.loadBundle(classLoader, resourcePath);
+		}
+
+		@Override
+		public String getName() {
+			return "watched";
+		}
+
+		@Override
+		public boolean isRecursive() {
+			return false;
+		}
+
+		@Override
+		protected Logger getLogger() {
+			return LoggerFactory.getLogger(CountingLoader.class);
+		}
+
+		@Override
+		public String getPath() {
+			return "watched";
+		}
+	}
+}
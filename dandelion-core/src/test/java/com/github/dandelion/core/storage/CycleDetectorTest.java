@@ -1,5 +1,8 @@
 package com.github.dandelion.core.storage;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,7 +45,40 @@ public class CycleDetectorTest {
 	public void should_throw_an_exception_because_of_the_cycle() {
 
 		expectedEx.expect(DandelionException.class);
-		expectedEx.expectMessage("A cycle has been detected in the asset graph for the bundle b1.");
+		expectedEx.expectMessage("A cycle has been detected in the bundle graph: b1 -> b1.");
 		bundleStorage.storeBundles(bundlesToAdd);
 	}
+
+	@Test
+	public void should_report_all_cycles_with_their_path() {
+
+		BundleStorageUnit b4 = new BundleStorageUnit("b4", null);
+		b4.addDependency("b5");
+		BundleStorageUnit b5 = new BundleStorageUnit("b5", null);
+		b5.addDependency("b6");
+		BundleStorageUnit b6 = new BundleStorageUnit("b6", null);
+		b6.addDependency("b4");
+		b6.addDependency("b3");
+		bundlesToAdd.add(b4);
+		bundlesToAdd.add(b5);
+		bundlesToAdd.add(b6);
+
+		expectedEx.expect(DandelionException.class);
+		expectedEx.expectMessage("2 cycles have been detected in the bundle graph: b1 -> b1, b4 -> b5 -> b6 -> b4.");
+		bundleStorage.storeBundles(bundlesToAdd);
+	}
+
+	@Test
+	public void should_not_report_anything_for_an_acyclic_graph() {
+
+		BundleStorageUnit b1 = new BundleStorageUnit("b1", null);
+		b1.addDependency("b2");
+		b1.addDependency("b3");
+		BundleStorageUnit b2 = new BundleStorageUnit("b2", null);
+		b2.addDependency("b3");
+
+		bundleStorage.storeBundles(Arrays.asList(b1, b2));
+
+		assertThat(BundleCycleDetector.findCycles(bundleStorage.getBundleDag())).isEmpty();
+	}
 }
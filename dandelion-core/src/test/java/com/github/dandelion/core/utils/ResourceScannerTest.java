@@ -95,4 +95,14 @@ public class ResourceScannerTest {
 	public void should_filter_resources_by_suffix_without_recursivity() throws IOException {
 		assertThat(ResourceScanner.findResourcePaths("scanning", null, null, ".json", false)).hasSize(4);
 	}
+
+	@Test
+	public void should_reuse_the_indexed_classpath_roots() throws IOException {
+		ResourceScanner scanner = new ResourceScanner(Thread.currentThread().getContextClassLoader());
+		assertThat(scanner.scan("scanning", null, null, null, ".json", true)).hasSize(6);
+		assertThat(scanner.scan("scanning/subfolder", null, null, null, ".json", false)).hasSize(2);
+		assertThat(scanner.scan("scanning", null, "resource5.properties", null, null, true)).hasSize(2);
+		scanner.clear();
+		assertThat(scanner.scan("scanning", null, null, null, ".json", true)).hasSize(6);
+	}
 }
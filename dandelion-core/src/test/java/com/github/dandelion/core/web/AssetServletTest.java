@@ -3,6 +3,7 @@ package com.github.dandelion.core.web;
 import static org.fest.assertions.Assertions.assertThat;
 
 import java.io.IOException;
+import java.util.Collections;
 
 import javax.servlet.ServletException;
 
@@ -15,6 +16,8 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
 import com.github.dandelion.core.asset.AssetType;
+import com.github.dandelion.core.asset.cache.AssetContent;
+import com.github.dandelion.core.config.DandelionConfig;
 import com.github.dandelion.core.web.DandelionServlet;
 import com.github.dandelion.core.web.WebConstants;
 
@@ -55,4 +58,126 @@ public class AssetServletTest {
 		assertThat(response.getContentAsString()).isEqualTo(content);
 
 	}
+
+	@Test
+	public void should_compute_again_the_contents_not_admitted_by_a_full_cache() throws ServletException,
+			IOException {
+		MockFilterConfig filterConfig = new MockFilterConfig();
+		filterConfig.addInitParameter(DandelionConfig.CACHE_ASSET_MAX_SIZE.getName(), "2");
+		context = new Context(filterConfig);
+		request.setAttribute(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+
+		// Fill the cache with contents used more often than the new one
+		Asset asset = new Asset("my-asset", "1.0.0", AssetType.js);
+		for (int i = 0; i < 2; i++) {
+			String cacheKey = context.getCacheManager().generateCacheKey("popular" + i, asset);
+			context.getCacheManager().storeContent(cacheKey, "var popular = " + i + ";");
+			context.getCacheManager().getAssetContent(cacheKey);
+			context.getCacheManager().getAssetContent(cacheKey);
+		}
+
+		// The content of a page asset is rejected by the cache
+		Asset pageAsset = new Asset("asset", "1.0.0", AssetType.js);
+		pageAsset.setConfigLocationKey("classpath");
+		pageAsset.setConfigLocation("locator/asset.js");
+		String cacheKey = context.getCacheManager().generateCacheKey("rejected", pageAsset);
+		pageAsset.setCacheKey(cacheKey);
+		context.getCacheManager().storeAssets("page", Collections.singleton(pageAsset));
+		context.getCacheManager().storeContent(cacheKey, "var rejected = true;");
+		assertThat(context.getCacheManager().getAssetContent(cacheKey)).isNull();
+
+		request.setRequestURI(DandelionServlet.DANDELION_ASSETS_URL + cacheKey);
+		servlet.doGet(request, response);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentAsString()).isEqualTo("/* content */");
+	}
+
+	@Test
+	public void should_serve_gzipped_content_when_accepted() throws ServletException, IOException {
+
+		Asset asset = new Asset();
+		asset.setName("my-asset");
+		asset.setVersion("1.0.0");
+		asset.setType(AssetType.js);
+		String content = "var a = " + Math.random() + ";";
+
+		String cacheKey = context.getCacheManager().generateCacheKey("should_serve_gzipped_content_when_accepted", asset);
+		context.getCacheManager().storeContent(cacheKey, content);
+		request.setRequestURI(DandelionServlet.DANDELION_ASSETS_URL + cacheKey);
+		request.addHeader("Accept-Encoding", "gzip, deflate");
+
+		servlet.doGet(request, response);
+
+		assertThat(response.getHeader("Content-Encoding")).isEqualTo("gzip");
+		assertThat(response.getHeader("Vary")).isEqualTo("Accept-Encoding");
+		assertThat(response.getContentAsByteArray()).isEqualTo(
+				context.getCacheManager().getAssetContent(cacheKey).getGzippedBytes());
+		assertThat(new AssetContent(response.getContentAsByteArray(), content.length(), null, 0).asString()).isEqualTo(content);
+	}
+
+	@Test
+	public void should_negotiate_the_gzip_encoding() {
+		assertThat(servlet.acceptsGzip(request)).isFalse();
+		request.addHeader("Accept-Encoding", "deflate, gzip;q=0");
+		assertThat(servlet.acceptsGzip(request)).isFalse();
+
+		request = new MockHttpServletRequest();
+		request.addHeader("Accept-Encoding", "deflate, GZIP;q=0.5");
+		assertThat(servlet.acceptsGzip(request)).isTrue();
+	}
+
+	@Test
+	public void should_answer_not_modified_when_the_etag_matches() throws ServletException, IOException {
+
+		Asset asset = new Asset();
+		asset.setName("my-asset");
+		asset.setVersion("1.0.0");
+		asset.setType(AssetType.css);
+
+		String cacheKey = context.getCacheManager().generateCacheKey("should_answer_not_modified", asset);
+		context.getCacheManager().storeContent(cacheKey, "CONTENT" + Math.random());
+		request.setRequestURI(DandelionServlet.DANDELION_ASSETS_URL + cacheKey);
+
+		servlet.doGet(request, response);
+		String etag = (String) response.getHeader("ETag");
+		assertThat(etag).isNotNull();
+		assertThat(response.getStatus()).isEqualTo(200);
+
+		MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+		request.addHeader("If-None-Match", etag);
+		servlet.doGet(request, secondResponse);
+
+		assertThat(secondResponse.getStatus()).isEqualTo(304);
+		assertThat(secondResponse.getContentAsByteArray()).isEmpty();
+		assertThat(secondResponse.getHeader("ETag")).isEqualTo(etag);
+	}
+
+	@Test
+	public void should_answer_not_modified_when_not_modified_since() throws ServletException, IOException {
+
+		Asset asset = new Asset();
+		asset.setName("my-asset");
+		asset.setVersion("1.0.0");
+		asset.setType(AssetType.css);
+
+		String cacheKey = context.getCacheManager().generateCacheKey("should_answer_not_modified_since", asset);
+		context.getCacheManager().storeContent(cacheKey, "CONTENT" + Math.random());
+		long lastModified = context.getCacheManager().getAssetContent(cacheKey).getLastModified();
+		request.setRequestURI(DandelionServlet.DANDELION_ASSETS_URL + cacheKey);
+		request.addHeader("If-Modified-Since", lastModified - 1000);
+
+		servlet.doGet(request, response);
+		assertThat(response.getStatus()).isEqualTo(200);
+
+		request = new MockHttpServletRequest();
+		request.setContextPath("/context");
+		request.setAttribute(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+		request.setRequestURI(DandelionServlet.DANDELION_ASSETS_URL + cacheKey);
+		request.addHeader("If-Modified-Since", lastModified);
+		response = new MockHttpServletResponse();
+
+		servlet.doGet(request, response);
+		assertThat(response.getStatus()).isEqualTo(304);
+	}
 }
@@ -0,0 +1,71 @@
+package com.github.dandelion.core.web;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InjectingWriterTest {
+
+	private StringWriter out;
+	private InjectingWriter writer;
+
+	@Before
+	public void setup() {
+		out = new StringWriter();
+		writer = new InjectingWriter(out, new AssetInjector(null, null) {
+
+			@Override
+			public String getHeadContent() {
+				return "<link/>\n";
+			}
+
+			@Override
+			public String getBodyContent() {
+				return "<script/>\n";
+			}
+		}, false);
+	}
+
+	@Test
+	public void should_inject_before_closing_tags() throws IOException {
+		writer.write("<html><head><title>t</title></head><body><p>x</p></body></html>");
+		writer.finish();
+
+		assertThat(out.toString()).isEqualTo(
+				"<html><head><title>t</title><link/>\n</head><body><p>x</p><script/>\n</body></html>");
+		assertThat(writer.isHeadInjected()).isTrue();
+		assertThat(writer.isBodyInjected()).isTrue();
+	}
+
+	@Test
+	public void should_inject_when_closing_tags_are_split_across_writes() throws IOException {
+		writer.write("<html><head></he");
+		writer.write("AD><body></");
+		writer.write("b");
+		writer.write("ody></html>");
+		writer.finish();
+
+		assertThat(out.toString()).isEqualTo("<html><head><link/>\n</heAD><body><script/>\n</body></html>");
+	}
+
+	@Test
+	public void should_inject_only_once() throws IOException {
+		writer.write("<head></head><body></body></body>");
+		writer.finish();
+
+		assertThat(out.toString()).isEqualTo("<head><link/>\n</head><body><script/>\n</body></body>");
+	}
+
+	@Test
+	public void should_release_pending_characters_on_finish() throws IOException {
+		writer.write("<p>x</p></bo");
+		writer.finish();
+
+		assertThat(out.toString()).isEqualTo("<p>x</p></bo");
+		assertThat(writer.isBodyInjected()).isFalse();
+	}
+}
@@ -0,0 +1,51 @@
+package com.github.dandelion.core.web;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class SpillableOutputStreamTest {
+
+	private BufferPool pool = new BufferPool(4, 8);
+
+	@Test
+	public void should_keep_multibyte_characters_across_chunks() throws IOException {
+		SpillableOutputStream stream = new SpillableOutputStream(pool, -1);
+		byte[] bytes = "<p>héllo wörld</p>".getBytes("UTF-8");
+		for (byte b : bytes) {
+			stream.write(b);
+		}
+
+		assertThat(stream.size()).isEqualTo(bytes.length);
+		assertThat(stream.isSpilled()).isFalse();
+		assertThat(stream.toString("UTF-8")).isEqualTo("<p>héllo wörld</p>");
+		stream.dispose();
+	}
+
+	@Test
+	public void should_spill_beyond_the_threshold() throws IOException {
+		SpillableOutputStream stream = new SpillableOutputStream(pool, 10);
+		byte[] bytes = "0123456789abcdef".getBytes("UTF-8");
+		stream.write(bytes, 0, 8);
+		assertThat(stream.isSpilled()).isFalse();
+		stream.write(bytes, 8, 8);
+		assertThat(stream.isSpilled()).isTrue();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream.writeTo(out);
+		assertThat(out.toString("UTF-8")).isEqualTo("0123456789abcdef");
+		stream.dispose();
+	}
+
+	@Test
+	public void should_give_the_chunks_back_to_the_pool() throws IOException {
+		SpillableOutputStream stream = new SpillableOutputStream(pool, -1);
+		stream.write("0123456789".getBytes("UTF-8"));
+		stream.dispose();
+
+		assertThat(pool.getPooledChunks()).isEqualTo(3);
+	}
+}
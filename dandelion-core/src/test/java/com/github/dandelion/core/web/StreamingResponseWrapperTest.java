@@ -0,0 +1,67 @@
+package com.github.dandelion.core.web;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class StreamingResponseWrapperTest {
+
+	private MockHttpServletResponse response;
+	private StreamingResponseWrapper wrapper;
+
+	@Before
+	public void setup() {
+		response = new MockHttpServletResponse();
+		wrapper = new StreamingResponseWrapper(response, new AssetInjector(null, null) {
+
+			@Override
+			public String getHeadContent() {
+				return "<link/>\n";
+			}
+
+			@Override
+			public String getBodyContent() {
+				return "<script/>\n";
+			}
+		});
+	}
+
+	@Test
+	public void should_drop_the_content_length_of_an_injected_response() throws IOException {
+		wrapper.setHeader("Content-Length", "36");
+		wrapper.setContentType("text/html");
+		wrapper.getWriter().write("<html><head></head><body></body></html>");
+		wrapper.finish();
+
+		assertThat(response.containsHeader("Content-Length")).isFalse();
+		assertThat(response.getContentAsString()).isEqualTo(
+				"<html><head><link/>\n</head><body><script/>\n</body></html>");
+	}
+
+	@Test
+	public void should_keep_the_content_length_of_a_response_not_injected() throws IOException {
+		wrapper.setContentLength(10);
+		wrapper.setContentType("text/css");
+		wrapper.getWriter().write("p{color:0}");
+		wrapper.finish();
+
+		assertThat(response.getHeader("Content-Length")).isEqualTo("10");
+	}
+
+	@Test
+	public void should_intercept_all_the_content_length_headers() throws IOException {
+		wrapper.addIntHeader("content-length", 20);
+		wrapper.setContentType("text/html");
+		wrapper.getOutputStream();
+		wrapper.setIntHeader("Content-Length", 30);
+		wrapper.addHeader("Content-Length", "40");
+		wrapper.finish();
+
+		assertThat(response.containsHeader("Content-Length")).isFalse();
+		assertThat(response.containsHeader("content-length")).isFalse();
+	}
+}
@@ -42,9 +42,9 @@ import org.slf4j.LoggerFactory;
 
 import com.github.dandelion.core.Context;
 import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.cache.AssetContent;
 import com.github.dandelion.core.asset.cache.spi.AbstractAssetCache;
 import com.github.dandelion.core.asset.cache.spi.AssetCache;
-import com.github.dandelion.core.utils.ResourceScanner;
 import com.github.dandelion.core.utils.StringUtils;
 import com.github.dandelion.core.web.DandelionServlet;
 
@@ -127,7 +127,7 @@ public class EhCacheAssetCache extends AbstractAssetCache {
 			if (StringUtils.isBlank(cacheConfigurationPath)) {
 				LOG.warn("The 'cache.configuration.location' configuration is not set. Dandelion will scan for any ehcache.xml file inside the classpath.");
 				try {
-					cacheConfigurationPath = ResourceScanner.findResourcePath("", "ehcache.xml");
+					cacheConfigurationPath = context.getResourceScanner().findPath("", "ehcache.xml");
 					LOG.debug("ehcache.xml file found: {}", cacheConfigurationPath);
 				}
 				catch (IOException e) {
@@ -150,16 +150,16 @@ public class EhCacheAssetCache extends AbstractAssetCache {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public String getAssetContent(String cacheKey) {
+	public AssetContent getAssetContent(String cacheKey) {
 		Element element = cache.get(cacheKey);
-		return element == null ? null : (String) element.getObjectValue();
+		return element == null ? null : (AssetContent) element.getObjectValue();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void storeAssetContent(String cacheKey, String cacheContent) {
+	public void storeAssetContent(String cacheKey, AssetContent cacheContent) {
 		cache.put(new Element(cacheKey, cacheContent));
 	}
 
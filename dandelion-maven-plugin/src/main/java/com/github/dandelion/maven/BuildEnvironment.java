@@ -0,0 +1,242 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.web.WebConstants;
+
+/**
+ * <p>
+ * Minimal servlet environment allowing a Dandelion {@link Context} to be
+ * initialized and the assets to be mapped outside of any servlet container.
+ * 
+ * <p>
+ * The servlet objects are dynamic proxies: only the methods used by Dandelion
+ * are answered, all others return {@code null}, {@code false} or {@code 0}.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+class BuildEnvironment {
+
+	private static final String SERVER_NAME = "localhost";
+
+	private final String contextPath;
+	private final File webappDirectory;
+	private final int servletMajorVersion;
+	private final Map<String, String> initParameters;
+
+	BuildEnvironment(String contextPath, File webappDirectory, int servletMajorVersion,
+			Map<String, String> initParameters) {
+		this.contextPath = contextPath;
+		this.webappDirectory = webappDirectory;
+		this.servletMajorVersion = servletMajorVersion;
+		this.initParameters = initParameters;
+	}
+
+	/**
+	 * @return a {@link FilterConfig} exposing the configured init parameters.
+	 */
+	FilterConfig newFilterConfig() {
+		final ServletContext servletContext = newServletContext();
+		return proxy(FilterConfig.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if (name.equals("getFilterName")) {
+					return "dandelionFilter";
+				}
+				else if (name.equals("getInitParameter")) {
+					return initParameters.get(args[0]);
+				}
+				else if (name.equals("getInitParameterNames")) {
+					return Collections.enumeration(initParameters.keySet());
+				}
+				else if (name.equals("getServletContext")) {
+					return servletContext;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	/**
+	 * @param context
+	 *            The Dandelion context the request is bound to.
+	 * @return a GET request on the root of the application.
+	 */
+	HttpServletRequest newRequest(Context context) {
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put(WebConstants.DANDELION_CONTEXT_ATTRIBUTE, context);
+		return proxy(HttpServletRequest.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if (name.equals("getAttribute")) {
+					return attributes.get(args[0]);
+				}
+				else if (name.equals("setAttribute")) {
+					attributes.put((String) args[0], args[1]);
+					return null;
+				}
+				else if (name.equals("removeAttribute")) {
+					attributes.remove(args[0]);
+					return null;
+				}
+				else if (name.equals("getAttributeNames")) {
+					return Collections.enumeration(attributes.keySet());
+				}
+				else if (name.equals("getContextPath")) {
+					return contextPath;
+				}
+				else if (name.equals("getRequestURI")) {
+					return contextPath + "/";
+				}
+				else if (name.equals("getRequestURL")) {
+					return new StringBuffer("http://").append(SERVER_NAME).append(contextPath).append("/");
+				}
+				else if (name.equals("getServletPath")) {
+					return "/";
+				}
+				else if (name.equals("getMethod")) {
+					return "GET";
+				}
+				else if (name.equals("getScheme")) {
+					return "http";
+				}
+				else if (name.equals("getServerName")) {
+					return SERVER_NAME;
+				}
+				else if (name.equals("getServerPort")) {
+					return 80;
+				}
+				else if (name.equals("getParameterMap")) {
+					return Collections.emptyMap();
+				}
+				else if (name.equals("getParameterNames") || name.equals("getHeaderNames")) {
+					return Collections.enumeration(Collections.<String> emptyList());
+				}
+				else if (name.equals("getDateHeader")) {
+					return -1L;
+				}
+				else if (name.equals("getIntHeader")) {
+					return -1;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private ServletContext newServletContext() {
+		return proxy(ServletContext.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws MalformedURLException,
+					FileNotFoundException {
+				String name = method.getName();
+				if (name.equals("getContextPath")) {
+					return contextPath;
+				}
+				else if (name.equals("getMajorVersion")) {
+					return servletMajorVersion;
+				}
+				else if (name.equals("getMinorVersion")) {
+					return 0;
+				}
+				else if (name.equals("getServerInfo")) {
+					return "dandelion-maven-plugin";
+				}
+				else if (name.equals("getInitParameterNames") || name.equals("getAttributeNames")) {
+					return Collections.enumeration(Collections.<String> emptyList());
+				}
+				else if (name.equals("getRealPath")) {
+					return new File(webappDirectory, (String) args[0]).getAbsolutePath();
+				}
+				else if (name.equals("getResource")) {
+					File file = new File(webappDirectory, (String) args[0]);
+					return file.exists() ? file.toURI().toURL() : null;
+				}
+				else if (name.equals("getResourceAsStream")) {
+					File file = new File(webappDirectory, (String) args[0]);
+					return file.isFile() ? new FileInputStream(file) : null;
+				}
+				return defaultValue(proxy, method, args);
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(BuildEnvironment.class.getClassLoader(), new Class<?>[] { type },
+				handler));
+	}
+
+	private static Object defaultValue(Object proxy, Method method, Object[] args) {
+		String name = method.getName();
+		if (name.equals("equals")) {
+			return proxy == args[0];
+		}
+		else if (name.equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		else if (name.equals("toString")) {
+			return proxy.getClass().getInterfaces()[0].getSimpleName() + "@"
+					+ Integer.toHexString(System.identityHashCode(proxy));
+		}
+
+		Class<?> returnType = method.getReturnType();
+		if (returnType == boolean.class) {
+			return false;
+		}
+		else if (returnType == int.class) {
+			return 0;
+		}
+		else if (returnType == long.class) {
+			return 0L;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import com.github.dandelion.core.Context;
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.Asset;
+import com.github.dandelion.core.asset.AssetMapper;
+import com.github.dandelion.core.asset.cache.AssetCacheManager;
+import com.github.dandelion.core.asset.cache.AssetContent;
+import com.github.dandelion.core.asset.cache.PrecompiledAssets;
+import com.github.dandelion.core.config.DandelionConfig;
+import com.github.dandelion.core.storage.AssetStorageUnit;
+import com.github.dandelion.core.storage.BundleStorageUnit;
+
+/**
+ * <p>
+ * Precompiles the assets of a webapp at build time.
+ * 
+ * <p>
+ * All bundles are loaded and all their assets are fetched, processed and
+ * gzipped exactly as the {@link Context} would do it in production mode at
+ * runtime. The results are written under
+ * {@value PrecompiledAssets#LOCATION} in the output directory of the project,
+ * together with a manifest listing the bundles. Once packaged, the application
+ * starts without scanning the classpath for bundles and serves the assets
+ * without processing them again.
+ * 
+ * <p>
+ * Assets whose content depends on the request, such as the delegated ones or
+ * all assets if {@code cache.asset.key.per.request} is set, are left to the
+ * runtime.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+@Mojo(name = "precompile", defaultPhase = LifecyclePhase.PREPARE_PACKAGE,
+		requiresDependencyResolution = ResolutionScope.COMPILE)
+public class PrecompileMojo extends AbstractMojo {
+
+	/**
+	 * Bounds the memory cache used during the build, which must retain all the
+	 * processed contents.
+	 */
+	private static final int MAX_ASSETS = 100000;
+
+	@Parameter(defaultValue = "${project}", readonly = true, required = true)
+	private MavenProject project;
+
+	/**
+	 * The directory where the precompiled assets are written. It must end up at
+	 * the root of the classpath of the application.
+	 */
+	@Parameter(defaultValue = "${project.build.outputDirectory}", required = true)
+	private File outputDirectory;
+
+	/**
+	 * The directory containing the webapp sources, used to read the assets
+	 * that use the {@code webapp} location key.
+	 */
+	@Parameter(defaultValue = "${basedir}/src/main/webapp", required = true)
+	private File webappDirectory;
+
+	/**
+	 * The context path under which the application is deployed. The
+	 * precompiled assets are ignored at runtime if the actual context path
+	 * differs, since the URLs rewritten in the stylesheets depend on it.
+	 */
+	@Parameter(property = "dandelion.contextPath", defaultValue = "")
+	private String contextPath;
+
+	/**
+	 * The major version of the Servlet API of the target container, which
+	 * determines the asset locators in use.
+	 */
+	@Parameter(property = "dandelion.servletVersion", defaultValue = "3")
+	private int servletVersion;
+
+	/**
+	 * Additional Dandelion configuration, for example the bundles to include
+	 * or exclude. It must match the runtime configuration.
+	 */
+	@Parameter
+	private Properties properties;
+
+	@Parameter(property = "dandelion.precompile.skip", defaultValue = "false")
+	private boolean skip;
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		if (skip) {
+			getLog().info("Skipping the precompilation of the Dandelion assets");
+			return;
+		}
+
+		String normalizedContextPath = contextPath == null || contextPath.equals("/") ? "" : contextPath;
+
+		// A manifest left by a previous build would be picked up by the
+		// context instead of the bundles
+		deleteRecursively(new File(outputDirectory, PrecompiledAssets.LOCATION));
+
+		Thread currentThread = Thread.currentThread();
+		ClassLoader previousClassLoader = currentThread.getContextClassLoader();
+		currentThread.setContextClassLoader(newProjectClassLoader());
+
+		Context context = null;
+		try {
+			BuildEnvironment environment = new BuildEnvironment(normalizedContextPath, webappDirectory,
+					servletVersion, getInitParameters());
+			context = new Context(environment.newFilterConfig());
+			WebappDirectoryLocator webappLocator = new WebappDirectoryLocator(webappDirectory);
+			webappLocator.initLocator(context);
+			context.getAssetLocatorsMap().put(webappLocator.getLocationKey(), webappLocator);
+
+			HttpServletRequest request = environment.newRequest(context);
+			List<BundleStorageUnit> bundles = context.getBundleStorage().getBundleDag().getVerticies();
+			Map<String, AssetContent> contents = precompile(context, request, bundles);
+
+			PrecompiledAssets.write(outputDirectory, context.getProcessorChain(), normalizedContextPath, bundles,
+					contents);
+			getLog().info(
+					"Precompiled " + contents.size() + " assets from " + bundles.size() + " bundles into "
+							+ new File(outputDirectory, PrecompiledAssets.LOCATION));
+		}
+		catch (DandelionException e) {
+			throw new MojoExecutionException("Unable to initialize the Dandelion context", e);
+		}
+		catch (IOException e) {
+			throw new MojoExecutionException("Unable to write the precompiled assets", e);
+		}
+		finally {
+			if (context != null) {
+				context.destroy();
+			}
+			currentThread.setContextClassLoader(previousClassLoader);
+		}
+	}
+
+	private Map<String, AssetContent> precompile(Context context, HttpServletRequest request,
+			List<BundleStorageUnit> bundles) {
+		AssetCacheManager cacheManager = context.getCacheManager();
+		AssetMapper assetMapper = new AssetMapper(request, context);
+		Map<String, AssetContent> contents = new LinkedHashMap<String, AssetContent>();
+
+		for (BundleStorageUnit bundle : bundles) {
+			if (bundle.getAssetStorageUnits() == null) {
+				continue;
+			}
+			for (AssetStorageUnit asu : bundle.getAssetStorageUnits()) {
+				try {
+					Asset asset = assetMapper.mapToAsset(asu);
+					if (asset.getCacheKey() == null || cacheManager.isKeyPerRequest(asset)) {
+						getLog().debug("Leaving " + asu.toLog() + " to the runtime");
+						continue;
+					}
+
+					Set<Asset> processed = context.getProcessorManager().process(Collections.singleton(asset), request);
+					for (Asset processedAsset : processed) {
+						AssetContent content = cacheManager.getAssetContent(processedAsset.getCacheKey());
+						if (content != null) {
+							contents.put(processedAsset.getCacheKey(), content);
+						}
+					}
+				}
+				catch (DandelionException e) {
+					getLog().warn("Unable to precompile " + asu.toLog() + ": " + e.getMessage());
+				}
+			}
+		}
+		return contents;
+	}
+
+	private Map<String, String> getInitParameters() {
+		Map<String, String> initParameters = new HashMap<String, String>();
+		if (properties != null) {
+			for (String name : properties.stringPropertyNames()) {
+				initParameters.put(name, properties.getProperty(name));
+			}
+		}
+
+		// The build reproduces the production mode, keeping all the contents
+		// in memory until they are written, with all bundles loaded upfront
+		initParameters.put(DandelionConfig.DANDELION_MODE.getName(), "production");
+		initParameters.put(DandelionConfig.JMX_ENABLED.getName(), "false");
+		initParameters.put(DandelionConfig.CACHE_NAME.getName(), "");
+		initParameters.put(DandelionConfig.CACHE_ASSET_MAX_SIZE.getName(), String.valueOf(MAX_ASSETS));
+		initParameters.put(DandelionConfig.CACHE_ASSET_MAX_BYTES.getName(), String.valueOf(Long.MAX_VALUE));
+		initParameters.put(DandelionConfig.CACHE_DISK_LOCATION.getName(), "");
+		initParameters.put(DandelionConfig.BUNDLE_LOADING_LAZY.getName(), "false");
+		return initParameters;
+	}
+
+	private ClassLoader newProjectClassLoader() throws MojoExecutionException {
+		try {
+			List<String> elements = project.getCompileClasspathElements();
+			URL[] urls = new URL[elements.size()];
+			for (int i = 0; i < urls.length; i++) {
+				urls[i] = new File(elements.get(i)).toURI().toURL();
+			}
+			return new URLClassLoader(urls, getClass().getClassLoader());
+		}
+		catch (DependencyResolutionRequiredException e) {
+			throw new MojoExecutionException("Unable to resolve the compile classpath of the project", e);
+		}
+		catch (MalformedURLException e) {
+			throw new MojoExecutionException("Invalid classpath element", e);
+		}
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * [The "BSD licence"]
+ * Copyright (c) 2013-2014 Dandelion
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright
+ * notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ * notice, this list of conditions and the following disclaimer in the
+ * documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of Dandelion nor the names of its contributors 
+ * may be used to endorse or promote products derived from this software 
+ * without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.github.dandelion.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.github.dandelion.core.DandelionException;
+import com.github.dandelion.core.asset.locator.impl.WebappLocator;
+import com.github.dandelion.core.utils.ResourceUtils;
+
+/**
+ * <p>
+ * {@link WebappLocator} reading the webapp assets straight from the webapp
+ * directory of the project, since no server is there to answer the HTTP
+ * requests the standard locator issues.
+ * 
+ * @author Thibault Duchateau
+ * @since 0.10.1
+ */
+class WebappDirectoryLocator extends WebappLocator {
+
+	private final File webappDirectory;
+
+	WebappDirectoryLocator(File webappDirectory) {
+		this.webappDirectory = webappDirectory;
+	}
+
+	@Override
+	protected String doGetContent(String location, Map<String, Object> parameters, HttpServletRequest request) {
+		String path = location;
+
+		// The location has been processed into an absolute URL
+		int schemeIndex = path.indexOf("://");
+		if (schemeIndex != -1) {
+			int pathIndex = path.indexOf('/', schemeIndex + 3);
+			path = pathIndex == -1 ? "/" : path.substring(pathIndex);
+		}
+
+		String contextPath = request.getContextPath();
+		if (contextPath.length() > 0 && path.startsWith(contextPath + "/")) {
+			path = path.substring(contextPath.length());
+		}
+
+		int queryIndex = path.indexOf('?');
+		if (queryIndex != -1) {
+			path = path.substring(0, queryIndex);
+		}
+
+		File file = new File(webappDirectory, path);
+		if (!file.isFile()) {
+			throw new DandelionException("The asset " + path + " can't be found in " + webappDirectory);
+		}
+
+		InputStream input = null;
+		try {
+			input = new FileInputStream(file);
+			return ResourceUtils.getContentFromInputStream(input);
+		}
+		catch (IOException e) {
+			throw new DandelionException("Unable to read the asset " + file.getAbsolutePath(), e);
+		}
+		finally {
+			if (input != null) {
+				try {
+					input.close();
+				}
+				catch (IOException e) {
+					// Nothing more to read
+				}
+			}
+		}
+	}
+}